@@ -27,6 +27,7 @@ import java.beans.PropertyChangeSupport;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.List;
@@ -103,7 +104,7 @@ import VASSAL.tools.WarningDialog;
 import VASSAL.tools.WriteErrorDialog;
 import VASSAL.tools.filechooser.FileChooser;
 import VASSAL.tools.image.ImageTileSource;
-import VASSAL.tools.image.tilecache.ImageTileDiskCache;
+import VASSAL.tools.image.tilecache.ImageTilePackCache;
 import VASSAL.tools.io.IOUtils;
 
 /**
@@ -609,6 +610,38 @@ public abstract class GameModule extends AbstractConfigurable implements Command
     return s;
   }
 
+  /**
+   * Uses the registered {@link CommandEncoder}s to encode a {@link Command}
+   * directly to an {@link Appendable}. Subclasses which can do so should
+   * override this to avoid building the whole encoding as one String.
+   *
+   * @param c the command to encode
+   * @param out the destination for the encoded command
+   * @throws IOException if <code>out</code> throws one
+   * @since 3.2.17
+   */
+  public void encode(Command c, Appendable out) throws IOException {
+    final String s = encode(c);
+    if (s != null) {
+      out.append(s);
+    }
+  }
+
+  /**
+   * Uses the registered {@link CommandEncoder}s to decode the contents
+   * of a {@link Reader} into a {@link Command}. Subclasses which can do
+   * so should override this to decode without reading the whole input
+   * into one String.
+   *
+   * @param in the source of the encoded command
+   * @return the decoded command
+   * @throws IOException if <code>in</code> throws one
+   * @since 3.2.17
+   */
+  public Command decode(Reader in) throws IOException {
+    return decode(IOUtils.toString(in));
+  }
+
   /**
    * @return a common FileChooser so that recent file locations
    * can be remembered
@@ -948,7 +981,7 @@ public abstract class GameModule extends AbstractConfigurable implements Command
         DigestUtils.shaHex(getGameName() + "_" + getGameVersion());
 
       final File tc = new File(Info.getConfDir(), "tiles/" + hstr);
-      tcache = new ImageTileDiskCache(tc.getAbsolutePath());
+      tcache = new ImageTilePackCache(tc.getAbsolutePath());
     }
 
     return tcache;
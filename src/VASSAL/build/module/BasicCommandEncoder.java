@@ -19,12 +19,15 @@
 package VASSAL.build.module;
 
 import java.awt.Point;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import VASSAL.Info;
 import VASSAL.build.Buildable;
 import VASSAL.build.Builder;
 import VASSAL.build.GameModule;
@@ -34,6 +37,7 @@ import VASSAL.command.Command;
 import VASSAL.command.CommandEncoder;
 import VASSAL.command.MovePiece;
 import VASSAL.command.NullCommand;
+import VASSAL.command.PieceStateDelta;
 import VASSAL.command.PlayAudioClipCommand;
 import VASSAL.command.RemovePiece;
 import VASSAL.counters.ActionButton;
@@ -77,6 +81,7 @@ import VASSAL.counters.Translate;
 import VASSAL.counters.TriggerAction;
 import VASSAL.counters.UsePrototype;
 import VASSAL.tools.SequenceEncoder;
+import VASSAL.tools.concurrent.ConcurrentSoftHashMap;
 
 /**
  * A {@link CommandEncoder} that handles the basic commands: {@link AddPiece},
@@ -96,6 +101,14 @@ public class BasicCommandEncoder implements CommandEncoder, Buildable {
   private Map<String,DecoratorFactory> decoratorFactories =
     new HashMap<String,DecoratorFactory>();
 
+  /**
+   * Piece types split into the types of their layers, outermost first,
+   * keyed by the full type. Games contain many copies of the same type,
+   * so this saves tokenizing the nested type once per layer per piece.
+   */
+  private final Map<String,String[]> layerTypes =
+    new ConcurrentSoftHashMap<String,String[]>();
+
   public BasicCommandEncoder() {
     basicFactories.put(Stack.TYPE, new BasicPieceFactory() {
       public GamePiece createBasicPiece(String type) {
@@ -350,23 +363,44 @@ public class BasicCommandEncoder implements CommandEncoder, Buildable {
    * createDecorator or createBasic
    */
   public GamePiece createPiece(String type) {
-    SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(type, '\t');
-    type = st.nextToken();
-    String innerType = st.hasMoreTokens() ? st.nextToken() : null;
+    String[] layers = layerTypes.get(type);
+    if (layers == null) {
+      layers = splitType(type);
+      layerTypes.put(type, layers);
+    }
+
+    if (layers.length == 1) {
+      return createBasic(layers[0]);
+    }
 
-    if (innerType != null) {
-      GamePiece inner = createPiece(innerType);
+    GamePiece inner = createBasic(layers[layers.length - 1]);
+    for (int i = layers.length - 2; i >= 0; --i) {
       if (inner == null) {
         GameModule.getGameModule().getChatter().send("Invalid piece type - see Error Log for details"); //$NON-NLS-1$
-        logger.warn("Could not create piece with type " + innerType);
+        logger.warn("Could not create piece with type " + layers[i + 1]);
         inner = new BasicPiece();
       }
-      Decorator d = createDecorator(type, inner);
-      return d != null ? d : inner;
-    }
-    else {
-      return createBasic(type);
+      Decorator d = createDecorator(layers[i], inner);
+      inner = d != null ? d : inner;
     }
+    return inner;
+  }
+
+  /**
+   * Split a piece type into the types of its layers
+   *
+   * @return the type of each {@link Decorator}, outermost first, followed
+   *         by the type of the innermost piece
+   */
+  protected String[] splitType(String type) {
+    final List<String> l = new ArrayList<String>();
+    String innerType = type;
+    do {
+      SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(innerType, '\t');
+      l.add(st.nextToken());
+      innerType = st.hasMoreTokens() ? st.nextToken() : null;
+    } while (innerType != null);
+    return l.toArray(new String[l.size()]);
   }
 
   public void build(org.w3c.dom.Element e) {
@@ -389,6 +423,14 @@ public class BasicCommandEncoder implements CommandEncoder, Buildable {
   public static final String REMOVE = "-" + PARAM_SEPARATOR; //$NON-NLS-1$
   public static final String CHANGE = "D" + PARAM_SEPARATOR; //$NON-NLS-1$
   public static final String MOVE = "M" + PARAM_SEPARATOR; //$NON-NLS-1$
+  /** @since 3.2.17 */
+  public static final String CHANGE_DELTA = "d" + PARAM_SEPARATOR; //$NON-NLS-1$
+
+  /** Marks a layer of a {@link #CHANGE_DELTA} given as a patch */
+  private static final String PATCH = "p"; //$NON-NLS-1$
+
+  /** The earliest version of VASSAL which understands {@link #CHANGE_DELTA} */
+  private static final String CHANGE_DELTA_VERSION = "3.2.17"; //$NON-NLS-1$
 
   public Command decode(String command) {
     if (command.length() == 0) {
@@ -428,6 +470,36 @@ public class BasicCommandEncoder implements CommandEncoder, Buildable {
       String oldState = st.hasMoreTokens() ? st.nextToken() : null;
       return new ChangePiece(id, oldState, newState);
     }
+    else if (command.startsWith(CHANGE_DELTA)) {
+      command = command.substring(CHANGE_DELTA.length());
+      st = new SequenceEncoder.Decoder(command, PARAM_SEPARATOR);
+      String id = st.nextToken();
+      int layerCount = Integer.parseInt(st.nextToken());
+      List<Integer> layers = new ArrayList<Integer>();
+      List<String> newStates = new ArrayList<String>();
+      List<String> oldStates = new ArrayList<String>();
+      List<Boolean> patched = new ArrayList<Boolean>();
+      while (st.hasMoreTokens()) {
+        // patched layers are marked with a prefix on the layer index
+        String layer = st.nextToken();
+        patched.add(layer.startsWith(PATCH));
+        if (layer.startsWith(PATCH)) {
+          layer = layer.substring(PATCH.length());
+        }
+        layers.add(Integer.parseInt(layer));
+        newStates.add(st.nextToken());
+        oldStates.add(st.nextToken());
+      }
+      int[] l = new int[layers.size()];
+      boolean[] p = new boolean[l.length];
+      for (int i = 0; i < l.length; ++i) {
+        l[i] = layers.get(i);
+        p[i] = patched.get(i);
+      }
+      return new ChangePiece(id, new PieceStateDelta(layerCount, l,
+        newStates.toArray(new String[newStates.size()]),
+        oldStates.toArray(new String[oldStates.size()]), p));
+    }
     else if (command.startsWith(MOVE)) {
       command = command.substring(MOVE.length());
       st = new SequenceEncoder.Decoder(command, PARAM_SEPARATOR);
@@ -467,11 +539,14 @@ public class BasicCommandEncoder implements CommandEncoder, Buildable {
     }
     else if (c instanceof ChangePiece) {
       ChangePiece cp = (ChangePiece) c;
-      se.append(cp.getId()).append(cp.getNewState());
-      if (cp.getOldState() != null) {
-        se.append(cp.getOldState());
+      if (cp.getDelta() != null) {
+        return encodeDelta(cp.getId(), cp.getDelta());
       }
-      return CHANGE + se.getValue();
+      GamePiece target = null;
+      if (isDeltaEnabled() && cp.getOldState() != null) {
+        target = GameModule.getGameModule().getGameState().getPieceForId(cp.getId());
+      }
+      return encodeChange(cp, target);
     }
     else if (c instanceof MovePiece) {
       MovePiece mp = (MovePiece) c;
@@ -491,6 +566,67 @@ public class BasicCommandEncoder implements CommandEncoder, Buildable {
     }
   }
 
+  /**
+   * Encode a {@link ChangePiece}. If a piece is given, the changed layers
+   * of the piece are encoded in the {@link #CHANGE_DELTA} form whenever
+   * that is shorter than the full old and new states.
+   *
+   * @param cp the command
+   * @param target the piece whose structure determines its layers, or
+   * <code>null</code> to always encode the full states
+   * @since 3.2.17
+   */
+  protected String encodeChange(ChangePiece cp, GamePiece target) {
+    SequenceEncoder se = new SequenceEncoder(PARAM_SEPARATOR);
+    se.append(cp.getId()).append(cp.getNewState());
+    if (cp.getOldState() != null) {
+      se.append(cp.getOldState());
+    }
+    final String full = CHANGE + se.getValue();
+
+    if (target != null && cp.getOldState() != null) {
+      final PieceStateDelta delta = PieceStateDelta.compute(
+        target, cp.getOldState(), cp.getNewState());
+      if (delta != null) {
+        final String d = encodeDelta(cp.getId(), delta);
+        if (d.length() < full.length()) {
+          return d;
+        }
+      }
+    }
+    return full;
+  }
+
+  /**
+   * @since 3.2.17
+   */
+  protected String encodeDelta(String id, PieceStateDelta delta) {
+    SequenceEncoder se = new SequenceEncoder(PARAM_SEPARATOR);
+    se.append(id).append(delta.getLayerCount());
+    for (int i = 0; i < delta.getChangedCount(); ++i) {
+      se.append((delta.isPatched(i) ? PATCH : "") + delta.getLayer(i)) //$NON-NLS-1$
+        .append(delta.getNewState(i))
+        .append(delta.getOldState(i));
+    }
+    return CHANGE_DELTA + se.getValue();
+  }
+
+  /**
+   * Changes are encoded as deltas only in modules which require a version
+   * of VASSAL able to decode them, so that players using older versions
+   * can still take part.
+   *
+   * @return whether {@link ChangePiece} commands may be encoded in the
+   * {@link #CHANGE_DELTA} form
+   * @since 3.2.17
+   */
+  protected boolean isDeltaEnabled() {
+    final GameModule g = GameModule.getGameModule();
+    return g != null && Info.compareVersions(
+      g.getAttributeValueString(GameModule.VASSAL_VERSION_CREATED),
+      CHANGE_DELTA_VERSION) >= 0;
+  }
+
   public static interface DecoratorFactory {
     Decorator createDecorator(String type, GamePiece inner);
   }
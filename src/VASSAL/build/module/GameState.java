@@ -21,12 +21,21 @@ package VASSAL.build.module;
 import java.awt.Cursor;
 import java.awt.event.ActionEvent;
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -45,6 +54,8 @@ import javax.swing.Action;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.output.NullOutputStream;
 import org.jdesktop.swingworker.SwingWorker;
 import org.slf4j.LoggerFactory;
 
@@ -62,6 +73,7 @@ import VASSAL.command.CommandFilter;
 import VASSAL.command.ConditionalCommand;
 import VASSAL.command.Logger;
 import VASSAL.command.NullCommand;
+import VASSAL.command.RemovePiece;
 import VASSAL.configure.DirectoryConfigurer;
 import VASSAL.counters.GamePiece;
 import VASSAL.i18n.Resources;
@@ -74,7 +86,6 @@ import VASSAL.tools.WriteErrorDialog;
 import VASSAL.tools.filechooser.FileChooser;
 import VASSAL.tools.filechooser.LogAndSaveFileFilter;
 import VASSAL.tools.io.DeobfuscatingInputStream;
-import VASSAL.tools.io.FastByteArrayOutputStream;
 import VASSAL.tools.io.FileArchive;
 import VASSAL.tools.io.IOUtils;
 import VASSAL.tools.io.ObfuscatingOutputStream;
@@ -181,7 +192,7 @@ public class GameState implements CommandEncoder {
    * @return true if the game state is different from when it was last saved
    */
   public boolean isModified() {
-    String s = saveString();
+    final String s = saveDigest();
     return s != null && !s.equals(lastSave);
   }
 
@@ -324,7 +335,7 @@ public class GameState implements CommandEncoder {
     }
 
     gameStarted |= this.gameStarting;
-    lastSave = gameStarting ? saveString() : null;
+    lastSave = gameStarting ? saveDigest() : null;
   }
 
   /** Return true if a game is currently in progress */
@@ -434,6 +445,44 @@ public class GameState implements CommandEncoder {
     return GameModule.getGameModule().encode(getRestoreCommand());
   }
 
+  /**
+   * @return a digest of the encoded game state, or <code>null</code> if
+   * there is no game to save. This is used to detect modifications without
+   * keeping a copy of the whole saved game in memory.
+   */
+  protected String saveDigest() {
+    final Command c = getRestoreCommand();
+    if (c == null) {
+      return null;
+    }
+
+    final MessageDigest md;
+    try {
+      md = MessageDigest.getInstance("SHA-1");
+    }
+    catch (NoSuchAlgorithmException e) {
+      // this should never happen, every JRE must provide SHA-1
+      throw new IllegalStateException(e);
+    }
+
+    Writer out = null;
+    try {
+      out = new OutputStreamWriter(
+              new DigestOutputStream(new NullOutputStream(), md), "UTF-8");
+      GameModule.getGameModule().encode(c, out);
+      out.close();
+    }
+    catch (IOException e) {
+      // this should never happen, we're not doing any I/O
+      throw new IllegalStateException(e);
+    }
+    finally {
+      IOUtils.closeQuietly(out);
+    }
+
+    return new String(Hex.encodeHex(md.digest()));
+  }
+
   protected boolean checkForOldSaveFile(File f) {
     if (f.exists()) {
       // warn user if overwriting a save from an old version
@@ -521,7 +570,7 @@ public class GameState implements CommandEncoder {
       lastSave = null;
     }
     else {
-      lastSave = saveString();
+      lastSave = saveDigest();
     }
   }
 
@@ -656,6 +705,80 @@ public class GameState implements CommandEncoder {
     return c;
   }
 
+  /**
+   * @return a {@link GameStateManifest} describing the game in progress,
+   * which another player can pass to {@link #getRestoreCommand(GameStateManifest)}
+   * to bring this game up to date with theirs
+   * @since 3.2.17
+   */
+  public GameStateManifest getManifest() {
+    final GameModule g = GameModule.getGameModule();
+    final GameStateManifest m = new GameStateManifest(
+      g.getAttributeValueString(GameModule.MODULE_NAME),
+      g.getAttributeValueString(GameModule.MODULE_VERSION)
+    );
+
+    for (GameComponent gc : gameComponents) {
+      m.addComponent(g.encode(gc.getRestoreCommand()));
+    }
+
+    for (GamePiece p : pieces.values()) {
+      m.addPiece(p);
+    }
+    return m;
+  }
+
+  /**
+   * Return a {@link Command} that, when executed on a game described by
+   * <code>have</code>, will bring it to the current state of this game.
+   * If only pieces differ, just those pieces are removed and added again,
+   * as pieces are during play. The restore commands of
+   * {@link GameComponent}s expect the game to have been reset by a
+   * {@link SetupCommand} first, so if any component differs, or if the
+   * games cannot be compared, or if most pieces differ, this is the same
+   * as {@link #getRestoreCommand()}.
+   *
+   * If there is no game in progress here, the game described by
+   * <code>have</code> is reset, as it would be before a full restore.
+   *
+   * @param have the manifest of the game to be brought up to date,
+   * or <code>null</code> to restore the whole game
+   * @since 3.2.17
+   */
+  public Command getRestoreCommand(GameStateManifest have) {
+    if (have == null) {
+      return getRestoreCommand();
+    }
+
+    if (!saveGame.isEnabled()) {
+      // the other player kept their game to be updated, so it must be
+      // closed as it would have been before asking for the whole game
+      return new SetupCommand(false);
+    }
+
+    final GameStateManifest.Changes changes =
+      getManifest().changesSince(have);
+    if (changes == null ||
+        !changes.getChangedComponents().isEmpty() ||
+        changes.getAddedPieces().size() * 2 > pieces.size()) {
+      return getRestoreCommand();
+    }
+
+    final Command c = new NullCommand();
+    for (String id : changes.getRemovedPieces()) {
+      c.append(new RemovePiece(id));
+    }
+
+    final List<GamePiece> added = new ArrayList<GamePiece>();
+    for (String id : changes.getAddedPieces()) {
+      added.add(pieces.get(id));
+    }
+    for (GamePiece p : sortPieces(added)) {
+      c.append(new AddPiece(p));
+    }
+    return c;
+  }
+
   private Command checkVersionCommand() {
     String runningVersion = GameModule.getGameModule().getAttributeValueString(GameModule.VASSAL_VERSION_RUNNING);
     ConditionalCommand.Condition cond = new ConditionalCommand.Lt(GameModule.VASSAL_VERSION_RUNNING, runningVersion);
@@ -697,23 +820,27 @@ public class GameState implements CommandEncoder {
   public static final String END_SAVE = "end_save";  //$NON-NLS-1$
 
   public void saveGame(File f) throws IOException {
-// FIXME: Extremely inefficient! Write directly to ZipArchive OutputStream
-    final String save = saveString();
-    final FastByteArrayOutputStream ba = new FastByteArrayOutputStream();
-    OutputStream out = null;
-    try {
-      out = new ObfuscatingOutputStream(ba);
-      out.write(save.getBytes("UTF-8"));
-      out.close();
-    }
-    finally {
-      IOUtils.closeQuietly(out);
-    }
+    final Command save = getRestoreCommand();
 
     FileArchive archive = null;
     try {
       archive = new ZipArchive(f);
-      archive.add(SAVEFILE_ZIP_ENTRY, ba.toInputStream());
+
+      // encode the game directly into the archive
+      Writer out = null;
+      try {
+        out = new BufferedWriter(
+                new OutputStreamWriter(
+                  new ObfuscatingOutputStream(
+                    new BufferedOutputStream(
+                      archive.getOutputStream(SAVEFILE_ZIP_ENTRY))), "UTF-8"));
+        GameModule.getGameModule().encode(save, out);
+        out.close();
+      }
+      finally {
+        IOUtils.closeQuietly(out);
+      }
+
       (new SaveMetaData()).save(archive);
       archive.close();
     }
@@ -815,7 +942,19 @@ public class GameState implements CommandEncoder {
    */
   public Command getRestorePiecesCommand() {
     // TODO remove stacks that were empty when the game was loaded and are still empty now
-    final List<GamePiece> pieceList = new ArrayList<GamePiece>(pieces.values());
+    final Command c = new NullCommand();
+    for (GamePiece p : sortPieces(pieces.values())) {
+      c.append(new AddPiece(p));
+    }
+    return c;
+  }
+
+  /**
+   * Sort pieces into the order in which they must be added to restore
+   * the game: by map, and within a map in the order they are drawn.
+   */
+  private List<GamePiece> sortPieces(Collection<GamePiece> toSort) {
+    final List<GamePiece> pieceList = new ArrayList<GamePiece>(toSort);
     Collections.sort(pieceList, new Comparator<GamePiece>() {
       private final Map<GamePiece,Integer> indices = new HashMap<GamePiece,Integer>();
 
@@ -853,12 +992,7 @@ public class GameState implements CommandEncoder {
         }
       }
     });
-
-    final Command c = new NullCommand();
-    for (GamePiece p : pieceList) {
-      c.append(new AddPiece(p));
-    }
-    return c;
+    return pieceList;
   }
 
   /**
@@ -881,12 +1015,12 @@ public class GameState implements CommandEncoder {
       for (ZipEntry entry = zipInput.getNextEntry(); entry != null;
            entry = zipInput.getNextEntry()) {
         if (SAVEFILE_ZIP_ENTRY.equals(entry.getName())) {
-          InputStream din = null;
+          Reader din = null;
           try {
-            din = new DeobfuscatingInputStream(zipInput);
-// FIXME: toString() is very inefficient, make decode() use the stream directly
-            final Command c = GameModule.getGameModule().decode(
-              IOUtils.toString(din, "UTF-8"));
+            din = new BufferedReader(
+                    new InputStreamReader(
+                      new DeobfuscatingInputStream(zipInput), "UTF-8"));
+            final Command c = GameModule.getGameModule().decode(din);
             din.close();
             return c;
           }
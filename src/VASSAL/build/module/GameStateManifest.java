@@ -0,0 +1,331 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import VASSAL.counters.GamePiece;
+import VASSAL.counters.Stack;
+import VASSAL.tools.SequenceEncoder;
+
+/**
+ * A compact description of a game in progress: a hash of the type and
+ * state of every piece, the contents of every {@link Stack}, and a hash
+ * of the restore command of every {@link GameComponent}. A player whose
+ * game has fallen behind sends the manifest of the game it has, and the
+ * player it synchronizes with uses {@link #changesSince} to send only
+ * the pieces and components which differ.
+ *
+ * @since 3.2.17
+ */
+public class GameStateManifest {
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final String moduleName;
+  private final String moduleVersion;
+  private final List<Long> components = new ArrayList<Long>();
+  private final Map<String,Entry> pieces = new LinkedHashMap<String,Entry>();
+
+  private static class Entry {
+    public final long hash;
+    public final String[] children;
+
+    public Entry(long hash, String[] children) {
+      this.hash = hash;
+      this.children = children;
+    }
+  }
+
+  public GameStateManifest(String moduleName, String moduleVersion) {
+    this.moduleName = moduleName == null ? "" : moduleName; //$NON-NLS-1$
+    this.moduleVersion = moduleVersion == null ? "" : moduleVersion; //$NON-NLS-1$
+  }
+
+  public String getModuleName() {
+    return moduleName;
+  }
+
+  public String getModuleVersion() {
+    return moduleVersion;
+  }
+
+  /**
+   * Add the next {@link GameComponent}.
+   *
+   * @param restore the encoded restore command of the component
+   */
+  public void addComponent(String restore) {
+    components.add(hash(restore == null ? "" : restore)); //$NON-NLS-1$
+  }
+
+  public int getComponentCount() {
+    return components.size();
+  }
+
+  public void addPiece(GamePiece p) {
+    String[] children = null;
+    if (p instanceof Stack) {
+      final Stack s = (Stack) p;
+      children = new String[s.getPieceCount()];
+      for (int i = 0; i < children.length; ++i) {
+        children[i] = s.getPieceAt(i).getId();
+      }
+    }
+    addPiece(p.getId(), p.getType(), p.getState(), children);
+  }
+
+  /**
+   * @param children the ids of the pieces in the stack, or
+   * <code>null</code> if the piece is not a stack
+   */
+  public void addPiece(String id, String type, String state,
+                       String[] children) {
+    long h = hash(FNV_OFFSET, type);
+    h = (h ^ 0xffff) * FNV_PRIME;
+    h = hash(h, state);
+    pieces.put(id, new Entry(h, children));
+  }
+
+  public int getPieceCount() {
+    return pieces.size();
+  }
+
+  private static long hash(String s) {
+    return hash(FNV_OFFSET, s);
+  }
+
+  private static long hash(long h, String s) {
+    for (int i = 0, n = s.length(); i < n; ++i) {
+      h = (h ^ s.charAt(i)) * FNV_PRIME;
+    }
+    return h;
+  }
+
+  /**
+   * The differences between two games.
+   */
+  public static class Changes {
+    private final Set<String> removed;
+    private final Set<String> added;
+    private final List<Integer> components;
+
+    private Changes(Set<String> removed, Set<String> added,
+                    List<Integer> components) {
+      this.removed = removed;
+      this.added = added;
+      this.components = components;
+    }
+
+    /** @return the ids of the pieces to remove before adding any */
+    public Set<String> getRemovedPieces() {
+      return removed;
+    }
+
+    /** @return the ids of the pieces to add in their current state */
+    public Set<String> getAddedPieces() {
+      return added;
+    }
+
+    /** @return the indices of the components whose state differs */
+    public List<Integer> getChangedComponents() {
+      return components;
+    }
+  }
+
+  /**
+   * Work out how to bring a game described by another manifest into the
+   * game described by this one. Pieces are added in their entirety,
+   * so a piece is added whenever its type or state differs; a
+   * {@link Stack} is added whenever one of its pieces is, so that the
+   * piece goes back into it; and the pieces of a stack which is added
+   * or removed are added too, so that none is left behind in a stack
+   * which no longer holds it.
+   *
+   * @param have the manifest of the game to be updated
+   * @return the changes, or <code>null</code> if the games are for
+   * different modules and cannot be compared
+   */
+  public Changes changesSince(GameStateManifest have) {
+    if (!moduleName.equals(have.moduleName) ||
+        !moduleVersion.equals(have.moduleVersion) ||
+        components.size() != have.components.size()) {
+      return null;
+    }
+
+    // the stack holding each piece in this game
+    final Map<String,String> parents = new HashMap<String,String>();
+    for (Map.Entry<String,Entry> e : pieces.entrySet()) {
+      if (e.getValue().children != null) {
+        for (String child : e.getValue().children) {
+          parents.put(child, e.getKey());
+        }
+      }
+    }
+
+    final Set<String> added = new LinkedHashSet<String>();
+    final List<String> pending = new ArrayList<String>();
+
+    for (Map.Entry<String,Entry> e : pieces.entrySet()) {
+      final Entry old = have.pieces.get(e.getKey());
+      if (old == null || old.hash != e.getValue().hash) {
+        pending.add(e.getKey());
+      }
+    }
+
+    final Set<String> removed = new LinkedHashSet<String>();
+    for (Map.Entry<String,Entry> e : have.pieces.entrySet()) {
+      if (!pieces.containsKey(e.getKey())) {
+        removed.add(e.getKey());
+        addChildren(e.getValue(), pending);
+      }
+    }
+
+    while (!pending.isEmpty()) {
+      final String id = pending.remove(pending.size() - 1);
+      if (added.add(id)) {
+        addChildren(have.pieces.get(id), pending);
+        final String parent = parents.get(id);
+        if (parent != null) {
+          pending.add(parent);
+        }
+      }
+    }
+
+    for (String id : added) {
+      if (have.pieces.containsKey(id)) {
+        removed.add(id);
+      }
+    }
+
+    final List<Integer> changed = new ArrayList<Integer>();
+    for (int i = 0; i < components.size(); ++i) {
+      if (!components.get(i).equals(have.components.get(i))) {
+        changed.add(i);
+      }
+    }
+
+    return new Changes(removed, added, changed);
+  }
+
+  /** Queue those pieces of an old stack which are still in the game. */
+  private void addChildren(Entry old, List<String> pending) {
+    if (old != null && old.children != null) {
+      for (String child : old.children) {
+        if (pieces.containsKey(child)) {
+          pending.add(child);
+        }
+      }
+    }
+  }
+
+  public String encode() {
+    final SequenceEncoder se = new SequenceEncoder(';');
+    se.append(moduleName)
+      .append(moduleVersion)
+      .append(components.size());
+    for (Long h : components) {
+      se.append(Long.toString(h, 36));
+    }
+
+    for (Map.Entry<String,Entry> e : pieces.entrySet()) {
+      final SequenceEncoder pe = new SequenceEncoder(e.getKey(), ',');
+      pe.append(Long.toString(e.getValue().hash, 36));
+      if (e.getValue().children != null) {
+        pe.append(e.getValue().children.length);
+        for (String child : e.getValue().children) {
+          pe.append(child);
+        }
+      }
+      se.append(pe.getValue());
+    }
+    return se.getValue();
+  }
+
+  /**
+   * @return the manifest encoded by {@link #encode}, or <code>null</code>
+   * if <code>s</code> is not a valid manifest
+   */
+  public static GameStateManifest decode(String s) {
+    try {
+      final Iterator<String> sd = split(s).iterator();
+      final GameStateManifest m =
+        new GameStateManifest(sd.next(), sd.next());
+
+      for (int i = Integer.parseInt(sd.next()); i > 0; --i) {
+        m.components.add(Long.parseLong(sd.next(), 36));
+      }
+
+      while (sd.hasNext()) {
+        final SequenceEncoder.Decoder pd =
+          new SequenceEncoder.Decoder(sd.next(), ',');
+        final String id = pd.nextToken();
+        final long hash = Long.parseLong(pd.nextToken(), 36);
+        String[] children = null;
+        if (pd.hasMoreTokens()) {
+          children = new String[Integer.parseInt(pd.nextToken())];
+          for (int i = 0; i < children.length; ++i) {
+            children[i] = pd.nextToken();
+          }
+        }
+        m.pieces.put(id, new Entry(hash, children));
+      }
+      return m;
+    }
+    catch (NoSuchElementException e) {
+      return null;
+    }
+    catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Split a string encoded by a {@link SequenceEncoder} with ';' into its
+   * tokens. A manifest has a token per piece, and a
+   * {@link SequenceEncoder.Decoder} copies the rest of the string for
+   * each token it reads, so this splits it first and decodes each token
+   * separately.
+   */
+  private static List<String> split(String s) {
+    final List<String> tokens = new ArrayList<String>();
+    int begin = 0;
+    for (int i = s.indexOf(';'); i >= 0; i = s.indexOf(';', i + 1)) {
+      if (i == 0 || s.charAt(i - 1) != '\\') {
+        tokens.add(unescape(s.substring(begin, i)));
+        begin = i + 1;
+      }
+    }
+    tokens.add(unescape(s.substring(begin)));
+    return tokens;
+  }
+
+  private static String unescape(String token) {
+    return token.length() == 0 ?
+      token : new SequenceEncoder.Decoder(token, ';').nextToken();
+  }
+}
@@ -107,6 +107,7 @@ import VASSAL.build.module.map.MenuDisplayer;
 import VASSAL.build.module.map.PieceCollection;
 import VASSAL.build.module.map.PieceMover;
 import VASSAL.build.module.map.PieceRecenterer;
+import VASSAL.build.module.map.RegionPieceCollection;
 import VASSAL.build.module.map.Scroller;
 import VASSAL.build.module.map.SelectionHighlighters;
 import VASSAL.build.module.map.SetupStack;
@@ -211,6 +212,7 @@ public class Map extends AbstractConfigurable implements GameComponent, MouseLis
   protected List<Board> boards = new CopyOnWriteArrayList<Board>();
   protected int[][] boardWidths; // Cache of board widths by row/column
   protected int[][] boardHeights; // Cache of board heights by row/column
+  protected static int layoutVersion; // Count of changes to boards, zones and stack spacing
   protected PieceCollection pieces = new DefaultPieceCollection();
   protected Highlighter highlighter = new ColoredBorder();
   protected ArrayList<Highlighter> highlighters = new ArrayList<Highlighter>();
@@ -788,6 +790,26 @@ mainWindowDock = splitter.splitBottom(splitter.getSplitAncestor(GameModule.getGa
     return null;
   }
 
+  /**
+   * Notes that boards or zones have been placed, removed, or reshaped on
+   * some map, or that the spacing of stacks has changed, so that anything
+   * caching the board or zone at a point, or the extent of a stack, must
+   * look it up again.
+   *
+   * @since 3.2.17
+   */
+  public static void layoutChanged() {
+    ++layoutVersion;
+  }
+
+  /**
+   * @return a count which changes whenever {@link #layoutChanged} is called
+   * @since 3.2.17
+   */
+  public static int getLayoutVersion() {
+    return layoutVersion;
+  }
+
   /**
    *
    * @return the {@link Zone} on this map containing the argument point
@@ -1184,22 +1206,17 @@ mainWindowDock = splitter.splitBottom(splitter.getSplitAncestor(GameModule.getGa
 
     // Deselect any counters on the last Map with focus
     if (!this.equals(activeMap)) {
-      boolean dirty = false;
-
       final ArrayList<GamePiece> l = new ArrayList<GamePiece>();
       for (Iterator<GamePiece> i = KeyBuffer.getBuffer().getPiecesIterator();
            i.hasNext(); ) {
-        l.add(i.next());
-      }
-
-      for (GamePiece p : l) {
+        final GamePiece p = i.next();
         if (p.getMap() == activeMap) {
-          KeyBuffer.getBuffer().remove(p);
-          dirty = true;
+          l.add(p);
         }
       }
+      KeyBuffer.getBuffer().removeAll(l);
 
-      if (dirty && activeMap != null) {
+      if (!l.isEmpty() && activeMap != null) {
         activeMap.repaint();
       }
     }
@@ -1504,7 +1521,7 @@ mainWindowDock = splitter.splitBottom(splitter.getSplitAncestor(GameModule.getGa
       Composite oldComposite = g2d.getComposite();
       g2d.setComposite(
         AlphaComposite.getInstance(AlphaComposite.SRC_OVER, pieceOpacity));
-      GamePiece[] stack = pieces.getPieces();
+      GamePiece[] stack = getPiecesNear(mapRectangle(visibleRect), false);
       for (int i = 0; i < stack.length; ++i) {
         Point pt = componentCoordinates(stack[i].getPosition());
         if (stack[i].getClass() == Stack.class) {
@@ -1536,7 +1553,15 @@ mainWindowDock = splitter.splitBottom(splitter.getSplitAncestor(GameModule.getGa
       Graphics2D g2d = (Graphics2D) g;
       Composite oldComposite = g2d.getComposite();
       g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, pieceOpacity));
-      GamePiece[] stack = pieces.getPieces();
+      final Rectangle clip = g.getClipBounds();
+      GamePiece[] stack;
+      if (clip == null) {
+        stack = pieces.getPieces();
+      }
+      else {
+        clip.translate(-xOffset, -yOffset);
+        stack = getPiecesNear(mapRectangle(clip), false);
+      }
       for (int i = 0; i < stack.length; ++i) {
         Point pt = componentCoordinates(stack[i].getPosition());
         stack[i].draw(g, pt.x + xOffset, pt.y + yOffset, theMap, getZoom());
@@ -1683,6 +1708,38 @@ mainWindowDock = splitter.splitBottom(splitter.getSplitAncestor(GameModule.getGa
     return pieces.getAllPieces();
   }
 
+  /**
+   * Returns the pieces which may intersect a region of the map, in drawing
+   * order. If the {@link PieceCollection} does not keep a spatial index,
+   * this is every piece on the map.
+   *
+   * @param region the region, in map coordinates
+   * @param all whether to include pieces in hidden layers
+   */
+  protected GamePiece[] getPiecesNear(Rectangle region, boolean all) {
+    if (pieces instanceof RegionPieceCollection) {
+      // allow for rounding in the conversion from component coordinates
+      region = new Rectangle(region);
+      region.grow(1, 1);
+      final RegionPieceCollection rpc = (RegionPieceCollection) pieces;
+      return all ? rpc.getAllPieces(region) : rpc.getPieces(region);
+    }
+    else {
+      return all ? pieces.getAllPieces() : pieces.getPieces();
+    }
+  }
+
+  /**
+   * Notify the map that the position or bounds of a piece on it may have
+   * changed, so that it can be found by painting and hit-testing.
+   */
+  public void pieceChanged(GamePiece p) {
+    if (pieces instanceof RegionPieceCollection) {
+      ((RegionPieceCollection) pieces).pieceChanged(
+        p.getParent() != null ? p.getParent() : p);
+    }
+  }
+
   public void setPieceCollection(PieceCollection pieces) {
     this.pieces = pieces;
   }
@@ -1718,6 +1775,7 @@ mainWindowDock = splitter.splitBottom(splitter.getSplitAncestor(GameModule.getGa
    * will be adjusted N pixels to the right.
    */
   protected void setBoardBoundaries() {
+    layoutChanged();
     int maxX = 0;
     int maxY = 0;
     for (Board b : boards) {
@@ -1927,6 +1985,7 @@ mainWindowDock = splitter.splitBottom(splitter.getSplitAncestor(GameModule.getGa
     else {
       pieces.clear();
       boards.clear();
+      layoutChanged();
       if (mainWindowDock != null) {
         if (mainWindowDock.getHideableComponent().isShowing()) {
           Prefs.getGlobalPrefs().getOption(MAIN_WINDOW_HEIGHT)
@@ -1973,7 +2032,7 @@ mainWindowDock = splitter.splitBottom(splitter.getSplitAncestor(GameModule.getGa
    * Use the provided {@link PieceFinder} instance to locate a visible piece at the given location
    */
   public GamePiece findPiece(Point pt, PieceFinder finder) {
-    GamePiece[] stack = pieces.getPieces();
+    GamePiece[] stack = getPiecesNear(new Rectangle(pt.x, pt.y, 1, 1), false);
     for (int i = stack.length - 1; i >= 0; --i) {
       GamePiece p = finder.select(this, stack[i], pt);
       if (p != null) {
@@ -1988,7 +2047,7 @@ mainWindowDock = splitter.splitBottom(splitter.getSplitAncestor(GameModule.getGa
    * is visible or not
    */
   public GamePiece findAnyPiece(Point pt, PieceFinder finder) {
-    GamePiece[] stack = pieces.getAllPieces();
+    GamePiece[] stack = getPiecesNear(new Rectangle(pt.x, pt.y, 1, 1), true);
     for (int i = stack.length - 1; i >= 0; --i) {
       GamePiece p = finder.select(this, stack[i], pt);
       if (p != null) {
@@ -2074,6 +2133,7 @@ mainWindowDock = splitter.splitBottom(splitter.getSplitAncestor(GameModule.getGa
       }
       pieces.add(p);
       p.setMap(this);
+      pieceChanged(p);
       theMap.repaint();
     }
   }
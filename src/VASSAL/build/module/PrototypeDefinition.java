@@ -21,7 +21,9 @@ package VASSAL.build.module;
 import java.awt.Component;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 import javax.swing.Box;
 
@@ -52,6 +54,7 @@ import VASSAL.i18n.ComponentI18nData;
 import VASSAL.i18n.Resources;
 import VASSAL.tools.ErrorDialog;
 import VASSAL.tools.FormattedString;
+import VASSAL.tools.SequenceEncoder;
 import VASSAL.tools.UniqueIdManager;
 
 public class PrototypeDefinition extends AbstractConfigurable
@@ -61,6 +64,8 @@ public class PrototypeDefinition extends AbstractConfigurable
   private java.util.Map<String,GamePiece> pieces =
     new HashMap<String,GamePiece>();
   private String pieceDefinition;
+  private String scannedDefinition;
+  private String[] referencedProperties;
   private static UniqueIdManager idMgr = new UniqueIdManager("prototype-"); //$NON-NLS-1$
   private PropertyChangeSupport propSupport = new PropertyChangeSupport(this);
 
@@ -123,6 +128,44 @@ public class PrototypeDefinition extends AbstractConfigurable
     return getPiece(pieceDefinition);
   }
 
+  /**
+   * @return the encoded {@link AddPiece} command which defines the
+   * prototype, without building it
+   * @since 3.2.17
+   */
+  public String getPieceDefinition() {
+    return pieceDefinition;
+  }
+
+  /**
+   * @return the names of the properties which the definition refers to
+   * as <code>$name$</code>, and which {@link #getPiece(PropertySource)}
+   * substitutes
+   * @since 3.2.17
+   */
+  public String[] getReferencedProperties() {
+    final String def = getPieceDefinition();
+    if (referencedProperties == null || def != scannedDefinition) {
+      final List<String> names = new ArrayList<String>();
+      if (def != null) {
+        // the tokens FormattedStringExpression substitutes
+        final SequenceEncoder.Decoder st =
+          new SequenceEncoder.Decoder(def, '$');
+        boolean isProperty = true;
+        while (st.hasMoreTokens()) {
+          final String token = st.nextToken();
+          isProperty = !isProperty;
+          if (isProperty && token.length() > 0 && st.hasMoreTokens()) {
+            names.add(token);
+          }
+        }
+      }
+      referencedProperties = names.toArray(new String[names.size()]);
+      scannedDefinition = def;
+    }
+    return referencedProperties;
+  }
+
   /**
    * For the case when the piece definition is a Message Format, expand the definition using the given properties
    *
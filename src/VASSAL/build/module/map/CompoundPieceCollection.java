@@ -18,6 +18,7 @@
  */
 package VASSAL.build.module.map;
 
+import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -31,7 +32,7 @@ import VASSAL.counters.Stack;
  * pieces into distinct layers.  The layers are drawn in order of their index, i.e.
  * layer 0 is on the bottom.
  */
-public abstract class CompoundPieceCollection implements PieceCollection {
+public abstract class CompoundPieceCollection implements RegionPieceCollection {
   protected SimplePieceCollection[] layers;
   protected int bottomLayer = 0;
   protected boolean[] enabled;
@@ -102,6 +103,40 @@ public abstract class CompoundPieceCollection implements PieceCollection {
     return getPieces(true);
   }
 
+  public GamePiece[] getPieces(Rectangle region) {
+    return getPieces(region, false);
+  }
+
+  public GamePiece[] getAllPieces(Rectangle region) {
+    return getPieces(region, true);
+  }
+
+  /*
+   * Return pieces near the given region in layer order from the bottom up.
+   */
+  protected GamePiece[] getPieces(Rectangle region, boolean includeDisabled) {
+    final ArrayList<GamePiece> l = new ArrayList<GamePiece>();
+    int layer = bottomLayer;
+    for (int i = 0; i < layers.length; ++i) {
+      if (includeDisabled || enabled[layer]) {
+        layers[layer].addPieces(region, l);
+      }
+      layer++;
+      if (layer >= layers.length) {
+        layer = 0;
+      }
+    }
+    return l.toArray(new GamePiece[l.size()]);
+  }
+
+  public void pieceChanged(GamePiece p) {
+    // The layer of a piece can change along with its properties,
+    // so check every layer rather than the one it now belongs to.
+    for (int i = 0; i < layers.length; ++i) {
+      layers[i].pieceChanged(p);
+    }
+  }
+
   public int indexOf(GamePiece p) {
     int layer = getLayerForPiece(p);
     int index = layers[layer].indexOf(p);
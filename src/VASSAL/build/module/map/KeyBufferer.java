@@ -28,6 +28,8 @@ import java.awt.Stroke;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionListener;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -65,6 +67,8 @@ public class KeyBufferer extends MouseAdapter implements Buildable, MouseMotionL
   protected Point anchor;
   protected Color color = Color.black;
   protected int thickness = 3;
+  // the pieces the selection rectangle takes in, (de)selected together
+  protected List<GamePiece> lassoed = new ArrayList<GamePiece>();
 
   public void addTo(Buildable b) {
     map = (Map) b;
@@ -159,13 +163,22 @@ public class KeyBufferer extends MouseAdapter implements Buildable, MouseMotionL
       selection.setLocation(map.mapCoordinates(selection.getLocation()));
       selection.width /= map.getZoom();
       selection.height /= map.getZoom();
-      PieceVisitorDispatcher d = createDragSelector(!evt.isControlDown(), evt.isAltDown());
+      final boolean selecting = !evt.isControlDown();
+      PieceVisitorDispatcher d = createDragSelector(selecting, evt.isAltDown());
       // RFE 1659481 Don't clear the entire selection buffer if either shift
       // or control is down - we select/deselect lassoed counters instead
       if (!evt.isShiftDown() && !evt.isControlDown()) {
         KeyBuffer.getBuffer().clear();
       }
+      lassoed.clear();
       map.apply(d);
+      if (selecting) {
+        KeyBuffer.getBuffer().addAll(lassoed);
+      }
+      else {
+        KeyBuffer.getBuffer().removeAll(lassoed);
+      }
+      lassoed.clear();
       repaintSelectionRect();
     }
     selection = null;
@@ -201,23 +214,13 @@ public class KeyBufferer extends MouseAdapter implements Buildable, MouseMotionL
           map.getStackMetrics().getContents(s, pos, null, null, s.getPosition().x, s.getPosition().y);
           for (int i = 0; i < pos.length; ++i) {
             if (selection.contains(pos[i])) {
-              if (selecting) {
-                KeyBuffer.getBuffer().add(s.getPieceAt(i));
-              }
-              else {
-                KeyBuffer.getBuffer().remove(s.getPieceAt(i));
-              }
+              lassoed.add(s.getPieceAt(i));
             }
           }
         }
         else if (selection.contains(s.getPosition())) {
           for (int i = 0, n = s.getPieceCount(); i < n; ++i) {
-            if (selecting) {
-              KeyBuffer.getBuffer().add(s.getPieceAt(i));
-            }
-            else {
-              KeyBuffer.getBuffer().remove(s.getPieceAt(i));
-            }
+            lassoed.add(s.getPieceAt(i));
           }
         }
       }
@@ -232,11 +235,11 @@ public class KeyBufferer extends MouseAdapter implements Buildable, MouseMotionL
           final EventFilter filter = (EventFilter) p.getProperty(Properties.SELECT_EVENT_FILTER);
           final boolean altSelect = (altDown && filter instanceof Immobilized.UseAlt);
           if (filter == null || altSelect) {
-            KeyBuffer.getBuffer().add(p);
+            lassoed.add(p);
           }
         }
         else {
-          KeyBuffer.getBuffer().remove(p);
+          lassoed.add(p);
         }
       }
       return null;
@@ -151,6 +151,17 @@ public class MapShader extends AbstractConfigurable implements GameComponent, Dr
   protected AlphaComposite borderComposite = null;
   protected BasicStroke stroke = null;
 
+  // The areas of the pieces on the map, kept from one draw to the next
+  protected ShadeContributions contributions = new ShadeContributions(this);
+  protected Area contributed;
+  protected Area shadeShape;
+  protected int layoutVersion = -1;
+
+  // The shade shape scaled for the last zoom at which it was drawn
+  protected Area scaledShape;
+  protected Area scaledSource;
+  protected double scaledZoom;
+
   public void draw(Graphics g, Map map) {
     if (shadingVisible) {
 
@@ -169,11 +180,7 @@ public class MapShader extends AbstractConfigurable implements GameComponent, Dr
       g2.setPaint(
         scaleImage && pattern.equals(TYPE_IMAGE) && imageName != null ?
         getTexture(zoom) : getTexture());
-      Area area = getShadeShape(map);
-      if (zoom != 1.0) {
-        area = new Area(AffineTransform.getScaleInstance(zoom,zoom)
-                                       .createTransformedShape(area));
-      }
+      final Area area = getScaledShadeShape(map, zoom);
       g2.fill(area);
       if (border) {
         g2.setComposite(getBorderComposite());
@@ -217,19 +224,73 @@ public class MapShader extends AbstractConfigurable implements GameComponent, Dr
   }
 
   /**
-   * Get/Build the shape of the shade.
+   * Get/Build the shape of the shade at the given zoom. The shape is
+   * kept until the shade or the zoom changes.
+   */
+  protected Area getScaledShadeShape(Map map, double zoom) {
+    final Area area = getShadeShape(map);
+    if (zoom == 1.0) {
+      return area;
+    }
+
+    if (area != scaledSource || zoom != scaledZoom) {
+      scaledShape = area.createTransformedArea(
+        AffineTransform.getScaleInstance(zoom, zoom));
+      scaledSource = area;
+      scaledZoom = zoom;
+    }
+    return scaledShape;
+  }
+
+  /**
+   * Get/Build the shape of the shade. The area of each piece is kept,
+   * and found again only when the piece changes.
+   *
+   * The shape returned is shared until the shade next changes, and must
+   * not be modified.
    */
   protected Area getShadeShape(Map map) {
-    final Area myShape = type.equals(FG_TYPE) ?
-      new Area() : new Area(getBoardClip());
+    if (layoutVersion != Map.getLayoutVersion()) {
+      // the boards, and so the areas of all of the pieces, may differ
+      invalidateShadeShape();
+      boardClip = null;
+      layoutVersion = Map.getLayoutVersion();
+    }
 
-    for (GamePiece p : map.getPieces()) {
-      checkPiece(myShape, p);
+    final Area a = contributions.update(map.getPieces());
+    if (a != contributed) {
+      contributed = a;
+      shadeShape = null;
     }
 
-    return myShape;
+    if (shadeShape == null) {
+      if (type.equals(FG_TYPE)) {
+        shadeShape = contributed;
+      }
+      else {
+        shadeShape = new Area(getBoardClip());
+        shadeShape.subtract(contributed);
+      }
+    }
+
+    return shadeShape;
+  }
+
+  /**
+   * Discard the areas kept for the pieces, so that all are found again
+   * when the shade is next drawn.
+   */
+  protected void invalidateShadeShape() {
+    contributions.clear();
+    contributed = null;
+    shadeShape = null;
   }
 
+  /**
+   * @deprecated The areas of the pieces are kept by
+   * {@link ShadeContributions}, and this is no longer called.
+   */
+  @Deprecated
   protected void checkPiece(Area area, GamePiece piece) {
     if (piece instanceof Stack) {
       Stack s = (Stack) piece;
@@ -532,6 +593,8 @@ public class MapShader extends AbstractConfigurable implements GameComponent, Dr
 
   public void setShadingVisibility(boolean b) {
     shadingVisible = b;
+    // an area may depend on more than the state of its piece
+    invalidateShadeShape();
     map.repaint();
   }
 
@@ -596,6 +659,7 @@ public class MapShader extends AbstractConfigurable implements GameComponent, Dr
     launch.setEnabled(gameStarting);
     if (!gameStarting) {
       boardClip = null;
+      invalidateShadeShape();
     }
   }
 
@@ -634,15 +698,20 @@ public class MapShader extends AbstractConfigurable implements GameComponent, Dr
     }
     else if (BOARDS.equals(key)) {
       boardSelection = (String) value;
+      boardClip = null;
+      shadeShape = null;
     }
     else if (BOARD_LIST.equals(key)) {
       if (value instanceof String) {
         value = StringArrayConfigurer.stringToArray((String) value);
       }
       boardList = (String[]) value;
+      boardClip = null;
+      shadeShape = null;
     }
     else if (TYPE.equals(key)) {
       type = (String) value;
+      shadeShape = null;
     }
     else if (DRAW_OVER.equals(key)) {
       if (value instanceof String) {
@@ -877,4 +946,20 @@ public class MapShader extends AbstractConfigurable implements GameComponent, Dr
      */
     public Area getArea(MapShader shader);
   }
+
+  /**
+   * A {@link ShadedPiece} whose area may depend on more than the state of
+   * its piece, such as the value of a global property.
+   *
+   * @since 3.2.17
+   */
+  public static interface KeyedShadedPiece extends ShadedPiece {
+    /**
+     * @param shader
+     * @return a key which changes whenever the area given by
+     * {@link #getArea} may change without a change in the state of the
+     * piece
+     */
+    public String getAreaKey(MapShader shader);
+  }
 }
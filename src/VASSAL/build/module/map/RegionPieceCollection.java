@@ -0,0 +1,57 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.build.module.map;
+
+import java.awt.Rectangle;
+
+import VASSAL.counters.GamePiece;
+
+/**
+ * A {@link PieceCollection} which keeps a spatial index of its pieces,
+ * so that painting and hit-testing need only visit the pieces near the
+ * region of interest.
+ *
+ * @since 3.2.17
+ */
+public interface RegionPieceCollection extends PieceCollection {
+  /**
+   * Return the currently-visible pieces which may intersect the given
+   * region of the map, in drawing order. The result may include pieces
+   * which do not actually intersect the region, but will include every
+   * piece which does.
+   *
+   * @param region the region, in map coordinates
+   */
+  GamePiece[] getPieces(Rectangle region);
+
+  /**
+   * Return all pieces which may intersect the given region of the map,
+   * in drawing order, regardless of visibility.
+   *
+   * @param region the region, in map coordinates
+   */
+  GamePiece[] getAllPieces(Rectangle region);
+
+  /**
+   * Notify the collection that the position or bounds of a piece may
+   * have changed. Pieces not in the collection are ignored.
+   */
+  void pieceChanged(GamePiece p);
+}
@@ -0,0 +1,190 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.map;
+
+import java.awt.geom.Area;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import VASSAL.counters.Decorator;
+import VASSAL.counters.GamePiece;
+import VASSAL.counters.Stack;
+
+/**
+ * The areas contributed to a {@link MapShader} by the pieces on a map,
+ * and their union.
+ *
+ * The area of each piece is kept, and found again only when the state of
+ * the piece changes, so that each update visits for their areas only the
+ * pieces which have moved, changed, arrived or left since the last one.
+ * An area which depends on more than the state of its piece is found
+ * again when the key given by its {@link MapShader.KeyedShadedPiece}
+ * changes, or otherwise only after {@link #clear}.
+ *
+ * @since 3.2.17
+ */
+public class ShadeContributions {
+  /** The area of a piece, and the key of the piece when it was found. */
+  protected static class Contribution {
+    protected String key;
+    protected Area area;
+    protected int pass;
+  }
+
+  protected final MapShader shader;
+  protected final java.util.Map<GamePiece,Contribution> contributions =
+    new HashMap<GamePiece,Contribution>();
+  protected Area union;
+  protected int pass;
+
+  public ShadeContributions(MapShader shader) {
+    this.shader = shader;
+  }
+
+  /**
+   * @param pieces the pieces on the map
+   * @return the union of the areas of the pieces; the same
+   * <code>Area</code> as the last update returned if the union has not
+   * changed since then. It is shared, and must not be modified.
+   */
+  public Area update(GamePiece[] pieces) {
+    ++pass;
+    final List<Area> added = new ArrayList<Area>();
+    boolean changed = false;
+    for (GamePiece p : pieces) {
+      changed |= updatePiece(p, added);
+    }
+
+    for (Iterator<Contribution> i = contributions.values().iterator();
+         i.hasNext(); ) {
+      final Contribution c = i.next();
+      if (c.pass != pass) {
+        i.remove();
+        changed |= c.area != null;
+      }
+    }
+
+    if (union == null || changed) {
+      // an area may be taken away only by building the union anew
+      final List<Area> areas = new ArrayList<Area>();
+      for (Contribution c : contributions.values()) {
+        if (c.area != null) {
+          areas.add(c.area);
+        }
+      }
+      union = union(areas);
+    }
+    else if (!added.isEmpty()) {
+      union = new Area(union);
+      union.add(union(added));
+    }
+
+    return union;
+  }
+
+  /**
+   * Find again the area of a piece, or of the pieces of a stack, whose
+   * state has changed.
+   *
+   * @param added collects the areas of pieces new to the shade
+   * @return whether the area of a piece already in the shade may have
+   * changed
+   */
+  protected boolean updatePiece(GamePiece piece, List<Area> added) {
+    if (piece instanceof Stack) {
+      final Stack s = (Stack) piece;
+      boolean changed = false;
+      for (int i = 0; i < s.getPieceCount(); i++) {
+        changed |= updatePiece(s.getPieceAt(i), added);
+      }
+      return changed;
+    }
+
+    final MapShader.ShadedPiece shaded = (MapShader.ShadedPiece)
+      Decorator.getDecorator(piece, MapShader.ShadedPiece.class);
+    if (shaded == null) {
+      return false;
+    }
+
+    final String key = getKey(piece, shaded);
+    Contribution c = contributions.get(piece);
+    if (c != null && c.key.equals(key)) {
+      c.pass = pass;
+      return false;
+    }
+
+    final boolean isNew = c == null;
+    if (isNew) {
+      c = new Contribution();
+      contributions.put(piece, c);
+    }
+
+    final Area old = c.area;
+    c.key = key;
+    c.area = shaded.getArea(shader);
+    c.pass = pass;
+
+    if (isNew) {
+      if (c.area != null) {
+        added.add(c.area);
+      }
+      return false;
+    }
+    return old != null || c.area != null;
+  }
+
+  /**
+   * @return the state of a piece, with the key of its area if the area
+   * may depend on more than the state
+   */
+  protected String getKey(GamePiece piece, MapShader.ShadedPiece shaded) {
+    final String state = piece.getState();
+    return shaded instanceof MapShader.KeyedShadedPiece ?
+      state + '\t' +
+        ((MapShader.KeyedShadedPiece) shaded).getAreaKey(shader) : state;
+  }
+
+  /** Forget the areas of all of the pieces. */
+  public void clear() {
+    contributions.clear();
+    union = null;
+  }
+
+  /**
+   * @return the union of the areas, which are not modified
+   */
+  protected static Area union(List<Area> areas) {
+    return areas.isEmpty() ? new Area() : union(areas, 0, areas.size());
+  }
+
+  // Joining areas pairwise keeps the areas being joined small, where
+  // adding them one at a time to a single area which grows does not.
+  private static Area union(List<Area> areas, int from, int to) {
+    if (to - from == 1) {
+      return new Area(areas.get(from));
+    }
+
+    final int mid = (from + to) >>> 1;
+    final Area a = union(areas, from, mid);
+    a.add(union(areas, mid, to));
+    return a;
+  }
+}
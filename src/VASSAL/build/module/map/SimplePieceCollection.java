@@ -18,14 +18,59 @@
  */
 package VASSAL.build.module.map;
 
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import VASSAL.counters.GamePiece;
 
-/** Stores {@link VASSAL.counters.GamePiece}s in a simple array */
-public class SimplePieceCollection implements PieceCollection {
+/**
+ * Stores {@link VASSAL.counters.GamePiece}s in a simple array, with a
+ * grid index over their positions for finding the pieces in a region.
+ */
+public class SimplePieceCollection implements RegionPieceCollection {
   private final ArrayList<GamePiece> pieces = new ArrayList<GamePiece>();
 
+  /** The side length of a grid cell, in map coordinates */
+  protected static final int CELL_SIZE = 256;
+
+  private static class Entry {
+    public long order;
+    public long cell;
+    public int x;
+    public int y;
+  }
+
+  private final Map<GamePiece,Entry> entries = new HashMap<GamePiece,Entry>();
+  private final Map<Long,List<GamePiece>> cells =
+    new HashMap<Long,List<GamePiece>>();
+
+  // pieces whose bounds have not been measured since they last changed
+  private final Set<GamePiece> dirty = new HashSet<GamePiece>();
+
+  // the greatest distance any piece's bounds extend from its position
+  private int extent = 0;
+
+  private long front = 0;
+  private long back = -1;
+
+  private final Comparator<GamePiece> drawingOrder =
+    new Comparator<GamePiece>() {
+      public int compare(GamePiece a, GamePiece b) {
+        final long oa = entries.get(a).order;
+        final long ob = entries.get(b).order;
+        return oa < ob ? -1 : (oa == ob ? 0 : 1);
+      }
+    };
+
   /**
    * Returns the index of a piece.  When painting the map, pieces
    * are drawn in order of index */
@@ -39,10 +84,15 @@ public class SimplePieceCollection implements PieceCollection {
 
   public void add(GamePiece p) {
     pieces.add(p);
+    index(p, front++);
   }
 
   public void clear() {
     pieces.clear();
+    entries.clear();
+    cells.clear();
+    dirty.clear();
+    extent = 0;
   }
 
   public void remove(GamePiece p) {
@@ -57,9 +107,88 @@ public class SimplePieceCollection implements PieceCollection {
     return getPieces();
   }
 
+  public GamePiece[] getPieces(Rectangle region) {
+    final List<GamePiece> l = new ArrayList<GamePiece>();
+    addPieces(region, l);
+    return l.toArray(new GamePiece[l.size()]);
+  }
+
+  public GamePiece[] getAllPieces(Rectangle region) {
+    return getPieces(region);
+  }
+
+  /**
+   * Add the pieces whose bounds may intersect the given region to a list,
+   * in drawing order.
+   */
+  protected void addPieces(Rectangle region, List<GamePiece> l) {
+    if (entries.isEmpty()) {
+      return;
+    }
+
+    measureDirty();
+
+    final Rectangle r = new Rectangle(region);
+    r.grow(extent + 1, extent + 1);
+
+    final int start = l.size();
+    final int cx0 = cellOf(r.x);
+    final int cy0 = cellOf(r.y);
+    final int cx1 = cellOf(r.x + r.width);
+    final int cy1 = cellOf(r.y + r.height);
+
+    if ((long) (cx1 - cx0 + 1) * (cy1 - cy0 + 1) > cells.size()) {
+      // the region covers more cells than are occupied
+      for (Map.Entry<GamePiece,Entry> me : entries.entrySet()) {
+        final Entry e = me.getValue();
+        if (r.contains(e.x, e.y)) {
+          l.add(me.getKey());
+        }
+      }
+    }
+    else {
+      for (int cx = cx0; cx <= cx1; ++cx) {
+        for (int cy = cy0; cy <= cy1; ++cy) {
+          final List<GamePiece> cell = cells.get(cellKey(cx, cy));
+          if (cell == null) continue;
+
+          for (GamePiece p : cell) {
+            final Entry e = entries.get(p);
+            if (r.contains(e.x, e.y)) {
+              l.add(p);
+            }
+          }
+        }
+      }
+    }
+
+    Collections.sort(l.subList(start, l.size()), drawingOrder);
+  }
+
+  public void pieceChanged(GamePiece p) {
+    final Entry e = entries.get(p);
+    if (e == null) {
+      return;
+    }
+
+    final Point pt = p.getPosition();
+    if (pt.x != e.x || pt.y != e.y) {
+      final long cell = cellKey(cellOf(pt.x), cellOf(pt.y));
+      if (cell != e.cell) {
+        removeFromCell(p, e.cell);
+        addToCell(p, cell);
+        e.cell = cell;
+      }
+      e.x = pt.x;
+      e.y = pt.y;
+    }
+
+    dirty.add(p);
+  }
+
   private void removePieceAt(int gone) {
     if (gone >= 0) {
-      pieces.remove(gone);
+      unindex(pieces.remove(gone));
     }
   }
 
@@ -68,6 +197,21 @@ public class SimplePieceCollection implements PieceCollection {
     if (i >= 0) {
       pieces.remove(i);
       pieces.add(pos, p);
+
+      if (pos == 0) {
+        entries.get(p).order = back--;
+      }
+      else if (pos == pieces.size() - 1) {
+        entries.get(p).order = front++;
+      }
+      else {
+        // renumber everything to preserve the list order
+        back = -1;
+        front = 0;
+        for (GamePiece q : pieces) {
+          entries.get(q).order = front++;
+        }
+      }
     }
   }
 
@@ -80,6 +224,88 @@ public class SimplePieceCollection implements PieceCollection {
     if (i >= 0) {
       pieces.remove(p);
       pieces.add(p);
+      entries.get(p).order = front++;
+    }
+  }
+
+  private void index(GamePiece p, long order) {
+    Entry e = entries.get(p);
+    if (e == null) {
+      e = new Entry();
+      final Point pt = p.getPosition();
+      e.x = pt.x;
+      e.y = pt.y;
+      e.cell = cellKey(cellOf(pt.x), cellOf(pt.y));
+      entries.put(p, e);
+      addToCell(p, e.cell);
     }
+    e.order = order;
+    dirty.add(p);
+  }
+
+  private void unindex(GamePiece p) {
+    // the same piece may have been added more than once
+    if (pieces.contains(p)) {
+      return;
+    }
+
+    final Entry e = entries.remove(p);
+    if (e != null) {
+      removeFromCell(p, e.cell);
+      dirty.remove(p);
+    }
+  }
+
+  private void addToCell(GamePiece p, long key) {
+    List<GamePiece> cell = cells.get(key);
+    if (cell == null) {
+      cell = new ArrayList<GamePiece>(4);
+      cells.put(key, cell);
+    }
+    cell.add(p);
+  }
+
+  private void removeFromCell(GamePiece p, long key) {
+    final List<GamePiece> cell = cells.get(key);
+    if (cell != null) {
+      cell.remove(p);
+      if (cell.isEmpty()) {
+        cells.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Measure the bounds of pieces which have changed, widening the
+   * search margin as needed. The margin is never narrowed, since pieces
+   * may change their bounds without telling us.
+   */
+  private void measureDirty() {
+    for (Iterator<GamePiece> i = dirty.iterator(); i.hasNext(); ) {
+      final GamePiece p = i.next();
+      final VASSAL.build.module.Map m = p.getMap();
+      if (m == null) {
+        // not yet placed on a map, so it can't be measured
+        continue;
+      }
+
+      final Rectangle bb = m.boundingBoxOf(p);
+      if (bb != null) {
+        final Entry e = entries.get(p);
+        extent = Math.max(extent, Math.max(
+          Math.max(e.x - bb.x, bb.x + bb.width - e.x),
+          Math.max(e.y - bb.y, bb.y + bb.height - e.y)
+        ));
+      }
+      i.remove();
+    }
+  }
+
+  private static int cellOf(int c) {
+    return c >= 0 ? c / CELL_SIZE : (c + 1) / CELL_SIZE - 1;
+  }
+
+  private static long cellKey(int cx, int cy) {
+    return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
   }
 }
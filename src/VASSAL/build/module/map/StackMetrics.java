@@ -49,7 +49,6 @@ import VASSAL.counters.BasicPiece;
 import VASSAL.counters.GamePiece;
 import VASSAL.counters.Highlighter;
 import VASSAL.counters.PieceFilter;
-import VASSAL.counters.PieceIterator;
 import VASSAL.counters.Properties;
 import VASSAL.counters.Stack;
 import VASSAL.i18n.Resources;
@@ -181,6 +180,8 @@ public class StackMetrics extends AbstractConfigurable {
       }
       blankColor = (Color) value;
     }
+    // stacks laid out by these metrics must be measured again
+    Map.layoutChanged();
   }
 
   public String getAttributeValueString(String name) {
@@ -268,14 +269,16 @@ public class StackMetrics extends AbstractConfigurable {
     Point[] positions = new Point[stack.getPieceCount()];
     getContents(stack, positions, null, null, x, y);
 
-    for (PieceIterator e = new PieceIterator(stack.getPiecesIterator(),
-                                             unselectedVisible);
-         e.hasMoreElements();) {
-      GamePiece next = e.nextPiece();
-      int index = stack.indexOf(next);
+    final int n = stack.getPieceCount();
+    final int last = lastIndexOf(stack, unselectedVisible);
+    for (int index = 0; index < n; ++index) {
+      GamePiece next = stack.getPieceAt(index);
+      if (!unselectedVisible.accept(next)) {
+        continue;
+      }
       int nextX = x + (int) (zoom * (positions[index].x - x));
       int nextY = y + (int) (zoom * (positions[index].y - y));
-      if (stack.isExpanded() || !e.hasMoreElements()) {
+      if (stack.isExpanded() || index == last) {
         next.draw(g,
                   nextX,
                   nextY,
@@ -286,11 +289,11 @@ public class StackMetrics extends AbstractConfigurable {
       }
     }
 
-    for (PieceIterator e = new PieceIterator(stack.getPiecesIterator(),
-                                             selectedVisible);
-         e.hasMoreElements();) {
-      GamePiece next = e.nextPiece();
-      int index = stack.indexOf(next);
+    for (int index = 0; index < n; ++index) {
+      GamePiece next = stack.getPieceAt(index);
+      if (!selectedVisible.accept(next)) {
+        continue;
+      }
       int nextX = x + (int) (zoom * (positions[index].x - x));
       int nextY = y + (int) (zoom * (positions[index].y - y));
       next.draw(g,
@@ -322,14 +325,16 @@ public class StackMetrics extends AbstractConfigurable {
     Rectangle[] bounds = region == null ? null : new Rectangle[stack.getPieceCount()];
     getContents(stack, positions, null, bounds, mapLocation.x, mapLocation.y);
 
-    for (PieceIterator e = new PieceIterator(stack.getPiecesIterator(),
-                                             unselectedVisible);
-         e.hasMoreElements();) {
-      GamePiece next = e.nextPiece();
-      int index = stack.indexOf(next);
+    final int n = stack.getPieceCount();
+    final int last = lastIndexOf(stack, unselectedVisible);
+    for (int index = 0; index < n; ++index) {
+      GamePiece next = stack.getPieceAt(index);
+      if (!unselectedVisible.accept(next)) {
+        continue;
+      }
       Point pt = map.componentCoordinates(positions[index]);
       if (bounds == null || isVisible(region, bounds[index])) {
-        if (stack.isExpanded() || !e.hasMoreElements()) {
+        if (stack.isExpanded() || index == last) {
           next.draw(g,
                     pt.x,
                     pt.y,
@@ -341,11 +346,11 @@ public class StackMetrics extends AbstractConfigurable {
       }
     }
 
-    for (PieceIterator e = new PieceIterator(stack.getPiecesIterator(),
-                                             selectedVisible);
-         e.hasMoreElements();) {
-      GamePiece next = e.nextPiece();
-      int index = stack.indexOf(next);
+    for (int index = 0; index < n; ++index) {
+      GamePiece next = stack.getPieceAt(index);
+      if (!selectedVisible.accept(next)) {
+        continue;
+      }
       if (bounds == null || isVisible(region, bounds[index])) {
         Point pt = map.componentCoordinates(positions[index]);
         next.draw(g,
@@ -361,6 +366,19 @@ public class StackMetrics extends AbstractConfigurable {
     }
   }
 
+  /**
+   * @return the index of the highest piece in the stack accepted by the
+   * filter, or -1 if it accepts none
+   */
+  private int lastIndexOf(Stack stack, PieceFilter filter) {
+    for (int index = stack.getPieceCount() - 1; index >= 0; --index) {
+      if (filter.accept(stack.getPieceAt(index))) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
   private boolean isVisible(Rectangle region, Rectangle bounds) {
     boolean visible = true;
     if (region != null) {
@@ -464,7 +482,15 @@ public class StackMetrics extends AbstractConfigurable {
         }
         if (shapes != null) {
           Shape s = child.getShape();
-          s = AffineTransform.getTranslateInstance(nextPos.x,nextPos.y).createTransformedShape(s);
+          if (s instanceof Rectangle) {
+            // keep rectangles rectangular, which is cheaper to translate
+            // and lets a Stack merge them without an Area
+            s = new Rectangle((Rectangle) s);
+            ((Rectangle) s).translate(nextPos.x, nextPos.y);
+          }
+          else {
+            s = AffineTransform.getTranslateInstance(nextPos.x,nextPos.y).createTransformedShape(s);
+          }
           shapes[index] = s;
         }
         currentPos = nextPos;
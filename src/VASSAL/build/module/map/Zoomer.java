@@ -233,6 +233,18 @@ public class Zoomer extends AbstractConfigurable implements GameComponent {
       for (double d : levels) l.add(d);
       return l;
     }
+
+    /**
+     * @return the zoom factors which {@link #lowerLevel} and
+     * {@link #higherLevel} would change to, where there are such levels
+     * @since 3.2.17
+     */
+    public List<Double> getAdjacentZooms() {
+      final ArrayList<Double> l = new ArrayList<Double>(2);
+      if (hasLowerLevel()) l.add(levels[cur-1]);
+      if (hasHigherLevel()) l.add(levels[custom < 0 ? cur+1 : cur]);
+      return l;
+    }
   }
 
   public Zoomer() {
@@ -808,6 +820,15 @@ public class Zoomer extends AbstractConfigurable implements GameComponent {
     return state.getZoom();
   }
 
+  /**
+   * @return the zoom factors one level out and one level in from the
+   * current zoom factor, where there are such levels
+   * @since 3.2.17
+   */
+  public List<Double> getAdjacentZoomFactors() {
+    return state.getAdjacentZooms();
+  }
+
   protected Point getMapCenter() {
     final Rectangle r = map.getView().getVisibleRect();
     return map.mapCoordinates(new Point(r.x + r.width/2, r.y + r.height/2));
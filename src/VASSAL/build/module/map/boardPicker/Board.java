@@ -30,9 +30,12 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
@@ -50,6 +53,7 @@ import VASSAL.build.GameModule;
 import VASSAL.build.module.GameComponent;
 import VASSAL.build.module.Map;
 import VASSAL.build.module.documentation.HelpFile;
+import VASSAL.build.module.map.Zoomer;
 import VASSAL.build.module.map.boardPicker.board.HexGrid;
 import VASSAL.build.module.map.boardPicker.board.MapGrid;
 import VASSAL.build.module.map.boardPicker.board.RegionGrid;
@@ -69,6 +73,7 @@ import VASSAL.tools.imageop.Op;
 import VASSAL.tools.imageop.Repainter;
 import VASSAL.tools.imageop.ScaleOp;
 import VASSAL.tools.imageop.SourceOp;
+import VASSAL.tools.imageop.TileScheduler;
 
 public class Board extends AbstractConfigurable implements GridContainer {
   /**
@@ -308,14 +313,64 @@ public class Board extends AbstractConfigurable implements GridContainer {
     }
   };
 
+  private TileScheduler scheduler;
+
+  private double adjacentZoom = -1.0;
+  private List<ImageOp> adjacentOps = Collections.emptyList();
+
+  /**
+   * @return the scheduler for the tiles of the map view, or
+   * <code>null</code> if none have been painted
+   * @since 3.2.17
+   */
+  public TileScheduler getTileScheduler() {
+    return scheduler;
+  }
+
+  /**
+   * @return the scheduler for the tiles painted on <code>obs</code>, or
+   * <code>null</code> if the requests for them are not to be scheduled
+   */
+  protected TileScheduler getTileScheduler(Component obs) {
+    // only the map view scrolls and zooms, and so benefits from scheduling
+    if (obs == null || map == null || obs != map.getView()) return null;
+
+    if (scheduler == null || scheduler.getComponent() != obs) {
+      scheduler = new TileScheduler(obs);
+    }
+    return scheduler;
+  }
+
+  /**
+   * @param zoom the current zoom factor, including the magnification
+   * @return the ops for the zoom levels adjacent to the current one
+   */
+  protected List<ImageOp> getAdjacentOps(double zoom) {
+    if (zoom != adjacentZoom) {
+      adjacentZoom = zoom;
+      adjacentOps = new ArrayList<ImageOp>(2);
+
+      final Zoomer zoomer = map.getZoomer();
+      if (zoomer != null) {
+        for (double z : zoomer.getAdjacentZoomFactors()) {
+          z *= magnification;
+          ImageOp aop = z == 1.0 ? boardImageOp : Op.scale(boardImageOp, z);
+          if (reversed) aop = Op.rotate(aop, 180);
+          adjacentOps.add(aop);
+        }
+      }
+    }
+
+    return adjacentOps;
+  }
+
   protected void drawTile(Graphics g, Future<BufferedImage> fim,
                           int tx, int ty, Component obs) {
     try {
       g.drawImage(fim.get(), tx, ty, obs);
     }
     catch (CancellationException e) {
-      // FIXME: bug until we permit cancellation
-      ErrorDialog.bug(e);
+      // the request was for a tile out of view, and will be made again
     }
     catch (InterruptedException e) {
       // This happens if taking a snapshot of the map is cancelled.
@@ -361,6 +416,11 @@ public class Board extends AbstractConfigurable implements GridContainer {
 
         final Point[] tiles = op.getTileIndices(r);
 
+        final TileScheduler sched = getTileScheduler(obs);
+        if (sched != null) {
+          sched.begin(op, location, r);
+        }
+
         for (Point tile : tiles) {
           // find tile position
           final int tx = location.x + tile.x*ow;
@@ -370,12 +430,12 @@ public class Board extends AbstractConfigurable implements GridContainer {
           final int tw = Math.min(ow, location.x+bounds.width-tx);
           final int th = Math.min(oh, location.y+bounds.height-ty);
 
-          final Repainter rep = obs == null ? null :
+          final Repainter rep = obs == null || sched != null ? null :
             new Repainter(obs, tx, ty, tw, th);
 
           try {
-            final Future<BufferedImage> fim =
-              op.getFutureTile(tile.x, tile.y, rep);
+            final Future<BufferedImage> fim = sched != null ?
+              sched.getFutureTile(tile) : op.getFutureTile(tile.x, tile.y, rep);
 
             if (obs == null) {
               drawTile(g, fim, tx, ty, obs);
@@ -443,8 +503,7 @@ public class Board extends AbstractConfigurable implements GridContainer {
 // FIXME: should getTileFuture() throw these? Yes, probably, because it's
 // synchronous when obs is null.
           catch (CancellationException e) {
-            // FIXME: bug until we permit cancellation
-            ErrorDialog.bug(e);
+            // the request was for a tile out of view, and will be made again
           }
           catch (ExecutionException e) {
             // FIXME: bug until we figure out why getTileFuture() throws this
@@ -452,6 +511,10 @@ public class Board extends AbstractConfigurable implements GridContainer {
           }
         }
 
+        if (sched != null) {
+          sched.end(getAdjacentOps(zoom));
+        }
+
         if ((map != null) && (obs == map.getView())) {
           for (Point tile : requested.keySet().toArray(new Point[0])) {
             if (Arrays.binarySearch(tiles, tile, tileOrdering) < 0) {
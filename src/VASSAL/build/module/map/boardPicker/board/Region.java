@@ -79,10 +79,18 @@ public class Region extends AbstractConfigurable {
 
   public void setOrigin(Point p) {
     origin = p;
+    originMoved();
   }
 
   public void moveOrigin(int dx, int dy) {
     origin.translate(dx, dy);
+    originMoved();
+  }
+
+  protected void originMoved() {
+    if (myGrid != null) {
+      myGrid.invalidateRegionIndex();
+    }
   }
 
   public static final String NAME = "name"; //$NON-NLS-1$
@@ -161,12 +169,14 @@ public class Region extends AbstractConfigurable {
         val = Integer.valueOf((String) val);
       }
       origin.x = ((Integer) val).intValue();
+      originMoved();
     }
     else if (Y.equals(key)) {
       if (val instanceof String) {
         val = Integer.valueOf((String) val);
       }
       origin.y = ((Integer) val).intValue();
+      originMoved();
     }
 
   }
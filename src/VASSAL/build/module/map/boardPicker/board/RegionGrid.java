@@ -106,12 +106,14 @@ public class RegionGrid extends AbstractConfigurable implements MapGrid, Configu
   protected int fontSize = 9; // Size square to display when configuring
   protected boolean snapTo = true;
   protected Config regionConfigurer;
+  protected RegionIndex regionIndex;
 
   protected GridNumbering gridNumbering;
   RegionGrid me = this;
 
   public void addRegion(Region a) {
     regionList.put(a.getOrigin(), a);
+    invalidateRegionIndex();
     if (inConfig && regionConfigurer != null) {
         regionConfigurer.view.repaint();
     }
@@ -119,11 +121,35 @@ public class RegionGrid extends AbstractConfigurable implements MapGrid, Configu
 
   public void removeRegion(Region a) {
     regionList.remove(a.getOrigin());
+    invalidateRegionIndex();
   }
 
   public void removeAllRegions() {
     regionList.clear();
     buildComponents.clear();
+    invalidateRegionIndex();
+  }
+
+  /**
+   * @return the spatial index over the region origins, rebuilt if a
+   * region has been added, removed, or moved since it was last used
+   * @since 3.2.17
+   */
+  protected RegionIndex getRegionIndex() {
+    if (regionIndex == null) {
+      regionIndex = new RegionIndex(regionList.values());
+    }
+    return regionIndex;
+  }
+
+  /**
+   * Discards the spatial index over the region origins. Call this when
+   * a region moves.
+   *
+   * @since 3.2.17
+   */
+  public void invalidateRegionIndex() {
+    regionIndex = null;
   }
 
   public GridNumbering getGridNumbering() {
@@ -318,43 +344,29 @@ public class RegionGrid extends AbstractConfigurable implements MapGrid, Configu
   // Internal routine to find closest point for region name reporting
   //
   protected Point doSnap(Point p) {
-    double distSq, minDistSq = Double.MAX_VALUE;
-    Point snapPoint = p;
-
-    // Iterate over each grid point and determine the closest.
-    for (Point checkPoint : regionList.keySet()) {
-      distSq =
-          (p.x - checkPoint.x) * (p.x - checkPoint.x)
-          + (p.y - checkPoint.y) * (p.y - checkPoint.y);
-      if (distSq < minDistSq) {
-        minDistSq = distSq;
-        snapPoint = checkPoint;
-      }
-    }
-
-    return new Point(snapPoint);
+    final Region region = getRegionIndex().nearest(p);
+    return new Point(region != null ? region.getOrigin() : p);
   }
 
   public String locationName(Point p) {
-
-    if (regionList.isEmpty()) {
-      return null;
-    }
-
-    final Region region = regionList.get(doSnap(p));
+    final Region region = getRegionIndex().nearest(p);
     return region != null ? region.getName() : null;
   }
 
   public String localizedLocationName(Point p) {
-
-    if (regionList.isEmpty()) {
-      return null;
-    }
-
-    final Region region = regionList.get(doSnap(p));
+    final Region region = getRegionIndex().nearest(p);
     return region != null ? region.getLocalizedName() : null;
   }
 
+  /**
+   * Return the Regions whose origins lie within a distance of a Point
+   *
+   * @since 3.2.17
+   */
+  public List<Region> findRegions(Point p, int radius) {
+    return getRegionIndex().within(p, radius);
+  }
+
   /**
    * Return Region selected by Point
    */
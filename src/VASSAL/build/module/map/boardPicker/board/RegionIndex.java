@@ -0,0 +1,173 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.map.boardPicker.board;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A 2-d tree over the origins of a collection of {@link Region}s, for
+ * finding the region nearest a point and the regions within a distance
+ * of a point.
+ *
+ * The tree is stored implicitly: the regions of each subtree occupy a
+ * range of the array, with the root of the subtree at the middle of
+ * the range, and the subtrees alternately split on x and on y.
+ *
+ * The index is a snapshot: it must be rebuilt when a region is added,
+ * removed, or moved.
+ *
+ * @since 3.2.17
+ */
+public class RegionIndex {
+  protected final Region[] regions;
+  protected final int[] xs;
+  protected final int[] ys;
+
+  public RegionIndex(Collection<Region> c) {
+    regions = c.toArray(new Region[c.size()]);
+
+    // copy the coordinates out, for the build and the searches
+    xs = new int[regions.length];
+    ys = new int[regions.length];
+    for (int i = 0; i < regions.length; ++i) {
+      final Point o = regions[i].getOrigin();
+      xs[i] = o.x;
+      ys[i] = o.y;
+    }
+
+    build(0, regions.length, true);
+  }
+
+  protected void build(int lo, int hi, boolean byX) {
+    if (hi - lo < 2) return;
+    final int mid = (lo + hi) >>> 1;
+    select(lo, hi - 1, mid, byX ? xs : ys);
+    build(lo, mid, !byX);
+    build(mid + 1, hi, !byX);
+  }
+
+  /**
+   * Partially orders the range from <code>lo</code> to <code>hi</code>
+   * inclusive, so that <code>k</code> holds the entry which would be
+   * there were the range sorted by <code>key</code>, with none greater
+   * before it and none less after it.
+   */
+  protected void select(int lo, int hi, int k, int[] key) {
+    while (hi > lo) {
+      final int pivot = key[(lo + hi) >>> 1];
+      int i = lo;
+      int j = hi;
+      while (i <= j) {
+        while (key[i] < pivot) ++i;
+        while (key[j] > pivot) --j;
+        if (i <= j) swap(i++, j--);
+      }
+
+      if (k <= j) hi = j;
+      else if (k >= i) lo = i;
+      else return;
+    }
+  }
+
+  protected void swap(int i, int j) {
+    final Region r = regions[i];
+    regions[i] = regions[j];
+    regions[j] = r;
+    int t = xs[i];
+    xs[i] = xs[j];
+    xs[j] = t;
+    t = ys[i];
+    ys[i] = ys[j];
+    ys[j] = t;
+  }
+
+  /**
+   * @param p a point
+   * @return the region whose origin is nearest the point, or
+   * <code>null</code> if there are no regions
+   */
+  public Region nearest(Point p) {
+    if (regions.length == 0) {
+      return null;
+    }
+
+    // the squared distance to and index of the nearest region so far
+    final long[] best = { Long.MAX_VALUE, -1 };
+    nearest(p.x, p.y, 0, regions.length, true, best);
+    return regions[(int) best[1]];
+  }
+
+  protected void nearest(int x, int y, int lo, int hi, boolean byX,
+                         long[] best) {
+    if (lo >= hi) return;
+
+    final int mid = (lo + hi) >>> 1;
+    final long dx = (long) x - xs[mid];
+    final long dy = (long) y - ys[mid];
+    final long d = dx*dx + dy*dy;
+    if (d < best[0]) {
+      best[0] = d;
+      best[1] = mid;
+    }
+
+    // search the side of the split holding the point first, then the
+    // other side only if it could hold something nearer
+    final long diff = byX ? dx : dy;
+    if (diff < 0) {
+      nearest(x, y, lo, mid, !byX, best);
+      if (diff*diff < best[0]) nearest(x, y, mid + 1, hi, !byX, best);
+    }
+    else {
+      nearest(x, y, mid + 1, hi, !byX, best);
+      if (diff*diff < best[0]) nearest(x, y, lo, mid, !byX, best);
+    }
+  }
+
+  /**
+   * @param p a point
+   * @param radius a distance
+   * @return the regions whose origins are no farther than
+   * <code>radius</code> from the point, in no particular order
+   */
+  public List<Region> within(Point p, int radius) {
+    final List<Region> found = new ArrayList<Region>();
+    within(p.x, p.y, (long) radius*radius, radius, 0, regions.length, true,
+           found);
+    return found;
+  }
+
+  protected void within(int x, int y, long r2, int radius, int lo, int hi,
+                        boolean byX, List<Region> found) {
+    if (lo >= hi) return;
+
+    final int mid = (lo + hi) >>> 1;
+    final long dx = (long) x - xs[mid];
+    final long dy = (long) y - ys[mid];
+    if (dx*dx + dy*dy <= r2) {
+      found.add(regions[mid]);
+    }
+
+    final long diff = byX ? dx : dy;
+    if (diff <= radius) within(x, y, r2, radius, lo, mid, !byX, found);
+    if (diff >= -radius) within(x, y, r2, radius, mid + 1, hi, !byX, found);
+  }
+}
@@ -42,6 +42,7 @@ import VASSAL.build.module.map.boardPicker.board.mapgrid.GridContainer;
 import VASSAL.build.module.map.boardPicker.board.mapgrid.GridNumbering;
 import VASSAL.build.module.map.boardPicker.board.mapgrid.Zone;
 import VASSAL.build.module.map.boardPicker.board.mapgrid.ZoneHighlight;
+import VASSAL.build.module.map.boardPicker.board.mapgrid.ZoneIndex;
 import VASSAL.build.module.map.boardPicker.board.mapgrid.ZonedGridHighlighter;
 import VASSAL.configure.Configurer;
 import VASSAL.i18n.Resources;
@@ -54,6 +55,7 @@ public class ZonedGrid extends AbstractConfigurable implements GeometricGrid, Gr
   protected MapGrid background;
   protected GridContainer container;
   protected ZonedGridHighlighter zoneHighlighters;
+  protected ZoneIndex zoneIndex;
 
   public String[] getAttributeDescriptions() {
     return new String[0];
@@ -235,11 +237,9 @@ public class ZonedGrid extends AbstractConfigurable implements GeometricGrid, Gr
 
   public String locationName(Point p) {
     String name = null;
-    for (Zone zone : zones) {
-      if (zone.contains(p)) {
-        name = zone.locationName(p);
-        break;
-      }
+    final Zone zone = findZone(p);
+    if (zone != null) {
+      name = zone.locationName(p);
     }
     if (name == null
         && background != null) {
@@ -250,11 +250,9 @@ public class ZonedGrid extends AbstractConfigurable implements GeometricGrid, Gr
 
   public String localizedLocationName(Point p) {
     String name = null;
-    for (Zone zone : zones) {
-      if (zone.contains(p)) {
-        name = zone.localizedLocationName(p);
-        break;
-      }
+    final Zone zone = findZone(p);
+    if (zone != null) {
+      name = zone.localizedLocationName(p);
     }
     if (name == null
         && background != null) {
@@ -292,13 +290,26 @@ public class ZonedGrid extends AbstractConfigurable implements GeometricGrid, Gr
     return a;
   }
 
+  /**
+   * @return the first {@link Zone} containing the point, found through
+   * a spatial index over the zone polygons
+   */
   public Zone findZone(Point p) {
-    for (Zone zone : zones) {
-      if (zone.contains(p)) {
-        return zone;
-      }
+    if (zoneIndex == null) {
+      zoneIndex = new ZoneIndex(zones);
     }
-    return null;
+    return zoneIndex.find(p);
+  }
+
+  /**
+   * Discards the index used by {@link #findZone(Point)}. Call this when
+   * the shape of a zone changes.
+   *
+   * @since 3.2.17
+   */
+  public void invalidateZoneIndex() {
+    zoneIndex = null;
+    Map.layoutChanged();
   }
 
   public Zone findZone(String name) {
@@ -323,20 +334,21 @@ public class ZonedGrid extends AbstractConfigurable implements GeometricGrid, Gr
   }
 
   public boolean isLocationRestricted(Point p) {
-    for (Zone zone : zones) {
-      if (zone.contains(p)) {
-        return zone.getGrid() != null && zone.getGrid().isLocationRestricted(p);
-      }
+    final Zone zone = findZone(p);
+    if (zone != null) {
+      return zone.getGrid() != null && zone.getGrid().isLocationRestricted(p);
     }
     return background != null && background.isLocationRestricted(p);
   }
 
   public void addZone(Zone z) {
     zones.add(z);
+    invalidateZoneIndex();
   }
 
   public void removeZone(Zone z) {
     zones.remove(z);
+    invalidateZoneIndex();
   }
 
   public Iterator<Zone> getZones() {
@@ -232,6 +232,9 @@ public class Zone extends AbstractConfigurable implements GridContainer, Mutable
     }
     else if (PATH.equals(key)) {
       PolygonEditor.reset(myPolygon, (String) val);
+      if (parentGrid != null) {
+        parentGrid.invalidateZoneIndex();
+      }
     }
     else if (LOCATION_FORMAT.equals(key)) {
       locationFormat = (String) val;
@@ -0,0 +1,148 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.map.boardPicker.board.mapgrid;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.List;
+
+/**
+ * A spatial index over the polygons of a list of {@link Zone}s.
+ *
+ * The bounds of all of the zones are divided into a uniform grid of
+ * cells, each of which lists the zones whose bounding boxes overlap it.
+ * A point is then tested only against the zones of the cell holding it.
+ * The zones of each cell are kept in list order, so that where zones
+ * overlap, the zone found is the same one a scan of the list finds.
+ *
+ * The index is a snapshot: it must be rebuilt when a zone is added,
+ * removed, or reshaped.
+ *
+ * @since 3.2.17
+ */
+public class ZoneIndex {
+  /** The most cells along either side of the grid. */
+  protected static final int MAX_CELLS = 256;
+
+  protected final Zone[] zones;
+  protected int x0;
+  protected int y0;
+  protected int cellW;
+  protected int cellH;
+  protected int cols;
+  protected int rows;
+
+  /** The indices of the zones overlapping each cell, in row-major order. */
+  protected int[][] cells;
+
+  public ZoneIndex(List<Zone> zones) {
+    this.zones = zones.toArray(new Zone[zones.size()]);
+
+    // the bounds of each zone, widened by one so that no edge point
+    // which the polygon may contain falls outside of them
+    final Rectangle[] bounds = new Rectangle[this.zones.length];
+    Rectangle all = null;
+    for (int i = 0; i < bounds.length; ++i) {
+      final Rectangle b = this.zones[i].getBounds();
+      if (b.isEmpty()) {
+        continue;
+      }
+
+      b.width++;
+      b.height++;
+      bounds[i] = b;
+      all = all == null ? new Rectangle(b) : all.union(b);
+    }
+
+    if (all == null) {
+      cells = new int[0][];
+      return;
+    }
+
+    // aim for about one cell per zone
+    x0 = all.x;
+    y0 = all.y;
+    final double side =
+      Math.sqrt((double) all.width * all.height / bounds.length);
+    cols = Math.max(1, Math.min(MAX_CELLS, (int) Math.ceil(all.width / side)));
+    rows = Math.max(1, Math.min(MAX_CELLS, (int) Math.ceil(all.height / side)));
+    cellW = (all.width + cols - 1) / cols;
+    cellH = (all.height + rows - 1) / rows;
+
+    // count the zones of each cell, then fill them
+    final int[] count = new int[cols*rows];
+    for (Rectangle b : bounds) {
+      if (b == null) continue;
+      for (int cy = row(b.y); cy <= row(b.y + b.height - 1); ++cy) {
+        for (int cx = col(b.x); cx <= col(b.x + b.width - 1); ++cx) {
+          count[cy*cols + cx]++;
+        }
+      }
+    }
+
+    cells = new int[cols*rows][];
+    for (int c = 0; c < cells.length; ++c) {
+      cells[c] = new int[count[c]];
+      count[c] = 0;
+    }
+
+    for (int i = 0; i < bounds.length; ++i) {
+      final Rectangle b = bounds[i];
+      if (b == null) continue;
+      for (int cy = row(b.y); cy <= row(b.y + b.height - 1); ++cy) {
+        for (int cx = col(b.x); cx <= col(b.x + b.width - 1); ++cx) {
+          final int c = cy*cols + cx;
+          cells[c][count[c]++] = i;
+        }
+      }
+    }
+  }
+
+  protected int col(int x) {
+    return (x - x0) / cellW;
+  }
+
+  protected int row(int y) {
+    return (y - y0) / cellH;
+  }
+
+  /**
+   * @param p a point
+   * @return the first zone containing the point, or <code>null</code>
+   * if no zone contains it
+   */
+  public Zone find(Point p) {
+    if (cells.length == 0 || p.x < x0 || p.y < y0) {
+      return null;
+    }
+
+    final int cx = col(p.x);
+    final int cy = row(p.y);
+    if (cx >= cols || cy >= rows) {
+      return null;
+    }
+
+    for (int i : cells[cy*cols + cx]) {
+      if (zones[i].contains(p)) {
+        return zones[i];
+      }
+    }
+    return null;
+  }
+}
@@ -168,6 +168,15 @@ public class PieceSlot extends Widget implements MouseListener, KeyListener {
     expanded = null;
   }
 
+  /**
+   * @return the encoded {@link AddPiece} command which defines the piece,
+   * without building the piece
+   * @since 3.2.17
+   */
+  public String getPieceDefinition() {
+    return pieceDefinition;
+  }
+
   /**
    * Return defined GamePiece with prototypes unexpanded.
    *
@@ -0,0 +1,239 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.chat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import VASSAL.build.GameModule;
+import VASSAL.build.module.BasicCommandEncoder;
+import VASSAL.build.module.PrototypeDefinition;
+import VASSAL.build.widget.PieceSlot;
+import VASSAL.tools.SequenceEncoder;
+
+/**
+ * Compresses messages with a preset dictionary of the strings which
+ * commands for a module are made of, such as the types of its pieces.
+ * A fresh {@link Deflater} finds no repetition in a short message, but
+ * can refer back to the dictionary from the first byte.
+ *
+ * Both ends must have the same dictionary, which they agree on by
+ * comparing {@link #getId}.
+ *
+ * @since 3.2.17
+ */
+public class DictionaryCompressor {
+  /** Deflate cannot refer further back than this. */
+  public static final int MAX_DICTIONARY = 32 * 1024;
+
+  /** Larger dictionaries cost more time to prepare for each message. */
+  public static final int DICTIONARY_SIZE = 16 * 1024;
+
+  private static final String[] COMMAND_PREFIXES = {
+    BasicCommandEncoder.ADD + "null/", //$NON-NLS-1$
+    BasicCommandEncoder.REMOVE,
+    BasicCommandEncoder.MOVE,
+    BasicCommandEncoder.CHANGE,
+    BasicCommandEncoder.CHANGE_DELTA,
+  };
+
+  private final byte[] dictionary;
+  private final String id;
+  private final int adler;
+  private final Deflater deflater = new Deflater();
+  private final Inflater inflater = new Inflater();
+
+  /**
+   * @param name identifies the source of the dictionary
+   * @param dictionary the dictionary, with the most useful strings last
+   */
+  public DictionaryCompressor(String name, byte[] dictionary) {
+    this.dictionary = dictionary;
+    final Adler32 a = new Adler32();
+    a.update(dictionary);
+    adler = (int) a.getValue();
+    id = new SequenceEncoder(name, ':')
+      .append(Integer.toHexString(adler)).getValue();
+  }
+
+  /**
+   * @return a string which is the same for two compressors only if they
+   * have the same dictionary
+   */
+  public String getId() {
+    return id;
+  }
+
+  public synchronized byte[] compress(byte[] in) {
+    deflater.reset();
+    deflater.setDictionary(dictionary);
+    deflater.setInput(in);
+    deflater.finish();
+
+    final ByteArrayOutputStream out =
+      new ByteArrayOutputStream(in.length / 4 + 16);
+    final byte[] buf = new byte[4096];
+    while (!deflater.finished()) {
+      out.write(buf, 0, deflater.deflate(buf));
+    }
+    return out.toByteArray();
+  }
+
+  public synchronized byte[] decompress(byte[] in) throws IOException {
+    inflater.reset();
+    inflater.setInput(in);
+
+    final ByteArrayOutputStream out =
+      new ByteArrayOutputStream(in.length * 4);
+    final byte[] buf = new byte[4096];
+    try {
+      while (!inflater.finished()) {
+        final int n = inflater.inflate(buf);
+        out.write(buf, 0, n);
+        if (n == 0 && !inflater.finished()) {
+          if (inflater.needsDictionary()) {
+            if (inflater.getAdler() != adler) {
+              throw new IOException("Message uses a different dictionary"); //$NON-NLS-1$
+            }
+            inflater.setDictionary(dictionary);
+          }
+          else if (inflater.needsInput()) {
+            throw new IOException("Truncated message"); //$NON-NLS-1$
+          }
+        }
+      }
+    }
+    catch (DataFormatException e) {
+      throw (IOException) new IOException().initCause(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Build a dictionary from piece definitions. Each definition is split
+   * into the layers of its piece, and the layers which occur most often
+   * and are longest are kept, most valuable last. The prefixes of the
+   * commands which add, move and change pieces end the dictionary.
+   *
+   * @param definitions encoded {@link VASSAL.command.AddPiece} commands
+   */
+  public static byte[] buildDictionary(Iterable<String> definitions) {
+    return buildDictionary(definitions, DICTIONARY_SIZE);
+  }
+
+  /**
+   * @param size the maximum size of the dictionary, no more than
+   * {@link #MAX_DICTIONARY}
+   */
+  public static byte[] buildDictionary(Iterable<String> definitions,
+                                       int size) {
+    final Map<String,Integer> counts = new HashMap<String,Integer>();
+    for (String def : definitions) {
+      if (def == null) {
+        continue;
+      }
+
+      for (String layer : def.split("\t")) { //$NON-NLS-1$
+        if (layer.length() < 4) {
+          continue;
+        }
+        final Integer n = counts.get(layer);
+        counts.put(layer, n == null ? 1 : n + 1);
+      }
+    }
+
+    final List<Map.Entry<String,Integer>> layers =
+      new ArrayList<Map.Entry<String,Integer>>(counts.entrySet());
+    Collections.sort(layers, new Comparator<Map.Entry<String,Integer>>() {
+      public int compare(Map.Entry<String,Integer> a,
+                         Map.Entry<String,Integer> b) {
+        final long sa = (long) a.getValue() * a.getKey().length();
+        final long sb = (long) b.getValue() * b.getKey().length();
+        return sa < sb ? 1 : sa > sb ? -1 : a.getKey().compareTo(b.getKey());
+      }
+    });
+
+    final StringBuilder tail = new StringBuilder();
+    for (String prefix : COMMAND_PREFIXES) {
+      tail.append(prefix);
+    }
+
+    // most valuable first, then reversed so that they end up last
+    final List<byte[]> chosen = new ArrayList<byte[]>();
+    int used = utf8(tail.toString()).length;
+    for (Map.Entry<String,Integer> e : layers) {
+      final byte[] b = utf8(e.getKey() + '\t');
+      if (used + b.length <= size) {
+        chosen.add(b);
+        used += b.length;
+      }
+    }
+    Collections.reverse(chosen);
+    chosen.add(utf8(tail.toString()));
+
+    final byte[] dict = new byte[used];
+    int off = 0;
+    for (byte[] b : chosen) {
+      System.arraycopy(b, 0, dict, off, b.length);
+      off += b.length;
+    }
+    return dict;
+  }
+
+  private static byte[] utf8(String s) {
+    try {
+      return s.getBytes("UTF-8"); //$NON-NLS-1$
+    }
+    catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return a compressor whose dictionary is built from the pieces and
+   * prototypes of a module
+   */
+  public static DictionaryCompressor forModule(GameModule g) {
+    final List<String> defs = new ArrayList<String>();
+    for (PrototypeDefinition p :
+           g.getAllDescendantComponentsOf(PrototypeDefinition.class)) {
+      defs.add(p.getPieceDefinition());
+    }
+    for (PieceSlot p : g.getAllDescendantComponentsOf(PieceSlot.class)) {
+      defs.add(p.getPieceDefinition());
+    }
+
+    final String name = new SequenceEncoder(
+        g.getAttributeValueString(GameModule.MODULE_NAME), ':')
+      .append(g.getAttributeValueString(GameModule.MODULE_VERSION))
+      .getValue();
+    return new DictionaryCompressor(name, buildDictionary(defs));
+  }
+}
@@ -17,7 +17,11 @@
  */
 package VASSAL.chat;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import VASSAL.build.GameModule;
+import VASSAL.build.module.GameStateManifest;
 import VASSAL.command.Command;
 import VASSAL.i18n.Resources;
 
@@ -30,6 +34,9 @@ public class SynchCommand extends Command {
   private Player recipient;
   private ChatServerConnection client;
 
+  private static final Map<Player,GameStateManifest> manifests =
+    new HashMap<Player,GameStateManifest>();
+
   public SynchCommand(Player p, ChatServerConnection client) {
     recipient = p;
     this.client = client;
@@ -42,13 +49,41 @@ public class SynchCommand extends Command {
   protected void executeCommand() {
     if (recipient != null) {
       GameModule.getGameModule().warn(Resources.getString("Server.sending_game_info", recipient.getName())); //$NON-NLS-1$
-      Command synch = GameModule.getGameModule().getGameState().getRestoreCommand();
-      if (synch != null) {
+      Command synch = GameModule.getGameModule().getGameState().getRestoreCommand(takeManifest(recipient));
+      if (synch != null && !synch.isNull()) {
         client.sendTo(recipient, synch);
       }
     }
   }
 
+  /**
+   * Record the game which a player already has, so that the next
+   * synchronization with that player sends only what differs from it.
+   *
+   * @see SynchManifestCommand
+   */
+  static void setManifest(Player p, GameStateManifest manifest) {
+    synchronized (manifests) {
+      manifests.put(p, manifest);
+    }
+  }
+
+  /**
+   * Forget the manifests of all players, such as those which were not
+   * followed by a synchronization request before the connection closed.
+   */
+  static void clearManifests() {
+    synchronized (manifests) {
+      manifests.clear();
+    }
+  }
+
+  private static GameStateManifest takeManifest(Player p) {
+    synchronized (manifests) {
+      return manifests.remove(p);
+    }
+  }
+
   protected Command myUndoCommand() {
     return null;
   }
@@ -17,20 +17,34 @@
  */
 package VASSAL.chat;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+
+import VASSAL.build.module.GameStateManifest;
 import VASSAL.command.Command;
 import VASSAL.command.CommandEncoder;
+import VASSAL.tools.SequenceEncoder;
 
 /**
  * Date: Mar 16, 2003
  */
 public class SynchEncoder implements CommandEncoder {
   public static final String COMMAND_PREFIX = "SYNC"; //$NON-NLS-1$
+  public static final String MANIFEST_PREFIX = "RESYNC"; //$NON-NLS-1$
   private PlayerEncoder playerEncoder;
   private ChatServerConnection client;
 
   public SynchEncoder(PlayerEncoder playerEncoder, ChatServerConnection client) {
     this.playerEncoder = playerEncoder;
     this.client = client;
+
+    client.addPropertyChangeListener(ChatServerConnection.CONNECTED, new PropertyChangeListener() {
+      public void propertyChange(PropertyChangeEvent evt) {
+        if (!Boolean.TRUE.equals(evt.getNewValue())) {
+          SynchCommand.clearManifests();
+        }
+      }
+    });
   }
 
   public Command decode(String s) {
@@ -38,6 +52,13 @@ public class SynchEncoder implements CommandEncoder {
       Player p = playerEncoder.stringToPlayer(s.substring(COMMAND_PREFIX.length()));
       return new SynchCommand(p,client);
     }
+    else if (s.startsWith(MANIFEST_PREFIX)) {
+      final SequenceEncoder.Decoder sd = new SequenceEncoder.Decoder(
+        s.substring(MANIFEST_PREFIX.length()), '\t');
+      final Player p = playerEncoder.stringToPlayer(sd.nextToken(""));
+      final GameStateManifest m = GameStateManifest.decode(sd.nextToken(""));
+      return m == null ? null : new SynchManifestCommand(p, m);
+    }
     else {
       return null;
     }
@@ -48,6 +69,12 @@ public class SynchEncoder implements CommandEncoder {
       SynchCommand cmd = (SynchCommand) c;
       return COMMAND_PREFIX + playerEncoder.playerToString(cmd.getPlayer());
     }
+    else if (c instanceof SynchManifestCommand) {
+      final SynchManifestCommand cmd = (SynchManifestCommand) c;
+      final SequenceEncoder se = new SequenceEncoder(
+        playerEncoder.playerToString(cmd.getPlayer()), '\t');
+      return MANIFEST_PREFIX + se.append(cmd.getManifest().encode()).getValue();
+    }
     else {
       return null;
     }
@@ -0,0 +1,62 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.chat;
+
+import VASSAL.build.module.GameStateManifest;
+import VASSAL.command.Command;
+
+/**
+ * Tells another player which game a player already has, so that the
+ * {@link SynchCommand} which follows it need only send what differs.
+ * Clients which do not recognize this command ignore it and send the
+ * whole game.
+ *
+ * @since 3.2.17
+ */
+public class SynchManifestCommand extends Command {
+  private final Player player;
+  private final GameStateManifest manifest;
+
+  public SynchManifestCommand(Player p, GameStateManifest manifest) {
+    this.player = p;
+    this.manifest = manifest;
+  }
+
+  public Player getPlayer() {
+    return player;
+  }
+
+  public GameStateManifest getManifest() {
+    return manifest;
+  }
+
+  protected void executeCommand() {
+    if (player != null) {
+      SynchCommand.setManifest(player, manifest);
+    }
+  }
+
+  protected Command myUndoCommand() {
+    return null;
+  }
+
+  public boolean isLoggable() {
+    return false;
+  }
+}
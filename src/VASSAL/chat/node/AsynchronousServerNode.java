@@ -58,7 +58,7 @@ public class AsynchronousServerNode extends ServerNode {
     contentsReporter = new ReportContentsThread(this);
   }
 
-  protected synchronized void sendContents(Node node) {
+  protected void sendContents(Node node) {
     contentsReporter.markChanged(node);
   }
 
@@ -0,0 +1,79 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.chat.node;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import VASSAL.tools.concurrent.DaemonThreadFactory;
+
+/**
+ * A server which serves all its players from one {@link SocketSelector}
+ * thread, rather than from two threads per player as {@link Server} does.
+ * Messages are handled by a small pool of threads.
+ *
+ * @since 3.2.17
+ */
+public class NioServer {
+  private static final Logger logger =
+    LoggerFactory.getLogger(NioServer.class);
+
+  private final ServerSocketChannel socket;
+  private final SocketSelector selector;
+  private final ExecutorService executor;
+
+  public NioServer(final AsynchronousServerNode rootNode, int port)
+                                                           throws IOException {
+    executor = Executors.newFixedThreadPool(
+      Runtime.getRuntime().availableProcessors(),
+      new DaemonThreadFactory(NioServer.class.getSimpleName())
+    );
+
+    socket = ServerSocketChannel.open();
+    socket.socket().bind(new InetSocketAddress(port));
+
+    selector = new SocketSelector("server " + port, executor); //$NON-NLS-1$
+    selector.listen(socket, new SocketSelector.Acceptor() {
+      public void accept(SocketChannel channel) throws IOException {
+        new PlayerNode(selector, channel, rootNode);
+      }
+    });
+    selector.start();
+
+    logger.info("Started server on port " + port); //$NON-NLS-1$
+  }
+
+  /** @return the port on which the server is listening */
+  public int getPort() {
+    return socket.socket().getLocalPort();
+  }
+
+  /** Stop the server, disconnecting all players. */
+  public void shutdown() {
+    selector.shutdown();
+    executor.shutdown();
+  }
+}
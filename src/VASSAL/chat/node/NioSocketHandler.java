@@ -0,0 +1,281 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.chat.node;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link SocketHandler} for a non-blocking socket, whose I/O is done
+ * by a {@link SocketSelector}. Lines are read and written in the same
+ * format as by {@link BufferedSocketHandler}: UTF-8, terminated by
+ * <code>'\n'</code>.
+ *
+ * @since 3.2.17
+ */
+public class NioSocketHandler extends SocketHandler {
+  private static final Logger logger =
+    LoggerFactory.getLogger(NioSocketHandler.class);
+
+  private final SocketChannel channel;
+  private final SocketSelector selector;
+  private SelectionKey key;
+
+  private final ByteBuffer readBuffer = ByteBuffer.allocate(8192);
+  private byte[] line = new byte[256];
+  private int lineLength = 0;
+
+  private final Queue<ByteBuffer> writeQueue =
+    new ConcurrentLinkedQueue<ByteBuffer>();
+  private final AtomicBoolean writeRequested = new AtomicBoolean();
+  private volatile ByteBuffer signOff;
+  private volatile boolean open = true;
+
+  private final Queue<Runnable> messages = new ConcurrentLinkedQueue<Runnable>();
+  private final AtomicBoolean handling = new AtomicBoolean();
+
+  private final Runnable flush = new Runnable() {
+    public void run() {
+      write();
+    }
+  };
+
+  private final Runnable handleMessages = new Runnable() {
+    public void run() {
+      do {
+        Runnable r;
+        while ((r = messages.poll()) != null) {
+          r.run();
+        }
+        handling.set(false);
+      } while (!messages.isEmpty() && handling.compareAndSet(false, true));
+    }
+  };
+
+  NioSocketHandler(SocketChannel channel, SocketWatcher watcher,
+                   SocketSelector selector) throws IOException {
+    super(channel.socket(), watcher);
+    this.channel = channel;
+    this.selector = selector;
+  }
+
+  @Override
+  public void start() {
+    selector.invoke(new Runnable() {
+      public void run() {
+        if (key != null || !open) {
+          return;
+        }
+
+        try {
+          key = selector.register(channel, NioSocketHandler.this);
+        }
+        catch (IOException e) {
+          closeSocket();
+          return;
+        }
+
+        // send anything written before we were started
+        write();
+      }
+    });
+  }
+
+  @Override
+  public void writeLine(String msg) {
+    if (!open || signOff != null) {
+      return;
+    }
+
+    final ByteBuffer b = ByteBuffer.wrap(selector.encode(msg));
+    if (SIGN_OFF.equals(msg)) {
+      signOff = b;
+    }
+    writeQueue.add(b);
+
+    if (writeRequested.compareAndSet(false, true)) {
+      selector.invoke(flush);
+    }
+  }
+
+  /** Read whatever is available from the socket. Called by the selector. */
+  void read() {
+    int n;
+    try {
+      n = channel.read(readBuffer);
+    }
+    catch (IOException e) {
+      logger.debug("Unable to read from " + channel, e); //$NON-NLS-1$
+      n = -1;
+    }
+
+    if (n < 0) {
+      closeSocket();
+      return;
+    }
+
+    readBuffer.flip();
+    while (readBuffer.hasRemaining()) {
+      final byte b = readBuffer.get();
+      if (b != '\n') {
+        if (lineLength == line.length) {
+          final byte[] tmp = new byte[line.length * 2];
+          System.arraycopy(line, 0, tmp, 0, lineLength);
+          line = tmp;
+        }
+        line[lineLength++] = b;
+        continue;
+      }
+
+      int len = lineLength;
+      if (len > 0 && line[len-1] == '\r') {
+        --len;
+      }
+      lineLength = 0;
+
+      final String msg = decode(line, len);
+      if (SIGN_OFF.equals(msg)) {
+        closeSocket();
+        return;
+      }
+      else if (msg.length() > 0) {
+        handle(msg);
+      }
+    }
+    readBuffer.clear();
+  }
+
+  /** Write as much as the socket will take. Called by the selector. */
+  void write() {
+    if (key == null || !key.isValid()) {
+      return;
+    }
+
+    try {
+      do {
+        ByteBuffer b;
+        while ((b = writeQueue.peek()) != null) {
+          channel.write(b);
+          if (b.hasRemaining()) {
+            // the socket is full; wait until it drains
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            return;
+          }
+
+          writeQueue.poll();
+          if (b == signOff) {
+            closeSocket();
+            return;
+          }
+        }
+        writeRequested.set(false);
+      } while (!writeQueue.isEmpty() && writeRequested.compareAndSet(false, true));
+
+      key.interestOps(SelectionKey.OP_READ);
+    }
+    catch (IOException e) {
+      logger.debug("Unable to write to " + channel, e); //$NON-NLS-1$
+      closeSocket();
+    }
+  }
+
+  private void handle(final String msg) {
+    dispatch(new Runnable() {
+      public void run() {
+        try {
+          handler.handleMessage(msg);
+        }
+        catch (Exception e) {
+          // Handler threw an exception.  Keep reading.
+          logger.error("Error handling " + msg, e); //$NON-NLS-1$
+        }
+      }
+    });
+  }
+
+  private void dispatch(Runnable r) {
+    final Executor executor = selector.getExecutor();
+    if (executor == null) {
+      r.run();
+    }
+    else {
+      messages.add(r);
+      if (handling.compareAndSet(false, true)) {
+        executor.execute(handleMessages);
+      }
+    }
+  }
+
+  synchronized void closeSocket() {
+    if (!open) {
+      return;
+    }
+    open = false;
+
+    if (key != null) {
+      key.cancel();
+    }
+
+    try {
+      channel.close();
+    }
+    catch (IOException e) {
+      logger.debug("Unable to close " + channel, e); //$NON-NLS-1$
+    }
+
+    writeQueue.clear();
+
+    // the watcher learns of the close after the last message
+    dispatch(new Runnable() {
+      public void run() {
+        handler.socketClosed(NioSocketHandler.this);
+      }
+    });
+  }
+
+  static byte[] encodeLine(String line) {
+    try {
+      return (line + '\n').getBytes("UTF-8"); //$NON-NLS-1$
+    }
+    catch (UnsupportedEncodingException e) {
+      // UTF-8 is always supported
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String decode(byte[] b, int len) {
+    try {
+      return new String(b, 0, len, "UTF-8"); //$NON-NLS-1$
+    }
+    catch (UnsupportedEncodingException e) {
+      // UTF-8 is always supported
+      throw new IllegalStateException(e);
+    }
+  }
+}
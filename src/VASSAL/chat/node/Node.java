@@ -42,8 +42,11 @@ public class Node implements MsgSender {
   private static Logger logger = Logger.getLogger(MsgSender.class.getName());
   private String id;
   private String info;
-  private Node parent;
-  private List<Node> children = new ArrayList<Node>();
+  private volatile Node parent;
+
+  /** Replaced, never modified, so it may be read without locking. */
+  private volatile Node[] children = new Node[0];
+  private final Object childLock = new Object();
 
   public Node(Node parent, String id, String info) {
     this.parent = parent;
@@ -82,7 +85,18 @@ public class Node implements MsgSender {
 
   public void remove(Node child) {
     logger.finer("Removing "+child+" from "+this); //$NON-NLS-1$ //$NON-NLS-2$
-    children.remove(child);
+    synchronized (childLock) {
+      final Node[] c = children;
+      for (int i = 0; i < c.length; ++i) {
+        if (c[i].equals(child)) {
+          final Node[] nc = new Node[c.length-1];
+          System.arraycopy(c, 0, nc, 0, i);
+          System.arraycopy(c, i+1, nc, i, c.length-i-1);
+          children = nc;
+          break;
+        }
+      }
+    }
   }
 
   public void add(Node child) {
@@ -95,7 +109,13 @@ public class Node implements MsgSender {
       child.parent.remove(child);
     }
     logger.finer("Adding "+child+" to "+this); //$NON-NLS-1$ //$NON-NLS-2$
-    children.add(child);
+    synchronized (childLock) {
+      final Node[] c = children;
+      final Node[] nc = new Node[c.length+1];
+      System.arraycopy(c, 0, nc, 0, c.length);
+      nc[c.length] = child;
+      children = nc;
+    }
     child.setParent(this);
   }
 
@@ -124,7 +144,7 @@ public class Node implements MsgSender {
    * @return
    */
   public Node getChild(String id) {
-    for (Node n : getChildren()) {
+    for (Node n : children) {
       if (id.equals(n.getId())) {
         return n;
       }
@@ -148,7 +168,7 @@ public class Node implements MsgSender {
   }
 
   public void send(String msg) {
-    for (Node n : getChildren()) {
+    for (Node n : children) {
       n.send(msg);
     }
   }
@@ -164,7 +184,7 @@ public class Node implements MsgSender {
       l.add(base);
     }
     else {
-      for (Node n : base.getChildren()) {
+      for (Node n : base.children) {
         addLeaves(n,l);
       }
     }
@@ -175,9 +195,7 @@ public class Node implements MsgSender {
   }
 
   public Node[] getChildren() {
-    synchronized (children) {
-      return children.toArray(new Node[children.size()]);
-    }
+    return children.clone();
   }
 
   /**
@@ -237,15 +255,13 @@ public class Node implements MsgSender {
   }
 
   public String getPath() {
-    synchronized (children) {
-      SequenceEncoder se = new SequenceEncoder('/');
-      List<Node> path = getPathList();
-      for (ListIterator<Node> i = path.listIterator(path.size());
-           i.hasPrevious(); ) {
-        se.append(i.previous().getId());
-      }
-      return se.getValue();
+    SequenceEncoder se = new SequenceEncoder('/');
+    List<Node> path = getPathList();
+    for (ListIterator<Node> i = path.listIterator(path.size());
+         i.hasPrevious(); ) {
+      se.append(i.previous().getId());
     }
+    return se.getValue();
   }
 
   /**
@@ -253,17 +269,15 @@ public class Node implements MsgSender {
    * @return
    */
   public String getPathAndInfo() {
-    synchronized (children) {
-      SequenceEncoder se = new SequenceEncoder('/');
-      List<Node> path = getPathList();
-      for (ListIterator<Node> i = path.listIterator(path.size()-1);
-           i.hasPrevious(); ) {
-        Node n = i.previous();
-        SequenceEncoder se2 =
-          new SequenceEncoder(n.getId(),'=').append(n.getInfo());
-        se.append(se2.getValue());
-      }
-      return se.getValue();
+    SequenceEncoder se = new SequenceEncoder('/');
+    List<Node> path = getPathList();
+    for (ListIterator<Node> i = path.listIterator(path.size()-1);
+         i.hasPrevious(); ) {
+      Node n = i.previous();
+      SequenceEncoder se2 =
+        new SequenceEncoder(n.getId(),'=').append(n.getInfo());
+      se.append(se2.getValue());
     }
+    return se.getValue();
   }
 }
@@ -21,14 +21,19 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Properties;
 
 import org.apache.commons.codec.binary.Base64;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import VASSAL.Info;
 import VASSAL.build.GameModule;
 import VASSAL.chat.CgiServerStatus;
 import VASSAL.chat.Compressor;
+import VASSAL.chat.DictionaryCompressor;
 import VASSAL.chat.InviteCommand;
 import VASSAL.chat.InviteEncoder;
 import VASSAL.chat.LockableChatServerConnection;
@@ -73,7 +78,12 @@ import VASSAL.tools.SequenceEncoder;
  */
 public abstract class NodeClient implements LockableChatServerConnection,
     PlayerEncoder, ChatControlsInitializer {
+  private static final Logger logger =
+    LoggerFactory.getLogger(NodeClient.class);
+
   public static final String ZIP_HEADER = "!ZIP!"; //$NON-NLS-1$
+  /** @since 3.2.17 */
+  public static final String DICTIONARY_HEADER = "!DZIP!"; //$NON-NLS-1$
   protected PropertyChangeSupport propSupport = new PropertyChangeSupport(this);
   protected NodePlayer me;
   protected SimpleRoom currentRoom;
@@ -86,6 +96,8 @@ public abstract class NodeClient implements LockableChatServerConnection,
   protected String playerId;
   protected MainRoomChecker checker = new MainRoomChecker();
   protected int compressionLimit = 1000;
+  protected int dictionaryLimit = 100;
+  protected DictionaryCompressor dictionary;
   protected CommandEncoder encoder;
   protected MessageBoardControlsInitializer messageBoardControls;
   protected RoomInteractionControlsInitializer roomControls;
@@ -179,6 +191,10 @@ public abstract class NodeClient implements LockableChatServerConnection,
   }
 
   protected void registerNewConnection() {
+    if (dictionary == null && GameModule.getGameModule() != null) {
+      dictionary = DictionaryCompressor.forModule(GameModule.getGameModule());
+      me.setDictionary(dictionary.getId());
+    }
     String path = new SequenceEncoder(moduleName, '/').append(defaultRoomName)
         .getValue();
     send(Protocol.encodeRegisterCommand(me.getId(), path,
@@ -230,21 +246,74 @@ public abstract class NodeClient implements LockableChatServerConnection,
   }
 
   public void forward(String receipientPath, String msg) {
+    forward(receipientPath, msg,
+            currentRoom == null ? null : currentRoom.getPlayerList());
+  }
+
+  /**
+   * @param recipients the players who will receive the message, which
+   * is compressed with {@link #dictionary} only if all of them have it
+   */
+  protected void forward(String receipientPath, String msg,
+                         Collection<Player> recipients) {
     if (isConnected() && currentRoom != null && msg != null) {
       msg = checker.filter(msg, defaultRoomName, currentRoom.getName());
-      if (msg.length() > compressionLimit) {
-        try {
-          msg = ZIP_HEADER + Base64.encodeBase64String(
-            Compressor.compress(msg.getBytes("UTF-8"))
-          );
-        }
-        // FIXME: review error message
-        catch (IOException e) {
-          e.printStackTrace();
-        }
+      sendForward(receipientPath, msg, recipients);
+    }
+  }
+
+  /**
+   * Compresses a message, if it is long enough, and sends it.
+   *
+   * @param recipients the players who will receive the message, which
+   * is compressed with {@link #dictionary} only if all of them have it
+   */
+  protected void sendForward(String receipientPath, String msg,
+                             Collection<Player> recipients) {
+    String compressed = null;
+    if (msg.length() > dictionaryLimit && canUseDictionary(recipients)) {
+      try {
+        compressed = DICTIONARY_HEADER + Base64.encodeBase64String(
+          dictionary.compress(msg.getBytes("UTF-8"))
+        );
+      }
+      catch (IOException e) {
+        // fall back to the format every client understands
+        logger.warn("Unable to compress message with dictionary", e); //$NON-NLS-1$
       }
-      send(Protocol.encodeForwardCommand(receipientPath, msg));
     }
+    if (compressed == null && msg.length() > compressionLimit) {
+      try {
+        compressed = ZIP_HEADER + Base64.encodeBase64String(
+          Compressor.compress(msg.getBytes("UTF-8"))
+        );
+      }
+      catch (IOException e) {
+        logger.warn("Unable to compress message", e); //$NON-NLS-1$
+      }
+    }
+    send(Protocol.encodeForwardCommand(receipientPath,
+                                       compressed == null ? msg : compressed));
+  }
+
+  /**
+   * @return true if we have a dictionary and every recipient advertises
+   * the same one; otherwise messages are sent as {@link #ZIP_HEADER}
+   * messages, which any client can decode. The server checks the players
+   * who actually receive the message as well, and returns it for any who
+   * lack the dictionary, such as a player who has only just joined.
+   */
+  protected boolean canUseDictionary(Collection<Player> recipients) {
+    if (dictionary == null || recipients == null || recipients.isEmpty()) {
+      return false;
+    }
+    for (Player p : recipients) {
+      if (!p.equals(me) && (!(p instanceof NodePlayer) ||
+          !dictionary.getId().equals(((NodePlayer) p).getDictionary()))) {
+        return false;
+      }
+    }
+    return true;
   }
 
   public void sendToOthers(String msg) {
@@ -258,7 +327,7 @@ public abstract class NodeClient implements LockableChatServerConnection,
   public void sendTo(Player recipient, Command c) {
     String path = new SequenceEncoder(moduleName, '/')
         .append("*").append(((NodePlayer) recipient).getId()).getValue(); //$NON-NLS-1$
-    forward(path, encoder.encode(c));
+    forward(path, encoder.encode(c), Collections.singletonList(recipient));
   }
 
   public void doKick(Player kickee) {
@@ -427,6 +496,7 @@ public abstract class NodeClient implements LockableChatServerConnection,
   public void handleMessageFromServer(String msg) {
     Node n;
     Properties p;
+    String[] undelivered;
     if ((n = Protocol.decodeListCommand(msg)) != null) {
       Node mod = n.getChild(moduleName);
       if (mod != null) {
@@ -463,8 +533,23 @@ public abstract class NodeClient implements LockableChatServerConnection,
     else if (Protocol.decodeRegisterRequest(msg)) {
       registerNewConnection();
     }
+    else if ((undelivered = Protocol.decodeUndeliveredCommand(msg)) != null) {
+      // send it again to the player who lacks our dictionary
+      final String plain = decompressWithDictionary(undelivered[1]);
+      if (plain != null) {
+        final String path = new SequenceEncoder(moduleName, '/')
+            .append("*").append(undelivered[0]).getValue(); //$NON-NLS-1$
+        sendForward(path, plain, null);
+      }
+    }
     else {
-      if (msg.startsWith(ZIP_HEADER)) {
+      if (msg.startsWith(DICTIONARY_HEADER)) {
+        msg = decompressWithDictionary(msg);
+        if (msg == null) {
+          return;
+        }
+      }
+      else if (msg.startsWith(ZIP_HEADER)) {
         try {
           msg = new String(
             Compressor.decompress(
@@ -475,15 +560,39 @@ public abstract class NodeClient implements LockableChatServerConnection,
             "UTF-8"
           );
         }
-        // FIXME: review error message
         catch (IOException e) {
-          e.printStackTrace();
+          logger.warn("Unable to decompress message", e); //$NON-NLS-1$
         }
       }
       propSupport.firePropertyChange(INCOMING_MSG, null, msg);
     }
   }
 
+  /**
+   * @return the message compressed with {@link #dictionary}, or
+   * <code>null</code> if it cannot be decompressed
+   */
+  protected String decompressWithDictionary(String msg) {
+    if (dictionary == null) {
+      logger.warn("No dictionary to decompress message"); //$NON-NLS-1$
+      return null;
+    }
+    try {
+      return new String(
+        dictionary.decompress(
+          Base64.decodeBase64(
+            msg.substring(DICTIONARY_HEADER.length())
+          )
+        ),
+        "UTF-8"
+      );
+    }
+    catch (IOException e) {
+      logger.warn("Unable to decompress message with dictionary", e); //$NON-NLS-1$
+      return null;
+    }
+  }
+
   protected void updateRooms(Node module) {
     Node[] roomNodes = module.getChildren();
     NodeRoom[] rooms = new NodeRoom[roomNodes.length];
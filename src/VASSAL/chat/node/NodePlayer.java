@@ -32,6 +32,10 @@ import VASSAL.chat.SimpleStatus;
  */
 public class NodePlayer extends SimplePlayer {
   public static final String ID = "id"; //$NON-NLS-1$
+  /** @since 3.2.17 */
+  public static final String DICTIONARY = "dictionary"; //$NON-NLS-1$
+
+  protected String dictionary;
 
   public NodePlayer(String id) {
     this.id = id;
@@ -41,6 +45,20 @@ public class NodePlayer extends SimplePlayer {
     return id;
   }
 
+  /**
+   * @return the id of the {@link VASSAL.chat.DictionaryCompressor} this
+   * player can decompress messages with, or <code>null</code>
+   * @since 3.2.17
+   */
+  public String getDictionary() {
+    return dictionary;
+  }
+
+  /** @since 3.2.17 */
+  public void setDictionary(String dictionary) {
+    this.dictionary = dictionary;
+  }
+
   public boolean equals(Object o) {
     if (this == o) return true;
     if (!(o instanceof NodePlayer)) return false;
@@ -70,6 +88,7 @@ public class NodePlayer extends SimplePlayer {
                     p.getProperty(SimpleStatus.IP, ""), //$NON-NLS-1$
                     p.getProperty(SimpleStatus.MODULE_VERSION, ""), //$NON-NLS-1$
                     p.getProperty(SimpleStatus.CRC, ""))); //$NON-NLS-1$
+    dictionary = p.getProperty(DICTIONARY);
   }
 
   public Properties toProperties() {
@@ -100,6 +119,9 @@ public class NodePlayer extends SimplePlayer {
     if (ip != null) {
       p1.put(SimpleStatus.CRC,crc);
     }
+    if (dictionary != null) {
+      p1.put(DICTIONARY,dictionary);
+    }
     Properties p = p1;
     p.put(ID,id == null ? "" : id);
     return p;
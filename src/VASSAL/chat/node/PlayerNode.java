@@ -23,6 +23,7 @@ package VASSAL.chat.node;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
 import java.util.Iterator;
 import java.util.Properties;
 
@@ -48,6 +49,15 @@ public class PlayerNode extends Node implements SocketWatcher {
     input.start();
   }
 
+  /** @since 3.2.17 */
+  public PlayerNode(SocketSelector selector, SocketChannel channel,
+                    AsynchronousServerNode server) throws IOException {
+    super(null,null,null);
+    this.server = server;
+    this.input = selector.register(channel,this);
+    input.start();
+  }
+
   public String getId() {
     return id;
   }
@@ -110,7 +120,7 @@ public class PlayerNode extends Node implements SocketWatcher {
       server.move(this,info[0]);
     }
     else if ((info = Protocol.decodeForwardCommand(line)) != null) {
-      server.forward(info[0],info[1]);
+      server.forward(this,info[0],info[1]);
     }
     else if ((info = Protocol.decodeStatsCommand(line)) != null) {
       this.info = info[0];
@@ -44,6 +44,8 @@ public class Protocol {
   public static final String ROOM_INFO = "ROOM_INFO\t"; //$NON-NLS-1$
   public static final String LOGIN = "LOGIN\t"; //$NON-NLS-1$
   public static final String KICK = "KICK\t"; //$NON-NLS-1$
+  /** @since 3.2.17 */
+  public static final String UNDELIVERED = "UNDELIVERED\t"; //$NON-NLS-1$
 
   /**
    * Contains registration information sent when a client initially connects to
@@ -137,6 +139,36 @@ public class Protocol {
     return info;
   }
 
+  /**
+   * Returned by the server to the sender of a forwarded message which one
+   * of its recipients cannot decode, so that the sender may send it to
+   * that recipient in a form it can
+   *
+   * @param recipientId
+   *          the id of the player to whom the message was not sent
+   * @param message
+   * @since 3.2.17
+   */
+  public static String encodeUndeliveredCommand(String recipientId,
+                                                String message) {
+    String msg = new SequenceEncoder(recipientId, '\t').append(message).getValue();
+    return UNDELIVERED + msg;
+  }
+
+  /**
+   * @see #encodeUndeliveredCommand
+   * @return recipientId, message
+   * @since 3.2.17
+   */
+  public static String[] decodeUndeliveredCommand(String cmd) {
+    String[] info = null;
+    if (cmd.startsWith(UNDELIVERED)) {
+      SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(cmd.substring(UNDELIVERED.length()), '\t');
+      info = new String[] {st.nextToken(), st.nextToken()};
+    }
+    return info;
+  }
+
   /**
    * Sent when a player updates his personal information
    *
@@ -25,9 +25,13 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
-import VASSAL.tools.ArrayUtils;
 import VASSAL.tools.PropertiesEncoder;
 import VASSAL.tools.SequenceEncoder;
 
@@ -35,6 +39,61 @@ public class ServerNode extends Node {
   private static final Logger logger = Logger.getLogger(ServerNode.class.getName());
   private SendContentsTask sendContents;
 
+  /** The most paths whose recipients are remembered. */
+  private static final int MAX_CACHED_PATHS = 4096;
+
+  /**
+   * The lock and membership version of a module. Changes to the players
+   * and rooms of a module are made holding its lock, and bump its version.
+   * The state is dropped when the last player leaves the module.
+   */
+  private static class ModuleState {
+    private static final AtomicLong sequence = new AtomicLong();
+
+    public final String id;
+    public final Lock lock = new ReentrantLock();
+    public final AtomicLong version = new AtomicLong();
+
+    /** Fixes the order in which the locks of two modules are taken. */
+    public final long order = sequence.getAndIncrement();
+
+    public ModuleState(String id) {
+      this.id = id;
+    }
+  }
+
+  /** The recipients of messages sent to a path. */
+  private static class Recipients implements MsgSender {
+    public final Node[] nodes;
+    public final AtomicLong version;
+    public final long resolvedAt;
+
+    public Recipients(Node[] nodes, AtomicLong version, long resolvedAt) {
+      this.nodes = nodes;
+      this.version = version;
+      this.resolvedAt = resolvedAt;
+    }
+
+    public boolean isCurrent() {
+      return version.get() == resolvedAt;
+    }
+
+    public void send(String msg) {
+      for (Node n : nodes) {
+        n.send(msg);
+      }
+    }
+  }
+
+  private final ConcurrentMap<String,ModuleState> modules =
+    new ConcurrentHashMap<String,ModuleState>();
+
+  /** Bumped by every change, for paths which may span modules. */
+  private final AtomicLong version = new AtomicLong();
+
+  private final ConcurrentMap<String,Recipients> recipients =
+    new ConcurrentHashMap<String,Recipients>();
+
   public ServerNode() {
     super(null, null, null);
     sendContents = new SendContentsTask();
@@ -42,12 +101,79 @@ public class ServerNode extends Node {
     t.schedule(sendContents, 0, 1000);
   }
 
-  public synchronized void forward(String senderPath, String msg) {
+  public void forward(String senderPath, String msg) {
     MsgSender target = getMsgSender(senderPath);
     target.send(msg);
   }
 
-  public synchronized MsgSender getMsgSender(String path) {
+  /**
+   * Forward a message from a player. A message compressed with a preset
+   * dictionary is sent only to the recipients which advertise the same
+   * dictionary as its sender; for each of the others it is returned to
+   * the sender as {@link Protocol#UNDELIVERED}, to be sent again in a
+   * form every client can decode.
+   *
+   * @since 3.2.17
+   */
+  public void forward(Node sender, String recipientPath, String msg) {
+    if (!msg.startsWith(NodeClient.DICTIONARY_HEADER)) {
+      forward(recipientPath, msg);
+      return;
+    }
+
+    final String dictionary = getDictionary(sender);
+    for (Node n : ((Recipients) getMsgSender(recipientPath)).nodes) {
+      if (dictionary != null && dictionary.equals(getDictionary(n))) {
+        n.send(msg);
+      }
+      else {
+        sender.send(Protocol.encodeUndeliveredCommand(n.getId(), msg));
+      }
+    }
+  }
+
+  /** @return the dictionary which a player advertises, if any */
+  private static String getDictionary(Node n) {
+    final String info = n.getInfo();
+    if (info == null) {
+      return null;
+    }
+    try {
+      return new PropertiesEncoder(info).getProperties()
+                                        .getProperty(NodePlayer.DICTIONARY);
+    }
+    catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Resolve a path to the players it designates. Resolutions are cached
+   * until the membership of the module they lie in changes.
+   */
+  public MsgSender getMsgSender(String path) {
+    Recipients r = recipients.get(path);
+    if (r == null || !r.isCurrent()) {
+      final String moduleId =
+        new SequenceEncoder.Decoder(path, '/').nextToken(null);
+      // paths outside any one module depend on every change
+      final ModuleState ms = moduleId == null ? null : modules.get(moduleId);
+      final AtomicLong v = ms == null ? version : ms.version;
+
+      // read the version first, so that a concurrent change leaves the
+      // resolution stale rather than wrong
+      final long resolvedAt = v.get();
+      r = new Recipients(resolve(path), v, resolvedAt);
+
+      if (recipients.size() >= MAX_CACHED_PATHS) {
+        recipients.clear();
+      }
+      recipients.put(path, r);
+    }
+    return r;
+  }
+
+  private Node[] resolve(String path) {
     Node[] target = new Node[]{this};
     SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(path, '/');
     while (st.hasMoreTokens()) {
@@ -87,40 +213,134 @@ public class ServerNode extends Node {
       }
     }
 
-    final MsgSender[] senders = ArrayUtils.copyOf(target);
+    // flatten to the players, to whom all messages are finally sent
+    final ArrayList<Node> l = new ArrayList<Node>();
+    for (Node node : target) {
+      l.addAll(Arrays.asList(node.getLeafDescendants()));
+    }
+    return l.toArray(new Node[l.size()]);
+  }
 
-    return new MsgSender() {
-      public void send(String msg) {
-        for (int i = 0; i < senders.length; ++i) {
-          senders[i].send(msg);
-        }
+  private ModuleState getModuleState(String moduleId) {
+    ModuleState ms = modules.get(moduleId);
+    if (ms == null) {
+      final ModuleState nms = new ModuleState(moduleId);
+      ms = modules.putIfAbsent(moduleId, nms);
+      if (ms == null) {
+        ms = nms;
       }
-    };
+    }
+    return ms;
   }
 
-  public synchronized void disconnect(Node target) {
-    Node mod = getModule(target);
-    if (mod != null) {
-      Node room = target.getParent();
-      room.remove(target);
-      if (room.getChildren().length == 0) {
-        room.getParent().remove(room);
+  private static String getModuleId(String path) {
+    return new SequenceEncoder.Decoder(path, '/').nextToken(""); //$NON-NLS-1$
+  }
+
+  /**
+   * @return whether the state is still the one kept for its module, so
+   * that holding its lock excludes all other changes to the module
+   */
+  private boolean isCurrent(ModuleState ms) {
+    return ms == null || modules.get(ms.id) == ms;
+  }
+
+  /** Lock the current state of a module. */
+  private ModuleState lockModule(String moduleId) {
+    while (true) {
+      final ModuleState ms = getModuleState(moduleId);
+      ms.lock.lock();
+      if (isCurrent(ms)) {
+        return ms;
+      }
+      // the module emptied and its state was dropped while we waited
+      ms.lock.unlock();
+    }
+  }
+
+  /** Drop the state of a module which its last player has left. */
+  private void dropModuleState(ModuleState ms) {
+    modules.remove(ms.id, ms);
+  }
+
+  /** @return the number of modules whose state is kept */
+  int getModuleStateCount() {
+    return modules.size();
+  }
+
+  /** Lock the modules in a consistent order, so as not to deadlock. */
+  private static void lock(ModuleState a, ModuleState b) {
+    if (b == null || a == b) {
+      a.lock.lock();
+    }
+    else if (a.order < b.order) {
+      a.lock.lock();
+      b.lock.lock();
+    }
+    else {
+      b.lock.lock();
+      a.lock.lock();
+    }
+  }
+
+  private static void unlock(ModuleState a, ModuleState b) {
+    a.lock.unlock();
+    if (b != null && a != b) {
+      b.lock.unlock();
+    }
+  }
+
+  /** Note a change of membership in a module. */
+  private void changed(ModuleState ms) {
+    ms.version.incrementAndGet();
+    version.incrementAndGet();
+  }
+
+  public void disconnect(Node target) {
+    Node mod;
+    while ((mod = getModule(target)) != null) {
+      final ModuleState ms = lockModule(mod.getId());
+      try {
+        // the target may have moved while we waited; try again
+        if (getModule(target) != mod) continue;
+
+        Node room = target.getParent();
+        room.remove(target);
+        if (room.getChildren().length == 0) {
+          room.getParent().remove(room);
+        }
+        if (mod.getChildren().length == 0) {
+          remove(mod);
+        }
+        changed(ms);
+        if (mod.getLeafDescendants().length == 0) {
+          dropModuleState(ms);
+        }
       }
-      if (mod.getChildren().length == 0) {
-        remove(mod);
+      finally {
+        ms.lock.unlock();
       }
       sendContents(mod);
+      break;
     }
   }
 
-  protected synchronized void sendContents(Node module) {
+  protected void sendContents(Node module) {
     sendContents.markChanged(module);
   }
 
-  public synchronized void registerNode(String parentPath, Node newNode) {
-    Node newParent = Node.build(this, parentPath);
-    newParent.add(newNode);
-    Node module = getModule(newParent);
+  public void registerNode(String parentPath, Node newNode) {
+    final ModuleState ms = lockModule(getModuleId(parentPath));
+    Node module;
+    try {
+      Node newParent = Node.build(this, parentPath);
+      newParent.add(newNode);
+      module = getModule(newParent);
+      changed(ms);
+    }
+    finally {
+      ms.lock.unlock();
+    }
     if (module != null) {
       sendContents(module);
     }
@@ -134,11 +354,39 @@ public class ServerNode extends Node {
     return module;
   }
 
-  public synchronized void move(Node target, String newParentPath) {
-    Node oldMod = getModule(target);
-    Node newParent = Node.build(this, newParentPath);
-    newParent.add(target);
-    Node mod = getModule(newParent);
+  public void move(Node target, String newParentPath) {
+    final String newModuleId = getModuleId(newParentPath);
+    Node oldMod;
+    Node mod;
+    while (true) {
+      oldMod = getModule(target);
+      final ModuleState newMs = getModuleState(newModuleId);
+      final ModuleState oldMs =
+        oldMod == null ? null : getModuleState(oldMod.getId());
+      lock(newMs, oldMs);
+      try {
+        // the target or the modules may have changed while we waited;
+        // try again
+        if (getModule(target) != oldMod ||
+            !isCurrent(newMs) || !isCurrent(oldMs)) continue;
+
+        Node newParent = Node.build(this, newParentPath);
+        newParent.add(target);
+        mod = getModule(newParent);
+        changed(newMs);
+        if (oldMs != null && oldMs != newMs) {
+          changed(oldMs);
+          if (oldMod.getLeafDescendants().length == 0) {
+            dropModuleState(oldMs);
+          }
+        }
+        break;
+      }
+      finally {
+        unlock(newMs, oldMs);
+      }
+    }
+
     if (mod != null) {
       sendContents(mod);
     }
@@ -147,7 +395,7 @@ public class ServerNode extends Node {
     }
   }
 
-  public synchronized void updateInfo(Node target) {
+  public void updateInfo(Node target) {
     Node mod = getModule(target);
     if (mod != null) {
       sendContents(mod);
@@ -163,29 +411,44 @@ public class ServerNode extends Node {
    * @param kickeeId
    *          Id of Player to be kicked
    */
-  public synchronized void kick(PlayerNode kicker, String kickeeId) {
-    // Check the kicker owns the room he is in
-    final Node roomNode = kicker.getParent();
-    String roomOwnerId;
-    try {
-      roomOwnerId = new PropertiesEncoder(roomNode.getInfo()).getProperties().getProperty(NodeRoom.OWNER);
-    }
-    catch (IOException e) {
-      e.printStackTrace();
+  public void kick(PlayerNode kicker, String kickeeId) {
+    final Node mod = getModule(kicker);
+    if (mod == null) {
       return;
     }
-    if (roomOwnerId == null || !roomOwnerId.equals(kicker.getId())) {
-      return;
+
+    final ModuleState ms = lockModule(mod.getId());
+    try {
+      // Check the kicker owns the room he is in
+      final Node roomNode = kicker.getParent();
+      if (getModule(roomNode) != mod) {
+        return;
+      }
+      String roomOwnerId;
+      try {
+        roomOwnerId = new PropertiesEncoder(roomNode.getInfo()).getProperties().getProperty(NodeRoom.OWNER);
+      }
+      catch (IOException e) {
+        e.printStackTrace();
+        return;
+      }
+      if (roomOwnerId == null || !roomOwnerId.equals(kicker.getId())) {
+        return;
+      }
+      // Check the kickee belongs to the same room
+      final Node kickeeNode = roomNode.getChild(kickeeId);
+      if (kickeeNode == null) {
+        return;
+      }
+      // Kick to the default room and tell them they have been kicked
+      final Node defaultRoomNode = roomNode.getParent().getChildren()[0];
+      move(kickeeNode, defaultRoomNode.getPath());
     }
-    // Check the kickee belongs to the same room
-    final Node kickeeNode = roomNode.getChild(kickeeId);
-    if (kickeeNode == null) {
-      return;
+    finally {
+      ms.lock.unlock();
     }
-    // Kick to the default room and tell them they have been kicked
-    final Node defaultRoomNode = roomNode.getParent().getChildren()[0];
-    move(kickeeNode, defaultRoomNode.getPath());
   }
+
   private static class SendContentsTask extends TimerTask {
     // FIXME: should modules be wrapped by Collections.synchronizedMap()?
     private Set<Node> modules = new HashSet<Node>();
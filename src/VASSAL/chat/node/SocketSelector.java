@@ -0,0 +1,238 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.chat.node;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single thread which does the socket I/O for any number of
+ * {@link NioSocketHandler}s, in place of the read and write threads
+ * each {@link BufferedSocketHandler} uses.
+ *
+ * @since 3.2.17
+ */
+public class SocketSelector extends Thread {
+  private static final Logger logger =
+    LoggerFactory.getLogger(SocketSelector.class);
+
+  /** Receives the connections accepted on a listening socket. */
+  public interface Acceptor {
+    public void accept(SocketChannel channel) throws IOException;
+  }
+
+  private final Selector selector;
+  private final Executor executor;
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+  private volatile boolean running = true;
+
+  /** The most recently encoded line, shared by handlers sending it. */
+  private volatile EncodedLine lastLine;
+
+  /**
+   * @param name the name of the thread
+   * @param executor runs the {@link SocketWatcher}s; the messages from
+   * each socket are handled in order, one at a time. If <code>null</code>,
+   * messages are handled on this thread.
+   * @throws IOException
+   */
+  public SocketSelector(String name, Executor executor) throws IOException {
+    super(name);
+    this.selector = Selector.open();
+    this.executor = executor;
+  }
+
+  Executor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Accept connections on a listening socket.
+   *
+   * @param server the socket
+   * @param acceptor receives each new connection
+   * @throws IOException
+   */
+  public void listen(final ServerSocketChannel server, final Acceptor acceptor)
+                                                           throws IOException {
+    server.configureBlocking(false);
+    invoke(new Runnable() {
+      public void run() {
+        try {
+          server.register(selector, SelectionKey.OP_ACCEPT, acceptor);
+        }
+        catch (IOException e) {
+          logger.warn("Unable to listen on " + server, e); //$NON-NLS-1$
+        }
+      }
+    });
+  }
+
+  /**
+   * Create a handler for a connected socket. The handler does no I/O
+   * until it is started.
+   *
+   * @param channel the socket
+   * @param watcher receives the lines read from the socket
+   * @return the handler
+   * @throws IOException
+   */
+  public NioSocketHandler register(SocketChannel channel,
+                                   SocketWatcher watcher) throws IOException {
+    channel.configureBlocking(false);
+    return new NioSocketHandler(channel, watcher, this);
+  }
+
+  /** Stop the thread and close the selector and all its sockets. */
+  public void shutdown() {
+    running = false;
+    selector.wakeup();
+  }
+
+  /** Run a task on this thread. */
+  void invoke(Runnable task) {
+    tasks.add(task);
+    selector.wakeup();
+  }
+
+  SelectionKey register(SocketChannel channel, NioSocketHandler handler)
+                                                           throws IOException {
+    return channel.register(selector, SelectionKey.OP_READ, handler);
+  }
+
+  /**
+   * Encode a line for sending. A message forwarded to many sockets is
+   * encoded only once.
+   */
+  byte[] encode(String line) {
+    EncodedLine e = lastLine;
+    if (e == null || e.line != line) {
+      e = new EncodedLine(line);
+      lastLine = e;
+    }
+    return e.bytes;
+  }
+
+  private static class EncodedLine {
+    public final String line;
+    public final byte[] bytes;
+
+    public EncodedLine(String line) {
+      this.line = line;
+      this.bytes = NioSocketHandler.encodeLine(line);
+    }
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (running) {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+          task.run();
+        }
+
+        selector.select();
+
+        final Iterator<SelectionKey> i = selector.selectedKeys().iterator();
+        while (i.hasNext()) {
+          final SelectionKey key = i.next();
+          i.remove();
+
+          try {
+            if (key.isAcceptable()) {
+              accept(key);
+            }
+            else {
+              final NioSocketHandler h = (NioSocketHandler) key.attachment();
+              if (key.isReadable()) {
+                h.read();
+              }
+              if (key.isValid() && key.isWritable()) {
+                h.write();
+              }
+            }
+          }
+          catch (CancelledKeyException e) {
+            // the socket was closed by another thread
+          }
+        }
+      }
+    }
+    catch (IOException e) {
+      logger.error("Selector failed", e); //$NON-NLS-1$
+    }
+    finally {
+      for (SelectionKey key : selector.keys()) {
+        if (key.attachment() instanceof NioSocketHandler) {
+          ((NioSocketHandler) key.attachment()).closeSocket();
+        }
+        else {
+          try {
+            key.channel().close();
+          }
+          catch (IOException ignore) {
+          }
+        }
+      }
+
+      try {
+        selector.close();
+      }
+      catch (IOException ignore) {
+      }
+    }
+  }
+
+  private void accept(SelectionKey key) {
+    final ServerSocketChannel server = (ServerSocketChannel) key.channel();
+    final Acceptor acceptor = (Acceptor) key.attachment();
+
+    SocketChannel channel;
+    try {
+      while ((channel = server.accept()) != null) {
+        try {
+          acceptor.accept(channel);
+        }
+        catch (Exception e) {
+          logger.warn("Unable to accept " + channel, e); //$NON-NLS-1$
+          try {
+            channel.close();
+          }
+          catch (IOException ignore) {
+          }
+        }
+      }
+    }
+    catch (IOException e) {
+      logger.warn("Unable to accept on " + server, e); //$NON-NLS-1$
+    }
+  }
+}
@@ -23,13 +23,19 @@ import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.JTree;
 
+import VASSAL.Info;
 import VASSAL.build.GameModule;
+import VASSAL.build.module.GameState;
 import VASSAL.chat.ChatServerConnection;
 import VASSAL.chat.LockableChatServerConnection;
 import VASSAL.chat.Player;
+import VASSAL.chat.PlayerStatus;
 import VASSAL.chat.Room;
 import VASSAL.chat.SimplePlayer;
+import VASSAL.chat.SimpleStatus;
 import VASSAL.chat.SynchCommand;
+import VASSAL.chat.SynchManifestCommand;
+import VASSAL.command.Command;
 import VASSAL.i18n.Resources;
 
 /**
@@ -86,14 +92,40 @@ public class SynchAction extends AbstractAction {
     if (isEnabled()) {
       final long now = System.currentTimeMillis();
       if ( ! targetRoom.equals(lastRoom) || (now - lastSync) > TOO_SOON) {
-        GameModule.getGameModule().getGameState().setup(false);
-        client.sendTo(p, new SynchCommand(client.getUserInfo(),client));
+        final GameState gs = GameModule.getGameModule().getGameState();
+        final Command synch = new SynchCommand(client.getUserInfo(),client);
+        if (gs.isGameStarted() && answersManifest(p)) {
+          // ask for only what differs from the game we already have; a
+          // player with no game answers by closing ours
+          final Command c = new SynchManifestCommand(client.getUserInfo(), gs.getManifest());
+          client.sendTo(p, c.append(synch));
+        }
+        else {
+          gs.setup(false);
+          client.sendTo(p, synch);
+        }
         lastSync = now;
       }
       lastRoom = targetRoom;
     }
   }
 
+  /**
+   * @return whether a player's client is at least as recent as ours, and
+   * so answers a {@link SynchManifestCommand}. Older clients ignore it
+   * and send nothing if they have no game, so our game is closed before
+   * asking them for the whole game, as it always was.
+   */
+  protected static boolean answersManifest(Player p) {
+    final PlayerStatus status = p.getStatus();
+    if (!(status instanceof SimpleStatus)) {
+      return false;
+    }
+    final String version = ((SimpleStatus) status).getClient();
+    return version != null && version.length() > 0 &&
+      Info.compareVersions(version, Info.getVersion()) >= 0;
+  }
+
 
   public static PlayerActionFactory factory(final ChatServerConnection client) {
     return new PlayerActionFactory() {
@@ -33,6 +33,7 @@ public class ChangePiece extends Command {
   protected String newState, oldState;
   private String id;
   private Command undo;
+  private PieceStateDelta delta;
 
   /**
    * @param id the id of the {@link GamePiece} to change
@@ -45,6 +46,20 @@ public class ChangePiece extends Command {
     this.oldState = oldState;
   }
 
+  /**
+   * Creates a ChangePiece whose old and new states are filled in from
+   * a {@link PieceStateDelta} and the state of the piece when this
+   * Command is executed.
+   *
+   * @param id the id of the {@link GamePiece} to change
+   * @param delta the changed layers of the piece
+   * @since 3.2.17
+   */
+  public ChangePiece(String id, PieceStateDelta delta) {
+    this(id, null, null);
+    this.delta = delta;
+  }
+
   /**
    * When using this constructor, the previous state will be set
    * to that of the piece when this Command is executed.
@@ -59,6 +74,18 @@ public class ChangePiece extends Command {
    */
   protected void executeCommand() {
     GamePiece target = GameModule.getGameModule().getGameState().getPieceForId(id);
+    if (target != null && delta != null) {
+      final String n = delta.resolveNewState(target);
+      final String o = delta.resolveOldState(target);
+      if (n == null || o == null) {
+        // the piece does not have the layers the delta was made for
+        return;
+      }
+      newState = n;
+      oldState = o;
+      delta = null;
+    }
+
     if (target != null) {
       BoundsTracker bounds = new BoundsTracker();
       bounds.addPiece(target);
@@ -92,6 +119,7 @@ public class ChangePiece extends Command {
     }
     if (c instanceof ChangePiece
       && last instanceof ChangePiece
+      && ((ChangePiece) last).delta == null
       && ((ChangePiece) c).id != null
       && ((ChangePiece) c).id.equals(((ChangePiece) last).id)
       && ((ChangePiece) c).newState != null) {
@@ -126,11 +154,26 @@ public class ChangePiece extends Command {
     return oldState;
   }
 
+  /**
+   * @return the layers changed by this Command, if it was created from
+   * a {@link PieceStateDelta} and has not yet been executed
+   * @since 3.2.17
+   */
+  public PieceStateDelta getDelta() {
+    return delta;
+  }
+
   public boolean isNull() {
+    if (delta != null) {
+      return delta.getChangedCount() == 0 && isAtomic();
+    }
     return newState.equals(oldState) && isAtomic();
   }
 
   public String getDetails() {
+    if (delta != null) {
+      return "id="+id+",changedLayers="+delta.getChangedCount();
+    }
     return "id="+id+",oldState="+oldState+",newState="+newState;
   }
 }
@@ -0,0 +1,273 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.command;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import VASSAL.counters.Decorator;
+import VASSAL.counters.GamePiece;
+import VASSAL.counters.PatchableState;
+import VASSAL.tools.SequenceEncoder;
+
+/**
+ * The difference between two states of a {@link GamePiece}, expressed
+ * as the states of only those layers of the piece which changed. Each
+ * {@link Decorator} is one layer, with its state given by
+ * {@link Decorator#myGetState}, and the innermost piece is the last
+ * layer. Layers are numbered from the outermost, starting at zero.
+ *
+ * The full old and new states are recovered by filling in the unchanged
+ * layers from the current state of the piece.
+ *
+ * A changed layer which is a {@link PatchableState} may be given as a
+ * patch to its current state instead of as its old and new states.
+ *
+ * @since 3.2.17
+ */
+public class PieceStateDelta {
+  private final int layerCount;
+  private final int[] layers;
+  private final String[] newStates;
+  private final String[] oldStates;
+  private final boolean[] patched;
+
+  /**
+   * @param layerCount the total number of layers in the piece
+   * @param layers the indices of the changed layers
+   * @param newStates the new states of the changed layers
+   * @param oldStates the old states of the changed layers
+   */
+  public PieceStateDelta(int layerCount, int[] layers,
+                         String[] newStates, String[] oldStates) {
+    this(layerCount, layers, newStates, oldStates, new boolean[layers.length]);
+  }
+
+  /**
+   * @param layerCount the total number of layers in the piece
+   * @param layers the indices of the changed layers
+   * @param newStates the new states of the changed layers, or for
+   * patched layers, the patches
+   * @param oldStates the old states of the changed layers, ignored for
+   * patched layers
+   * @param patched which changed layers are given as patches
+   */
+  public PieceStateDelta(int layerCount, int[] layers, String[] newStates,
+                         String[] oldStates, boolean[] patched) {
+    if (layers.length != newStates.length ||
+        layers.length != oldStates.length ||
+        layers.length != patched.length) {
+      throw new IllegalArgumentException();
+    }
+
+    this.layerCount = layerCount;
+    this.layers = layers;
+    this.newStates = newStates;
+    this.oldStates = oldStates;
+    this.patched = patched;
+  }
+
+  /**
+   * Compute the delta between two full states of a piece.
+   *
+   * @param target the piece, whose structure is used to split the states
+   * @return the delta, or <code>null</code> if either state does not fit
+   * the structure of <code>target</code> or cannot be split losslessly
+   */
+  public static PieceStateDelta compute(GamePiece target,
+                                        String oldState, String newState) {
+    final String[] o = split(target, oldState);
+    final String[] n = split(target, newState);
+    if (o == null || n == null || o.length != n.length) {
+      return null;
+    }
+
+    // the layers must reassemble exactly into the states they came from
+    if (!oldState.equals(join(o)) || !newState.equals(join(n))) {
+      return null;
+    }
+
+    int changed = 0;
+    for (int i = 0; i < n.length; ++i) {
+      if (!n[i].equals(o[i])) ++changed;
+    }
+
+    final int[] layers = new int[changed];
+    final String[] newStates = new String[changed];
+    final String[] oldStates = new String[changed];
+    final boolean[] patched = new boolean[changed];
+    GamePiece p = target;
+    for (int i = 0, j = 0; i < n.length; ++i) {
+      if (!n[i].equals(o[i])) {
+        layers[j] = i;
+        newStates[j] = n[i];
+        oldStates[j] = o[i];
+
+        if (p instanceof PatchableState) {
+          final String patch =
+            ((PatchableState) p).getStatePatch(o[i], n[i]);
+          if (patch != null) {
+            newStates[j] = patch;
+            oldStates[j] = ""; //$NON-NLS-1$
+            patched[j] = true;
+          }
+        }
+        ++j;
+      }
+
+      if (p instanceof Decorator) {
+        p = ((Decorator) p).getInner();
+      }
+    }
+
+    return new PieceStateDelta(n.length, layers, newStates, oldStates,
+                               patched);
+  }
+
+  public int getLayerCount() {
+    return layerCount;
+  }
+
+  /** @return the number of changed layers */
+  public int getChangedCount() {
+    return layers.length;
+  }
+
+  /** @return the index of the <code>i</code>th changed layer */
+  public int getLayer(int i) {
+    return layers[i];
+  }
+
+  /**
+   * @return the new state of the <code>i</code>th changed layer, or its
+   * patch if it is patched
+   */
+  public String getNewState(int i) {
+    return newStates[i];
+  }
+
+  /**
+   * @return whether the <code>i</code>th changed layer is given as a
+   * patch to its current state
+   */
+  public boolean isPatched(int i) {
+    return patched[i];
+  }
+
+  /** @return the old state of the <code>i</code>th changed layer */
+  public String getOldState(int i) {
+    return oldStates[i];
+  }
+
+  /**
+   * @return the full new state of <code>target</code>, or
+   * <code>null</code> if this delta does not fit its structure
+   */
+  public String resolveNewState(GamePiece target) {
+    return resolve(target, newStates, true);
+  }
+
+  /**
+   * @return the full old state of <code>target</code>, or
+   * <code>null</code> if this delta does not fit its structure
+   */
+  public String resolveOldState(GamePiece target) {
+    return resolve(target, oldStates, false);
+  }
+
+  private String resolve(GamePiece target, String[] states,
+                         boolean isNew) {
+    final String[] current = split(target, target.getState());
+    if (current == null || current.length != layerCount) {
+      return null;
+    }
+
+    for (int i = 0; i < layers.length; ++i) {
+      if (layers[i] < 0 || layers[i] >= layerCount) {
+        return null;
+      }
+
+      if (!patched[i]) {
+        current[layers[i]] = states[i];
+      }
+      else if (isNew) {
+        // a patched layer's old state is its current one
+        final GamePiece p = getLayer(target, layers[i]);
+        if (!(p instanceof PatchableState)) {
+          return null;
+        }
+        current[layers[i]] =
+          ((PatchableState) p).applyStatePatch(current[layers[i]], states[i]);
+      }
+    }
+    return join(current);
+  }
+
+  /** @return the given layer of a piece, outermost first */
+  private static GamePiece getLayer(GamePiece target, int layer) {
+    GamePiece p = target;
+    for (int i = 0; i < layer && p instanceof Decorator; ++i) {
+      p = ((Decorator) p).getInner();
+    }
+    return p;
+  }
+
+  /**
+   * Split the full state of a piece into the states of its layers.
+   *
+   * @param target the piece, whose structure is used to split the state
+   * @return the layer states, outermost first, or <code>null</code> if
+   * <code>state</code> has too few layers for <code>target</code>
+   */
+  public static String[] split(GamePiece target, String state) {
+    final List<String> l = new ArrayList<String>();
+    GamePiece p = target;
+    String s = state;
+    while (p instanceof Decorator) {
+      if (s == null) {
+        return null;
+      }
+      final SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(s, '\t');
+      l.add(st.nextToken(""));
+      s = st.nextToken(null);
+      p = ((Decorator) p).getInner();
+    }
+
+    if (s == null) {
+      return null;
+    }
+    l.add(s);
+    return l.toArray(new String[l.size()]);
+  }
+
+  /**
+   * Join layer states into the full state of a piece, as
+   * {@link Decorator#getState} does.
+   *
+   * @param states the layer states, outermost first
+   */
+  public static String join(String[] states) {
+    String s = states[states.length - 1];
+    for (int i = states.length - 2; i >= 0; --i) {
+      s = new SequenceEncoder(states[i], '\t').append(s).getValue();
+    }
+    return s;
+  }
+}
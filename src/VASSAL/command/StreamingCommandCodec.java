@@ -0,0 +1,364 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.command;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads and writes compound {@link Command}s in the delimited format
+ * produced by {@link VASSAL.tools.SequenceEncoder}, without ever holding
+ * the encoding of the whole compound command in memory.
+ *
+ * The output of {@link #encode(Command,Appendable)} is identical to
+ * that of encoding each subcommand with {@link #encodeSubCommand} and
+ * joining the results recursively with a <code>SequenceEncoder</code>,
+ * and {@link #decode(Reader)} accepts exactly what the corresponding
+ * <code>SequenceEncoder.Decoder</code>-based decoding accepts. Only the
+ * encodings of individual (non-compound) commands are materialized as
+ * <code>String</code>s.
+ *
+ * @since 3.2.17
+ */
+public abstract class StreamingCommandCodec {
+  private final char delimiter;
+
+  /**
+   * @param delimiter the character separating subcommands
+   */
+  public StreamingCommandCodec(char delimiter) {
+    this.delimiter = delimiter;
+  }
+
+  /**
+   * Encodes a single, non-compound command.
+   *
+   * @param c the command
+   * @return the encoding of <code>c</code>, or <code>null</code> if no
+   * encoder recognizes it
+   */
+  protected abstract String encodeSubCommand(Command c);
+
+  /**
+   * Decodes a <code>String</code> into a command. This is used for the
+   * encodings of individual commands found in the stream.
+   *
+   * @param command the encoded command
+   * @return the decoded command, or <code>null</code>
+   */
+  protected abstract Command decode(String command);
+
+  /**
+   * Writes the encoding of a command to an {@link Appendable}.
+   *
+   * @param c the command
+   * @param out the destination
+   * @return <code>true</code> if anything was encoded, <code>false</code>
+   * if the encoding is <code>null</code>
+   * @throws IOException if <code>out</code> throws one
+   */
+  public boolean encode(Command c, Appendable out) throws IOException {
+    if (c == null) {
+      return false;
+    }
+
+    final String s = encodeSubCommand(c);
+    final Command[] sub = c.getSubCommands();
+    if (sub.length == 0) {
+      if (s == null) {
+        return false;
+      }
+      out.append(s);
+    }
+    else {
+      writeSequence(s, sub, out);
+    }
+    return true;
+  }
+
+  /**
+   * Reads a command from a {@link Reader}. The whole of the remaining
+   * input is taken to be the encoding of one (possibly compound) command.
+   *
+   * @param in the source
+   * @return the decoded command, or <code>null</code>
+   * @throws IOException if <code>in</code> throws one
+   */
+  public Command decode(Reader in) throws IOException {
+    return readElement(new Element(in), false);
+  }
+
+  /**
+   * Writes the sequence formed by <code>s</code> followed by the
+   * encodings of <code>sub</code>.
+   */
+  private void writeSequence(String s, Command[] sub, Appendable out)
+                                                          throws IOException {
+    if (s != null) {
+      writeElement(s, null, out);
+    }
+
+    for (Command c : sub) {
+      final String ss = encodeSubCommand(c);
+      final Command[] ssub = c.getSubCommands();
+      if (ssub.length == 0 && ss == null) {
+        // null encodings are skipped entirely
+        continue;
+      }
+
+      out.append(delimiter);
+      writeElement(ss, ssub, out);
+    }
+  }
+
+  /**
+   * Writes one element of a sequence, escaping delimiters and quoting
+   * the element in the same way as <code>SequenceEncoder.append</code>.
+   */
+  private void writeElement(String s, Command[] sub, Appendable out)
+                                                          throws IOException {
+    final boolean quoted = isQuoted(s, sub);
+    if (quoted) {
+      out.append('\'');
+    }
+
+    final Appendable esc = new Escaper(out);
+    if (sub == null || sub.length == 0) {
+      esc.append(s);
+    }
+    else {
+      writeSequence(s, sub, esc);
+    }
+
+    if (quoted) {
+      out.append('\'');
+    }
+  }
+
+  /**
+   * @return whether <code>SequenceEncoder</code> would wrap the encoding
+   * formed from <code>s</code> and <code>sub</code> in quotes
+   */
+  private boolean isQuoted(String s, Command[] sub) {
+    final int last = lastChar(s, sub);
+    return last == '\\' || (last == '\'' && startsWithQuote(s, sub));
+  }
+
+  private boolean startsWithQuote(String s, Command[] sub) {
+    if (s == null) {
+      return false;
+    }
+    else if (sub == null || sub.length == 0) {
+      return s.startsWith("'");
+    }
+    else {
+      // the leading element is itself quoted if it ends with a backslash
+      return s.startsWith("'") || s.endsWith("\\");
+    }
+  }
+
+  /**
+   * @return the last character of the encoding formed from <code>s</code>
+   * and <code>sub</code>, or -1 if the encoding is empty
+   */
+  private int lastChar(String s, Command[] sub) {
+    if (sub != null && sub.length > 0) {
+      // find the last subcommand which is actually written
+      for (int i = sub.length - 1; i >= 0; --i) {
+        final String ss = encodeSubCommand(sub[i]);
+        final Command[] ssub = sub[i].getSubCommands();
+        if (ssub.length == 0 && ss == null) continue;
+
+        final int last = lastChar(ss, ssub);
+        if (last == '\\' || (last == '\'' && startsWithQuote(ss, ssub))) {
+          return '\'';
+        }
+        // an empty element leaves the delimiter last
+        return last < 0 ? delimiter : last;
+      }
+
+      if (s != null && s.length() > 0 && isQuoted(s, null)) {
+        return '\'';
+      }
+    }
+
+    return s == null || s.length() == 0 ? -1 : s.charAt(s.length() - 1);
+  }
+
+  /**
+   * Decodes one element. If <code>strip</code> is set, enclosing quotes
+   * are removed as <code>SequenceEncoder.Decoder</code> would do.
+   */
+  private Command readElement(Element e, boolean strip) throws IOException {
+    final int c = e.read();
+    e.unread(c);
+
+    if (c == '\'') {
+      // Quoting cannot be resolved without seeing the end of the element,
+      // so we fall back to decoding the whole element as a String.
+      String s = e.readFully();
+      if (strip && s.length() > 1 && s.endsWith("'")) {
+        s = s.substring(1, s.length() - 1);
+      }
+      return decode(s);
+    }
+
+    final Element first = new Element(e);
+    String s = first.readFully();
+    if (!first.isDelimited()) {
+      // no delimiter, so this is a single command
+      return decode(s);
+    }
+
+    if (s.startsWith("'") && s.endsWith("'") && s.length() > 1) {
+      s = s.substring(1, s.length() - 1);
+    }
+
+    Command cmd = decode(s);
+    Element next;
+    do {
+      next = new Element(e);
+      final Command nc = readElement(next, true);
+      next.readFully();
+      cmd = cmd == null ? nc : cmd.append(nc);
+    } while (next.isDelimited());
+
+    return cmd;
+  }
+
+  /**
+   * An {@link Appendable} which escapes delimiters before passing
+   * characters on.
+   */
+  private class Escaper implements Appendable {
+    private final Appendable out;
+
+    public Escaper(Appendable out) {
+      this.out = out;
+    }
+
+    public Appendable append(char c) throws IOException {
+      if (c == delimiter) {
+        out.append('\\');
+      }
+      out.append(c);
+      return this;
+    }
+
+    public Appendable append(CharSequence csq) throws IOException {
+      return append(csq, 0, csq.length());
+    }
+
+    public Appendable append(CharSequence csq, int start, int end)
+                                                          throws IOException {
+      int begin = start;
+      for (int i = start; i < end; ++i) {
+        if (csq.charAt(i) == delimiter) {
+          out.append(csq, begin, i).append('\\');
+          begin = i;
+        }
+      }
+      out.append(csq, begin, end);
+      return this;
+    }
+  }
+
+  /**
+   * The unescaped characters of one element of a sequence. The root
+   * element spans the whole input; each child element ends at the next
+   * unescaped delimiter in its parent.
+   */
+  private class Element {
+    private static final int NONE = Integer.MIN_VALUE;
+
+    private final Element parent;
+    private final Reader in;
+
+    private int pushback = NONE;
+    private boolean done = false;
+    private boolean delimited = false;
+
+    public Element(Reader in) {
+      this.parent = null;
+      this.in = in;
+    }
+
+    public Element(Element parent) {
+      this.parent = parent;
+      this.in = null;
+    }
+
+    public int read() throws IOException {
+      if (pushback != NONE) {
+        final int c = pushback;
+        pushback = NONE;
+        return c;
+      }
+
+      if (done) {
+        return -1;
+      }
+
+      if (parent == null) {
+        final int c = in.read();
+        if (c < 0) {
+          done = true;
+        }
+        return c;
+      }
+
+      final int c = parent.read();
+      if (c < 0) {
+        done = true;
+        return -1;
+      }
+      else if (c == delimiter) {
+        done = true;
+        delimited = true;
+        return -1;
+      }
+      else if (c == '\\') {
+        // a backslash before a delimiter escapes it
+        final int n = parent.read();
+        if (n == delimiter) {
+          return n;
+        }
+        parent.unread(n);
+      }
+      return c;
+    }
+
+    public void unread(int c) {
+      pushback = c;
+    }
+
+    public boolean isDelimited() {
+      return delimited;
+    }
+
+    public String readFully() throws IOException {
+      final StringBuilder sb = new StringBuilder();
+      for (int c = read(); c >= 0; c = read()) {
+        sb.append((char) c);
+      }
+      return sb.toString();
+    }
+  }
+}
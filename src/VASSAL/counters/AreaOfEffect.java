@@ -72,7 +72,7 @@ import VASSAL.tools.SequenceEncoder;
  *
  * Displays a transparency surrounding the GamePiece which represents the Area of Effect of the GamePiece
  */
-public class AreaOfEffect extends Decorator implements TranslatablePiece, MapShader.ShadedPiece {
+public class AreaOfEffect extends Decorator implements TranslatablePiece, MapShader.KeyedShadedPiece {
   public static final String ID = "AreaOfEffect;";
   protected static final Color defaultTransparencyColor = Color.GRAY;
   protected static final float defaultTransparencyLevel = 0.3F;
@@ -317,6 +317,23 @@ public class AreaOfEffect extends Decorator implements TranslatablePiece, MapSha
     return a;
   }
 
+  /**
+   * The radius of an area which is not fixed is read from a property,
+   * which may be one of the map or the module rather than of the piece.
+   *
+   * @since 3.2.17
+   */
+  public String getAreaKey(MapShader shader) {
+    final MapShader.ShadedPiece shaded = (MapShader.ShadedPiece) Decorator.getDecorator(piece,MapShader.ShadedPiece.class);
+    final String key = shaded instanceof MapShader.KeyedShadedPiece ?
+      ((MapShader.KeyedShadedPiece) shaded).getAreaKey(shader) : "";
+    if (fixedRadius) {
+      return key;
+    }
+    return key + radiusMarker + '=' +
+      Decorator.getOutermost(this).getProperty(radiusMarker) + ';';
+  }
+
   protected static class TraitEditor implements PieceEditor {
     protected JPanel panel;
     protected ColorConfigurer transparencyColorValue;
@@ -98,6 +98,17 @@ public class BasicPiece implements TranslatablePiece, StateMergeable, PropertyNa
   private Point pos = new Point(0, 0);
   private String id;
   private java.util.Map<Object, Object> props;
+
+  /*
+   * The board and zone containing the piece, cached for property lookups.
+   * The cache holds for the map, position and map layout version at which
+   * it was filled, so any move of the piece or its stack invalidates it.
+   */
+  private Map locationMap;
+  private Point locationPos;
+  private int locationVersion;
+  private Board locationBoard;
+  private Zone locationZone;
   /** @deprecated Moved into own traits, retained for backward compatibility */
   @Deprecated
   private char cloneKey;
@@ -190,20 +201,16 @@ public class BasicPiece implements TranslatablePiece, StateMergeable, PropertyNa
       }
      }
     else if (CURRENT_BOARD.equals(key)) {
-      if (getMap() != null) {
-        final Board b = getMap().findBoard(getPosition());
-        if (b != null) {
-          return b.getName();
-        }
+      final Board b = getCurrentBoard();
+      if (b != null) {
+        return b.getName();
       }
       return "";
     }
     else if (CURRENT_ZONE.equals(key)) {
-      if (getMap() != null) {
-        final Zone z = getMap().findZone(getPosition());
-        if (z != null) {
-          return z.getName();
-        }
+      final Zone z = getCurrentZone();
+      if (z != null) {
+        return z.getName();
       }
       return "";
     }
@@ -219,7 +226,7 @@ public class BasicPiece implements TranslatablePiece, StateMergeable, PropertyNa
     Object prop = props == null ? null : props.get(key);
     if (prop == null) {
       final Map map = getMap();
-      final Zone zone = (map == null ? null : map.findZone(getPosition()));
+      final Zone zone = getCurrentZone();
       if (zone != null) {
         prop = zone.getProperty(key);
       }
@@ -276,20 +283,16 @@ public class BasicPiece implements TranslatablePiece, StateMergeable, PropertyNa
       }
     }
     else if (CURRENT_BOARD.equals(key)) {
-      if (getMap() != null) {
-        final Board b = getMap().findBoard(getPosition());
-        if (b != null) {
-          return b.getLocalizedName();
-        }
+      final Board b = getCurrentBoard();
+      if (b != null) {
+        return b.getLocalizedName();
       }
       return "";
     }
     else if (CURRENT_ZONE.equals(key)) {
-      if (getMap() != null) {
-        final Zone z = getMap().findZone(getPosition());
-        if (z != null) {
-          return z.getLocalizedName();
-        }
+      final Zone z = getCurrentZone();
+      if (z != null) {
+        return z.getLocalizedName();
       }
       return "";
     }
@@ -305,7 +308,7 @@ public class BasicPiece implements TranslatablePiece, StateMergeable, PropertyNa
     Object prop = props == null ? null : props.get(key);
     if (prop == null) {
       final Map map = getMap();
-      final Zone zone = (map == null ? null : map.findZone(getPosition()));
+      final Zone zone = getCurrentZone();
       if (zone != null) {
         prop = zone.getLocalizedProperty(key);
       }
@@ -385,6 +388,46 @@ public class BasicPiece implements TranslatablePiece, StateMergeable, PropertyNa
     return true;
   }
 
+  /**
+   * @return the {@link Board} containing this piece, or <code>null</code>
+   * if it is on no board
+   * @since 3.2.17
+   */
+  protected Board getCurrentBoard() {
+    updateLocationCache();
+    return locationBoard;
+  }
+
+  /**
+   * @return the {@link Zone} containing this piece, or <code>null</code>
+   * if it is in no zone
+   * @since 3.2.17
+   */
+  protected Zone getCurrentZone() {
+    updateLocationCache();
+    return locationZone;
+  }
+
+  private void updateLocationCache() {
+    final Map m = getMap();
+    final Point p = getPosition();
+    if (m != locationMap || !p.equals(locationPos) ||
+        locationVersion != Map.getLayoutVersion()) {
+      locationMap = m;
+      locationPos = p;
+      locationVersion = Map.getLayoutVersion();
+      if (m == null) {
+        locationBoard = null;
+        locationZone = null;
+      }
+      else {
+        locationBoard = m.findBoard(p);
+        // findZone translates the point it is given
+        locationZone = m.findZone(new Point(p));
+      }
+    }
+  }
+
   public Point getPosition() {
     return getParent() == null ? new Point(pos) : getParent().getPosition();
   }
@@ -395,7 +438,9 @@ public class BasicPiece implements TranslatablePiece, StateMergeable, PropertyNa
     }
     pos = p;
     if (getMap() != null && getParent() == null) {
-      getMap().repaint(getMap().boundingBoxOf(Decorator.getOutermost(this)));
+      final GamePiece outer = Decorator.getOutermost(this);
+      getMap().pieceChanged(outer);
+      getMap().repaint(getMap().boundingBoxOf(outer));
     }
   }
 
@@ -31,22 +31,33 @@ import VASSAL.build.module.Map;
  */
 public class BoundsTracker {
   private Set<Map> maps;
+  private Set<GamePiece> pieces;
 
   public BoundsTracker() {
     maps = new HashSet<Map>();
+    pieces = new HashSet<GamePiece>();
   }
 
   public void clear() {
     maps.clear();
+    pieces.clear();
   }
 
   public void addPiece(GamePiece p) {
     if (p.getMap() != null) {
       maps.add(p.getMap());
+      pieces.add(p);
     }
   }
 
   public void repaint() {
+    // the tracked pieces may have changed their bounds
+    for (GamePiece p : pieces) {
+      if (p.getMap() != null) {
+        p.getMap().pieceChanged(p);
+      }
+    }
+
     for (Map m : maps) {
       m.repaint();
     }
@@ -137,6 +137,17 @@ public class Deck extends Stack implements PlayerRoster.SideChangeListener {
   protected int maxStack = 10;
   protected CountExpression[] countExpressions = new CountExpression[0];
   protected boolean expressionCounting = false;
+
+  /*
+   * The count of pieces matching each count expression, and the filter
+   * parsed from each expression, which is parsed again only when the
+   * properties substituted into the expression change its text.
+   */
+  protected int[] expressionCounts = new int[0];
+  protected FormattedString[] countFormats = new FormattedString[0];
+  protected String[] countFilterTexts = new String[0];
+  protected PieceFilter[] countFilters = new PieceFilter[0];
+
   protected List<GamePiece> nextDraw = null;
   protected KeyCommand[] commands;
   protected List<DeckGlobalKeyCommand> globalCommands =
@@ -224,15 +235,57 @@ public class Deck extends Stack implements PlayerRoster.SideChangeListener {
     if (!doesExpressionCounting() || getMap() == null) {
       return;
     }
-    //Clear out all of the registered count expressions
-    for (int index = 0; index < countExpressions.length; index++) {
-      expressionProperties.get(index).setPropertyValue("0"); //$NON-NLS-1$
-    }
-    //Increase all of the pieces with expressions specified in this deck
+    updateCountFilters();
+    recountAll(null);
+    fireCountProperties();
+  }
+
+  /**
+   * Count the pieces matching each expression afresh
+   * @param exclude a piece about to be removed, which is not counted
+   */
+  private void recountAll(GamePiece exclude) {
+    Arrays.fill(expressionCounts, 0);
     for (Iterator<GamePiece> i = getPiecesIterator(); i.hasNext();) {
       final GamePiece p = i.next();
-      if (p != null) {
-        updateCounts(p,true);
+      if (p != null && p != exclude) {
+        count(p, 1);
+      }
+    }
+  }
+
+  private void count(GamePiece p, int delta) {
+    for (int index = 0; index < countFilters.length; index++) {
+      if (countFilters[index].accept(p)) {
+        expressionCounts[index] += delta;
+      }
+    }
+  }
+
+  /**
+   * Parse the count expressions whose text has changed since they were
+   * last parsed, as the properties substituted into them have changed
+   * @return true if any filter changed, so that the counts are stale
+   */
+  private boolean updateCountFilters() {
+    boolean changed = false;
+    for (int index = 0; index < countFormats.length; index++) {
+      final String text = countFormats[index].getText();
+      if (!text.equals(countFilterTexts[index])) {
+        countFilterTexts[index] = text;
+        countFilters[index] = PropertiesPieceFilter.parse(text);
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  private void fireCountProperties() {
+    for (int index = 0; index < expressionCounts.length; index++) {
+      final MutableProperty.Impl prop = expressionProperties.get(index);
+      final String value = String.valueOf(expressionCounts[index]);
+      if (!value.equals(prop.getPropertyValue())) {
+        prop.setPropertyValue(value);
       }
     }
   }
@@ -262,33 +315,21 @@ public class Deck extends Stack implements PlayerRoster.SideChangeListener {
   }
 
   /**
-  * Update map-level count property for a piece
+  * Update map-level count property for a piece. A piece being added is
+  * already in the deck, and a piece being removed is still in it.
   * @param piece, increase
   */
   private void updateCounts(GamePiece p, boolean increase) {
     if (!doesExpressionCounting() || getMap() == null) {
       return;
     }
-    //test all the expressions for this deck
-    for (int index = 0;index < countExpressions.length;index++) {
-      MutableProperty.Impl prop = expressionProperties.get(index);
-      FormattedString formatted =
-        new FormattedString(countExpressions[index].getExpression());
-      PieceFilter f = PropertiesPieceFilter.parse(formatted.getText());
-      if (f.accept(p)) {
-        String mapProperty = prop.getPropertyValue();
-          if (mapProperty != null) {
-            int newValue = (Integer.decode(mapProperty)).intValue();
-            if (increase) {
-              newValue++;
-            }
-            else {
-              newValue--;
-            }
-            prop.setPropertyValue(String.valueOf(newValue));
-          }
-      }
+    if (updateCountFilters()) {
+      recountAll(increase ? null : p);
     }
+    else {
+      count(p, increase ? 1 : -1);
+    }
+    fireCountProperties();
   }
 
   /**
@@ -558,6 +599,13 @@ public class Deck extends Stack implements PlayerRoster.SideChangeListener {
     }
 
     this.countExpressions = ArrayUtils.copyOf(c, goodExpressionCount);
+    expressionCounts = new int[countExpressions.length];
+    countFormats = new FormattedString[countExpressions.length];
+    countFilterTexts = new String[countExpressions.length];
+    countFilters = new PieceFilter[countExpressions.length];
+    for (int i = 0; i < countExpressions.length; i++) {
+      countFormats[i] = new FormattedString(countExpressions[i].getExpression());
+    }
     while (countExpressions.length > expressionProperties.size()) {
       expressionProperties.add(new MutableProperty.Impl("",this));
     }
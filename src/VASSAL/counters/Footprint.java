@@ -33,10 +33,8 @@ import java.awt.RenderingHints;
 import java.awt.Shape;
 import java.awt.Stroke;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.Iterator;
 import java.util.List;
 
 import javax.swing.Box;
@@ -63,7 +61,7 @@ import VASSAL.tools.image.ImageUtils;
 /**
  * Displays a movement trail indicating where a piece has been moved
  */
-public class Footprint extends MovementMarkable {
+public class Footprint extends MovementMarkable implements PatchableState {
 
   public static final String ID = "footprint;";
   private KeyCommand[] commands;
@@ -72,7 +70,7 @@ public class Footprint extends MovementMarkable {
   protected boolean globalVisibility = false;  // Shared trail visibility (if globallyVisible == true)
   protected String startMapId = "";            // Map Id trail started on
                                                // List of points
-  protected List<Point> pointList = new ArrayList<Point>();
+  protected List<Point> pointList = new Trail();
 
   // Type Variables (Configured in Ed)
   protected NamedKeyStroke trailKey;                // Control Key to invoke
@@ -108,6 +106,7 @@ public class Footprint extends MovementMarkable {
   protected boolean localVisibility;
 
   protected double lineWidth;
+  protected int maxPoints;                     // Most trail points kept, or 0 for all
   private KeyCommand showTrailCommand;
 
   public Footprint() {
@@ -119,6 +118,19 @@ public class Footprint extends MovementMarkable {
     setInner(p);
   }
 
+  /**
+   * @return the points of the trail as a {@link Trail}, which
+   * {@link #pointList} holds unless a subclass has replaced it
+   */
+  private Trail trail() {
+    if (!(pointList instanceof Trail)) {
+      final Trail t = new Trail();
+      t.addAll(pointList);
+      pointList = t;
+    }
+    return (Trail) pointList;
+  }
+
   /** @deprecated Use {@link #pointList} directly. */
   @Deprecated
   protected Enumeration<Point> getPointList() {
@@ -131,32 +143,112 @@ public class Footprint extends MovementMarkable {
       new SequenceEncoder.Decoder(newState, ';');
     globalVisibility = ss.nextBoolean(initiallyVisible);
     startMapId = ss.nextToken("");
-    final int items = ss.nextInt(0);
-    for (int i = 0; i < items; i++) {
+    readPoints(ss, ss.nextInt(0), trail());
+    myBoundingBox = null;
+  }
+
+  public String myGetState() {
+    return encodeState(String.valueOf(globalVisibility), startMapId, trail());
+  }
+
+  private static void readPoints(SequenceEncoder.Decoder ss, int items,
+                                 Trail t) {
+    for (int i = 0; i < items && ss.hasMoreTokens(); i++) {
       final String point = ss.nextToken("");
       if (point.length() != 0) {
         final SequenceEncoder.Decoder sp =
           new SequenceEncoder.Decoder(point, ',');
         final int x = sp.nextInt(0);
         final int y = sp.nextInt(0);
-        pointList.add(new Point(x, y));
+        t.add(x, y);
       }
     }
   }
 
-  public String myGetState() {
+  private static String encodeState(String visibility, String mapId,
+                                    Trail t) {
     final SequenceEncoder se = new SequenceEncoder(';');
-    se.append(globalVisibility)
-      .append(startMapId)
-      .append(pointList.size());
+    se.append(visibility)
+      .append(mapId)
+      .append(t.size());
 
-    for (Point p : pointList) {
-      se.append(p.x + "," + p.y);
+    for (int i = 0; i < t.size(); ++i) {
+      se.append(t.getX(i) + "," + t.getY(i));
     }
 
     return se.getValue();
   }
 
+  /**
+   * A patch is the visibility and map of the new state, the number of
+   * points dropped from the start of the old trail, and the points
+   * added to its end.
+   */
+  public String getStatePatch(String oldState, String newState) {
+    final SequenceEncoder.Decoder os =
+      new SequenceEncoder.Decoder(oldState, ';');
+    os.nextToken("");
+    os.nextToken("");
+    final Trail ot = new Trail();
+    readPoints(os, os.nextInt(0), ot);
+
+    final SequenceEncoder.Decoder ns =
+      new SequenceEncoder.Decoder(newState, ';');
+    final String visibility = ns.nextToken("");
+    final String mapId = ns.nextToken("");
+    final Trail nt = new Trail();
+    readPoints(ns, ns.nextInt(0), nt);
+
+    // find the fewest points dropped from the start of the old trail
+    // which leave a start of the new trail
+    for (int dropped = 0; dropped < ot.size(); ++dropped) {
+      final int kept = ot.size() - dropped;
+      if (kept <= nt.size() && startsWith(nt, ot, dropped)) {
+        final SequenceEncoder se = new SequenceEncoder(';');
+        se.append(visibility)
+          .append(mapId)
+          .append(dropped);
+        for (int i = kept; i < nt.size(); ++i) {
+          se.append(nt.getX(i) + "," + nt.getY(i));
+        }
+
+        final String patch = se.getValue();
+        return patch.length() < newState.length() ? patch : null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return whether <code>t</code> starts with the points of
+   * <code>u</code> after the first <code>from</code>
+   */
+  private static boolean startsWith(Trail t, Trail u, int from) {
+    for (int i = from; i < u.size(); ++i) {
+      if (t.getX(i - from) != u.getX(i) || t.getY(i - from) != u.getY(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public String applyStatePatch(String oldState, String patch) {
+    final SequenceEncoder.Decoder os =
+      new SequenceEncoder.Decoder(oldState, ';');
+    os.nextToken("");
+    os.nextToken("");
+    final Trail t = new Trail();
+    readPoints(os, os.nextInt(0), t);
+
+    final SequenceEncoder.Decoder ps = new SequenceEncoder.Decoder(patch, ';');
+    final String visibility = ps.nextToken("");
+    final String mapId = ps.nextToken("");
+    t.removeFirst(ps.nextInt(0));
+    readPoints(ps, Integer.MAX_VALUE, t);
+
+    return encodeState(visibility, mapId, t);
+  }
+
   /**
    * Type is the character command that toggles footprint visiblity
    */
@@ -176,6 +268,7 @@ public class Footprint extends MovementMarkable {
     edgePointBuffer = st.nextInt(DEFAULT_EDGE_POINT_BUFFER);
     edgeDisplayBuffer = st.nextInt(DEFAULT_EDGE_DISPLAY_BUFFER);
     lineWidth = st.nextDouble(LINE_WIDTH);
+    maxPoints = st.nextInt(0);
 
     commands = null;
     showTrailCommand = null;
@@ -200,7 +293,8 @@ public class Footprint extends MovementMarkable {
       .append(unSelectedTransparency)
       .append(edgePointBuffer)
       .append(edgeDisplayBuffer)
-      .append(lineWidth);
+      .append(lineWidth)
+      .append(maxPoints);
     return ID + se.getValue();
   }
 
@@ -277,31 +371,12 @@ public class Footprint extends MovementMarkable {
    * trail.
    */
   protected void addPoint(Point p) {
-    pointList.add(p);
-    myBoundingBox = null;
-  }
-
-  private Rectangle getBB() {
-    final Rectangle bb = piece.boundingBox();
-    final Point pos = piece.getPosition();
-
-    bb.x += pos.x;
-    bb.y += pos.y;
-
-    final int circleDiameter = 2*circleRadius;
-    final Rectangle pr = new Rectangle();
-
-    for (final Point p: pointList) {
-      pr.setBounds(
-        p.x - circleRadius, p.y - circleRadius, circleDiameter, circleDiameter
-      );
-      bb.add(pr);
+    final Trail t = trail();
+    t.add(p);
+    if (maxPoints > 0 && t.size() > maxPoints) {
+      t.removeFirst(t.size() - maxPoints);
     }
-
-    bb.x -= pos.x;
-    bb.y -= pos.y;
-
-    return bb;
+    myBoundingBox = null;
   }
 
   public void redraw() {
@@ -315,7 +390,6 @@ public class Footprint extends MovementMarkable {
     return "Movement trail";
   }
 
-// FIXME: This method is inefficient.
   public void draw(Graphics g, int x, int y, Component obs, double zoom) {
     piece.draw(g, x, y, obs, zoom);
 
@@ -417,41 +491,48 @@ public class Footprint extends MovementMarkable {
     final Point here = getPosition();
 
     /*
-     * Draw the tracks between trail points
+     * Only the tracks and points which fall within the clip, in map
+     * coordinates and widened by the size of a point, need be drawn.
      */
-    int x1, y1, x2, y2;
-    final Iterator<Point> i = pointList.iterator();
-    Point cur = i.next(), next;
-    while (i.hasNext()) {
-      next = i.next();
-
-      x1 = (int)(cur.x * zoom);
-      y1 = (int)(cur.y * zoom);
-      x2 = (int)(next.x * zoom);
-      y2 = (int)(next.y * zoom);
-
-      drawTrack(g, x1, y1, x2, y2, zoom);
-
-      cur = next;
+    final Rectangle clip = g.getClipBounds();
+    final Rectangle mapClip = clip == null ? null : new Rectangle(
+      (int) Math.floor(clip.x / zoom),
+      (int) Math.floor(clip.y / zoom),
+      (int) Math.ceil(clip.width / zoom) + 1,
+      (int) Math.ceil(clip.height / zoom) + 1
+    );
+    if (mapClip != null) {
+      final int margin = circleRadius + (int) Math.ceil(lineWidth) + 1;
+      mapClip.grow(margin, margin);
     }
 
-    if (!here.equals(cur)) {
-      x1 = (int)(cur.x * zoom);
-      y1 = (int)(cur.y * zoom);
-      x2 = (int)(here.x * zoom);
-      y2 = (int)(here.y * zoom);
+    /*
+     * Draw the tracks between trail points
+     */
+    int x1, y1;
+    final Trail t = trail();
+    final int n = t.size();
+    for (int i = 1; i < n; ++i) {
+      drawTrackIfVisible(g, t.getX(i-1), t.getY(i-1),
+                         t.getX(i), t.getY(i), zoom, mapClip);
+    }
 
-      drawTrack(g, x1, y1, x2, y2, zoom);
+    final int lastX = t.getX(n-1);
+    final int lastY = t.getY(n-1);
+    if (here.x != lastX || here.y != lastY) {
+      drawTrackIfVisible(g, lastX, lastY, here.x, here.y, zoom, mapClip);
     }
 
     /*
      * And draw the points themselves.
      */
-    int elementCount = -1;
-    for (final Point p : pointList) {
-      ++elementCount;
+    for (int elementCount = 0; elementCount < n; ++elementCount) {
+      final int px = t.getX(elementCount);
+      final int py = t.getY(elementCount);
 
-      if (circleRect.contains(p) && !p.equals(here)) {
+      if (circleRect.contains(px, py) && (px != here.x || py != here.y) &&
+          (mapClip == null || mapClip.contains(px, py))) {
+        final Point p = new Point(px, py);
         drawPoint(g, p, zoom, elementCount);
 
         // Is there an Icon to draw in the circle?
@@ -492,6 +573,25 @@ public class Footprint extends MovementMarkable {
     g.setClip(oldClip);
   }
 
+  /**
+   * Draw the track between two points of the trail, given in map
+   * coordinates, unless it lies wholly outside of the clip.
+   */
+  private void drawTrackIfVisible(Graphics g, int x1, int y1, int x2, int y2,
+                                  double zoom, Rectangle mapClip) {
+    if (mapClip != null) {
+      if (Math.max(x1, x2) < mapClip.x ||
+          Math.min(x1, x2) >= mapClip.x + mapClip.width ||
+          Math.max(y1, y2) < mapClip.y ||
+          Math.min(y1, y2) >= mapClip.y + mapClip.height) {
+        return;
+      }
+    }
+
+    drawTrack(g, (int)(x1 * zoom), (int)(y1 * zoom),
+                 (int)(x2 * zoom), (int)(y2 * zoom), zoom);
+  }
+
   /**
    * Draw a Circle at the given point.
    * Override this method to do something different (eg. display an Icon)
@@ -575,13 +675,10 @@ public class Footprint extends MovementMarkable {
       bb.x += pos.x;
       bb.y += pos.y;
 
-      final int circleDiameter = 2*circleRadius;
-      final Rectangle pr = new Rectangle();
-
-      for (final Point p: pointList) {
-        pr.setBounds(
-          p.x - circleRadius, p.y - circleRadius, circleDiameter, circleDiameter
-        );
+      // the circles around the points
+      final Rectangle pr = trail().getBounds();
+      if (pr != null) {
+        pr.grow(circleRadius, circleRadius);
         bb.add(pr);
       }
 
@@ -666,6 +763,7 @@ public class Footprint extends MovementMarkable {
     private IntConfigurer pb;
     private IntConfigurer db;
     private DoubleConfigurer lw;
+    private IntConfigurer mp;
 
     public Ed(Footprint p) {
       controls = new JPanel();
@@ -715,6 +813,9 @@ public class Footprint extends MovementMarkable {
       b.add(db.getControls());
       b.add(new JLabel("pixels"));
       controls.add(b);
+
+      mp = new IntConfigurer(null, "Maximum Trail Points (0 for no limit):  ", p.maxPoints);
+      controls.add(mp.getControls());
     }
 
     public String getState() {
@@ -735,7 +836,8 @@ public class Footprint extends MovementMarkable {
         .append(ut.getValueString())
         .append(pb.getValueString())
         .append(db.getValueString())
-        .append(lw.getValueString());
+        .append(lw.getValueString())
+        .append(mp.getValueString());
       return se.getValue();
     }
 
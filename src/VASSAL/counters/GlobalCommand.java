@@ -25,6 +25,8 @@ import javax.swing.KeyStroke;
 import VASSAL.build.GameModule;
 import VASSAL.build.module.Chatter;
 import VASSAL.build.module.Map;
+import VASSAL.build.module.map.boardPicker.Board;
+import VASSAL.build.module.map.boardPicker.board.mapgrid.Zone;
 import VASSAL.build.module.properties.PropertySource;
 import VASSAL.command.Command;
 import VASSAL.command.NullCommand;
@@ -109,12 +111,25 @@ public class GlobalCommand {
           GameModule.getGameModule().getChatter(), "*" + reportText);
         c.execute();
       }
+      // Location terms of the filter select the maps and pieces to visit
+      final String mapName = PropertiesPieceFilter.getRequiredValue(
+        filter, BasicPiece.CURRENT_MAP);
+      final String boardName = PropertiesPieceFilter.getRequiredValue(
+        filter, BasicPiece.CURRENT_BOARD);
+      final String zoneName = PropertiesPieceFilter.getRequiredValue(
+        filter, BasicPiece.CURRENT_ZONE);
+
       for (int mapI = 0; mapI < m.length; ++mapI) {
+        if (mapName != null && !mapName.equals(m[mapI].getConfigureName())) {
+          continue;
+        }
         Visitor visitor = new Visitor(c, filter, keyStroke);
         DeckVisitorDispatcher dispatcher = new DeckVisitorDispatcher(visitor);
         GamePiece[] p = m[mapI].getPieces();
         for (int i = 0; i < p.length; ++i) {
-          dispatcher.accept(p[i]);
+          if (isAtLocation(m[mapI], p[i], boardName, zoneName)) {
+            dispatcher.accept(p[i]);
+          }
         }
         visitor.getTracker().repaint();
         c = visitor.getCommand();
@@ -133,6 +148,52 @@ public class GlobalCommand {
     return c;
   }
 
+  /**
+   * Checks whether a piece, stack or deck on a map is on the given board
+   * and in the given zone. Every piece in a stack or deck is where the
+   * stack or deck is, so this selects the pieces a filter requiring those
+   * values of {@link BasicPiece#CURRENT_BOARD} and
+   * {@link BasicPiece#CURRENT_ZONE} can accept.
+   *
+   * @param boardName the name of the board, or <code>null</code> for any
+   * @param zoneName the name of the zone, or <code>null</code> for any
+   */
+  protected boolean isAtLocation(Map m, GamePiece p,
+                                 String boardName, String zoneName) {
+    if (boardName != null) {
+      final Board b = m.findBoard(p.getPosition());
+      if (!boardName.equals(b == null ? "" : b.getName())) { //$NON-NLS-1$
+        return false;
+      }
+    }
+    if (zoneName != null) {
+      final Zone z = m.findZone(p.getPosition());
+      if (!zoneName.equals(z == null ? "" : z.getName())) { //$NON-NLS-1$
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * A snapshot of a piece is needed only by a {@link ReportState} trait,
+   * which reports the piece as it was before a command. The traits of
+   * any prototypes the piece uses are searched as well.
+   *
+   * @return whether to store a {@link Properties#SNAPSHOT} of the piece
+   * before applying the command to it
+   */
+  protected boolean needsSnapshot(GamePiece p) {
+    while (p instanceof Decorator) {
+      if (p instanceof ReportState) {
+        return true;
+      }
+      p = p instanceof UsePrototype ?
+        ((UsePrototype) p).getExpandedInner() : ((Decorator) p).getInner();
+    }
+    return false;
+  }
+
   protected class Visitor implements DeckVisitor {
     private Command command;
     private BoundsTracker tracker;
@@ -172,7 +233,9 @@ public class GlobalCommand {
     private void apply(GamePiece p) {
       if (filter == null || filter.accept(p)) {
         tracker.addPiece(p);
-        p.setProperty(Properties.SNAPSHOT, PieceCloner.getInstance().clonePiece(p));
+        if (needsSnapshot(p)) {
+          p.setProperty(Properties.SNAPSHOT, PieceCloner.getInstance().clonePiece(p));
+        }
         command.append(p.keyEvent(stroke));
         tracker.addPiece(p);
       }
@@ -19,11 +19,14 @@
 package VASSAL.counters;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import VASSAL.command.Command;
 import VASSAL.command.NullCommand;
@@ -31,12 +34,14 @@ import VASSAL.command.NullCommand;
 
 public class KeyBuffer {
   private static KeyBuffer theBuffer;
-  private List<GamePiece> pieces;
+  // GamePieces do not override equals() or hashCode(), so this is hashed
+  // by identity, and keeps the order in which pieces were selected
+  private Set<GamePiece> pieces;
   private BoundsTracker bounds;
   private Comparator<GamePiece> pieceSorter = new PieceSorter();
 
   private KeyBuffer() {
-    pieces = new ArrayList<GamePiece>();
+    pieces = new LinkedHashSet<GamePiece>();
     bounds = new BoundsTracker();
   }
 
@@ -53,14 +58,23 @@ public class KeyBuffer {
   }
 
   public void add(GamePiece p) {
-// FIXME: should we use a HashSet or LinkedHashSet instead to make contains()
-// checks faster? Is insertion order important?
-    if (p != null && !pieces.contains(p)) {
-      pieces.add(p);
+    if (p != null && pieces.add(p)) {
       p.setProperty(Properties.SELECTED, Boolean.TRUE);
     }
   }
 
+  /**
+   * Adds each of the given pieces which is not already selected.
+   *
+   * @param c the pieces to select
+   * @since 3.2.17
+   */
+  public void addAll(Collection<? extends GamePiece> c) {
+    for (GamePiece p : c) {
+      add(p);
+    }
+  }
+
   public void clear() {
     for (GamePiece p : pieces) {
       p.setProperty(Properties.SELECTED, null);
@@ -75,6 +89,18 @@ public class KeyBuffer {
     }
   }
 
+  /**
+   * Removes each of the given pieces.
+   *
+   * @param c the pieces to deselect
+   * @since 3.2.17
+   */
+  public void removeAll(Collection<? extends GamePiece> c) {
+    for (GamePiece p : c) {
+      remove(p);
+    }
+  }
+
   public boolean contains(GamePiece p) {
     if (p instanceof Stack) {
       for (Iterator<GamePiece> i = ((Stack) p).getPiecesIterator();
@@ -135,7 +161,10 @@ public class KeyBuffer {
   }
 
   public void sort(Comparator<GamePiece> comp) {
-    Collections.sort(pieces, comp);
+    final List<GamePiece> l = new ArrayList<GamePiece>(pieces);
+    Collections.sort(l, comp);
+    pieces.clear();
+    pieces.addAll(l);
   }
 
   /**
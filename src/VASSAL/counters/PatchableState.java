@@ -0,0 +1,45 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.counters;
+
+/**
+ * A {@link Decorator} whose state grows in small steps, such as points
+ * added to a list, so that a change to it can be sent as a patch to the
+ * old state rather than as the whole new state.
+ *
+ * @see VASSAL.command.PieceStateDelta
+ * @since 3.2.17
+ */
+public interface PatchableState {
+  /**
+   * @param oldState a state of this layer, as from {@link Decorator#myGetState}
+   * @param newState a later state of this layer
+   * @return a patch turning <code>oldState</code> into
+   * <code>newState</code>, or <code>null</code> if there is none shorter
+   * than <code>newState</code>
+   */
+  String getStatePatch(String oldState, String newState);
+
+  /**
+   * @param oldState a state of this layer
+   * @param patch a patch from {@link #getStatePatch}
+   * @return the state the patch makes of <code>oldState</code>
+   */
+  String applyStatePatch(String oldState, String patch);
+}
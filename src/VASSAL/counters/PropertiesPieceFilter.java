@@ -122,6 +122,30 @@ public class PropertiesPieceFilter {
     return f;
   }
 
+  /**
+   * Gets the value a property must have for a filter to accept a piece.
+   * A filter requires a value if it tests the property for equality with
+   * the value, or if it is an "and" of filters one of which requires it.
+   *
+   * @param f the filter
+   * @param name the name of the property
+   * @return the required value, or <code>null</code> if the filter may
+   * accept a piece whatever the value of the property
+   * @since 3.2.17
+   */
+  public static String getRequiredValue(PieceFilter f, String name) {
+    if (f instanceof EQ) {
+      final EQ eq = (EQ) f;
+      return eq.name.equals(name) ? eq.value : null;
+    }
+    else if (f instanceof BooleanAndPieceFilter) {
+      final BooleanAndPieceFilter and = (BooleanAndPieceFilter) f;
+      final String value = getRequiredValue(and.getFilter1(), name);
+      return value != null ? value : getRequiredValue(and.getFilter2(), name);
+    }
+    return null;
+  }
+
   public static String toBeanShellString(String s) {
     return toBeanShellString(parse(s));
   }
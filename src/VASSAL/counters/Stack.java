@@ -24,6 +24,7 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.geom.Area;
+import java.awt.geom.GeneralPath;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Iterator;
@@ -55,6 +56,7 @@ public class Stack implements GamePiece, StateMergeable {
 
   protected Map map;
   private static StackMetrics defaultMetrics;
+  private Geometry geometry;
 
   public Stack() {
     this(null);
@@ -131,6 +133,7 @@ public class Stack implements GamePiece, StateMergeable {
         contents[i] = contents[i + 1];
       }
       expanded = expanded && pieceCount > 1;
+      boundsChanged();
     }
   }
 
@@ -163,11 +166,23 @@ public class Stack implements GamePiece, StateMergeable {
 
     contents[index] = p;
     pieceCount++;
+    boundsChanged();
   }
 
   public void removeAll() {
     pieceCount = 0;
     expanded = false;
+    boundsChanged();
+  }
+
+  /**
+   * Tell our map that our position or extent may have changed.
+   */
+  protected void boundsChanged() {
+    geometry = null;
+    if (map != null) {
+      map.pieceChanged(this);
+    }
   }
 
   public int indexOf(GamePiece p) {
@@ -309,32 +324,108 @@ public class Stack implements GamePiece, StateMergeable {
   }
 
   public Rectangle boundingBox() {
-    final Rectangle r = new Rectangle();
-    final Rectangle[] childBounds = new Rectangle[getPieceCount()];
-    getMap().getStackMetrics().getContents(this, null, null, childBounds, 0, 0);
+    return new Rectangle(getGeometry(getMap().getStackMetrics()).bounds);
+  }
 
-    final PieceIterator visibleFilter =
-      PieceIterator.visible(getPiecesIterator());
-    while (visibleFilter.hasMoreElements()) {
-      final GamePiece p = visibleFilter.nextPiece();
-      r.add(childBounds[indexOf(p)]);
+  public Shape getShape() {
+    final StackMetrics metrics = getMap() == null ? getDefaultMetrics() : getMap().getStackMetrics();
+    final Shape s = getGeometry(metrics).shape;
+    if (s instanceof Area) {
+      return (Shape) ((Area) s).clone();
     }
+    else {
+      return (Shape) ((GeneralPath) s).clone();
+    }
+  }
 
-    return r;
+  /**
+   * The bounds and shape of a stack, relative to its position, together
+   * with what they were computed from.
+   */
+  private static class Geometry {
+    private StackMetrics metrics;
+    private boolean expanded;
+    private int layoutVersion;
+    private GamePiece[] pieces;
+    private Rectangle[] childBounds;
+    private Rectangle bounds;
+    private Shape shape;
   }
 
-  public Shape getShape() {
-    Area a = new Area();
-    Shape[] childBounds = new Shape[getPieceCount()];
-    StackMetrics metrics = getMap() == null ? getDefaultMetrics() : getMap().getStackMetrics();
-    metrics.getContents(this, null, childBounds, null, 0, 0);
-    final PieceIterator visibleFilter =
-      PieceIterator.visible(getPiecesIterator());
-    while (visibleFilter.hasMoreElements()) {
-      GamePiece p = visibleFilter.nextPiece();
-      a.add(new Area(childBounds[indexOf(p)]));
+  /**
+   * Returns the geometry of this stack, computing it again only if the
+   * children, their visibility or bounding boxes, the expansion of the
+   * stack, or the metrics laying it out have changed since last time.
+   * Checking costs one {@link GamePiece#boundingBox} per child, which is
+   * much less than laying the children out and merging their shapes.
+   */
+  private Geometry getGeometry(StackMetrics metrics) {
+    final GamePiece[] pieces = new GamePiece[pieceCount];
+    final Rectangle[] childBounds = new Rectangle[pieceCount];
+    boolean same = geometry != null
+      && geometry.metrics == metrics
+      && geometry.expanded == expanded
+      && geometry.layoutVersion == Map.getLayoutVersion()
+      && geometry.pieces.length == pieceCount;
+
+    for (int i = 0; i < pieceCount; ++i) {
+      pieces[i] = contents[i];
+      // invisible children are laid out as empty and take up no room
+      if (!Boolean.TRUE.equals(pieces[i].getProperty(Properties.INVISIBLE_TO_ME))) {
+        childBounds[i] = pieces[i].boundingBox();
+      }
+      same = same && pieces[i] == geometry.pieces[i]
+        && (childBounds[i] == null ? geometry.childBounds[i] == null
+                                   : childBounds[i].equals(geometry.childBounds[i]));
+    }
+
+    if (same) {
+      return geometry;
+    }
+
+    final Geometry g = new Geometry();
+    g.metrics = metrics;
+    g.expanded = expanded;
+    g.layoutVersion = Map.getLayoutVersion();
+    g.pieces = pieces;
+    g.childBounds = childBounds;
+    g.bounds = new Rectangle();
+
+    final Shape[] shapes = new Shape[pieceCount];
+    final Rectangle[] boxes = new Rectangle[pieceCount];
+    final int count = metrics.getContents(this, null, shapes, boxes, 0, 0);
+
+    // Rectangles overlapping under the non-zero winding rule make up
+    // their union without the cost of an Area; other shapes need one.
+    boolean rectangular = true;
+    for (int i = 0; i < count; ++i) {
+      if (childBounds[i] != null) {
+        g.bounds.add(boxes[i]);
+        rectangular = rectangular && shapes[i] instanceof Rectangle;
+      }
     }
-    return a;
+
+    if (rectangular) {
+      final GeneralPath path = new GeneralPath(GeneralPath.WIND_NON_ZERO);
+      for (int i = 0; i < count; ++i) {
+        if (childBounds[i] != null) {
+          path.append(shapes[i], false);
+        }
+      }
+      g.shape = path;
+    }
+    else {
+      final Area a = new Area();
+      for (int i = 0; i < count; ++i) {
+        if (childBounds[i] != null) {
+          a.add(new Area(shapes[i]));
+        }
+      }
+      g.shape = a;
+    }
+
+    geometry = g;
+    return g;
   }
 
   public void selectNext(GamePiece c) {
@@ -452,6 +543,7 @@ public class Stack implements GamePiece, StateMergeable {
 
   public void setExpanded(boolean b) {
     expanded = b && getPieceCount() > 1;
+    boundsChanged();
   }
 
   public String getState() {
@@ -581,6 +673,7 @@ public class Stack implements GamePiece, StateMergeable {
 
   public void setPosition(Point p) {
     pos = p;
+    boundsChanged();
   }
 
   public Stack getParent() {
@@ -0,0 +1,182 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.counters;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.AbstractList;
+
+/**
+ * The points of a movement trail, kept as arrays of coordinates rather
+ * than as {@link Point}s, together with their bounds.
+ *
+ * Points are expected to be added to the end and dropped from the start;
+ * those operations keep the bounds up to date, or, when points are
+ * dropped, mark them to be found again when next asked for. Any other
+ * change to the list does the same.
+ *
+ * @see Footprint
+ * @since 3.2.17
+ */
+public class Trail extends AbstractList<Point> {
+  protected int[] xs = new int[8];
+  protected int[] ys = new int[8];
+  protected int size;
+
+  // the bounds of the points, or null if they must be found again
+  private Rectangle bounds;
+
+  public int size() {
+    return size;
+  }
+
+  public int getX(int i) {
+    check(i);
+    return xs[i];
+  }
+
+  public int getY(int i) {
+    check(i);
+    return ys[i];
+  }
+
+  public Point get(int i) {
+    check(i);
+    return new Point(xs[i], ys[i]);
+  }
+
+  private void check(int i) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException(i + " of " + size); //$NON-NLS-1$
+    }
+  }
+
+  /** Adds a point at the end of the trail. */
+  public void add(int x, int y) {
+    if (size == xs.length) {
+      final int[] nx = new int[2*size];
+      final int[] ny = new int[2*size];
+      System.arraycopy(xs, 0, nx, 0, size);
+      System.arraycopy(ys, 0, ny, 0, size);
+      xs = nx;
+      ys = ny;
+    }
+
+    xs[size] = x;
+    ys[size] = y;
+    ++size;
+    ++modCount;
+
+    if (bounds != null) {
+      bounds.add(x, y);
+    }
+  }
+
+  @Override
+  public boolean add(Point p) {
+    add(p.x, p.y);
+    return true;
+  }
+
+  @Override
+  public void add(int i, Point p) {
+    if (i == size) {
+      add(p.x, p.y);
+      return;
+    }
+
+    if (i < 0 || i > size) {
+      throw new IndexOutOfBoundsException(i + " of " + size); //$NON-NLS-1$
+    }
+
+    add(xs[size-1], ys[size-1]);
+    System.arraycopy(xs, i, xs, i+1, size-i-2);
+    System.arraycopy(ys, i, ys, i+1, size-i-2);
+    xs[i] = p.x;
+    ys[i] = p.y;
+    bounds = null;
+  }
+
+  @Override
+  public Point set(int i, Point p) {
+    final Point old = get(i);
+    xs[i] = p.x;
+    ys[i] = p.y;
+    bounds = null;
+    return old;
+  }
+
+  @Override
+  public Point remove(int i) {
+    final Point old = get(i);
+    System.arraycopy(xs, i+1, xs, i, size-i-1);
+    System.arraycopy(ys, i+1, ys, i, size-i-1);
+    --size;
+    ++modCount;
+    bounds = null;
+    return old;
+  }
+
+  /**
+   * Drops points from the start of the trail.
+   *
+   * @param n the number of points to drop
+   */
+  public void removeFirst(int n) {
+    n = Math.min(n, size);
+    if (n <= 0) {
+      return;
+    }
+
+    System.arraycopy(xs, n, xs, 0, size-n);
+    System.arraycopy(ys, n, ys, 0, size-n);
+    size -= n;
+    ++modCount;
+    bounds = null;
+  }
+
+  @Override
+  public void clear() {
+    size = 0;
+    ++modCount;
+    bounds = null;
+  }
+
+  /**
+   * @return the smallest rectangle containing every point of the trail,
+   * or <code>null</code> if the trail is empty
+   */
+  public Rectangle getBounds() {
+    if (size == 0) {
+      return null;
+    }
+
+    if (bounds == null) {
+      int x0 = xs[0], y0 = ys[0], x1 = x0, y1 = y0;
+      for (int i = 1; i < size; ++i) {
+        if (xs[i] < x0) x0 = xs[i];
+        else if (xs[i] > x1) x1 = xs[i];
+        if (ys[i] < y0) y0 = ys[i];
+        else if (ys[i] > y1) y1 = ys[i];
+      }
+      bounds = new Rectangle(x0, y0, x1 - x0, y1 - y0);
+    }
+    return new Rectangle(bounds);
+  }
+}
@@ -22,6 +22,7 @@ import java.awt.Component;
 import java.awt.Graphics;
 import java.awt.Rectangle;
 import java.awt.Shape;
+import java.util.Arrays;
 
 import javax.swing.KeyStroke;
 
@@ -50,6 +51,9 @@ public class UsePrototype extends Decorator implements EditablePiece, Loopable {
   public static final String ID = "prototype;";
   private String prototypeName;
   private String lastCachedPrototype;
+  private PrototypeDefinition cachedDefinition;
+  private String cachedPieceDefinition;
+  private Object[] cachedValues;
   private GamePiece prototype;
   private PropertySource properties;
   private String type;
@@ -118,7 +122,27 @@ public class UsePrototype extends Decorator implements EditablePiece, Loopable {
     final PrototypeDefinition def =
       PrototypesContainer.getPrototype(prototypeName);
     if (def != null) {
+      // Editing a definition replaces its definition string, so the
+      // expansion is reused until the definition or the values of the
+      // properties it refers to change
+      final String pieceDefinition = def.getPieceDefinition();
+      final Object[] values = getReferencedValues(def);
+      if (lastCachedPrototype != null &&
+          def == cachedDefinition &&
+          pieceDefinition == cachedPieceDefinition &&
+          Arrays.equals(values, cachedValues)) {
+        return;
+      }
+
       final GamePiece expandedPrototype = def.getPiece(properties);
+      if (expandedPrototype == null) {
+        prototype = null;
+        return;
+      }
+
+      cachedDefinition = def;
+      cachedPieceDefinition = pieceDefinition;
+      cachedValues = values;
 
       // Check to see if prototype definition has changed
       final String type = expandedPrototype.getType();
@@ -149,7 +173,24 @@ public class UsePrototype extends Decorator implements EditablePiece, Loopable {
     }
     else {
       prototype = null;
+      lastCachedPrototype = null;
+    }
+  }
+
+  /**
+   * @return the values of the properties which the definition refers to,
+   * or <code>null</code> if the definition is not given any properties
+   */
+  private Object[] getReferencedValues(PrototypeDefinition def) {
+    if (properties == null) {
+      return null;
+    }
+    final String[] names = def.getReferencedProperties();
+    final Object[] values = new Object[names.length];
+    for (int i = 0; i < names.length; ++i) {
+      values[i] = properties.getProperty(names[i]);
     }
+    return values;
   }
 
   /**
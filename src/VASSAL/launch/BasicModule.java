@@ -25,6 +25,7 @@ import java.beans.PropertyChangeSupport;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,6 +59,7 @@ import VASSAL.chat.node.NodeClientFactory;
 import VASSAL.chat.peer2peer.P2PClientFactory;
 import VASSAL.chat.ui.ChatServerControls;
 import VASSAL.command.Command;
+import VASSAL.command.StreamingCommandCodec;
 import VASSAL.configure.PasswordConfigurer;
 import VASSAL.configure.StringConfigurer;
 import VASSAL.configure.TextConfigurer;
@@ -76,6 +78,18 @@ public class BasicModule extends GameModule {
     LoggerFactory.getLogger(BasicModule.class);
 
   private static char COMMAND_SEPARATOR = (char) KeyEvent.VK_ESCAPE;
+
+  private final StreamingCommandCodec codec =
+    new StreamingCommandCodec(COMMAND_SEPARATOR) {
+      protected String encodeSubCommand(Command c) {
+        return BasicModule.this.encodeSubCommand(c);
+      }
+
+      protected Command decode(String command) {
+        return BasicModule.this.decode(command);
+      }
+    };
+
   protected ChatServerControls serverControls;
   protected GameRefresher gameRefresher;
 
@@ -265,6 +279,16 @@ public class BasicModule extends GameModule {
     return s;
   }
 
+  @Override
+  public void encode(Command c, Appendable out) throws IOException {
+    codec.encode(c, out);
+  }
+
+  @Override
+  public Command decode(Reader in) throws IOException {
+    return codec.decode(in);
+  }
+
   protected void buildDefaultComponents() {
     addComponent(BasicCommandEncoder.class);
     addComponent(Documentation.class);
@@ -49,7 +49,8 @@ import org.slf4j.LoggerFactory;
 import VASSAL.Info;
 import VASSAL.tools.DataArchive;
 import VASSAL.tools.image.ImageUtils;
-import VASSAL.tools.image.tilecache.ImageTileDiskCache;
+import VASSAL.tools.image.tilecache.ImageTilePackCache;
+import VASSAL.tools.image.tilecache.TileSlicerImpl;
 import VASSAL.tools.image.tilecache.TileUtils;
 import VASSAL.tools.io.FileArchive;
 import VASSAL.tools.io.FileStore;
@@ -343,7 +344,7 @@ public class TilingHandler {
     DataArchive archive = null;
     try {
       archive = new DataArchive(aname);
-      final FileStore tcache = new ImageTileDiskCache(cdir.getAbsolutePath());
+      final FileStore tcache = new ImageTilePackCache(cdir.getAbsolutePath());
       s = findImages(archive, tcache, multi, failed);
       archive.close();
     }
@@ -361,12 +362,15 @@ public class TilingHandler {
     makeHashDirs();
 
     final int tcount = s.first;
-    final int max_data_mbytes = (4*s.second) >> 20;
+    final int max_data_mbytes = (int) ((4L*s.second) >> 20);
 
     // fix the max heap
 
-    // This was determined empirically.
-    final int maxheap_estimated = (int) (1.66*max_data_mbytes + 150);
+    // This was determined empirically, for slicing each level from the
+    // source image. The slicer keeps scaled levels too, in pyramid mode.
+    final int maxheap_estimated = (int) (
+      (1.66 + TileSlicerImpl.PYRAMID_OVERHEAD)*max_data_mbytes + 150
+    );
 
     final int maxheap = Math.min(maxheap_estimated, maxheap_limit);
 
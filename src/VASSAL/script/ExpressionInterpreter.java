@@ -37,7 +37,9 @@ import VASSAL.counters.Stack;
 import VASSAL.script.expression.ExpressionException;
 import VASSAL.tools.WarningDialog;
 import VASSAL.tools.io.IOUtils;
+import bsh.BeanShellExpressionCompiler;
 import bsh.BeanShellExpressionValidator;
+import bsh.CompiledExpression;
 import bsh.EvalError;
 import bsh.NameSpace;
 
@@ -81,6 +83,10 @@ public class ExpressionInterpreter extends AbstractInterpreter {
   protected PropertySource source;
   protected List<String> variables = new ArrayList<String>();
 
+  // The expression compiled for evaluation without BeanShell, or null if
+  // it uses constructs which can only be interpreted
+  protected CompiledExpression compiled;
+
   // Maintain a cache of all generated Interpreters. All Expressions
   // with the same Expression use the same Interpreter.
   protected static HashMap<String, ExpressionInterpreter> cache = new HashMap<String, ExpressionInterpreter>();
@@ -150,6 +156,9 @@ public class ExpressionInterpreter extends AbstractInterpreter {
     // BeanShell back to us
     setVar(THIS, this);
 
+    if (expression.length() > 0) {
+      compiled = BeanShellExpressionCompiler.compile(expression, variables);
+    }
   }
 
   /**
@@ -219,38 +228,33 @@ public class ExpressionInterpreter extends AbstractInterpreter {
     // GamePiece supplied.
     source = ps == null ? GameModule.getGameModule() : ps;
 
+    // Use the compiled expression where possible. BeanShell is left to
+    // evaluate anything the compiled expression cannot, including any
+    // evaluation which fails, so that errors are reported as before.
+    if (compiled != null) {
+      final String result = compiled.evaluate(new Context(localized));
+      if (result != null) {
+        return result;
+      }
+    }
+
     setNameSpace(expressionNameSpace);
 
     // Bind each undeclared variable with the value of the
     // corresponding Vassal property. Allow for old-style $variable$ references
     for (String var : variables) {
-      String name = var;
-      if (name.length() > 2 && name.startsWith("$") && name.endsWith("$")) {
-        name = name.substring(1, name.length()-1);
-      }
-      Object prop = localized ? source.getLocalizedProperty(name) : source.getProperty(name);
-      String value = prop == null ? "" : prop.toString();
-      if (value == null) {
-        setVar(var, "");
+      final Object value = getVariableValue(var, localized);
+      if (value instanceof Boolean) {
+        setVar(var, ((Boolean) value).booleanValue());
       }
-      else if ("true".equals(value)) {
-        setVar(var, true);
+      else if (value instanceof Integer) {
+        setVar(var, ((Integer) value).intValue());
       }
-      else if ("false".equals(value)) {
-        setVar(var, false);
+      else if (value instanceof Float) {
+        setVar(var, ((Float) value).floatValue());
       }
       else {
-        try {
-          setVar(var, Integer.valueOf(value).intValue());
-        }
-        catch (NumberFormatException e) {
-          try {
-            setVar(var, Float.valueOf(value).floatValue());
-          }
-          catch (NumberFormatException e1) {
-            setVar(var, value);
-          }
-        }
+        setVar(var, value);
       }
     }
 
@@ -275,6 +279,93 @@ public class ExpressionInterpreter extends AbstractInterpreter {
     return result;
   }
 
+  /**
+   * Return the value to which a variable is bound for evaluation: a
+   * Boolean, Integer or Float if the corresponding Vassal property can
+   * be read as one, otherwise the property value as a String.
+   *
+   * @param var the variable name
+   * @param localized whether to use the localized property value
+   * @return the value
+   */
+  protected Object getVariableValue(String var, boolean localized) {
+    String name = var;
+    if (name.length() > 2 && name.startsWith("$") && name.endsWith("$")) {
+      name = name.substring(1, name.length()-1);
+    }
+    final Object prop = localized ? source.getLocalizedProperty(name) : source.getProperty(name);
+    final String value = prop == null ? "" : prop.toString();
+    if (value == null) {
+      return "";
+    }
+    else if ("true".equals(value)) {
+      return Boolean.TRUE;
+    }
+    else if ("false".equals(value)) {
+      return Boolean.FALSE;
+    }
+    else if (isInteger(value)) {
+      try {
+        return Integer.valueOf(value);
+      }
+      catch (NumberFormatException e) {
+        // out of range
+      }
+    }
+
+    if (isFloat(value)) {
+      try {
+        return Float.valueOf(value);
+      }
+      catch (NumberFormatException e) {
+        // not quite a float after all
+      }
+    }
+    return value;
+  }
+
+  /**
+   * @return false if <code>Integer.valueOf(s)</code> would certainly fail,
+   * which saves throwing an exception for most non-numeric property values
+   */
+  private static boolean isInteger(String s) {
+    final int len = s.length();
+    int i = len > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+') ? 1 : 0;
+    if (i == len) {
+      return false;
+    }
+
+    for ( ; i < len; ++i) {
+      if (Character.digit(s.charAt(i), 10) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return false if <code>Float.valueOf(s)</code> would certainly fail,
+   * which saves throwing an exception for most non-numeric property values
+   */
+  private static boolean isFloat(String s) {
+    // Float.valueOf() ignores leading and trailing whitespace
+    final String t = s.trim();
+    final int len = t.length();
+    int i = len > 0 && (t.charAt(0) == '-' || t.charAt(0) == '+') ? 1 : 0;
+    if (i == len) {
+      return false;
+    }
+
+    final char c = t.charAt(i);
+    if (c == 'N') {
+      return t.startsWith("NaN", i) && i + 3 == len;
+    }
+    else if (c == 'I') {
+      return t.startsWith("Infinity", i) && i + 8 == len;
+    }
+    return (c >= '0' && c <= '9') || c == '.';
+  }
+
   public String evaluate() throws ExpressionException {
     return getExpression().length() == 0 ? "" : evaluate(GameModule.getGameModule());
   }
@@ -307,6 +398,43 @@ public class ExpressionInterpreter extends AbstractInterpreter {
     }
   }
 
+  /**
+   * Supplies variable values and callbacks to the compiled expression
+   * for one evaluation.
+   */
+  private class Context implements CompiledExpression.Context {
+    private final boolean localized;
+    private final Object[] values;
+
+    public Context(boolean localized) {
+      this.localized = localized;
+      values = new Object[variables.size()];
+    }
+
+    public Object getVariable(int index) {
+      if (values[index] == null) {
+        values[index] = getVariableValue(variables.get(index), localized);
+      }
+      return values[index];
+    }
+
+    public Object getProperty(String name) {
+      return ExpressionInterpreter.this.getProperty(name);
+    }
+
+    public Object getLocalizedProperty(String name) {
+      return ExpressionInterpreter.this.getLocalizedProperty(name);
+    }
+
+    public Object sumStack(String property) {
+      return ExpressionInterpreter.this.sumStack(property, source);
+    }
+
+    public Object sumLocation(String property) {
+      return ExpressionInterpreter.this.sumLocation(property, source);
+    }
+  }
+
   /*****************************************************************
    * Callbacks from BeanShell Expressions to Vassal
    **/
@@ -18,6 +18,8 @@
  */
 package VASSAL.script.expression;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import VASSAL.build.module.properties.PropertySource;
@@ -30,55 +32,123 @@ import VASSAL.tools.SequenceEncoder;
  */
 public class FormattedStringExpression extends Expression {
 
+  /*
+   * The expression is compiled once into its non-empty segments: literal
+   * text, and the names of the properties to substitute.
+   */
+  private String[] segments;
+  private boolean[] isProperty;
+  private int literalLength;
+  private String constant;
+
   public FormattedStringExpression (String s) {
     setExpression(s);
   }
 
+  public void setExpression(String s) {
+    super.setExpression(s);
+
+    final List<String> seg = new ArrayList<String>();
+    final List<Boolean> prop = new ArrayList<Boolean>();
+    literalLength = 0;
+    if (s != null) {
+      final SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(s, '$');
+      boolean isProp = true;
+      while (st.hasMoreTokens()) {
+        final String token = st.nextToken();
+        isProp = !isProp;
+        if (token.length() > 0) {
+          /*
+           * Only even numbered tokens with at least one token after them are valid $propertName$ strings.
+           */
+          final boolean p = isProp && st.hasMoreTokens();
+          seg.add(token);
+          prop.add(p);
+          if (!p) {
+            literalLength += token.length();
+          }
+        }
+      }
+    }
+
+    segments = seg.toArray(new String[seg.size()]);
+    isProperty = new boolean[segments.length];
+    boolean isConstant = true;
+    for (int i = 0; i < isProperty.length; ++i) {
+      isProperty[i] = prop.get(i);
+      isConstant &= !isProperty[i];
+    }
+
+    // An expression which refers to no properties always evaluates the same
+    if (isConstant) {
+      final StringBuilder buffer = new StringBuilder(literalLength);
+      for (String segment : segments) {
+        buffer.append(segment);
+      }
+      constant = buffer.toString().intern();
+    }
+    else {
+      constant = null;
+    }
+  }
+
   /**
    * Evaluate this expression.
    * NB. Code moved from FormattedString.java
    */
   public String evaluate(PropertySource ps, Map<String, String> properties,
       boolean localized) {
-    final StringBuilder buffer = new StringBuilder();
-    final SequenceEncoder.Decoder st =
-      new SequenceEncoder.Decoder(getExpression(), '$');
-    boolean isProperty = true;
-    while (st.hasMoreTokens()) {
-      final String token = st.nextToken();
-      isProperty = !isProperty;
-      if (token.length() > 0) {
-        /*
-         * Only even numbered tokens with at least one token after them are valid $propertName$ strings.
-         */
-        if (!isProperty || ! st.hasMoreTokens()) {
-          buffer.append(token);
-        }
-        else if (properties != null && properties.containsKey(token)) {
-          final String value = properties.get(token);
-          if (value != null) {
-            buffer.append(value);
-          }
-        }
-        else if (ps != null) {
-          final Object value =
-            localized ? ps.getLocalizedProperty(token) : ps.getProperty(token);
-          if (value != null) {
-            buffer.append(value.toString());
-          }
-          else if (!localized) {
-            buffer.append(token);
-          }
-        }
-        else {
-          buffer.append(token);
+    if (constant != null) {
+      return constant;
+    }
+
+    // A lone property needs no buffer
+    if (segments.length == 1) {
+      final String value = substitute(segments[0], ps, properties, localized);
+      return value == null ? "" : value;
+    }
+
+    final StringBuilder buffer = new StringBuilder(literalLength + 16);
+    for (int i = 0; i < segments.length; ++i) {
+      if (isProperty[i]) {
+        final String value =
+          substitute(segments[i], ps, properties, localized);
+        if (value != null) {
+          buffer.append(value);
         }
       }
+      else {
+        buffer.append(segments[i]);
+      }
     }
-
     return buffer.toString();
   }
 
+  /**
+   * @return the value of a property, the name of the property if it has
+   * no value, or <code>null</code> to substitute nothing
+   */
+  private static String substitute(String name, PropertySource ps,
+      Map<String, String> properties, boolean localized) {
+    if (properties != null && properties.containsKey(name)) {
+      return properties.get(name);
+    }
+    else if (ps != null) {
+      final Object value =
+        localized ? ps.getLocalizedProperty(name) : ps.getProperty(name);
+      if (value != null) {
+        return value.toString();
+      }
+      else if (!localized) {
+        return name;
+      }
+      return null;
+    }
+    else {
+      return name;
+    }
+  }
+
   /**
    * Convert to a BeanShell expression
    */
@@ -94,29 +164,17 @@ public class FormattedStringExpression extends Expression {
     }
 
     final StringBuilder buffer = new StringBuilder();
-    final SequenceEncoder.Decoder st =
-      new SequenceEncoder.Decoder(s, '$');
-    boolean isProperty = true;
-    boolean first = true;
-    while (st.hasMoreTokens()) {
-      String token = st.nextToken();
-      isProperty = !isProperty;
-      if (token.length() > 0) {
-        /*
-         * Only even numbered tokens with at least one token after them are valid $propertName$ strings.
-         */
-        if (! first) {
-          buffer.append("+");
-        }
-        if (isProperty && st.hasMoreTokens()) {
-          buffer.append(BeanShellExpression.convertProperty(token));
-        }
-        else {
-          buffer.append("\"");
-          buffer.append(token);
-          buffer.append("\"");
-        }
-        first = false;
+    for (int i = 0; i < segments.length; ++i) {
+      if (i > 0) {
+        buffer.append("+");
+      }
+      if (isProperty[i]) {
+        buffer.append(BeanShellExpression.convertProperty(segments[i]));
+      }
+      else {
+        buffer.append("\"");
+        buffer.append(segments[i]);
+        buffer.append("\"");
       }
     }
 
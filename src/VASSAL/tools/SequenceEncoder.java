@@ -153,6 +153,10 @@ public class SequenceEncoder {
     private String val;
     private final char delimit;
 
+    // the start of the next token in val, so that long values are
+    // scanned once rather than copied for each token
+    private int pos;
+
     public Decoder(String value, char delimiter) {
       val = value;
       delimit = delimiter;
@@ -167,14 +171,14 @@ public class SequenceEncoder {
 
       String value;
 
-      final int i = val.indexOf(delimit);
+      final int i = val.indexOf(delimit, pos);
       if (i < 0) {
-        value = val;
+        value = val.substring(pos);
         val = null;
       }
       else {
         final StringBuilder buffer = new StringBuilder();
-        int begin = 0;
+        int begin = pos;
         int end = i;
         while (begin < end) {
           if (val.charAt(end - 1) == '\\') {
@@ -192,8 +196,8 @@ public class SequenceEncoder {
           val = null;
         }
         else {
-          buffer.append(val.substring(begin, end));
-          val = end >= val.length() - 1 ? "" : val.substring(end + 1);
+          buffer.append(val, begin, end);
+          pos = end + 1;
         }
 
         value = buffer.toString();
@@ -219,7 +223,7 @@ public class SequenceEncoder {
     }
 
     public Decoder copy() {
-      return new Decoder(val, delimit);
+      return new Decoder(val == null ? null : val.substring(pos), delimit);
     }
 
     /**
@@ -31,8 +31,14 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.apache.batik.bridge.BridgeContext;
 import org.apache.batik.bridge.BridgeException;
@@ -64,7 +70,10 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
 import VASSAL.build.GameModule;
+import VASSAL.tools.DataArchive;
+import VASSAL.tools.concurrent.ConcurrentSoftHashMap;
 import VASSAL.tools.image.ImageUtils;
+import VASSAL.tools.io.FileArchive;
 import VASSAL.tools.io.IOUtils;
 
 /**
@@ -77,8 +86,20 @@ public class SVGRenderer {
   private static final Logger logger =
     LoggerFactory.getLogger(SVGRenderer.class);
 
-  private static final SAXSVGDocumentFactory docFactory =
-    new SAXSVGDocumentFactory(XMLResourceDescriptor.getXMLParserClassName());
+  // The factories are not thread-safe, so each thread has its own.
+  private static final ThreadLocal<SAXSVGDocumentFactory> docFactory =
+    new ThreadLocal<SAXSVGDocumentFactory>() {
+      @Override
+      protected SAXSVGDocumentFactory initialValue() {
+        return new SAXSVGDocumentFactory(
+          XMLResourceDescriptor.getXMLParserClassName());
+      }
+    };
+
+  // Parsed documents, keyed by URL and modification time. The values are
+  // held softly, so are dropped when memory runs short.
+  private static final ConcurrentMap<String,Future<Document>> docCache =
+    new ConcurrentSoftHashMap<String,Future<Document>>();
   private static final ImageRendererFactory rendFactory =
     new ConcreteImageRendererFactory();
 
@@ -91,15 +112,41 @@ public class SVGRenderer {
   }
 
   public SVGRenderer(String file, InputStream in) throws IOException {
-    // load the SVG
+    this(parse(file, in));
+  }
+
+  /**
+   * Creates a renderer for an SVG image in an archive. The image is
+   * parsed only if it has not been parsed since it was last modified;
+   * otherwise, the renderer gets a copy of the document parsed before.
+   *
+   * @param archive the archive holding the image
+   * @param name the name of the image file
+   * @throws IOException if the image cannot be read
+   * @since 3.2.17
+   */
+  public SVGRenderer(DataArchive archive, String name) throws IOException {
+    this(getDocument(archive, name));
+  }
+
+  private SVGRenderer(Document doc) {
+    this.doc = doc;
+
+    // get the default image size
+    final Element root = doc.getDocumentElement();
+
+    defaultW = Float.parseFloat(
+      root.getAttributeNS(null, "width").replaceFirst("px", ""));
+    defaultH = Float.parseFloat(
+      root.getAttributeNS(null, "height").replaceFirst("px", ""));
+  }
+
+  private static Document parse(String file, InputStream in)
+                                                          throws IOException {
     try {
-      // We synchronize on docFactory becuase it does internal caching
-      // of the Documents it produces. This ensures that a Document is
-      // being modified on one thread only.
-      synchronized (docFactory) {
-        doc = docFactory.createDocument(file, in);
-      }
+      final Document doc = docFactory.get().createDocument(file, in);
       in.close();
+      return doc;
     }
     catch (DOMException e) {
       throw (IOException) new IOException().initCause(e);
@@ -107,14 +154,61 @@ public class SVGRenderer {
     finally {
       IOUtils.closeQuietly(in);
     }
+  }
+
+  private static Document getDocument(final DataArchive archive,
+                                      final String name) throws IOException {
+    final String url = archive.getURL(name).toString();
+
+    // Files in extensions or on the classpath have no modification time
+    // we can check, so are parsed every time.
+    final FileArchive fa = archive.getArchive();
+    if (fa == null || name.startsWith("/") || !fa.contains(name)) {
+      return parse(url, new BufferedInputStream(archive.getInputStream(name)));
+    }
 
-    // get the default image size
-    final Element root = doc.getDocumentElement();
+    final String key = url + "@" + fa.getMTime(name); //$NON-NLS-1$
+
+    // Only the first thread to want a document parses it; any others
+    // wanting it at the same time wait for that one.
+    Future<Document> f = docCache.get(key);
+    if (f == null) {
+      final FutureTask<Document> task =
+        new FutureTask<Document>(new Callable<Document>() {
+          public Document call() throws IOException {
+            return parse(url,
+              new BufferedInputStream(archive.getInputStream(name)));
+          }
+        });
+
+      f = docCache.putIfAbsent(key, task);
+      if (f == null) {
+        f = task;
+        task.run();
+      }
+    }
 
-    defaultW = Float.parseFloat(
-      root.getAttributeNS(null, "width").replaceFirst("px", ""));
-    defaultH = Float.parseFloat(
-      root.getAttributeNS(null, "height").replaceFirst("px", ""));
+    final Document master;
+    try {
+      master = f.get();
+    }
+    catch (InterruptedException e) {
+      throw (IOException) new InterruptedIOException().initCause(e);
+    }
+    catch (ExecutionException e) {
+      // don't keep the failure, so that the next request tries again
+      docCache.remove(key, f);
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw (IOException) new IOException().initCause(e.getCause());
+    }
+
+    // Rendering modifies the document, so each renderer has its own copy,
+    // and renderers of the same document need not wait for each other.
+    synchronized (master) {
+      return (Document) master.cloneNode(true);
+    }
   }
 
   private static final double DEGTORAD = Math.PI/180.0;
@@ -0,0 +1,640 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.image.tilecache;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataFormatImpl;
+import javax.imageio.stream.ImageInputStream;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import VASSAL.tools.image.GeneralFilter;
+import VASSAL.tools.lang.Callback;
+
+/**
+ * Slices an image into tiles without holding all of it in memory.
+ *
+ * The image is decoded in bands one tile high, and each band is sliced
+ * into 1:1 tiles and passed on to be scaled to 1:2. Each scaled level
+ * keeps only the rows of the level above it which its next few rows
+ * need, and passes its own bands on to the level below it in turn. The
+ * tiles are the same as those {@link TileSlicerImpl} slices in pyramid
+ * mode, but the memory needed depends only on the width of the image.
+ *
+ * Only PNG and JPEG images which are decoded from top to bottom in one
+ * pass can be decoded in bands. Interlaced and progressive images, and
+ * images in other formats, are not sliced. Neither are images whose rows
+ * the decoder turns out to deliver out of order; the tiles of those
+ * already written are deleted.
+ *
+ * @since 3.2.17
+ */
+public class BandedImageTiler {
+  /**
+   * Slices an image into tiles.
+   *
+   * @param in the encoded image
+   * @param iname the basename for the tiles
+   * @param tpath the path for the tiles
+   * @param tw the tile width
+   * @param th the tile height
+   * @param exec the executor in which to run tasks
+   * @param progress a callback for indicating progress
+   * @return <code>false</code> if the image cannot be decoded in bands,
+   * in which case no tiles have been written
+   * @throws IOException if decoding the image or writing a tile fails
+   */
+  public boolean slice(
+    InputStream in,
+    String iname,
+    String tpath,
+    int tw,
+    int th,
+    ExecutorService exec,
+    Callback<Void> progress
+  ) throws IOException
+  {
+    final ImageInputStream iis = ImageIO.createImageInputStream(in);
+    if (iis == null) return false;
+
+    try {
+      final Iterator<ImageReader> i = ImageIO.getImageReaders(iis);
+      if (!i.hasNext()) return false;
+
+      final ImageReader reader = i.next();
+      try {
+        reader.setInput(iis, true, false);
+        return slice(reader, iname, tpath, tw, th, exec, progress);
+      }
+      finally {
+        reader.dispose();
+      }
+    }
+    finally {
+      iis.close();
+    }
+  }
+
+  protected boolean slice(
+    ImageReader reader,
+    String iname,
+    String tpath,
+    int tw,
+    int th,
+    ExecutorService exec,
+    Callback<Void> progress
+  ) throws IOException
+  {
+    // other readers may not write to the image through its DataBuffer
+    final String format = reader.getFormatName().toLowerCase();
+    if (!format.equals("png") && !format.equals("jpeg")) return false;
+
+    final int w = reader.getWidth(0);
+    final int h = reader.getHeight(0);
+
+    // each band of the image is addressed as if the whole image were there
+    if ((long) w * h > Integer.MAX_VALUE) return false;
+
+    if (isProgressive(reader.getImageMetadata(0))) return false;
+
+    // find a type which we can store in bands
+    SampleModel bsm = null;
+    ColorModel cm = null;
+    for (Iterator<ImageTypeSpecifier> i = reader.getImageTypes(0);
+         i.hasNext(); ) {
+      final ImageTypeSpecifier spec = i.next();
+      final SampleModel sm = spec.getSampleModel(1, 1);
+      final SampleModel b = new BandedSampleModel(
+        sm.getDataType(), w, h, sm.getNumBands()
+      );
+      if (spec.getColorModel().isCompatibleSampleModel(b)) {
+        bsm = b;
+        cm = spec.getColorModel();
+        break;
+      }
+    }
+
+    if (bsm == null) return false;
+
+    final int type = cm.getTransparency() == Transparency.OPAQUE ?
+      BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE;
+
+    final Slicing s =
+      new Slicing(iname, tpath, w, h, tw, th, type, exec, progress);
+
+    final BandBuffer db = new BandBuffer(bsm, cm, w, h, th, s);
+
+    final ImageReadParam param = reader.getDefaultReadParam();
+    param.setDestination(new BufferedImage(
+      cm, Raster.createWritableRaster(bsm, db, null),
+      cm.isAlphaPremultiplied(), null
+    ));
+
+    try {
+      reader.read(0, param);
+      db.finish();
+      s.finish();
+    }
+    catch (OutOfOrderException e) {
+      s.discard();
+      return false;
+    }
+    catch (SlicingException e) {
+      throw (IOException) new IOException().initCause(e.getCause());
+    }
+    catch (CancellationException e) {
+      // should never happen
+      throw new IllegalStateException(e);
+    }
+    catch (ExecutionException e) {
+      throw (IOException) new IOException().initCause(e);
+    }
+    catch (InterruptedException e) {
+      // should never happen
+      throw new IllegalStateException(e);
+    }
+    finally {
+      s.cancel();
+    }
+
+    return true;
+  }
+
+  /**
+   * @return whether the image is decoded in more than one pass
+   */
+  protected static boolean isProgressive(IIOMetadata md) {
+    if (md == null || !md.isStandardMetadataFormatSupported()) return false;
+
+    final NodeList nl = ((Element) md.getAsTree(
+      IIOMetadataFormatImpl.standardMetadataFormatName
+    )).getElementsByTagName("NumProgressiveScans");
+
+    if (nl.getLength() == 0) return false;
+
+    try {
+      return Integer.parseInt(
+        ((Element) nl.item(0)).getAttribute("value")) > 1;
+    }
+    catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Wraps the exceptions thrown when the decoder hands us a band.
+   */
+  protected static class SlicingException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public SlicingException(Throwable cause) {
+      super(cause);
+    }
+  }
+
+  /**
+   * Thrown when the decoder writes a row of a band which has already
+   * been passed on.
+   */
+  protected static class OutOfOrderException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public OutOfOrderException(String message) {
+      super(message);
+    }
+  }
+
+  /**
+   * A {@link DataBuffer} for the whole image which stores only one band
+   * of it. When the decoder writes the first row of the next band, the
+   * band is complete and is passed to the {@link Slicing}.
+   */
+  protected static class BandBuffer extends DataBuffer {
+    protected final ColorModel cm;
+    protected final WritableRaster band;
+    protected final DataBuffer store;
+    protected final int w;
+    protected final int h;
+    protected final int bh;
+    protected final Slicing slicing;
+
+    // the first row of the band, and its bounds as indices
+    protected int y0;
+    protected int i0;
+    protected int i1;
+
+    public BandBuffer(SampleModel sm, ColorModel cm,
+                      int w, int h, int bh, Slicing slicing) {
+      super(sm.getDataType(), w*h, sm.getNumBands());
+      this.cm = cm;
+      this.band = Raster.createWritableRaster(
+        sm.createCompatibleSampleModel(w, Math.min(bh, h)), null
+      );
+      this.store = band.getDataBuffer();
+      this.w = w;
+      this.h = h;
+      this.bh = band.getHeight();
+      this.slicing = slicing;
+
+      i0 = 0;
+      i1 = w*this.bh;
+    }
+
+    protected int index(int i) {
+      if (i >= i1) {
+        // the decoder has moved on to the next band
+        while (i >= i1) {
+          flush(bh);
+        }
+      }
+      else if (i < i0) {
+        throw new OutOfOrderException(
+          "row " + (i / w) + " is before band at row " + y0);
+      }
+      return i - i0;
+    }
+
+    protected void flush(int rows) {
+      final WritableRaster r = rows == band.getHeight() ? band :
+        band.createWritableChild(0, 0, w, rows, 0, 0, null);
+
+      try {
+        slicing.band(
+          new BufferedImage(cm, r, cm.isAlphaPremultiplied(), null), y0
+        );
+      }
+      catch (IOException e) {
+        throw new SlicingException(e);
+      }
+      catch (ExecutionException e) {
+        throw new SlicingException(e);
+      }
+      catch (InterruptedException e) {
+        throw new SlicingException(e);
+      }
+
+      y0 += rows;
+      i0 = i1;
+      i1 = w*Math.min(y0 + bh, h);
+    }
+
+    /** Passes on the last band. */
+    public void finish() {
+      if (y0 < h) {
+        flush(h - y0);
+      }
+    }
+
+    @Override
+    public int getElem(int bank, int i) {
+      return i >= i0 && i < i1 ? store.getElem(bank, i - i0) : 0;
+    }
+
+    @Override
+    public void setElem(int bank, int i, int val) {
+      store.setElem(bank, index(i), val);
+    }
+  }
+
+  /**
+   * Slices the bands of one image and of each level scaled from it.
+   */
+  protected static class Slicing {
+    protected final String iname;
+    protected final String tpath;
+    protected final int tw;
+    protected final int th;
+    protected final int type;
+    protected final ExecutorService exec;
+    protected final Callback<Void> progress;
+    protected final Level top;
+
+    protected final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+    protected final List<File> files = new ArrayList<File>();
+    protected int done = 0;
+    protected int mark = 0;
+
+    public Slicing(String iname, String tpath, int w, int h, int tw, int th,
+                   int type, ExecutorService exec, Callback<Void> progress) {
+      this.iname = iname;
+      this.tpath = tpath;
+      this.tw = tw;
+      this.th = th;
+      this.type = type;
+      this.exec = exec;
+      this.progress = progress;
+
+      // build the chain of scaled levels, starting at 1:2
+      Level top = null;
+      Level prev = null;
+      for (int div = 2; w/div > 0 && h/div > 0; div <<= 1) {
+        final Level l = new Level(div, w/(div/2), h/(div/2), w/div, h/div);
+        if (prev == null) {
+          top = l;
+        }
+        else {
+          prev.down = l;
+        }
+        prev = l;
+      }
+      this.top = top;
+    }
+
+    /**
+     * Slices a decoded band into 1:1 tiles, and scales it.
+     *
+     * @param src the band
+     * @param y the row at which the band starts
+     */
+    public void band(BufferedImage src, int y)
+                      throws IOException, ExecutionException,
+                             InterruptedException {
+      final BufferedImage b =
+        new BufferedImage(src.getWidth(), src.getHeight(), type);
+      final Graphics2D g = b.createGraphics();
+      g.setComposite(AlphaComposite.Src);
+      g.drawImage(src, 0, 0, null);
+      g.dispose();
+
+      queueTileRow(b, 1, y / th);
+
+      if (top != null) {
+        add(top, ((DataBufferInt) b.getRaster().getDataBuffer()).getData(),
+            b.getHeight());
+      }
+
+      // keep at most two bands of tiles waiting to be written
+      done = report(mark);
+      mark = futures.size();
+    }
+
+    /** Scales the rest of each level, and waits for all of the tiles. */
+    public void finish()
+                      throws IOException, ExecutionException,
+                             InterruptedException {
+      for (Level l = top; l != null; l = l.down) {
+        drain(l, true);
+      }
+      report(futures.size());
+    }
+
+    /** Cancels any tiles which are not yet written. */
+    public void cancel() {
+      for (Future<Void> f : futures) {
+        if (!f.isDone()) f.cancel(true);
+      }
+    }
+
+    /** Waits for the tiles queued so far, and deletes them. */
+    public void discard() {
+      for (Future<Void> f : futures) {
+        try {
+          f.get();
+        }
+        catch (CancellationException e) {
+          // the tile was not written
+        }
+        catch (ExecutionException e) {
+          // the tile is deleted anyway
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+
+      for (File f : files) {
+        f.delete();
+      }
+    }
+
+    protected int report(int end)
+                      throws IOException, ExecutionException,
+                             InterruptedException {
+      for ( ; done < end; ++done) {
+        futures.get(done).get();
+        progress.receive(null);
+      }
+      return done;
+    }
+
+    protected void queueTileRow(BufferedImage band, int div, int ty) {
+      final int dw = band.getWidth();
+      final int tcols = (int) Math.ceil((double) dw / tw);
+
+      for (int tx = 0; tx < tcols; ++tx) {
+        final File f = new File(tpath, TileUtils.tileName(iname, tx, ty, div));
+        files.add(f);
+        futures.add(exec.submit(
+          new TileTask(band, f, tx, 0, tw, th, dw, band.getHeight())
+        ));
+      }
+    }
+
+    /**
+     * Adds rows to the source of a level, scaling as they allow.
+     *
+     * @param data the rows
+     * @param n the number of rows
+     */
+    protected void add(Level l, int[] data, int n)
+                      throws IOException, ExecutionException,
+                             InterruptedException {
+      for (int off = 0; off < n; ) {
+        off += l.append(data, off, n - off);
+        drain(l, false);
+      }
+    }
+
+    /**
+     * Scales as many rows of a level as its source rows allow, a few rows
+     * at a time so that few source rows need be kept.
+     *
+     * @param last whether the level has all of its source rows
+     */
+    protected void drain(Level l, boolean last)
+                      throws IOException, ExecutionException,
+                             InterruptedException {
+      while (l.next < l.dh) {
+        final int dy0 = l.next;
+        final int bandEnd = Math.min((dy0/th + 1)*th, l.dh);
+        final int dy1 = Math.min(dy0 + Level.ROWS, bandEnd) - 1;
+
+        // the source rows which the rows need, as GeneralFilter.zoom
+        // finds them
+        final int sy0 =
+          Math.max(0, (int) Math.floor((dy0-l.fwidth)/l.yscale));
+        final int sy1 =
+          Math.min(l.sh-1, (int) Math.ceil((dy1+l.fwidth)/l.yscale));
+
+        // no later rows need the source rows before these
+        l.discard(sy0);
+
+        if (!last && l.y0 + l.rows <= sy1) break;
+
+        final int bandStart = dy0/th*th;
+        if (l.band == null) {
+          l.band = new BufferedImage(l.dw, bandEnd - bandStart, type);
+        }
+
+        final int rows = dy1 - dy0 + 1;
+        GeneralFilter.resample(
+          l.window, true,
+          0, sy0, l.sw-1, sy1, l.sw, sy1 - sy0 + 1,
+          type == BufferedImage.TYPE_INT_RGB ?
+            GeneralFilter.OPAQUE : GeneralFilter.TRANS_PREMULT,
+          l.sw, l.sh,
+          l.scaled, 0, dy0, l.dw-1, dy1, l.dw, rows, l.dw, l.dh,
+          l.xscale, l.yscale, l.filter
+        );
+
+        final int[] bandData =
+          ((DataBufferInt) l.band.getRaster().getDataBuffer()).getData();
+        System.arraycopy(l.scaled, 0, bandData,
+                         (dy0 - bandStart)*l.dw, rows*l.dw);
+
+        l.next = dy1 + 1;
+
+        if (l.next == bandEnd) {
+          // the tiles hold the band, so the next band needs a new image
+          final BufferedImage b = l.band;
+          l.band = null;
+
+          queueTileRow(b, l.div, bandStart / th);
+
+          if (l.down != null) {
+            add(l.down, bandData, b.getHeight());
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * A level scaled from the level above it, and the rows of that level
+   * which it still needs.
+   */
+  protected static class Level {
+    /** The number of rows scaled at once. */
+    protected static final int ROWS = 32;
+
+    protected final GeneralFilter.Filter filter =
+      new GeneralFilter.Lanczos3Filter();
+    protected final float fwidth = filter.getSamplingRadius();
+
+    protected final int div;
+    protected final int sw;
+    protected final int sh;
+    protected final int dw;
+    protected final int dh;
+    protected final float xscale;
+    protected final float yscale;
+
+    protected Level down;
+
+    // the source rows held, starting at row y0
+    protected int[] window;
+    protected int y0 = 0;
+    protected int rows = 0;
+
+    // the next row of this level to scale, the rows last scaled, and
+    // the band of rows they are part of
+    protected int next = 0;
+    protected final int[] scaled;
+    protected BufferedImage band;
+
+    public Level(int div, int sw, int sh, int dw, int dh) {
+      this.div = div;
+      this.sw = sw;
+      this.sh = sh;
+      this.dw = dw;
+      this.dh = dh;
+
+      // as GeneralFilter.zoom calculates them
+      xscale = sw == 1 ? dw : (float)(dw-1) / (sw-1);
+      yscale = sh == 1 ? dh : (float)(dh-1) / (sh-1);
+
+      // room for the source rows of ROWS scaled rows, and as many again
+      // (yscale is 0 when scaling to one row, and then all rows are needed)
+      final double need = Math.ceil((ROWS + 2*fwidth) / yscale) + 2;
+      window = new int[(int) Math.min(sh, need + ROWS) * sw];
+      scaled = new int[Math.min(dh, ROWS) * dw];
+    }
+
+    /**
+     * Appends as many rows as there is room for.
+     *
+     * @param data the rows
+     * @param off the first row to append
+     * @param n the number of rows
+     * @return the number of rows appended
+     */
+    public int append(int[] data, int off, int n) {
+      if (rows*sw == window.length) {
+        // should not happen, as the window holds enough rows to scale
+        final int[] w = new int[2*window.length];
+        System.arraycopy(window, 0, w, 0, rows*sw);
+        window = w;
+      }
+
+      final int k = Math.min(n, window.length/sw - rows);
+      System.arraycopy(data, off*sw, window, rows*sw, k*sw);
+      rows += k;
+      return k;
+    }
+
+    /** Discards the rows before row <code>y</code>. */
+    public void discard(int y) {
+      final int n = Math.min(y - y0, rows);
+      if (n > 0) {
+        System.arraycopy(window, n*sw, window, 0, (rows - n)*sw);
+        rows -= n;
+        y0 += n;
+      }
+    }
+  }
+}
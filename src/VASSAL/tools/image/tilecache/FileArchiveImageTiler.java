@@ -19,6 +19,7 @@
 
 package VASSAL.tools.image.tilecache;
 
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
@@ -43,6 +44,8 @@ public class FileArchiveImageTiler {
   private static final Logger logger =
     LoggerFactory.getLogger(FileArchiveImageTiler.class);
 
+  protected final BandedImageTiler banded = new BandedImageTiler();
+
   /**
    * Tile image contained in an archive.
    *
@@ -66,12 +69,43 @@ public class FileArchiveImageTiler {
     Callback<Void> doneListener
   ) throws IOException
   {
+    final ImageTilePackCache packs = new ImageTilePackCache(tpath);
+
     for (String ipath : ipaths) {
       logger.info("Tiling {}", ipath);
       imageListener.receive(ipath);
 
-      BufferedImage src = null;
       InputStream in = null;
+
+      // images too large to decode whole are decoded in bands
+      try {
+        in = fa.getInputStream(ipath);
+        final Dimension d = loader.size(ipath, in);
+        in.close();
+
+        if (!fitsInHeap(d)) {
+          in = fa.getInputStream(ipath);
+          final boolean sliced = banded.slice(
+            in, ipath, tpath, tw, th, exec, tileListener
+          );
+          in.close();
+
+          if (sliced) {
+            pack(packs, ipath);
+            continue;
+          }
+          logger.warn("Cannot decode {} in bands", ipath);
+        }
+      }
+      catch (IOException e) {
+        logger.error("", e);
+        continue;
+      }
+      finally {
+        IOUtils.closeQuietly(in);
+      }
+
+      BufferedImage src = null;
       try {
         in = fa.getInputStream(ipath);
         src = loader.load(
@@ -89,9 +123,41 @@ public class FileArchiveImageTiler {
       }
 
       slicer.slice(src, ipath, tpath, tw, th, exec, tileListener);
+      pack(packs, ipath);
     }
 
     exec.shutdown();
     doneListener.receive(null);
   }
+
+  /**
+   * Moves the tiles of an image into a pack. The tiles are still usable
+   * in their own files if this fails.
+   *
+   * @param packs the tile cache
+   * @param ipath the image path
+   * @since 3.2.17
+   */
+  protected void pack(ImageTilePackCache packs, String ipath) {
+    try {
+      packs.pack(ipath);
+    }
+    catch (IOException e) {
+      logger.error("", e);
+    }
+  }
+
+  /**
+   * Estimates whether an image can be decoded whole and sliced, in the
+   * same way as {@link VASSAL.launch.TilingHandler} sizes the heap.
+   *
+   * @param d the size of the image
+   * @return <code>true</code> if the image fits in the heap
+   * @since 3.2.17
+   */
+  protected boolean fitsInHeap(Dimension d) {
+    final long bytes = 4L * d.width * d.height;
+    return (1.66 + TileSlicerImpl.PYRAMID_OVERHEAD) * bytes + (150L << 20) <=
+      Runtime.getRuntime().maxMemory();
+  }
 }
@@ -0,0 +1,402 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.image.tilecache;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import VASSAL.tools.image.ImageIOException;
+
+/**
+ * An on-disk {@link VASSAL.tools.image.ImageTileSource} and
+ * {@link VASSAL.tools.io.FileStore} which keeps the tiles of each image
+ * in one {@link TilePack}.
+ *
+ * Tiles are written one per file, as in {@link ImageTileDiskCache}, and
+ * then packed by {@link #pack}. Images whose tiles are still in separate
+ * files, as in caches written before packs, are packed the first time
+ * one of their tiles is read. Tile files newer than the pack of their
+ * image, which are left when a pack in use cannot be replaced, win over
+ * the pack in the same way.
+ *
+ * @since 3.2.17
+ */
+public class ImageTilePackCache extends ImageTileDiskCache {
+  private static final Logger logger =
+    LoggerFactory.getLogger(ImageTilePackCache.class);
+
+  protected static final String EXTENSION = ".pack"; //$NON-NLS-1$
+
+  // the mapped packs, by file; null if a pack could not be made
+  protected final Map<File,TilePack> packs = new HashMap<File,TilePack>();
+
+  // held while a pack is opened or written, so that packing one image
+  // does not hold up reading the tiles of others
+  protected final ConcurrentMap<File,Object> locks =
+    new ConcurrentHashMap<File,Object>();
+
+  // the pack holding each tile, by tile name
+  protected Map<String,File> index;
+
+  /**
+   * Creates an {@code ImageTilePackCache}.
+   *
+   * @param cpath path to the root directory of the cache
+   */
+  public ImageTilePackCache(String cpath) {
+    super(cpath);
+  }
+
+  /**
+   * @param iname the image name
+   * @return the file for the pack of an image
+   */
+  protected File packFile(String iname) {
+    return new File(cpath, DigestUtils.shaHex(iname) + EXTENSION);
+  }
+
+  /**
+   * @param f the pack file
+   * @return the lock for a pack file
+   */
+  protected Object lockFor(File f) {
+    final Object lock = new Object();
+    final Object prev = locks.putIfAbsent(f, lock);
+    return prev == null ? lock : prev;
+  }
+
+  /**
+   * @param iname the image name
+   * @param f the pack file of the image
+   * @return <code>true</code> if the image has tiles in their own files
+   * which are newer than its pack
+   */
+  protected boolean hasNewerTiles(String iname, File f) {
+    final File tile = new File(cpath, TileUtils.tileName(iname, 0, 0, 1));
+    return tile.isFile() &&
+           (!f.isFile() || tile.lastModified() >= f.lastModified());
+  }
+
+  /**
+   * Gets the pack of an image, packing its tiles if they are not yet
+   * packed or are newer than the pack.
+   *
+   * @param iname the image name
+   * @return the pack, or <code>null</code> if the tiles of the image
+   * are not packed
+   */
+  protected TilePack getPack(String iname) {
+    final File f = packFile(iname);
+    synchronized (packs) {
+      if (packs.containsKey(f)) return packs.get(f);
+    }
+
+    synchronized (lockFor(f)) {
+      synchronized (packs) {
+        if (packs.containsKey(f)) return packs.get(f);
+      }
+
+      TilePack pack = null;
+      try {
+        if (hasNewerTiles(iname, f) ? pack(iname) : f.isFile()) {
+          pack = new TilePack(f, true);
+        }
+      }
+      catch (IOException e) {
+        // fall back to reading the tiles from their own files
+        logger.error("", e);
+      }
+
+      synchronized (packs) {
+        packs.put(f, pack);
+      }
+      return pack;
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public BufferedImage getTile(
+    String name,
+    int tileX,
+    int tileY,
+    double scale) throws ImageIOException
+  {
+    final TilePack pack = getPack(name);
+    return pack == null ? super.getTile(name, tileX, tileY, scale) :
+      pack.read(TileUtils.tileName(name, tileX, tileY, (int)(1.0/scale)));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Dimension getTileSize(
+    String name,
+    int tileX,
+    int tileY,
+    double scale) throws ImageIOException
+  {
+    final TilePack pack = getPack(name);
+    return pack == null ? super.getTileSize(name, tileX, tileY, scale) :
+      pack.size(TileUtils.tileName(name, tileX, tileY, (int)(1.0/scale)));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean tileExists(
+    String name,
+    int tileX,
+    int tileY,
+    double scale) throws ImageIOException
+  {
+    final TilePack pack = getPack(name);
+    return pack == null ? super.tileExists(name, tileX, tileY, scale) :
+      pack.contains(TileUtils.tileName(name, tileX, tileY, (int)(1.0/scale)));
+  }
+
+  /**
+   * Moves the tiles of an image from their own files into a pack,
+   * replacing any pack the image had.
+   *
+   * @param iname the image name
+   * @return <code>false</code> if the image has no tiles in their own files
+   *
+   * @throws IOException if the pack cannot be written
+   */
+  public boolean pack(String iname) throws IOException {
+    final File f = packFile(iname);
+    synchronized (lockFor(f)) {
+      return pack(iname, f);
+    }
+  }
+
+  /**
+   * Packs the tiles of an image while holding the lock for its pack.
+   *
+   * @see #pack(String)
+   */
+  protected boolean pack(String iname, File f) throws IOException {
+    final List<File> files = new ArrayList<File>();
+    final List<String> tnames = new ArrayList<String>();
+
+    // the tiles at each scale fill a rectangle from (0,0)
+    for (int div = 1; ; div <<= 1) {
+      int ty = 0;
+      for ( ; ; ++ty) {
+        int tx = 0;
+        for ( ; ; ++tx) {
+          final String tn = TileUtils.tileName(iname, tx, ty, div);
+          final File tf = new File(cpath, tn);
+          if (!tf.isFile()) break;
+          files.add(tf);
+          tnames.add(tn);
+        }
+        if (tx == 0) break;
+      }
+      if (ty == 0) break;
+    }
+
+    if (files.isEmpty()) return false;
+
+    // release our own mapping of the pack, which would stop some
+    // platforms from replacing it
+    final TilePack old;
+    synchronized (packs) {
+      old = packs.remove(f);
+    }
+    if (old != null) {
+      old.close();
+    }
+
+    TilePack.write(f, files, tnames);
+
+    for (File tile : files) {
+      tile.delete();
+    }
+
+    synchronized (this) {
+      if (index != null) {
+        for (String tn : tnames) {
+          index.put(tn, f);
+        }
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * @return the pack holding each tile, by tile name
+   */
+  protected synchronized Map<String,File> getIndex() throws IOException {
+    if (index == null) {
+      index = new HashMap<String,File>();
+
+      final File[] files = new File(cpath).listFiles(new FileFilter() {
+        public boolean accept(File f) {
+          return f.isFile() && f.getName().endsWith(EXTENSION);
+        }
+      });
+
+      if (files != null) {
+        for (File f : files) {
+          for (String tn : new TilePack(f, false).getTileNames()) {
+            index.put(tn, f);
+          }
+        }
+      }
+    }
+    return index;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean contains(String path) throws IOException {
+    return super.contains(path) || getIndex().containsKey(path);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public InputStream getInputStream(String path) throws IOException {
+    final File f = getIndex().get(path);
+    if (f == null || super.contains(path)) {
+      return super.getInputStream(path);
+    }
+
+    // the tile in the format of a tile file
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TileUtils.write(read(f, path), out);
+    return new ByteArrayInputStream(out.toByteArray());
+  }
+
+  /**
+   * Reads a tile from a pack, using the mapping of the pack if it is
+   * already mapped.
+   *
+   * @param f the pack file
+   * @param tname the tile name
+   * @return the tile image
+   *
+   * @throws IOException if the tile cannot be read
+   */
+  protected BufferedImage read(File f, String tname) throws IOException {
+    synchronized (lockFor(f)) {
+      final TilePack pack;
+      final boolean known;
+      synchronized (packs) {
+        pack = packs.get(f);
+        known = packs.containsKey(f);
+      }
+
+      if (pack != null) return pack.read(tname);
+
+      final TilePack p = new TilePack(f, true);
+      if (!known) {
+        // keep the mapping for later reads
+        synchronized (packs) {
+          packs.put(f, p);
+        }
+        return p.read(tname);
+      }
+
+      // the pack lost to the tiles of its image, so is not kept
+      try {
+        return p.read(tname);
+      }
+      finally {
+        p.close();
+      }
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getSize(String path) throws IOException {
+    final File f = getIndex().get(path);
+    if (f == null || super.contains(path)) {
+      return super.getSize(path);
+    }
+
+    // the size of the uncompressed tile data
+    final Dimension d = new TilePack(f, false).size(path);
+    return 4L*d.width*d.height;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getMTime(String path) throws IOException {
+    final File f = getIndex().get(path);
+    return f == null || super.contains(path) ?
+      super.getMTime(path) : f.lastModified();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public List<String> getFiles() throws IOException {
+    final List<String> names = super.getFiles();
+    names.addAll(getIndex().keySet());
+    return names;
+  }
+
+  /**
+   * Unmaps the packs. They are mapped again if their tiles are read.
+   */
+  @Override
+  public void close() {
+    final List<TilePack> open;
+    synchronized (packs) {
+      open = new ArrayList<TilePack>(packs.values());
+      packs.clear();
+    }
+
+    for (TilePack pack : open) {
+      if (pack != null) {
+        pack.close();
+      }
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public List<String> getFiles(String root) throws IOException {
+    final List<String> names = super.getFiles(root);
+    for (String tn : getIndex().keySet()) {
+      if (tn.startsWith(root)) {
+        names.add(tn);
+      }
+    }
+    return names;
+  }
+}
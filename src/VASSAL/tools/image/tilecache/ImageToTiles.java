@@ -103,7 +103,7 @@ public class ImageToTiles {
       }
     };
 
-    final TileSlicer slicer = new TileSlicerImpl();
+    final TileSlicer slicer = new TileSlicerImpl(true);
 
     slicer.slice(src, iname, tpath, tw, th, exec, dotter);
     exec.shutdown();
@@ -0,0 +1,58 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.image.tilecache;
+
+import java.awt.image.BufferedImage;
+
+import VASSAL.tools.image.GeneralFilter;
+
+/**
+ * Scales one band of an image into a smaller image, which is held in
+ * memory so that the next level of a pyramid can be scaled from it.
+ *
+ * @since 3.2.17
+ */
+class ScaledLevelTask extends ScaledTileTask {
+  protected final BufferedImage level;
+
+  /**
+   * Creates a scaled band task.
+   *
+   * @param src the source image
+   * @param level the whole scaled image
+   * @param filter the resampling filter
+   * @param ty the band row
+   * @param th the standard band height
+   */
+  public ScaledLevelTask(BufferedImage src, BufferedImage level,
+                         GeneralFilter.Filter filter, int ty, int th) {
+    super(src, null, filter, 0, ty, level.getWidth(), th,
+          level.getWidth(), level.getHeight());
+    this.level = level;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Void call() {
+    // bands are disjoint, so may be copied into the level concurrently
+    level.getRaster().setRect(0, ty*th, sliceTile().getRaster());
+    return null;
+  }
+}
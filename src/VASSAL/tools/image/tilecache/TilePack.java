@@ -0,0 +1,457 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.image.tilecache;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import VASSAL.tools.image.ImageIOException;
+import VASSAL.tools.image.ImageNotFoundException;
+import VASSAL.tools.io.IOUtils;
+
+/**
+ * A file holding all of the tiles of one image, which is read by mapping
+ * it into memory.
+ *
+ * The pack format consists of a 20-byte header, an index of 60-byte
+ * entries, and the uncompressed 4-bpp data of each tile. The header is
+ * the signature 'VASSALPK' (8 bytes), the version (4 bytes), the byte
+ * order of the tile data, 0 for big-endian or 1 for little-endian
+ * (4 bytes), and the number of tiles (4 bytes). Each entry is the
+ * hash which ends the name {@link TileUtils#tileName} gives the tile
+ * (40 bytes), the tile width (4 bytes), the tile height (4 bytes), the
+ * image type (4 bytes), and the offset of the tile data from the start
+ * of the file (8 bytes). The header and index are big-endian; the tile data is in
+ * the native order of the machine which wrote it.
+ *
+ * A mapped pack should be {@link #close closed} when it is no longer
+ * used, as some platforms cannot replace a file while it is mapped.
+ *
+ * @since 3.2.17
+ */
+public class TilePack {
+  private static final Logger logger = LoggerFactory.getLogger(TilePack.class);
+
+  protected static final byte[] SIGNATURE = { 'V','A','S','S','A','L','P','K' };
+  protected static final int VERSION = 1;
+  protected static final int HEADER_SIZE = 20;
+  protected static final int NAME_SIZE = 40;
+  protected static final int ENTRY_SIZE = NAME_SIZE + 20;
+
+  /** The most bytes of tile data mapped by one buffer. */
+  protected static final long MAX_REGION = 1L << 30;
+
+  protected static class Entry {
+    public final int w;
+    public final int h;
+    public final int type;
+    public final long offset;
+
+    // the mapped region holding the tile, and the offset within it
+    public int region;
+    public int pos;
+
+    public Entry(int w, int h, int type, long offset) {
+      this.w = w;
+      this.h = h;
+      this.type = type;
+      this.offset = offset;
+    }
+  }
+
+  protected final File file;
+  protected final ByteOrder order;
+  protected final Map<String,Entry> entries;
+  protected MappedByteBuffer[] regions;
+
+  // reads hold the read lock, so that close cannot unmap under them
+  protected final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Opens a tile pack, reading its index.
+   *
+   * @param file the pack file
+   * @param map whether to map the tile data, which is not needed to
+   * check which tiles the pack holds
+   *
+   * @throws ImageIOException if the pack cannot be read
+   * @throws ImageNotFoundException if the pack isn't found
+   */
+  public TilePack(File file, boolean map) throws ImageIOException {
+    this.file = file;
+
+    if (!file.isFile()) {
+      throw new ImageNotFoundException(file);
+    }
+
+    RandomAccessFile raf = null;
+    try {
+      raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+      final FileChannel ch = raf.getChannel();
+
+      final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      readFully(ch, header, 0);
+
+      final byte[] sig = new byte[SIGNATURE.length];
+      header.get(sig);
+      if (!Arrays.equals(sig, SIGNATURE)) {
+        throw new IOException("bad signature"); //$NON-NLS-1$
+      }
+
+      final int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException("unknown version " + version); //$NON-NLS-1$
+      }
+
+      order = header.getInt() == 0 ?
+        ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+
+      final int count = header.getInt();
+      if (count < 0) {
+        throw new IOException("bad tile count " + count); //$NON-NLS-1$
+      }
+
+      final ByteBuffer index = ByteBuffer.allocate(count * ENTRY_SIZE);
+      readFully(ch, index, HEADER_SIZE);
+
+      entries = new HashMap<String,Entry>(2*count);
+      final Entry[] sorted = new Entry[count];
+      final byte[] name = new byte[NAME_SIZE];
+      for (int i = 0; i < count; ++i) {
+        index.get(name);
+        final Entry e = new Entry(
+          index.getInt(), index.getInt(), index.getInt(), index.getLong()
+        );
+        // restore the hashed directories of the tile name
+        final String sha = new String(name, "US-ASCII"); //$NON-NLS-1$
+        entries.put(
+          sha.substring(0, 1) + '/' + sha.substring(0, 2) + '/' + sha, e
+        );
+        sorted[i] = e;
+      }
+
+      if (map) {
+        regions = mapRegions(ch, sorted);
+      }
+
+      raf.close();
+    }
+    catch (IOException e) {
+      throw new ImageIOException(file, e);
+    }
+    finally {
+      IOUtils.closeQuietly(raf);
+    }
+  }
+
+  /**
+   * Maps the tile data in regions of at most {@link #MAX_REGION} bytes,
+   * none of which splits a tile.
+   */
+  protected MappedByteBuffer[] mapRegions(FileChannel ch, Entry[] sorted)
+                                                           throws IOException {
+    final List<MappedByteBuffer> maps = new ArrayList<MappedByteBuffer>();
+
+    int i = 0;
+    while (i < sorted.length) {
+      final long start = sorted[i].offset;
+      long end = start;
+      int j = i;
+      for ( ; j < sorted.length; ++j) {
+        final Entry e = sorted[j];
+        final long next = e.offset + 4L*e.w*e.h;
+        if (e.offset != end || (next - start > MAX_REGION && j > i)) break;
+        e.region = maps.size();
+        e.pos = (int) (e.offset - start);
+        end = next;
+      }
+
+      if (end > ch.size()) {
+        throw new IOException("truncated tile data"); //$NON-NLS-1$
+      }
+
+      final MappedByteBuffer mb =
+        ch.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+      mb.order(order);
+      maps.add(mb);
+      i = j;
+    }
+
+    return maps.toArray(new MappedByteBuffer[maps.size()]);
+  }
+
+  protected static void readFully(FileChannel ch, ByteBuffer bb, long pos)
+                                                           throws IOException {
+    while (bb.hasRemaining()) {
+      final int n = ch.read(bb, pos);
+      if (n < 0) throw new IOException("pack too short"); //$NON-NLS-1$
+      pos += n;
+    }
+    bb.flip();
+  }
+
+  /**
+   * @return the pack file
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * @param tname the name of a tile, as given by {@link TileUtils#tileName}
+   * @return <code>true</code> if the pack holds the tile
+   */
+  public boolean contains(String tname) {
+    return entries.containsKey(tname);
+  }
+
+  /**
+   * @return the names of the tiles in the pack
+   */
+  public List<String> getTileNames() {
+    return new ArrayList<String>(entries.keySet());
+  }
+
+  /**
+   * Gets the dimensions of a tile.
+   *
+   * @param tname the name of the tile
+   * @return the dimensions
+   *
+   * @throws ImageNotFoundException if the pack does not hold the tile
+   */
+  public Dimension size(String tname) throws ImageIOException {
+    final Entry e = getEntry(tname);
+    return new Dimension(e.w, e.h);
+  }
+
+  /**
+   * Reads a tile. The data is copied from the mapped pack straight into
+   * the raster of the tile.
+   *
+   * @param tname the name of the tile
+   * @return the tile image
+   *
+   * @throws ImageNotFoundException if the pack does not hold the tile
+   * @throws ImageIOException if the pack was opened without mapping it
+   */
+  public BufferedImage read(String tname) throws ImageIOException {
+    final Entry e = getEntry(tname);
+
+    final BufferedImage img = new BufferedImage(e.w, e.h, e.type);
+    final int[] data =
+      ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+
+    lock.readLock().lock();
+    try {
+      if (regions == null) {
+        throw new ImageIOException(file, new IOException("pack not mapped")); //$NON-NLS-1$
+      }
+
+      // duplicate, so that concurrent reads do not share a position
+      final ByteBuffer bb = regions[e.region].duplicate();
+      bb.position(e.pos);
+      final IntBuffer ib = bb.order(order).asIntBuffer();
+      ib.get(data);
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+
+    return img;
+  }
+
+  /**
+   * Unmaps the tile data. Reads in progress finish first; later reads
+   * fail as for a pack opened without mapping it.
+   */
+  public void close() {
+    lock.writeLock().lock();
+    try {
+      if (regions != null) {
+        for (MappedByteBuffer mb : regions) {
+          unmap(mb);
+        }
+        regions = null;
+      }
+    }
+    finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Releases a mapping now rather than when it is collected. There is no
+   * public API for this, so if the JVM does not have the expected
+   * internals the mapping is left for the garbage collector.
+   */
+  protected static void unmap(MappedByteBuffer mb) {
+    try {
+      try {
+        // Java 9 and later
+        final Class<?> uc = Class.forName("sun.misc.Unsafe"); //$NON-NLS-1$
+        final Method clean = uc.getMethod("invokeCleaner", ByteBuffer.class); //$NON-NLS-1$
+        final Field f = uc.getDeclaredField("theUnsafe"); //$NON-NLS-1$
+        f.setAccessible(true);
+        clean.invoke(f.get(null), mb);
+      }
+      catch (NoSuchMethodException e) {
+        // Java 8 and earlier
+        final Method cm = mb.getClass().getMethod("cleaner"); //$NON-NLS-1$
+        cm.setAccessible(true);
+        final Object cleaner = cm.invoke(mb);
+        if (cleaner != null) {
+          cleaner.getClass().getMethod("clean").invoke(cleaner); //$NON-NLS-1$
+        }
+      }
+    }
+    catch (Exception e) {
+      logger.debug("Cannot unmap tile pack", e); //$NON-NLS-1$
+    }
+  }
+
+  protected Entry getEntry(String tname) throws ImageIOException {
+    final Entry e = entries.get(tname);
+    if (e == null) {
+      throw new ImageNotFoundException(new File(file, tname));
+    }
+    return e;
+  }
+
+  /**
+   * Writes tiles to a new pack. The pack is written to a temporary file
+   * which then replaces <code>dst</code>.
+   *
+   * @param dst the pack file
+   * @param tiles the tile files to pack, in the format of {@link TileUtils}
+   * @param tnames the name of each tile, as given by {@link TileUtils#tileName}
+   *
+   * @throws IOException if the write fails
+   */
+  public static void write(File dst, List<File> tiles, List<String> tnames)
+                                                           throws IOException {
+    final int count = tiles.size();
+
+    // the index can be written before the data, as the tile headers
+    // give the size of each tile
+    final ByteBuffer index = ByteBuffer.allocate(count * ENTRY_SIZE);
+    long offset = HEADER_SIZE + (long) count * ENTRY_SIZE;
+    for (int i = 0; i < count; ++i) {
+      final String tn = tnames.get(i);
+      final byte[] name =
+        tn.substring(tn.lastIndexOf('/') + 1).getBytes("US-ASCII"); //$NON-NLS-1$
+      if (name.length != NAME_SIZE) {
+        throw new IOException("bad tile name " + tnames.get(i)); //$NON-NLS-1$
+      }
+
+      final Dimension d = TileUtils.size(tiles.get(i));
+      index.put(name)
+           .putInt(d.width)
+           .putInt(d.height)
+           .putInt(0)
+           .putLong(offset);
+      offset += 4L*d.width*d.height;
+    }
+
+    final ByteOrder order = ByteOrder.nativeOrder();
+    final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.put(SIGNATURE)
+          .putInt(VERSION)
+          .putInt(order == ByteOrder.BIG_ENDIAN ? 0 : 1)
+          .putInt(count);
+
+    final File tmp = new File(dst.getPath() + ".tmp"); //$NON-NLS-1$
+    RandomAccessFile raf = null;
+    try {
+      raf = new RandomAccessFile(tmp, "rw"); //$NON-NLS-1$
+      raf.setLength(0);
+      final FileChannel ch = raf.getChannel();
+
+      header.flip();
+      writeFully(ch, header);
+      ch.position(HEADER_SIZE + (long) count * ENTRY_SIZE);
+
+      ByteBuffer bb = null;
+      for (int i = 0; i < count; ++i) {
+        final BufferedImage tile = TileUtils.read(tiles.get(i));
+        final int[] data =
+          ((DataBufferInt) tile.getRaster().getDataBuffer()).getData();
+
+        // the type is known only once the tile is read
+        index.putInt(i*ENTRY_SIZE + NAME_SIZE + 8, tile.getType());
+
+        if (bb == null || bb.capacity() < 4*data.length) {
+          bb = ByteBuffer.allocate(4*data.length).order(order);
+        }
+        bb.clear();
+        bb.asIntBuffer().put(data);
+        bb.limit(4*data.length);
+        writeFully(ch, bb);
+      }
+
+      index.clear();
+      ch.position(HEADER_SIZE);
+      writeFully(ch, index);
+
+      raf.close();
+    }
+    finally {
+      IOUtils.closeQuietly(raf);
+    }
+
+    if (dst.exists() && !dst.delete()) {
+      tmp.delete();
+      throw new IOException("cannot replace " + dst); //$NON-NLS-1$
+    }
+
+    if (!tmp.renameTo(dst)) {
+      tmp.delete();
+      throw new IOException("cannot rename " + tmp + " to " + dst); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+  }
+
+  protected static void writeFully(FileChannel ch, ByteBuffer bb)
+                                                           throws IOException {
+    while (bb.hasRemaining()) {
+      ch.write(bb);
+    }
+  }
+}
@@ -28,6 +28,7 @@ import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import VASSAL.tools.image.GeneralFilter;
 import VASSAL.tools.lang.Callback;
@@ -39,6 +40,35 @@ import VASSAL.tools.lang.Callback;
  * @author Joel Uckelman
  */
 public class TileSlicerImpl implements TileSlicer {
+  /**
+   * The memory which pyramid mode needs beyond that of slicing each level
+   * from the source, as a fraction of the size of the source image. A
+   * level is kept while the next is scaled from it, and until the tasks
+   * which write its tiles complete, so at worst every scaled level is
+   * held at once. Together they are at most a third of the source.
+   *
+   * @since 3.2.17
+   */
+  public static final double PYRAMID_OVERHEAD = 1.0/3;
+
+  protected final boolean pyramid;
+
+  /**
+   * Creates a slicer which scales each level from the source image.
+   */
+  public TileSlicerImpl() {
+    this(false);
+  }
+
+  /**
+   * @param pyramid whether to scale each level from the level before it,
+   * rather than from the source image
+   * @since 3.2.17
+   */
+  public TileSlicerImpl(boolean pyramid) {
+    this.pyramid = pyramid;
+  }
+
   /**
    * Slices an image into tiles.
    *
@@ -64,6 +94,7 @@ public class TileSlicerImpl implements TileSlicer {
     final int sh = src.getHeight();
 
     final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+    final List<Future<Void>> levels = new ArrayList<Future<Void>>();
 
     // slice unscaled 1:1 tiles
     final TaskMaker unscaled = new TaskMaker() {
@@ -73,35 +104,52 @@ public class TileSlicerImpl implements TileSlicer {
       }
     };
 
-    queueTileTasks(
-      src, iname, tpath, 1, tw, th, sw, sh, unscaled, exec, futures
-    );
+    final GeneralFilter.Filter filter = new GeneralFilter.Lanczos3Filter();
 
-    // slice scaled tiles, starting at 1:2
-    final TaskMaker scaled = new TaskMaker() {
-      private final GeneralFilter.Filter filter =
-        new GeneralFilter.Lanczos3Filter();
+    try {
+      queueTileTasks(
+        src, iname, tpath, 1, tw, th, sw, sh, unscaled, exec, futures
+      );
 
-      public TileTask make(BufferedImage src, File f,
-                           int tx, int ty, int tw, int th, int dw, int dh) {
-        return new ScaledTileTask(src, f, filter, tx, ty, tw, th, dw, dh);
+      if (pyramid) {
+        // scale each level from the one before it, and slice its tiles
+        // while the next level is scaled
+        int done = 0;
+        BufferedImage level = src;
+        for (int div = 2; sw/div > 0 && sh/div > 0; div <<= 1) {
+          final int dw = sw/div;
+          final int dh = sh/div;
+
+          level = scaleLevel(level, dw, dh, th, filter, exec, levels);
+
+          queueTileTasks(
+            level, iname, tpath, div, tw, th, dw, dh, unscaled, exec, futures
+          );
+
+          done = report(futures, done, progress, false);
+        }
+        report(futures, done, progress, true);
       }
-    };
+      else {
+        // slice scaled tiles, starting at 1:2
+        final TaskMaker scaled = new TaskMaker() {
+          public TileTask make(BufferedImage src, File f,
+                               int tx, int ty, int tw, int th, int dw, int dh) {
+            return new ScaledTileTask(src, f, filter, tx, ty, tw, th, dw, dh);
+          }
+        };
 
-    for (int div = 2; sw/div > 0 && sh/div > 0; div <<= 1) {
-      final int dw = sw/div;
-      final int dh = sh/div;
+        for (int div = 2; sw/div > 0 && sh/div > 0; div <<= 1) {
+          final int dw = sw/div;
+          final int dh = sh/div;
 
-      queueTileTasks(
-        src, iname, tpath, div, tw, th, dw, dh, scaled, exec, futures
-      );
-    }
+          queueTileTasks(
+            src, iname, tpath, div, tw, th, dw, dh, scaled, exec, futures
+          );
+        }
 
-    // wait for all tiles to complete
-    try {
-      for (Future<Void> f : futures) {
-        f.get();
-        progress.receive(null);
+        // wait for all tiles to complete
+        report(futures, 0, progress, true);
       }
     }
     catch (CancellationException e) {
@@ -117,12 +165,92 @@ public class TileSlicerImpl implements TileSlicer {
     }
     finally {
       // cancel everything if anything fails
+      for (Future<Void> f : levels) {
+        if (!f.isDone()) f.cancel(true);
+      }
+
       for (Future<Void> f : futures) {
         if (!f.isDone()) f.cancel(true);
       }
     }
   }
 
+  /**
+   * Reports the tiles which are complete, in order.
+   *
+   * @param futures the tile tasks
+   * @param done the number of tasks already reported
+   * @param progress a callback for indicating progress
+   * @param wait whether to wait for all of the tasks to complete
+   * @return the number of tasks reported
+   */
+  protected static int report(
+    List<Future<Void>> futures,
+    int done,
+    Callback<Void> progress,
+    boolean wait
+  ) throws IOException, ExecutionException, InterruptedException
+  {
+    for ( ; done < futures.size(); ++done) {
+      final Future<Void> f = futures.get(done);
+      if (!wait && !f.isDone()) break;
+      f.get();
+      progress.receive(null);
+    }
+    return done;
+  }
+
+  /**
+   * Scales an image in bands, and waits for all of them to complete.
+   * The bands are queued behind any tiles already queued, so the calling
+   * thread scales each band itself unless a thread of the executor has
+   * started it first. The next level is then scaled as soon as the level
+   * it is scaled from is complete.
+   *
+   * @param src the image to scale
+   * @param dw the width of the scaled image
+   * @param dh the height of the scaled image
+   * @param bh the height of each band
+   * @param filter the resampling filter
+   * @param exec the executor in which to run tasks
+   * @param futures the list to which to add the band tasks
+   * @return the scaled image
+   */
+  protected static BufferedImage scaleLevel(
+    BufferedImage src,
+    int dw,
+    int dh,
+    int bh,
+    GeneralFilter.Filter filter,
+    ExecutorService exec,
+    List<Future<Void>> futures
+  ) throws ExecutionException, InterruptedException
+  {
+    final BufferedImage level = new BufferedImage(dw, dh, src.getType());
+
+    final int brows = (int) Math.ceil((double) dh / bh);
+    final List<FutureTask<Void>> bands = new ArrayList<FutureTask<Void>>();
+    for (int by = 0; by < brows; ++by) {
+      final FutureTask<Void> band = new FutureTask<Void>(
+        new ScaledLevelTask(src, level, filter, by, bh)
+      );
+      bands.add(band);
+      futures.add(band);
+      exec.execute(band);
+    }
+
+    // a band which is already started or done is not run again
+    for (FutureTask<Void> band : bands) {
+      band.run();
+    }
+
+    for (FutureTask<Void> band : bands) {
+      band.get();
+    }
+
+    return level;
+  }
+
   protected static interface TaskMaker {
     public TileTask make(BufferedImage src, File f,
                          int tx, int ty, int tw, int th, int dw, int dh);
@@ -121,7 +121,7 @@ public class ZipFileImageTiler {
       final ImageTypeConverter itc = new FallbackImageTypeConverter(tfac);
       final ImageLoader loader = new ImageIOImageLoader(itc);
 
-      final TileSlicer slicer = new TileSlicerImpl();
+      final TileSlicer slicer = new TileSlicerImpl(true);
       final FileArchiveImageTiler tiler = new FileArchiveImageTiler();
 
       final String portProp = System.getProperty("VASSAL.port");
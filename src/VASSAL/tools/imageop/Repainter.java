@@ -108,7 +108,7 @@ public class Repainter implements ImageOpObserver {
   }
 
   public void cancelled(Op<BufferedImage> op, CancellationException e) {
-    ErrorDialog.bug(e);
+    // requests are cancelled only when their results are no longer wanted
   }
 
   public void interrupted(Op<BufferedImage> op, InterruptedException e) {
@@ -22,7 +22,6 @@ package VASSAL.tools.imageop;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
-import java.io.BufferedInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Collections;
@@ -109,10 +108,7 @@ public class RotateScaleOpSVGImpl extends AbstractTileOpImpl
     final String name = getName();
 
     try {
-      final SVGRenderer renderer = new SVGRenderer(
-        archive.getURL(name),
-        new BufferedInputStream(archive.getInputStream(name))
-      );
+      final SVGRenderer renderer = new SVGRenderer(archive, name);
 
       if (size == null) fixSize();
 
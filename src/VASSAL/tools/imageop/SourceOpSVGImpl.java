@@ -21,7 +21,6 @@ package VASSAL.tools.imageop;
 
 import java.awt.Dimension;
 import java.awt.image.BufferedImage;
-import java.io.BufferedInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -85,10 +84,7 @@ public class SourceOpSVGImpl extends AbstractTiledOpImpl
    */
   public BufferedImage eval() throws ImageIOException {
     try {
-      final SVGRenderer renderer = new SVGRenderer(
-        archive.getURL(name),
-        new BufferedInputStream(archive.getInputStream(name))
-      );
+      final SVGRenderer renderer = new SVGRenderer(archive, name);
 
       return renderer.render();
     }
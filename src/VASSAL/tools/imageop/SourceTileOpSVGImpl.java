@@ -22,7 +22,6 @@ package VASSAL.tools.imageop;
 import java.awt.Dimension;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
-import java.io.BufferedInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Collections;
@@ -89,10 +88,7 @@ public class SourceTileOpSVGImpl extends AbstractTileOpImpl
     final String name = getName();
 
     try {
-      final SVGRenderer renderer = new SVGRenderer(
-        archive.getURL(name),
-        new BufferedInputStream(archive.getInputStream(name))
-      );
+      final SVGRenderer renderer = new SVGRenderer(archive, name);
 
       final Rectangle2D aoi = new Rectangle2D.Float(x0, y0, x1-x0, y1-y0);
       return renderer.render(0.0, 1.0, aoi);
@@ -0,0 +1,441 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.imageop;
+
+import java.awt.Component;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import VASSAL.tools.ErrorDialog;
+import VASSAL.tools.opcache.Op;
+import VASSAL.tools.opcache.OpCache;
+
+/**
+ * Schedules the requests for the tiles of an {@link ImageOp} which a
+ * component shows through a viewport.
+ *
+ * <p>Tiles nearer the center of the viewport are requested with higher
+ * priority. Requests for tiles which have moved more than a margin away
+ * from the viewport are cancelled if they have not started. The ring of
+ * tiles just outside the viewport, on the sides toward which it last
+ * moved, is prefetched, as are the tiles under the viewport at adjacent
+ * zoom levels.</p>
+ *
+ * <p>A frame is painted by calling {@link #begin}, then
+ * {@link #getFutureTile} for each visible tile, then {@link #end}. All
+ * of these must be called on the Event Dispatch Thread. Tiles are
+ * repainted from the threads which complete their requests.</p>
+ *
+ * @since 3.2.17
+ */
+public class TileScheduler {
+  /** The priority added to that of tiles which are not yet visible. */
+  public static final int PREFETCH_PRIORITY = 1 << 20;
+
+  protected final OpCache cache = AbstractOpImpl.cache;
+  protected final Component c;
+  protected final int margin;
+
+  // the current frame; the op and its location are read by observers
+  // on the threads which complete requests
+  protected volatile ImageOp op;
+  protected volatile Point location;
+  protected Rectangle view;
+  protected Rectangle range;
+  protected Point center;
+  protected int dx;
+  protected int dy;
+
+  protected Set<Point> visible = new HashSet<Point>();
+  protected Set<Point> nextVisible = new HashSet<Point>();
+
+  // the unfinished requests we made, by op and tile
+  protected final Map<ImageOp,Map<Point,Future<BufferedImage>>> pending =
+    new HashMap<ImageOp,Map<Point,Future<BufferedImage>>>();
+
+  // the tiles of each adjacent zoom level which we last prefetched
+  protected final Map<ImageOp,Rectangle> prefetchRanges =
+    new HashMap<ImageOp,Rectangle>();
+
+  protected long exposed;
+  protected long exposedReady;
+  protected long prefetched;
+  protected long cancelled;
+
+  /**
+   * @param c the component which shows the tiles
+   */
+  public TileScheduler(Component c) {
+    this(c, 1);
+  }
+
+  /**
+   * @param c the component which shows the tiles
+   * @param margin the number of tiles beyond the viewport for which
+   * requests are kept
+   */
+  public TileScheduler(Component c, int margin) {
+    this.c = c;
+    this.margin = margin;
+  }
+
+  /**
+   * @return the component which shows the tiles
+   */
+  public Component getComponent() {
+    return c;
+  }
+
+  /**
+   * Begins a frame.
+   *
+   * @param op the op to paint
+   * @param location the position of the op in the component
+   * @param view the visible part of the op, in the coordinates of the op
+   */
+  public void begin(ImageOp op, Point location, Rectangle view) {
+    final Point ncenter = new Point(view.x + view.width/2,
+                                    view.y + view.height/2);
+
+    if (op.equals(this.op) && location.equals(this.location)) {
+      // remember which way the viewport moved, if it did
+      if (ncenter.x != center.x) dx = ncenter.x - center.x;
+      if (ncenter.y != center.y) dy = ncenter.y - center.y;
+    }
+    else {
+      visible.clear();
+      dx = dy = 0;
+    }
+
+    // the location is set first, so that an observer which sees the new
+    // op sees its location too
+    this.location = new Point(location);
+    this.op = op;
+    this.view = view;
+    this.center = ncenter;
+    range = tileRange(op, view);
+    nextVisible.clear();
+  }
+
+  /**
+   * Gets a visible tile.
+   *
+   * @param tile the tile
+   * @return the <code>Future</code> for the tile
+   *
+   * @throws ExecutionException if the request fails
+   */
+  public Future<BufferedImage> getFutureTile(Point tile)
+                                                    throws ExecutionException {
+    final Future<BufferedImage> fim = request(op, tile, priority(op, tile));
+
+    nextVisible.add(tile);
+    if (!visible.contains(tile)) {
+      ++exposed;
+      if (fim.isDone()) ++exposedReady;
+    }
+
+    return fim;
+  }
+
+  /**
+   * Ends a frame, cancelling requests for tiles which are out of range
+   * and prefetching tiles which may soon be visible.
+   *
+   * @param adjacent the ops for the adjacent zoom levels
+   */
+  public void end(List<ImageOp> adjacent) {
+    final Set<Point> tmp = visible;
+    visible = nextVisible;
+    nextVisible = tmp;
+
+    // the viewport of each adjacent level
+    prefetchRanges.clear();
+    final double w = op.getWidth();
+    final double h = op.getHeight();
+    for (ImageOp aop : adjacent) {
+      final double sx = aop.getWidth() / w;
+      final double sy = aop.getHeight() / h;
+      final Rectangle r = tileRange(aop, new Rectangle(
+        (int) (view.x * sx), (int) (view.y * sy),
+        (int) Math.ceil(view.width * sx), (int) Math.ceil(view.height * sy)
+      ));
+
+      if (r != null) prefetchRanges.put(aop, r);
+    }
+
+    cancelStale();
+
+    try {
+      prefetchRing();
+
+      for (Map.Entry<ImageOp,Rectangle> e : prefetchRanges.entrySet()) {
+        final ImageOp aop = e.getKey();
+        final Rectangle r = e.getValue();
+        for (int ty = r.y; ty < r.y + r.height; ++ty) {
+          for (int tx = r.x; tx < r.x + r.width; ++tx) {
+            prefetch(aop, new Point(tx, ty), 2*PREFETCH_PRIORITY);
+          }
+        }
+      }
+    }
+    catch (ExecutionException e) {
+      // asynchronous requests do not throw
+      ErrorDialog.bug(e);
+    }
+  }
+
+  /**
+   * Prefetches the tiles just outside the viewport on the sides toward
+   * which it last moved, or on all sides if it has not moved.
+   */
+  protected void prefetchRing() throws ExecutionException {
+    if (range == null) return;
+
+    final int x0 = range.x - 1;
+    final int x1 = range.x + range.width;
+    final int y0 = range.y - 1;
+    final int y1 = range.y + range.height;
+
+    final boolean still = dx == 0 && dy == 0;
+    final boolean left = still || dx < 0;
+    final boolean right = still || dx > 0;
+    final boolean up = still || dy < 0;
+    final boolean down = still || dy > 0;
+
+    for (int ty = y0; ty <= y1; ++ty) {
+      for (int tx = x0; tx <= x1; ++tx) {
+        if ((tx == x0 && left) || (tx == x1 && right) ||
+            (ty == y0 && up) || (ty == y1 && down)) {
+          prefetch(op, new Point(tx, ty), PREFETCH_PRIORITY);
+        }
+      }
+    }
+  }
+
+  protected void prefetch(ImageOp op, Point tile, int base)
+                                                    throws ExecutionException {
+    if (tile.x < 0 || tile.x >= op.getNumXTiles() ||
+        tile.y < 0 || tile.y >= op.getNumYTiles()) return;
+
+    final Map<Point,Future<BufferedImage>> m = pending.get(op);
+    if (m != null && m.containsKey(tile)) return;
+
+    if (!request(op, tile, base + priority(op, tile)).isDone()) ++prefetched;
+  }
+
+  /**
+   * Cancels the unfinished requests for tiles which are neither within
+   * the margin around the viewport nor to be prefetched.
+   */
+  protected void cancelStale() {
+    for (Iterator<Map.Entry<ImageOp,Map<Point,Future<BufferedImage>>>> i =
+           pending.entrySet().iterator(); i.hasNext(); ) {
+      final Map.Entry<ImageOp,Map<Point,Future<BufferedImage>>> e = i.next();
+      final ImageOp o = e.getKey();
+
+      Rectangle keep = null;
+      if (o.equals(op)) {
+        if (range != null) {
+          keep = new Rectangle(range);
+          keep.grow(margin, margin);
+        }
+      }
+      else {
+        keep = prefetchRanges.get(o);
+      }
+
+      for (Iterator<Map.Entry<Point,Future<BufferedImage>>> j =
+             e.getValue().entrySet().iterator(); j.hasNext(); ) {
+        final Map.Entry<Point,Future<BufferedImage>> t = j.next();
+        final Future<BufferedImage> fim = t.getValue();
+        if (fim.isDone()) {
+          j.remove();
+        }
+        else if (keep == null || !keep.contains(t.getKey())) {
+          if (cache.cancel(fim)) ++cancelled;
+          j.remove();
+        }
+      }
+
+      if (e.getValue().isEmpty()) i.remove();
+    }
+  }
+
+  protected Future<BufferedImage> request(ImageOp op, Point tile,
+                                          int priority)
+                                                    throws ExecutionException {
+    final Future<BufferedImage> fim =
+      op.getFutureTile(tile.x, tile.y, new Observer(op, tile));
+
+    if (!fim.isDone()) {
+      cache.setPriority(fim, priority);
+
+      Map<Point,Future<BufferedImage>> m = pending.get(op);
+      if (m == null) {
+        m = new HashMap<Point,Future<BufferedImage>>();
+        pending.put(op, m);
+      }
+      m.put(tile, fim);
+    }
+
+    return fim;
+  }
+
+  /**
+   * @return the priority of a tile of the op being painted
+   */
+  protected int priority(Point tile) {
+    return priority(op, tile);
+  }
+
+  /**
+   * @param o the op being painted, or one at an adjacent zoom level
+   * @return the priority of a tile, which grows with the square of its
+   * distance, in tiles of <code>o</code>, from the center of the viewport
+   */
+  protected int priority(ImageOp o, Point tile) {
+    final double cx = center.x * ((double) o.getWidth() / op.getWidth());
+    final double cy = center.y * ((double) o.getHeight() / op.getHeight());
+    final double ex = (tile.x + 0.5) - cx / o.getTileWidth();
+    final double ey = (tile.y + 0.5) - cy / o.getTileHeight();
+    return (int) Math.min(PREFETCH_PRIORITY - 1, 16*(ex*ex + ey*ey));
+  }
+
+  /**
+   * @return the tiles of an op which intersect a rectangle, or
+   * <code>null</code> if there are none
+   */
+  protected static Rectangle tileRange(ImageOp op, Rectangle r) {
+    r = r.intersection(new Rectangle(op.getSize()));
+    if (r.isEmpty()) return null;
+
+    final int tw = op.getTileWidth();
+    final int th = op.getTileHeight();
+    final int x0 = r.x / tw;
+    final int y0 = r.y / th;
+    return new Rectangle(x0, y0,
+                         (r.x + r.width - 1) / tw - x0 + 1,
+                         (r.y + r.height - 1) / th - y0 + 1);
+  }
+
+  /**
+   * @return the number of requests of any kind waiting to run
+   */
+  public int getQueueDepth() {
+    return cache.getQueueDepth();
+  }
+
+  /**
+   * @return the number of requests made by this scheduler which have not
+   * finished
+   */
+  public int getPendingCount() {
+    int n = 0;
+    for (Map<Point,Future<BufferedImage>> m : pending.values()) {
+      n += m.size();
+    }
+    return n;
+  }
+
+  /**
+   * @return the number of times a tile has come into view
+   */
+  public long getExposedCount() {
+    return exposed;
+  }
+
+  /**
+   * @return the fraction of tiles which were ready when they came into view
+   */
+  public double getHitRate() {
+    return exposed == 0 ? 0.0 : (double) exposedReady / exposed;
+  }
+
+  /**
+   * @return the number of tiles requested before they came into view
+   */
+  public long getPrefetchCount() {
+    return prefetched;
+  }
+
+  /**
+   * @return the number of requests cancelled before they ran
+   */
+  public long getCancelledCount() {
+    return cancelled;
+  }
+
+  /**
+   * Repaints a tile when it is ready, if it is still part of the op
+   * being painted.
+   */
+  protected class Observer implements ImageOpObserver {
+    protected final ImageOp op;
+    protected final Point tile;
+
+    public Observer(ImageOp op, Point tile) {
+      this.op = op;
+      this.tile = tile;
+    }
+
+    public void imageOpChange(ImageOp op, boolean success) {
+      if (success) repaint();
+    }
+
+    public void succeeded(Op<BufferedImage> op, BufferedImage img) {
+      repaint();
+    }
+
+    protected void repaint() {
+      // read the op before its location, which was set before it
+      if (op.equals(TileScheduler.this.op)) {
+        final Point loc = location;
+        final int tw = op.getTileWidth();
+        final int th = op.getTileHeight();
+        c.repaint(loc.x + tile.x*tw, loc.y + tile.y*th, tw, th);
+      }
+    }
+
+    public void cancelled(Op<BufferedImage> op, CancellationException e) {
+      // we cancel only requests for tiles which are out of range
+    }
+
+    public void interrupted(Op<BufferedImage> op, InterruptedException e) {
+      ErrorDialog.bug(e);
+    }
+
+    public void failed(Op<BufferedImage> op, ExecutionException e) {
+      if (!VASSAL.tools.imageop.Op.handleException(e)) {
+        ErrorDialog.bug(e);
+      }
+    }
+  }
+}
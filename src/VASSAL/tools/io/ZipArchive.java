@@ -22,7 +22,6 @@ package VASSAL.tools.io;
 import static VASSAL.tools.IterableEnumeration.iterate;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -32,6 +31,7 @@ import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -41,10 +41,11 @@ import java.util.concurrent.locks.ReadWriteLock;
 import java.util.zip.CRC32;
 import java.util.zip.CheckedOutputStream;
 import java.util.zip.Checksum;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.io.FileUtils;
 
@@ -61,6 +62,7 @@ public class ZipArchive implements FileArchive {
 
   private boolean modified = false;
   private boolean closed = true;
+  private int level = Deflater.BEST_COMPRESSION;
 
   private static class Entry {
     public ZipEntry ze;
@@ -410,49 +412,64 @@ public class ZipArchive implements FileArchive {
     }
   }
 
+  /**
+   * Sets the compression level used for new and modified files when the
+   * archive is written. Unmodified files keep their existing compression.
+   *
+   * @param level the compression level, from 0 to 9, or
+   * {@link Deflater#DEFAULT_COMPRESSION}
+   */
+  public void setCompressionLevel(int level) {
+    if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+      throw new IllegalArgumentException("invalid compression level");
+    }
+
+    w.lock();
+    try {
+      this.level = level;
+    }
+    finally {
+      w.unlock();
+    }
+  }
+
   private void writeToDisk() throws IOException {
     // write all files to a temporary zip archive
     final File tmpFile =
       File.createTempFile("tmp", ".zip", archiveFile.getParentFile());
 
-    ZipOutputStream out = null;
+    ZipWriter out = null;
     try {
-      out = new ZipOutputStream(
-              new BufferedOutputStream(
-                new FileOutputStream(tmpFile)));
-      out.setLevel(9);
-
-      final byte[] buf = new byte[8192];
+      out = new ZipWriter(tmpFile);
+      out.setLevel(level);
 
       if (zipFile != null) {
         zipFile.close();
         zipFile = null;
 
-        // copy unmodified file into the temp archive
-        ZipInputStream in = null;
+        // copy unmodified files into the temp archive
+        RandomAccessFile in = null;
         try {
-          in = new ZipInputStream(
-                 new BufferedInputStream(
-                   new FileInputStream(archiveFile)));
-
-          ZipEntry ze = null;
-          while ((ze = in.getNextEntry()) != null) {
-            // skip modified or removed entries
-            final Entry e = entries.get(ze.getName());
-            if (e == null || e.file != null) continue;
-
-            // We can't reuse entries for compressed files because there's
-            // no way to reset all fields to acceptable values.
-            if (ze.getMethod() == ZipEntry.DEFLATED) {
-              final ZipEntry nze = new ZipEntry(ze.getName());
-              nze.setTime(ze.getTime());
-              ze = nze;
-            }
+          in = new RandomAccessFile(archiveFile, "r");
+
+          List<ZipWriter.RawEntry> raw = null;
+          try {
+            raw = ZipWriter.readCentralDirectory(in);
+          }
+          catch (ZipException ex) {
+            // not an archive we can copy from directly
+          }
 
-            out.putNextEntry(ze);
-            IOUtils.copy(in, out, buf);
+          if (raw != null) {
+            // copy the compressed data of each unmodified file verbatim
+            for (ZipWriter.RawEntry re : raw) {
+              // skip modified or removed entries
+              final Entry e = entries.get(re.getName());
+              if (e == null || e.file != null) continue;
 
-            entries.remove(ze.getName());
+              out.copyRawEntry(in, re);
+              entries.remove(re.getName());
+            }
           }
 
           in.close();
@@ -460,6 +477,14 @@ public class ZipArchive implements FileArchive {
         finally {
           IOUtils.closeQuietly(in);
         }
+
+        // recompress whatever could not be copied verbatim
+        for (Entry e : entries.values()) {
+          if (e != null && e.file == null) {
+            copyEntries(out);
+            break;
+          }
+        }
       }
 
       for (Entry e : entries.values()) {
@@ -471,8 +496,7 @@ public class ZipArchive implements FileArchive {
         try {
           in = new FileInputStream(e.file);
           e.ze.setTime(e.file.lastModified());
-          out.putNextEntry(e.ze);
-          IOUtils.copy(in, out, buf);
+          out.writeEntry(e.ze, in);
           in.close();
         }
         finally {
@@ -523,6 +547,39 @@ public class ZipArchive implements FileArchive {
     entries.clear();
   }
 
+  /** Copies unmodified files into the temp archive by recompressing them. */
+  private void copyEntries(ZipWriter out) throws IOException {
+    ZipInputStream in = null;
+    try {
+      in = new ZipInputStream(
+             new BufferedInputStream(
+               new FileInputStream(archiveFile)));
+
+      ZipEntry ze = null;
+      while ((ze = in.getNextEntry()) != null) {
+        // skip modified or removed entries
+        final Entry e = entries.get(ze.getName());
+        if (e == null || e.file != null) continue;
+
+        // We can't reuse entries for compressed files because there's
+        // no way to reset all fields to acceptable values.
+        if (ze.getMethod() == ZipEntry.DEFLATED) {
+          final ZipEntry nze = new ZipEntry(ze.getName());
+          nze.setTime(ze.getTime());
+          ze = nze;
+        }
+
+        out.writeEntry(ze, in);
+        entries.remove(ze.getName());
+      }
+
+      in.close();
+    }
+    finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
   /** {@inheritDoc} */
   public boolean contains(String path) throws IOException {
     r.lock();
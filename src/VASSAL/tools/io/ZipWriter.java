@@ -0,0 +1,526 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a ZIP archive which may reuse the compressed data of entries
+ * in another ZIP archive. Entries copied with {@link #copyRawEntry} are
+ * written exactly as they appear in the source archive&mdash;local
+ * header, compressed data and data descriptor&mdash;so they need not be
+ * decompressed and compressed again. Only entries written with
+ * {@link #writeEntry} are compressed.
+ *
+ * ZIP64 archives are not supported.
+ *
+ * @since 3.2.17
+ */
+public class ZipWriter implements Closeable {
+  private static final int LOCSIG = 0x04034b50;
+  private static final int EXTSIG = 0x08074b50;
+  private static final int CENSIG = 0x02014b50;
+  private static final int ENDSIG = 0x06054b50;
+
+  private static final int LOCHDR = 30;
+  private static final int CENHDR = 46;
+  private static final int ENDHDR = 22;
+
+  /** General purpose flag: sizes and CRC follow the data. */
+  private static final int FLAG_DESCRIPTOR = 0x08;
+
+  /** General purpose flag: the name is encoded as UTF-8. */
+  private static final int FLAG_UTF8 = 0x800;
+
+  private static final long MAX_32 = 0xFFFFFFFFL;
+  private static final int MAX_16 = 0xFFFF;
+
+  /**
+   * An entry as recorded in the central directory of an existing archive.
+   */
+  public static class RawEntry {
+    private final String name;
+    private final byte[] record;
+    private final long offset;
+    private final long compressedSize;
+    private final int flags;
+
+    private RawEntry(String name, byte[] record, long offset,
+                     long compressedSize, int flags) {
+      this.name = name;
+      this.record = record;
+      this.offset = offset;
+      this.compressedSize = compressedSize;
+      this.flags = flags;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getCompressedSize() {
+      return compressedSize;
+    }
+
+    @Override
+    public String toString() {
+      return getClass().getName() + "[name=\"" + name + "\"]";
+    }
+  }
+
+  private final CountingOutputStream out;
+  private final ByteArrayOutputStream central = new ByteArrayOutputStream();
+  private final byte[] buf = new byte[8192];
+  private int count = 0;
+  private int level = Deflater.BEST_COMPRESSION;
+  private boolean closed = false;
+
+  /**
+   * Creates a ZIP archive.
+   *
+   * @param file the archive to create
+   * @throws IOException
+   */
+  public ZipWriter(File file) throws IOException {
+    this(new FileOutputStream(file));
+  }
+
+  /**
+   * Creates a ZIP archive.
+   *
+   * @param out the stream to which to write the archive
+   */
+  public ZipWriter(OutputStream out) {
+    if (out == null) throw new IllegalArgumentException();
+    this.out = new CountingOutputStream(new BufferedOutputStream(out));
+  }
+
+  /**
+   * Sets the compression level for entries written by {@link #writeEntry}.
+   *
+   * @param level the compression level, from 0 to 9, or
+   * {@link Deflater#DEFAULT_COMPRESSION}
+   */
+  public void setLevel(int level) {
+    if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+      throw new IllegalArgumentException("invalid compression level");
+    }
+    this.level = level;
+  }
+
+  /**
+   * Reads the central directory of a ZIP archive.
+   *
+   * @param src the archive
+   * @return the entries of <code>src</code>, in the order of its central
+   * directory
+   * @throws ZipException if <code>src</code> is not a ZIP archive, or is
+   * one which is not supported
+   * @throws IOException
+   */
+  public static List<RawEntry> readCentralDirectory(RandomAccessFile src)
+                                                           throws IOException {
+    // find the end of central directory record, which is followed by
+    // a comment of at most 64k
+    final long len = src.length();
+    final int tail = (int) Math.min(len, ENDHDR + MAX_16);
+    final byte[] b = new byte[tail];
+    src.seek(len - tail);
+    src.readFully(b);
+
+    int end = -1;
+    for (int i = tail - ENDHDR; i >= 0; --i) {
+      if (getInt(b, i) == ENDSIG &&
+          i + ENDHDR + getShort(b, i + 20) == tail) {
+        end = i;
+        break;
+      }
+    }
+
+    if (end < 0) {
+      throw new ZipException("end of central directory not found");
+    }
+
+    final int entries = getShort(b, end + 10);
+    final long size = getUInt(b, end + 12);
+    final long start = getUInt(b, end + 16);
+
+    if (getShort(b, end + 4) != 0 || getShort(b, end + 6) != 0 ||
+        getShort(b, end + 8) != entries ||
+        entries == MAX_16 || size == MAX_32 || start == MAX_32) {
+      throw new ZipException("multi-disk and ZIP64 archives not supported");
+    }
+
+    if (start + size > len - tail + end) {
+      throw new ZipException("invalid central directory");
+    }
+
+    final byte[] dir = new byte[(int) size];
+    src.seek(start);
+    src.readFully(dir);
+
+    final List<RawEntry> list = new ArrayList<RawEntry>(entries);
+    int pos = 0;
+    for (int i = 0; i < entries; ++i) {
+      if (pos + CENHDR > dir.length || getInt(dir, pos) != CENSIG) {
+        throw new ZipException("invalid central directory");
+      }
+
+      final int flags = getShort(dir, pos + 8);
+      final long csize = getUInt(dir, pos + 20);
+      final long usize = getUInt(dir, pos + 24);
+      final int nlen = getShort(dir, pos + 28);
+      final int rlen = CENHDR + nlen + getShort(dir, pos + 30) +
+                       getShort(dir, pos + 32);
+      final long offset = getUInt(dir, pos + 42);
+
+      if (csize == MAX_32 || usize == MAX_32 || offset == MAX_32) {
+        throw new ZipException("ZIP64 archives not supported");
+      }
+
+      if (pos + rlen > dir.length) {
+        throw new ZipException("invalid central directory");
+      }
+
+      // ZipFile reads all names as UTF-8, so we do too
+      final String name = new String(dir, pos + CENHDR, nlen, "UTF-8");
+
+      final byte[] record = new byte[rlen];
+      System.arraycopy(dir, pos, record, 0, rlen);
+
+      list.add(new RawEntry(name, record, offset, csize, flags));
+      pos += rlen;
+    }
+
+    return list;
+  }
+
+  /**
+   * Copies an entry from another archive without decompressing it.
+   *
+   * @param src the archive containing the entry
+   * @param e the entry, as read by {@link #readCentralDirectory} from
+   * <code>src</code>
+   * @throws IOException
+   */
+  public void copyRawEntry(RandomAccessFile src, RawEntry e)
+                                                           throws IOException {
+    ensureOpen();
+
+    final byte[] loc = new byte[LOCHDR];
+    src.seek(e.offset);
+    src.readFully(loc);
+
+    if (getInt(loc, 0) != LOCSIG) {
+      throw new ZipException("invalid local header for " + e.name);
+    }
+
+    long len = LOCHDR + getShort(loc, 26) + getShort(loc, 28) +
+               e.compressedSize;
+
+    // the data descriptor may or may not have a signature
+    if ((e.flags & FLAG_DESCRIPTOR) != 0) {
+      final byte[] sig = new byte[4];
+      src.seek(e.offset + len);
+      src.readFully(sig);
+      len += getInt(sig, 0) == EXTSIG ? 16 : 12;
+    }
+
+    // the central directory record moves with the entry
+    final byte[] record = e.record.clone();
+    putInt(record, 42, checkOffset(out.getCount()));
+    addToCentralDirectory(record);
+
+    src.seek(e.offset);
+    while (len > 0) {
+      final int n = src.read(buf, 0, (int) Math.min(len, buf.length));
+      if (n < 0) {
+        throw new ZipException("unexpected end of entry " + e.name);
+      }
+      out.write(buf, 0, n);
+      len -= n;
+    }
+  }
+
+  /**
+   * Writes an entry, compressing it if its method is
+   * {@link ZipEntry#DEFLATED}, or if its method is unset.
+   *
+   * @param ze the entry; its size and CRC must be set if its method is
+   * {@link ZipEntry#STORED}
+   * @param in the contents of the entry
+   * @throws IOException
+   */
+  public void writeEntry(ZipEntry ze, InputStream in) throws IOException {
+    ensureOpen();
+
+    final boolean stored = ze.getMethod() == ZipEntry.STORED;
+    if (stored && (ze.getSize() < 0 || ze.getCrc() < 0)) {
+      throw new ZipException(
+        "STORED entry missing size or CRC: " + ze.getName());
+    }
+
+    final byte[] name = encodeName(ze.getName());
+    final long time = ze.getTime() == -1 ?
+      System.currentTimeMillis() : ze.getTime();
+    final int dostime = toDosTime(time);
+    final int method = stored ? ZipEntry.STORED : ZipEntry.DEFLATED;
+    final int flags = stored ? FLAG_UTF8 : FLAG_UTF8 | FLAG_DESCRIPTOR;
+    final int version = stored ? 10 : 20;
+    final long offset = out.getCount();
+
+    // local header; the sizes of deflated entries follow the data
+    final byte[] loc = new byte[LOCHDR];
+    putInt(loc, 0, LOCSIG);
+    putShort(loc, 4, version);
+    putShort(loc, 6, flags);
+    putShort(loc, 8, method);
+    putInt(loc, 10, dostime);
+    if (stored) {
+      putInt(loc, 14, ze.getCrc());
+      putInt(loc, 18, checkSize(ze.getSize()));
+      putInt(loc, 22, checkSize(ze.getSize()));
+    }
+    putShort(loc, 26, name.length);
+    out.write(loc);
+    out.write(name);
+
+    final CRC32 crc = new CRC32();
+    final long start = out.getCount();
+    long size = 0;
+
+    if (stored) {
+      int n;
+      while ((n = in.read(buf)) != -1) {
+        crc.update(buf, 0, n);
+        out.write(buf, 0, n);
+        size += n;
+      }
+
+      if (size != ze.getSize() || crc.getValue() != ze.getCrc()) {
+        throw new ZipException(
+          "STORED entry size or CRC mismatch: " + ze.getName());
+      }
+    }
+    else {
+      final Deflater def = new Deflater(level, true);
+      try {
+        final DeflaterOutputStream dout =
+          new DeflaterOutputStream(out, def);
+        int n;
+        while ((n = in.read(buf)) != -1) {
+          crc.update(buf, 0, n);
+          dout.write(buf, 0, n);
+          size += n;
+        }
+        dout.finish();
+      }
+      finally {
+        def.end();
+      }
+    }
+
+    final long csize = out.getCount() - start;
+
+    if (!stored) {
+      final byte[] ext = new byte[16];
+      putInt(ext, 0, EXTSIG);
+      putInt(ext, 4, crc.getValue());
+      putInt(ext, 8, checkSize(csize));
+      putInt(ext, 12, checkSize(size));
+      out.write(ext);
+    }
+
+    final byte[] record = new byte[CENHDR + name.length];
+    putInt(record, 0, CENSIG);
+    putShort(record, 4, 20);
+    putShort(record, 6, version);
+    putShort(record, 8, flags);
+    putShort(record, 10, method);
+    putInt(record, 12, dostime);
+    putInt(record, 16, crc.getValue());
+    putInt(record, 20, checkSize(csize));
+    putInt(record, 24, checkSize(size));
+    putShort(record, 28, name.length);
+    putInt(record, 42, checkOffset(offset));
+    System.arraycopy(name, 0, record, CENHDR, name.length);
+    addToCentralDirectory(record);
+  }
+
+  /**
+   * Writes the central directory and closes the archive.
+   *
+   * @throws IOException
+   */
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+
+    try {
+      final long start = checkOffset(out.getCount());
+      central.writeTo(out);
+
+      final byte[] end = new byte[ENDHDR];
+      putInt(end, 0, ENDSIG);
+      putShort(end, 8, count);
+      putShort(end, 10, count);
+      putInt(end, 12, central.size());
+      putInt(end, 16, start);
+      out.write(end);
+      out.close();
+    }
+    finally {
+      IOUtils.closeQuietly(out);
+      closed = true;
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("archive is closed");
+    }
+  }
+
+  private void addToCentralDirectory(byte[] record) throws ZipException {
+    if (count == MAX_16 - 1) {
+      throw new ZipException("too many entries; ZIP64 not supported");
+    }
+    central.write(record, 0, record.length);
+    ++count;
+  }
+
+  private static byte[] encodeName(String name) {
+    try {
+      return name.getBytes("UTF-8");
+    }
+    catch (UnsupportedEncodingException e) {
+      // UTF-8 is always supported
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static long checkSize(long size) throws ZipException {
+    if (size >= MAX_32) {
+      throw new ZipException("entry too large; ZIP64 not supported");
+    }
+    return size;
+  }
+
+  private static long checkOffset(long offset) throws ZipException {
+    if (offset >= MAX_32) {
+      throw new ZipException("archive too large; ZIP64 not supported");
+    }
+    return offset;
+  }
+
+  /** Converts a Java time to an MS-DOS date and time. */
+  static int toDosTime(long time) {
+    final Calendar c = Calendar.getInstance();
+    c.setTimeInMillis(time);
+
+    final int year = c.get(Calendar.YEAR);
+    if (year < 1980) {
+      return (1 << 21) | (1 << 16);
+    }
+
+    return (year - 1980) << 25 |
+           (c.get(Calendar.MONTH) + 1) << 21 |
+           c.get(Calendar.DAY_OF_MONTH) << 16 |
+           c.get(Calendar.HOUR_OF_DAY) << 11 |
+           c.get(Calendar.MINUTE) << 5 |
+           c.get(Calendar.SECOND) >> 1;
+  }
+
+  private static int getShort(byte[] b, int off) {
+    return (b[off] & 0xFF) | (b[off+1] & 0xFF) << 8;
+  }
+
+  private static int getInt(byte[] b, int off) {
+    return getShort(b, off) | getShort(b, off+2) << 16;
+  }
+
+  private static long getUInt(byte[] b, int off) {
+    return getInt(b, off) & MAX_32;
+  }
+
+  private static void putShort(byte[] b, int off, int v) {
+    b[off]   = (byte) v;
+    b[off+1] = (byte) (v >>> 8);
+  }
+
+  private static void putInt(byte[] b, int off, long v) {
+    putShort(b, off, (int) v);
+    putShort(b, off+2, (int) (v >>> 16));
+  }
+
+  /** An {@link OutputStream} which counts the bytes written through it. */
+  private static class CountingOutputStream extends OutputStream {
+    private final OutputStream out;
+    private long count = 0;
+
+    public CountingOutputStream(OutputStream out) {
+      this.out = out;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      ++count;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+}
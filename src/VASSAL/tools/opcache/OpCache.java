@@ -20,6 +20,7 @@
 package VASSAL.tools.opcache;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CancellationException;
@@ -27,10 +28,11 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.jdesktop.swingworker.SwingWorker;
 
@@ -181,6 +183,10 @@ public class OpCache {
     private final Key<V> key;
     private final OpObserver<V> obs;
 
+    // requests run in order of priority, then of submission
+    private int priority = DEFAULT_PRIORITY;
+    private final long seq = requestCount.getAndIncrement();
+
     public Request(Key<V> key, OpObserver<V> obs) {
       if (key == null) throw new IllegalArgumentException();
       if (obs == null) throw new IllegalArgumentException();
@@ -348,10 +354,79 @@ public class OpCache {
     return fut;
   }
 
+  /**
+   * The priority of requests made through {@link #getFuture}. Requests
+   * with lower values run first.
+   *
+   * @since 3.2.17
+   */
+  public static final int DEFAULT_PRIORITY = 0;
+
+  private static final AtomicLong requestCount = new AtomicLong();
+
+  private static final Comparator<Runnable> requestOrder =
+                                                  new Comparator<Runnable>() {
+    public int compare(Runnable r1, Runnable r2) {
+      final Request<?> a = (Request<?>) r1;
+      final Request<?> b = (Request<?>) r2;
+      if (a.priority != b.priority) return a.priority < b.priority ? -1 : 1;
+      return a.seq < b.seq ? -1 : a.seq > b.seq ? 1 : 0;
+    }
+  };
+
+  /**
+   * Changes the priority of a queued request.
+   *
+   * @param fut a <code>Future</code> returned by {@link #getFuture}
+   * @param priority the new priority; lower values run first
+   * @return <code>false</code> if the request is not waiting in the queue
+   *
+   * @since 3.2.17
+   */
+  public boolean setPriority(Future<?> fut, int priority) {
+    if (!(fut instanceof Request)) return false;
+
+    final Request<?> req = (Request<?>) fut;
+
+    // the queue orders requests only as they are inserted
+    if (!requestQueue.remove(req)) return false;
+    req.priority = priority;
+    threadPool.execute(req);
+    return true;
+  }
+
+  /**
+   * Cancels a request which has not started to run. The request is
+   * removed from the cache, so that a later request for the same
+   * {@link Op} is queued anew.
+   *
+   * @param fut a <code>Future</code> returned by {@link #getFuture}
+   * @return <code>false</code> if the request is not waiting in the queue
+   *
+   * @since 3.2.17
+   */
+  public boolean cancel(Future<?> fut) {
+    if (!(fut instanceof Request) || !requestQueue.remove(fut)) return false;
+
+    final Request<?> req = (Request<?>) fut;
+    cache.remove(req.key, req);
+    req.cancel(false);
+    return true;
+  }
+
+  /**
+   * @return the number of requests waiting to run
+   *
+   * @since 3.2.17
+   */
+  public int getQueueDepth() {
+    return requestQueue.size();
+  }
+
 /////
 // FIXME: finalize this...
   private final BlockingQueue<Runnable> requestQueue =
-    new LinkedBlockingQueue<Runnable>();
+    new PriorityBlockingQueue<Runnable>(11, requestOrder);
 
   private static class Ex extends ThreadPoolExecutor {
     public Ex(int corePoolSize, int maximumPoolSize, long keepAliveTime,
@@ -0,0 +1,475 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package bsh;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compile a single line BeanShell expression into a tree of typed
+ * closures, which can be evaluated without binding variables into a
+ * NameSpace or walking the parse tree through the Interpreter.
+ *
+ * Only literals, variables, unary, binary and ternary operators and the
+ * If(), GetProperty(), GetLocalizedProperty(), SumStack() and SumLocation()
+ * functions are compiled; anything else is left to BeanShell. The
+ * operators reproduce the (VASSAL-modified) BeanShell semantics exactly
+ * by sharing its primitive arithmetic. Whenever BeanShell would report
+ * an error, the compiled expression declines to produce a result, so
+ * that the caller can obtain the error from BeanShell itself.
+ *
+ * This Class must be defined in package bsh to allow access to
+ * package visible elements in the bsh library.
+ *
+ * @since 3.2.17
+ */
+public class BeanShellExpressionCompiler implements ParserConstants {
+
+  private BeanShellExpressionCompiler() { }
+
+  /**
+   * Compile an expression.
+   *
+   * @param expression the expression, without enclosing braces
+   * @param variables the variables referred to by the expression, as
+   * found by {@link BeanShellExpressionValidator#getVariables}
+   * @return the compiled expression, or <code>null</code> if the expression
+   * uses constructs which are not compiled
+   */
+  public static CompiledExpression compile(String expression,
+                                           List<String> variables) {
+    final List<SimpleNode> nodes = new ArrayList<SimpleNode>();
+    try {
+      final Parser p = new Parser(new StringReader(expression + ";"));
+      while (!p.Line()) {
+        nodes.add(p.popNode());
+      }
+    }
+    catch (ParseException e) {
+      return null;
+    }
+    catch (TokenMgrError e) {
+      return null;
+    }
+
+    if (nodes.size() != 1) {
+      return null;
+    }
+
+    final Node root = compile(nodes.get(0), variables);
+    return root == null ? null : new Root(root);
+  }
+
+  private static Node compile(SimpleNode node, List<String> variables) {
+    if (node instanceof BSHPrimaryExpression) {
+      // suffixes (field access, method calls on objects, arrays) are not
+      // compiled
+      return node.jjtGetNumChildren() == 1 ?
+        compile(node.getChild(0), variables) : null;
+    }
+    else if (node instanceof BSHLiteral) {
+      final Object value = ((BSHLiteral) node).value;
+      return value == null ? null : new Literal(value);
+    }
+    else if (node instanceof BSHAmbiguousName) {
+      final String name = ((BSHAmbiguousName) node).text;
+      final int index = variables.indexOf(name);
+      return index < 0 || !isSimpleName(name) ? null : new Variable(index);
+    }
+    else if (node instanceof BSHUnaryExpression) {
+      final BSHUnaryExpression u = (BSHUnaryExpression) node;
+      if (u.kind == INCR || u.kind == DECR) {
+        return null;
+      }
+      final Node operand = compile(u.getChild(0), variables);
+      return operand == null ? null : new Unary(u.kind, operand);
+    }
+    else if (node instanceof BSHBinaryExpression) {
+      final BSHBinaryExpression b = (BSHBinaryExpression) node;
+      if (b.kind == INSTANCEOF) {
+        return null;
+      }
+      final Node lhs = compile(b.getChild(0), variables);
+      final Node rhs = compile(b.getChild(1), variables);
+      return lhs == null || rhs == null ? null : new Binary(b.kind, lhs, rhs);
+    }
+    else if (node instanceof BSHTernaryExpression) {
+      final Node cond = compile(node.getChild(0), variables);
+      final Node t = compile(node.getChild(1), variables);
+      final Node f = compile(node.getChild(2), variables);
+      return cond == null || t == null || f == null ?
+        null : new Ternary(cond, t, f);
+    }
+    else if (node instanceof BSHMethodInvocation) {
+      return compileMethod((BSHMethodInvocation) node, variables);
+    }
+    return null;
+  }
+
+  private static Node compileMethod(BSHMethodInvocation node,
+                                    List<String> variables) {
+    if (node.jjtGetNumChildren() != 2 ||
+        !(node.getChild(0) instanceof BSHAmbiguousName)) {
+      return null;
+    }
+
+    final String name = ((BSHAmbiguousName) node.getChild(0)).text;
+    final SimpleNode args = node.getChild(1);
+    final Node[] a = new Node[args.jjtGetNumChildren()];
+    for (int i = 0; i < a.length; ++i) {
+      a[i] = compile(args.getChild(i), variables);
+      if (a[i] == null) {
+        return null;
+      }
+    }
+
+    if ("If".equals(name) && a.length == 3) {
+      return new If(a[0], a[1], a[2]);
+    }
+    else if (a.length == 1) {
+      if ("GetProperty".equals(name)) {
+        return new Callback(Callback.GET_PROPERTY, a[0]);
+      }
+      else if ("GetLocalizedProperty".equals(name)) {
+        return new Callback(Callback.GET_LOCALIZED_PROPERTY, a[0]);
+      }
+      else if ("SumStack".equals(name)) {
+        return new Callback(Callback.SUM_STACK, a[0]);
+      }
+      else if ("SumLocation".equals(name)) {
+        return new Callback(Callback.SUM_LOCATION, a[0]);
+      }
+    }
+    return null;
+  }
+
+  private static boolean isSimpleName(String name) {
+    return name.indexOf('.') < 0 && !"this".equals(name) &&
+      !"super".equals(name) && !"global".equals(name);
+  }
+
+  /**
+   * Convert a value from a {@link CompiledExpression.Context} to the form
+   * BeanShell uses for it, in the same way as the unwrap() method of the
+   * expression initialisation script.
+   */
+  private static Object unwrap(Object value) {
+    if (value instanceof Integer || value instanceof Float ||
+        value instanceof Boolean) {
+      return new Primitive(value);
+    }
+    return value;
+  }
+
+  /**
+   * Thrown where BeanShell would report an error, or where the compiled
+   * expression cannot tell what BeanShell would do.
+   */
+  private static class Fallback extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public static final Fallback INSTANCE = new Fallback();
+
+    // this is only a signal, so skip the cost of filling in a stack trace
+    public Throwable fillInStackTrace() {
+      return this;
+    }
+  }
+
+  private static abstract class Node {
+    public abstract Object eval(CompiledExpression.Context c)
+                                                      throws UtilEvalError;
+  }
+
+  private static class Root implements CompiledExpression {
+    private final Node node;
+
+    public Root(Node node) {
+      this.node = node;
+    }
+
+    public String evaluate(Context context) {
+      try {
+        final Object value = node.eval(context);
+        // null and void results cannot be converted to a String
+        if (value == null || value == Primitive.NULL ||
+            value == Primitive.VOID) {
+          return null;
+        }
+        return value.toString();
+      }
+      catch (UtilEvalError e) {
+        return null;
+      }
+      catch (RuntimeException e) {
+        return null;
+      }
+    }
+  }
+
+  private static class Literal extends Node {
+    private final Object value;
+
+    public Literal(Object value) {
+      this.value = value;
+    }
+
+    public Object eval(CompiledExpression.Context c) {
+      return value;
+    }
+  }
+
+  private static class Variable extends Node {
+    private final int index;
+
+    public Variable(int index) {
+      this.index = index;
+    }
+
+    public Object eval(CompiledExpression.Context c) {
+      return unwrap(c.getVariable(index));
+    }
+  }
+
+  /** @see BSHUnaryExpression */
+  private static class Unary extends Node {
+    private final int kind;
+    private final Node operand;
+
+    public Unary(int kind, Node operand) {
+      this.kind = kind;
+      this.operand = operand;
+    }
+
+    public Object eval(CompiledExpression.Context c) throws UtilEvalError {
+      final Object op = operand.eval(c);
+      if (op instanceof Boolean || op instanceof Integer ||
+          op instanceof Float) {
+        // a primitive wrapper, as returned by If()
+        final Object o = Primitive.promoteToInteger(op);
+        if (o instanceof Boolean) {
+          return new Boolean(Primitive.booleanUnaryOperation((Boolean) o, kind));
+        }
+        else if (o instanceof Integer) {
+          return new Integer(Primitive.intUnaryOperation((Integer) o, kind));
+        }
+        else {
+          return new Float(Primitive.floatUnaryOperation((Float) o, kind));
+        }
+      }
+      else if (op instanceof Primitive) {
+        return Primitive.unaryOperation((Primitive) op, kind);
+      }
+      throw Fallback.INSTANCE;
+    }
+  }
+
+  /** @see BSHBinaryExpression */
+  private static class Binary extends Node {
+    private final int kind;
+    private final Node lhs;
+    private final Node rhs;
+
+    public Binary(int kind, Node lhs, Node rhs) {
+      this.kind = kind;
+      this.lhs = lhs;
+      this.rhs = rhs;
+    }
+
+    public Object eval(CompiledExpression.Context c) throws UtilEvalError {
+      final Object l = lhs.eval(c);
+
+      // short circuit boolean operators
+      if (kind == BOOL_AND || kind == BOOL_ANDX ||
+          kind == BOOL_OR || kind == BOOL_ORX) {
+        final Object o = isPrimitiveValue(l) ? ((Primitive) l).getValue() : l;
+        if (o instanceof Boolean) {
+          final boolean b = ((Boolean) o).booleanValue();
+          if (!b && (kind == BOOL_AND || kind == BOOL_ANDX)) {
+            return new Primitive(false);
+          }
+          if (b && (kind == BOOL_OR || kind == BOOL_ORX)) {
+            return new Primitive(true);
+          }
+        }
+      }
+
+      final Object r = rhs.eval(c);
+      final boolean lw = isWrapper(l);
+      final boolean rw = isWrapper(r);
+
+      if ((lw || isPrimitiveValue(l)) && (rw || isPrimitiveValue(r))) {
+        if (lw && rw && kind == EQ) {
+          // identity comparison of wrappers
+          throw Fallback.INSTANCE;
+        }
+
+        try {
+          return Primitive.binaryOperation(l, r, kind);
+        }
+        catch (UtilEvalError e) {
+          return Primitive.binaryOperation(l.toString(), r.toString(), kind);
+        }
+      }
+
+      // VASSAL special cases
+      if (l instanceof Primitive &&
+          ((Primitive) l).getValue() instanceof Integer && "".equals(r)) {
+        return Primitive.binaryOperation(l, new Primitive(0), kind);
+      }
+      else if (r instanceof Primitive &&
+          ((Primitive) r).getValue() instanceof Integer && "".equals(l)) {
+        return Primitive.binaryOperation(new Primitive(0), r, kind);
+      }
+      else if ((lw || isPrimitiveValue(l)) && r instanceof String) {
+        return Primitive.binaryOperation(l.toString(), r, kind);
+      }
+      else if ((rw || isPrimitiveValue(r)) && l instanceof String) {
+        return Primitive.binaryOperation(l, r.toString(), kind);
+      }
+      else if (l instanceof String && r instanceof String) {
+        return Primitive.binaryOperation(l, r, kind);
+      }
+      throw Fallback.INSTANCE;
+    }
+
+    private static boolean isPrimitiveValue(Object o) {
+      return o instanceof Primitive &&
+        o != Primitive.VOID && o != Primitive.NULL;
+    }
+
+    private static boolean isWrapper(Object o) {
+      return o instanceof Boolean || o instanceof Character ||
+        o instanceof Number;
+    }
+  }
+
+  /** @see BSHTernaryExpression */
+  private static class Ternary extends Node {
+    private final Node cond;
+    private final Node t;
+    private final Node f;
+
+    public Ternary(Node cond, Node t, Node f) {
+      this.cond = cond;
+      this.t = t;
+      this.f = f;
+    }
+
+    public Object eval(CompiledExpression.Context c) throws UtilEvalError {
+      return isTrue(cond.eval(c)) ? t.eval(c) : f.eval(c);
+    }
+  }
+
+  /**
+   * The If(boolean, Object, Object) function. Both alternatives are
+   * evaluated, and primitive values are returned in their wrappers, as
+   * for any scripted method with Object parameters.
+   */
+  private static class If extends Node {
+    private final Node cond;
+    private final Node t;
+    private final Node f;
+
+    public If(Node cond, Node t, Node f) {
+      this.cond = cond;
+      this.t = t;
+      this.f = f;
+    }
+
+    public Object eval(CompiledExpression.Context c) throws UtilEvalError {
+      final Object b = cond.eval(c);
+      if (!(b instanceof Boolean) && !(b instanceof Primitive &&
+            ((Primitive) b).getValue() instanceof Boolean)) {
+        throw Fallback.INSTANCE;
+      }
+
+      final Object vt = box(t.eval(c));
+      final Object vf = box(f.eval(c));
+      return isTrue(b) ? vt : vf;
+    }
+
+    private static Object box(Object o) {
+      if (o instanceof Primitive) {
+        final Object v = ((Primitive) o).getValue();
+        if (!(v instanceof Integer || v instanceof Float ||
+              v instanceof Boolean)) {
+          throw Fallback.INSTANCE;
+        }
+        return v;
+      }
+      else if (o instanceof String || o instanceof Integer ||
+               o instanceof Float || o instanceof Boolean) {
+        return o;
+      }
+      throw Fallback.INSTANCE;
+    }
+  }
+
+  /** The callbacks to VASSAL taking a single String argument. */
+  private static class Callback extends Node {
+    public static final int GET_PROPERTY = 0;
+    public static final int GET_LOCALIZED_PROPERTY = 1;
+    public static final int SUM_STACK = 2;
+    public static final int SUM_LOCATION = 3;
+
+    private final int which;
+    private final Node arg;
+
+    public Callback(int which, Node arg) {
+      this.which = which;
+      this.arg = arg;
+    }
+
+    public Object eval(CompiledExpression.Context c) throws UtilEvalError {
+      final Object a = arg.eval(c);
+      if (!(a instanceof String)) {
+        throw Fallback.INSTANCE;
+      }
+
+      final String s = (String) a;
+      switch (which) {
+      case GET_PROPERTY:
+        return unwrap(c.getProperty(s));
+      case GET_LOCALIZED_PROPERTY:
+        return unwrap(c.getLocalizedProperty(s));
+      case SUM_STACK:
+        return unwrap(c.sumStack(s));
+      default:
+        return unwrap(c.sumLocation(s));
+      }
+    }
+  }
+
+  /** @see BSHIfStatement#evaluateCondition */
+  private static boolean isTrue(Object o) {
+    if (o instanceof Primitive) {
+      if (o == Primitive.VOID) {
+        throw Fallback.INSTANCE;
+      }
+      o = ((Primitive) o).getValue();
+    }
+
+    if (o instanceof Boolean) {
+      return ((Boolean) o).booleanValue();
+    }
+    throw Fallback.INSTANCE;
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package bsh;
+
+/**
+ * A single line BeanShell expression which has been compiled by
+ * {@link BeanShellExpressionCompiler} for evaluation without an
+ * Interpreter.
+ *
+ * @since 3.2.17
+ */
+public interface CompiledExpression {
+
+  /**
+   * Supplies the values an expression refers to while it is evaluated.
+   * Values are returned as they would be bound in, or returned to, a
+   * BeanShell Interpreter: an <code>Integer</code>, <code>Float</code>
+   * or <code>Boolean</code> stands for a primitive value, anything else
+   * for itself.
+   */
+  public interface Context {
+    /**
+     * @param index the index of the variable in the list of variables
+     * the expression was compiled with
+     * @return the value of the variable
+     */
+    Object getVariable(int index);
+
+    /** @return the result of the GetProperty() callback */
+    Object getProperty(String name);
+
+    /** @return the result of the GetLocalizedProperty() callback */
+    Object getLocalizedProperty(String name);
+
+    /** @return the result of the SumStack() callback */
+    Object sumStack(String property);
+
+    /** @return the result of the SumLocation() callback */
+    Object sumLocation(String property);
+  }
+
+  /**
+   * Evaluate the expression.
+   *
+   * @param context the source of variable values and callbacks
+   * @return the value of the expression as a String, or <code>null</code>
+   * if the expression cannot be evaluated without BeanShell in this
+   * context; this includes every case where BeanShell would report
+   * an error
+   */
+  String evaluate(Context context);
+}
@@ -0,0 +1,47 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build;
+
+import java.lang.reflect.Field;
+
+/**
+ * Makes a module, usually a mock, the one returned by
+ * {@link GameModule#getGameModule} for the length of a test. Unlike
+ * {@link GameModule#init}, which succeeds only once in a JVM, the module
+ * which was there before is put back by {@link #restore}.
+ */
+public class GameModuleFixture {
+  private final GameModule previous;
+
+  public GameModuleFixture(GameModule module) throws Exception {
+    previous = swap(module);
+  }
+
+  public void restore() throws Exception {
+    swap(previous);
+  }
+
+  private static GameModule swap(GameModule module) throws Exception {
+    final Field f = GameModule.class.getDeclaredField("theModule");
+    f.setAccessible(true);
+    final GameModule old = (GameModule) f.get(null);
+    f.set(null, module);
+    return old;
+  }
+}
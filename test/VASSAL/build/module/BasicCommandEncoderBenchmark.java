@@ -0,0 +1,87 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.build.module;
+
+import VASSAL.counters.BasicPiece;
+import VASSAL.counters.DynamicProperty;
+import VASSAL.counters.GamePiece;
+import VASSAL.counters.Marker;
+import VASSAL.tools.SequenceEncoder;
+
+/**
+ * Compares the time to create the pieces in a large saved game with and
+ * without cached piece types.
+ *
+ * <pre>
+ * java VASSAL.build.module.BasicCommandEncoderBenchmark
+ * </pre>
+ */
+public class BasicCommandEncoderBenchmark {
+  private static final int TRAITS = 25;
+
+  private static String pieceType(int n) {
+    String type = BasicPiece.ID + ";;;Unit " + n + ";";
+    for (int i = 0; i < TRAITS; ++i) {
+      type = new SequenceEncoder(i % 2 == 0 ?
+        DynamicProperty.ID + "Property" + i + ";;;" :
+        Marker.ID + "Key" + i + ",Other" + i + ";Value" + i + ",x", '\t')
+        .append(type).getValue();
+    }
+    return type;
+  }
+
+  /** Create a piece as before piece types were cached. */
+  private static GamePiece createUncached(BasicCommandEncoder e,
+                                          String type) {
+    final SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(type, '\t');
+    type = st.nextToken();
+    final String innerType = st.hasMoreTokens() ? st.nextToken() : null;
+    return innerType == null ? e.createBasic(type) :
+      e.createDecorator(type, createUncached(e, innerType));
+  }
+
+  public static void main(String[] args) {
+    final int count = 30000;
+    final String[] types = new String[count];
+    for (int i = 0; i < count; ++i) {
+      // a few hundred kinds of piece
+      types[i] = pieceType(i % 300);
+    }
+
+    for (int j = 0; j < 5; ++j) {
+      final BasicCommandEncoder e = new BasicCommandEncoder();
+
+      long start = System.currentTimeMillis();
+      for (String type : types) {
+        createUncached(e, type);
+      }
+      final long uncached = System.currentTimeMillis() - start;
+
+      start = System.currentTimeMillis();
+      for (String type : types) {
+        e.createPiece(type);
+      }
+      final long cached = System.currentTimeMillis() - start;
+
+      System.out.println("uncached: " + uncached + " ms, cached: " +
+                         cached + " ms");
+    }
+  }
+}
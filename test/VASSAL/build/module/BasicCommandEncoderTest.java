@@ -0,0 +1,265 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.build.module;
+
+import org.junit.Test;
+
+import VASSAL.command.ChangePiece;
+import VASSAL.command.Command;
+import VASSAL.command.PieceStateDelta;
+import VASSAL.counters.BasicPiece;
+import VASSAL.counters.Decorator;
+import VASSAL.counters.DynamicProperty;
+import VASSAL.counters.Footprint;
+import VASSAL.counters.GamePiece;
+import VASSAL.counters.Marker;
+import VASSAL.tools.SequenceEncoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BasicCommandEncoderTest {
+  private static final int TRAITS = 25;
+  private static final char COMMAND_SEPARATOR = (char) 27;
+
+  private final BasicCommandEncoder encoder = new BasicCommandEncoder();
+
+  /** A BasicPiece which needs no module to report its state. */
+  private static class TestPiece extends BasicPiece {
+    public TestPiece(String name) {
+      super(BasicPiece.ID + ";;;" + name + ";");
+    }
+
+    public String getGpId() {
+      return "0";
+    }
+  }
+
+  /** A piece with a typical number of traits, each holding some state. */
+  private GamePiece createPiece(int n) {
+    GamePiece p = new TestPiece("Unit " + n);
+    for (int i = 0; i < TRAITS; ++i) {
+      final DynamicProperty dp =
+        new DynamicProperty(DynamicProperty.ID + "Property" + i, p);
+      dp.mySetState("value of property " + i + " on unit " + n);
+      p = dp;
+    }
+    p.setId("piece" + n);
+    return p;
+  }
+
+  private DynamicProperty getTrait(GamePiece p, int layer) {
+    for (int i = 0; i < layer; ++i) {
+      p = ((Decorator) p).getInner();
+    }
+    return (DynamicProperty) p;
+  }
+
+  private ChangePiece flipOneTrait(GamePiece p) {
+    final String oldState = p.getState();
+    getTrait(p, 3).mySetState("flipped");
+    return new ChangePiece(p.getId(), oldState, p.getState());
+  }
+
+  @Test
+  public void testDeltaRoundTrip() {
+    final GamePiece sender = createPiece(0);
+    final GamePiece receiver = createPiece(0);
+    final ChangePiece cp = flipOneTrait(sender);
+
+    final String enc = encoder.encodeChange(cp, sender);
+    assertTrue(enc.startsWith(BasicCommandEncoder.CHANGE_DELTA));
+
+    final ChangePiece dec = (ChangePiece) encoder.decode(enc);
+    assertEquals(sender.getId(), dec.getId());
+    assertNull(dec.getNewState());
+
+    final PieceStateDelta delta = dec.getDelta();
+    assertNotNull(delta);
+    assertEquals(TRAITS + 1, delta.getLayerCount());
+    assertEquals(1, delta.getChangedCount());
+    assertEquals(3, delta.getLayer(0));
+    assertEquals(cp.getNewState(), delta.resolveNewState(receiver));
+    assertEquals(cp.getOldState(), delta.resolveOldState(receiver));
+
+    // an unexecuted delta is passed on unchanged
+    assertEquals(enc, encoder.encode(dec));
+  }
+
+  @Test
+  public void testDeltaPreservesOtherLayers() {
+    final GamePiece sender = createPiece(0);
+    final GamePiece receiver = createPiece(0);
+    getTrait(receiver, 7).mySetState("changed elsewhere");
+
+    final ChangePiece cp = flipOneTrait(sender);
+    final ChangePiece dec =
+      (ChangePiece) encoder.decode(encoder.encodeChange(cp, sender));
+
+    final String[] layers =
+      PieceStateDelta.split(receiver, dec.getDelta().resolveNewState(receiver));
+    assertEquals("flipped", layers[3]);
+    assertEquals("changed elsewhere", layers[7]);
+  }
+
+  @Test
+  public void testDeltaIsSmallerOnTheWire() {
+    final GamePiece p = createPiece(0);
+    final ChangePiece cp = flipOneTrait(p);
+
+    final String full = encoder.encodeChange(cp, null);
+    final String delta = encoder.encodeChange(cp, p);
+    assertTrue(full.startsWith(BasicCommandEncoder.CHANGE));
+    assertTrue(delta.length() * 20 < full.length());
+  }
+
+  @Test
+  public void testDeltaIsSmallerInLogFile() {
+    // a global key command flipping one trait on each of many pieces
+    final SequenceEncoder full = new SequenceEncoder(COMMAND_SEPARATOR);
+    final SequenceEncoder delta = new SequenceEncoder(COMMAND_SEPARATOR);
+    for (int i = 0; i < 40; ++i) {
+      final GamePiece p = createPiece(i);
+      final ChangePiece cp = flipOneTrait(p);
+      full.append(encoder.encodeChange(cp, null));
+      delta.append(encoder.encodeChange(cp, p));
+    }
+
+    assertTrue(delta.getValue().length() * 20 < full.getValue().length());
+  }
+
+  @Test
+  public void testFullFormStillDecodes() {
+    final GamePiece p = createPiece(0);
+    final ChangePiece cp = flipOneTrait(p);
+
+    final Command c = encoder.decode(encoder.encodeChange(cp, null));
+    assertEquals(cp.getNewState(), ((ChangePiece) c).getNewState());
+    assertEquals(cp.getOldState(), ((ChangePiece) c).getOldState());
+    assertNull(((ChangePiece) c).getDelta());
+  }
+
+  @Test
+  public void testFallBackWhenDeltaIsNotSmaller() {
+    final GamePiece p = new TestPiece("Unit");
+    p.setId("piece");
+    final ChangePiece cp = new ChangePiece(p.getId(), "a;1;2;3", "b;1;2;3");
+    assertTrue(
+      encoder.encodeChange(cp, p).startsWith(BasicCommandEncoder.CHANGE));
+  }
+
+  @Test
+  public void testFallBackWhenStatesDoNotFitPiece() {
+    final GamePiece p = createPiece(0);
+    final ChangePiece cp =
+      new ChangePiece(p.getId(), "too\tfew", "layers\there");
+    assertNull(PieceStateDelta.compute(p, cp.getOldState(), cp.getNewState()));
+    assertTrue(
+      encoder.encodeChange(cp, p).startsWith(BasicCommandEncoder.CHANGE));
+  }
+
+  private static String trailState(int points) {
+    final SequenceEncoder se = new SequenceEncoder(';');
+    se.append("true").append("Main Map").append(points);
+    for (int i = 0; i < points; ++i) {
+      se.append(i*10 + "," + i*20);
+    }
+    return se.getValue();
+  }
+
+  @Test
+  public void testPatchedTrailDelta() {
+    final String type = Footprint.ID + "T;Movement Trail;true;true;10";
+    final Footprint sender = new Footprint(type, new TestPiece("Unit"));
+    final Footprint receiver = new Footprint(type, new TestPiece("Unit"));
+    sender.setId("piece");
+    receiver.setId("piece");
+    sender.mySetState(trailState(200));
+    receiver.mySetState(trailState(200));
+
+    final String oldState = sender.getState();
+    sender.mySetState(trailState(201));
+    final ChangePiece cp =
+      new ChangePiece(sender.getId(), oldState, sender.getState());
+
+    final String full = encoder.encodeChange(cp, null);
+    final String delta = encoder.encodeChange(cp, sender);
+    assertTrue(delta.startsWith(BasicCommandEncoder.CHANGE_DELTA));
+    assertTrue(delta.length() * 20 < full.length());
+
+    final PieceStateDelta d = ((ChangePiece) encoder.decode(delta)).getDelta();
+    assertTrue(d.isPatched(0));
+    assertEquals(cp.getNewState(), d.resolveNewState(receiver));
+    assertEquals(cp.getOldState(), d.resolveOldState(receiver));
+  }
+
+  private static String pieceType(int n) {
+    String type = BasicPiece.ID + ";;;Unit " + n + ";";
+    for (int i = 0; i < TRAITS; ++i) {
+      type = new SequenceEncoder(i % 2 == 0 ?
+        DynamicProperty.ID + "Property" + i + ";;;" :
+        Marker.ID + "Key" + i + ",Other" + i + ";Value" + i + ",x", '\t')
+        .append(type).getValue();
+    }
+    return type;
+  }
+
+  @Test
+  public void testCreatePiece() {
+    final String type = pieceType(0);
+    final GamePiece p1 = encoder.createPiece(type);
+    final GamePiece p2 = encoder.createPiece(type);
+
+    assertNotSame(p1, p2);
+    final String expected = createUncached(encoder, type).getType();
+    assertEquals(expected, p1.getType());
+    assertEquals(expected, p2.getType());
+
+    // the pieces share no traits
+    GamePiece q1 = p1;
+    GamePiece q2 = p2;
+    while (q1 instanceof Decorator) {
+      assertNotSame(q1, q2);
+      q1 = ((Decorator) q1).getInner();
+      q2 = ((Decorator) q2).getInner();
+    }
+    assertNotSame(q1, q2);
+  }
+
+  @Test
+  public void testCreateBasicPiece() {
+    final String type = BasicPiece.ID + ";;;Unit";
+    assertEquals(type, encoder.createPiece(type).getType());
+    assertNull(encoder.createPiece("unknown;"));
+  }
+
+  /** Create a piece as before piece types were cached. */
+  private static GamePiece createUncached(BasicCommandEncoder e,
+                                          String type) {
+    final SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(type, '\t');
+    type = st.nextToken();
+    final String innerType = st.hasMoreTokens() ? st.nextToken() : null;
+    return innerType == null ? e.createBasic(type) :
+      e.createDecorator(type, createUncached(e, innerType));
+  }
+}
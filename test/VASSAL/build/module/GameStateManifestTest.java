@@ -0,0 +1,138 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class GameStateManifestTest {
+
+  /**
+   * A game of loose pieces a, b, c and a stack s holding d and e,
+   * with pieces and states given as id=state.
+   */
+  private static GameStateManifest game(String[] loose, String stack,
+                                        String... components) {
+    final GameStateManifest m = new GameStateManifest("Test", "1.0");
+    for (String c : components) {
+      m.addComponent(c);
+    }
+    for (String p : loose) {
+      final String[] idState = p.split("=");
+      m.addPiece(idState[0], "piece;;;" + idState[0], idState[1], null);
+    }
+    if (stack != null) {
+      final String[] children = stack.length() == 0 ?
+        new String[0] : stack.split(",");
+      m.addPiece("s", "stack", "Main;100;100;" + stack, children);
+    }
+    return m;
+  }
+
+  private static Set<String> set(String... ids) {
+    return new HashSet<String>(Arrays.asList(ids));
+  }
+
+  private static GameStateManifest base() {
+    return game(new String[]{ "a=1", "b=1", "c=1", "d=1", "e=1" },
+                "d,e", "x", "y");
+  }
+
+  @Test
+  public void testUnchanged() {
+    final GameStateManifest.Changes c = base().changesSince(base());
+    assertEquals(Collections.emptySet(), c.getRemovedPieces());
+    assertEquals(Collections.emptySet(), c.getAddedPieces());
+    assertEquals(Collections.emptyList(), c.getChangedComponents());
+  }
+
+  @Test
+  public void testChangedAndRemovedPieces() {
+    final GameStateManifest now =
+      game(new String[]{ "a=2", "b=1", "d=1", "e=1", "f=1" }, "d,e", "x", "z");
+    final GameStateManifest.Changes c = now.changesSince(base());
+    assertEquals(set("a", "f"), c.getAddedPieces());
+    assertEquals(set("a", "c"), c.getRemovedPieces());
+    assertEquals(Arrays.asList(1), c.getChangedComponents());
+  }
+
+  @Test
+  public void testPieceMovedIntoStack() {
+    final GameStateManifest now =
+      game(new String[]{ "a=1", "b=1", "c=1", "d=1", "e=1" }, "d,e,a", "x", "y");
+    final GameStateManifest.Changes c = now.changesSince(base());
+    // the stack changed, so everything which was in it is added again
+    assertEquals(set("s", "d", "e"), c.getAddedPieces());
+    assertEquals(set("s", "d", "e"), c.getRemovedPieces());
+  }
+
+  @Test
+  public void testPieceInStackChanged() {
+    final GameStateManifest now =
+      game(new String[]{ "a=1", "b=1", "c=1", "d=2", "e=1" }, "d,e", "x", "y");
+    final GameStateManifest.Changes c = now.changesSince(base());
+    // the stack is added again so that d goes back into it
+    assertEquals(set("s", "d", "e"), c.getAddedPieces());
+  }
+
+  @Test
+  public void testStackRemoved() {
+    final GameStateManifest now =
+      game(new String[]{ "a=1", "b=1", "c=1", "d=1", "e=1" }, null, "x", "y");
+    final GameStateManifest.Changes c = now.changesSince(base());
+    assertEquals(set("d", "e"), c.getAddedPieces());
+    assertEquals(set("s", "d", "e"), c.getRemovedPieces());
+  }
+
+  @Test
+  public void testDifferentModule() {
+    final GameStateManifest other = new GameStateManifest("Test", "1.1");
+    assertNull(base().changesSince(other));
+    assertNull(base().changesSince(game(new String[0], null, "x")));
+  }
+
+  @Test
+  public void testEncodeDecode() {
+    final GameStateManifest now =
+      game(new String[]{ "a;1=2", "b,c=1" }, "", "x;y", "");
+    final GameStateManifest decoded =
+      GameStateManifest.decode(now.encode());
+    assertNotNull(decoded);
+    assertEquals(now.getModuleName(), decoded.getModuleName());
+    assertEquals(now.getModuleVersion(), decoded.getModuleVersion());
+    assertEquals(now.getPieceCount(), decoded.getPieceCount());
+    assertEquals(now.getComponentCount(), decoded.getComponentCount());
+
+    final GameStateManifest.Changes c = now.changesSince(decoded);
+    assertEquals(Collections.emptySet(), c.getAddedPieces());
+    assertEquals(Collections.emptySet(), c.getRemovedPieces());
+    assertEquals(Collections.emptyList(), c.getChangedComponents());
+
+    assertNull(GameStateManifest.decode("Test;1.0;x"));
+    assertNull(GameStateManifest.decode("Test"));
+  }
+}
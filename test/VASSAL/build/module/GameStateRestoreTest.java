@@ -0,0 +1,337 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module;
+
+import java.awt.Point;
+import java.awt.event.ActionEvent;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.swing.AbstractAction;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import VASSAL.build.GameModule;
+import VASSAL.build.GameModuleFixture;
+import VASSAL.command.Command;
+import VASSAL.command.CommandEncoder;
+import VASSAL.command.ConditionalCommand;
+import VASSAL.command.NullCommand;
+import VASSAL.counters.BasicPiece;
+import VASSAL.counters.GamePiece;
+import VASSAL.counters.Stack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GameStateRestoreTest {
+  private final BasicCommandEncoder encoder = new BasicCommandEncoder();
+  private GameModuleFixture fixture;
+
+  // the game which commands are executed on
+  private GameState current;
+
+  private GameState source;
+  private GameState target;
+  private TestComponent sourceTurn;
+  private TestComponent targetTurn;
+
+  /** A component whose whole state is one value. */
+  private static class TestComponent implements GameComponent, CommandEncoder {
+    private String value = "";
+
+    public void setup(boolean gameStarting) {
+      if (!gameStarting) {
+        value = "";
+      }
+    }
+
+    public Command getRestoreCommand() {
+      return new SetValue(this, value);
+    }
+
+    public String encode(Command c) {
+      return c instanceof SetValue ? "value\t" + ((SetValue) c).value : null;
+    }
+
+    public Command decode(String s) {
+      return s.startsWith("value\t") ? new SetValue(this, s.substring(6)) : null;
+    }
+  }
+
+  private static class SetValue extends Command {
+    private final TestComponent component;
+    private final String value;
+
+    public SetValue(TestComponent component, String value) {
+      this.component = component;
+      this.value = value;
+    }
+
+    protected void executeCommand() {
+      component.value = value;
+    }
+
+    protected Command myUndoCommand() {
+      return null;
+    }
+  }
+
+  private String encode(Command c) {
+    String s = source.encode(c);
+    if (s == null) s = encoder.encode(c);
+    if (s == null) s = sourceTurn.encode(c);
+    return s;
+  }
+
+  private Command decode(String s) {
+    Command c = current.decode(s);
+    if (c == null) c = targetTurn.decode(s);
+    if (c == null) c = encoder.decode(s);
+    return c;
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    final GameModule module = mock(GameModule.class);
+    when(module.getGameState()).thenAnswer(new Answer<GameState>() {
+      public GameState answer(InvocationOnMock i) {
+        return current;
+      }
+    });
+    when(module.getAttributeValueString(GameModule.MODULE_NAME))
+      .thenReturn("Test");
+    when(module.getAttributeValueString(GameModule.MODULE_VERSION))
+      .thenReturn("1.0");
+    final WizardSupport wizard = mock(WizardSupport.class);
+    when(module.getWizardSupport()).thenReturn(wizard);
+    when(module.createPiece(anyString())).thenAnswer(new Answer<GamePiece>() {
+      public GamePiece answer(InvocationOnMock i) {
+        return encoder.createPiece((String) i.getArguments()[0]);
+      }
+    });
+    when(module.encode(any(Command.class))).thenAnswer(new Answer<String>() {
+      public String answer(InvocationOnMock i) {
+        return encode((Command) i.getArguments()[0]);
+      }
+    });
+    fixture = new GameModuleFixture(module);
+
+    sourceTurn = new TestComponent();
+    targetTurn = new TestComponent();
+    source = game(sourceTurn);
+    target = game(targetTurn);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (fixture != null) {
+      fixture.restore();
+    }
+  }
+
+  /**
+   * A game of loose pieces a, b, c and g to p, and a stack s holding
+   * d and e.
+   */
+  private GameState game(TestComponent turn) {
+    final GameState gs = new GameState();
+    current = gs;
+
+    gs.loadGame = gs.saveGame = gs.saveGameAs = gs.newGame = gs.closeGame =
+      new AbstractAction() {
+        private static final long serialVersionUID = 1L;
+
+        public void actionPerformed(ActionEvent e) {
+        }
+      };
+    gs.addGameComponent(turn);
+    turn.value = "Turn 1";
+
+    for (String id : new String[] { "a", "b", "c", "d", "e", "g", "h", "i",
+                                    "j", "k", "l", "m", "n", "o", "p" }) {
+      final GamePiece p = new BasicPiece(BasicPiece.ID + ";;;" + id + ";");
+      p.setId(id);
+      p.setPosition(new Point(id.charAt(0) * 10, 0));
+      gs.addPiece(p);
+    }
+
+    final Stack s = new Stack();
+    s.setId("s");
+    s.setPosition(new Point(500, 500));
+    s.add(gs.getPieceForId("d"));
+    s.add(gs.getPieceForId("e"));
+    gs.addPiece(s);
+
+    return gs;
+  }
+
+  private void move(GameState gs, String id, int x, int y) {
+    gs.getPieceForId(id).setPosition(new Point(x, y));
+  }
+
+  /**
+   * Sends a command to the target game as it would go over the network,
+   * encoded and decoded piece by piece.
+   */
+  private void sendToTarget(Command c) {
+    current = target;
+    final Command received = new NullCommand();
+    append(c, received);
+    received.execute();
+  }
+
+  private void append(Command c, Command received) {
+    // version checks only alert the player, so are not sent here
+    if (!(c instanceof NullCommand) && !(c instanceof ConditionalCommand)) {
+      final String s = encode(c);
+      assertNotNull("cannot encode " + c, s);
+      received.append(decode(s));
+    }
+    for (Command sub : c.getSubCommands()) {
+      append(sub, received);
+    }
+  }
+
+  private static boolean hasSetup(Command c) {
+    if (c instanceof GameState.SetupCommand) {
+      return true;
+    }
+    for (Command sub : c.getSubCommands()) {
+      if (hasSetup(sub)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void assertSameGame() {
+    final Set<String> ids = new HashSet<String>();
+    for (GamePiece p : source.getAllPieces()) {
+      ids.add(p.getId());
+    }
+    final Set<String> targetIds = new HashSet<String>();
+    for (GamePiece p : target.getAllPieces()) {
+      targetIds.add(p.getId());
+    }
+    assertEquals(ids, targetIds);
+
+    for (GamePiece p : source.getAllPieces()) {
+      final GamePiece q = target.getPieceForId(p.getId());
+      assertEquals(p.getType(), q.getType());
+      assertEquals(p.getState(), q.getState());
+      assertEquals(p.getPosition(), q.getPosition());
+
+      if (p.getParent() == null) {
+        assertEquals(null, q.getParent());
+      }
+      else {
+        assertSame(target.getPieceForId(p.getParent().getId()), q.getParent());
+      }
+
+      if (p instanceof Stack) {
+        final Stack s = (Stack) p;
+        final Stack t = (Stack) q;
+        assertEquals(s.getPieceCount(), t.getPieceCount());
+        for (int i = 0; i < s.getPieceCount(); ++i) {
+          assertSame(target.getPieceForId(s.getPieceAt(i).getId()),
+                     t.getPieceAt(i));
+        }
+      }
+    }
+
+    assertEquals(sourceTurn.value, targetTurn.value);
+  }
+
+  @Test
+  public void testPiecesDiverged() {
+    // the source moved a, removed c, and moved e out of the stack
+    current = source;
+    move(source, "a", 300, 300);
+    source.removePiece("c");
+    final GamePiece e = source.getPieceForId("e");
+    ((Stack) source.getPieceForId("s")).remove(e);
+    move(source, "e", 700, 700);
+
+    // the target moved b, and added f to the stack
+    current = target;
+    move(target, "b", 400, 400);
+    final GamePiece f = new BasicPiece(BasicPiece.ID + ";;;f;");
+    f.setId("f");
+    target.addPiece(f);
+    ((Stack) target.getPieceForId("s")).add(f);
+
+    current = source;
+    final Command restore = source.getRestoreCommand(target.getManifest());
+    assertFalse(hasSetup(restore));
+
+    sendToTarget(restore);
+    assertSameGame();
+    assertEquals(null, target.getPieceForId("f"));
+  }
+
+  @Test
+  public void testComponentDiverged() {
+    current = source;
+    move(source, "a", 300, 300);
+    sourceTurn.value = "Turn 2";
+
+    final Command restore = source.getRestoreCommand(target.getManifest());
+    // the restore commands of components are sent only after a reset
+    assertTrue(hasSetup(restore));
+
+    sendToTarget(restore);
+    assertSameGame();
+  }
+
+  @Test
+  public void testUnchanged() {
+    current = source;
+    final Command restore = source.getRestoreCommand(target.getManifest());
+    assertTrue(restore.isNull());
+
+    sendToTarget(restore);
+    assertSameGame();
+  }
+
+  @Test
+  public void testNoGame() {
+    current = source;
+    source.setup(false);
+    final Command restore = source.getRestoreCommand(target.getManifest());
+    assertTrue(restore instanceof GameState.SetupCommand);
+    assertFalse(((GameState.SetupCommand) restore).isGameStarting());
+
+    // the target's game is closed, as before a full synchronization
+    sendToTarget(restore);
+    assertFalse(target.getAllPieces().iterator().hasNext());
+    assertEquals("", targetTurn.value);
+  }
+}
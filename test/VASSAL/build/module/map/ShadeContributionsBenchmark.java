@@ -0,0 +1,96 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.map;
+
+import java.awt.Point;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+
+import VASSAL.counters.AreaOfEffect;
+import VASSAL.counters.BasicPiece;
+import VASSAL.counters.GamePiece;
+
+/**
+ * Compares building the shade of a {@link MapShader} from the areas of
+ * all of its pieces on each draw, as was once done, with updating
+ * {@link ShadeContributions} when one piece moves between draws.
+ *
+ * <pre>
+ * java VASSAL.build.module.map.ShadeContributionsBenchmark 200
+ * </pre>
+ */
+public class ShadeContributionsBenchmark {
+  private static class TestPiece extends BasicPiece {
+    public TestPiece() {
+      super(BasicPiece.ID + ";;;Unit;");
+    }
+
+    public String getGpId() {
+      return "0";
+    }
+  }
+
+  private static class TestAreaOfEffect extends AreaOfEffect {
+    public TestAreaOfEffect(GamePiece inner) {
+      super(AreaOfEffect.ID, inner);
+    }
+
+    public Area getArea(MapShader shader) {
+      final Point p = getPosition();
+      return new Area(new Ellipse2D.Double(p.x - 75, p.y - 75, 150, 150));
+    }
+  }
+
+  public static void main(String[] args) {
+    final int n = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    final int frames = 5;
+
+    final GamePiece[] pieces = new GamePiece[n];
+    for (int i = 0; i < n; ++i) {
+      pieces[i] = new TestAreaOfEffect(new TestPiece());
+      pieces[i].setPosition(new Point(i*137 % 4000, i*91 % 3000));
+    }
+
+    for (int pass = 0; pass < 3; ++pass) {
+      long t0 = System.nanoTime();
+      for (int f = 0; f < frames; ++f) {
+        pieces[f].setPosition(new Point(f*50, f*50));
+        final Area a = new Area();
+        for (GamePiece p : pieces) {
+          a.add(((MapShader.ShadedPiece) p).getArea(null));
+        }
+      }
+      final long fullT = System.nanoTime() - t0;
+
+      final ShadeContributions c = new ShadeContributions(null);
+      c.update(pieces);
+      t0 = System.nanoTime();
+      for (int f = 0; f < frames; ++f) {
+        pieces[f].setPosition(new Point(f*50 + 25, f*50));
+        c.update(pieces);
+        c.update(pieces);
+      }
+      final long incT = System.nanoTime() - t0;
+
+      System.out.println(n + " pieces, " + frames + " moves: rebuilt "
+        + fullT / frames / 1000000 + " ms/draw, incremental "
+        + incT / (2*frames) / 1000000 + " ms/draw");
+    }
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.build.module.map;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import VASSAL.counters.AreaOfEffect;
+import VASSAL.counters.BasicPiece;
+import VASSAL.counters.GamePiece;
+import VASSAL.counters.Stack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ShadeContributionsTest {
+  private final List<GamePiece> pieces = new ArrayList<GamePiece>();
+  private final ShadeContributions contributions =
+    new ShadeContributions(null);
+  private int areas;
+  private String range = "50";
+
+  /**
+   * A BasicPiece which needs no module to report its state, and which
+   * reads a property from outside its state.
+   */
+  private class TestPiece extends BasicPiece {
+    public TestPiece() {
+      super(BasicPiece.ID + ";;;Unit;");
+    }
+
+    public String getGpId() {
+      return "0";
+    }
+
+    public Object getProperty(Object key) {
+      return "Range".equals(key) ? range : super.getProperty(key);
+    }
+  }
+
+  /** An area of effect which needs no map, and counts its areas. */
+  private class TestAreaOfEffect extends AreaOfEffect {
+    public TestAreaOfEffect(GamePiece inner) {
+      super(AreaOfEffect.ID, inner);
+    }
+
+    public Area getArea(MapShader shader) {
+      ++areas;
+      final Point p = getPosition();
+      return new Area(new Ellipse2D.Double(p.x - 50, p.y - 50, 100, 100));
+    }
+  }
+
+  /** An area of effect whose radius is read from a property. */
+  private class RangeAreaOfEffect extends AreaOfEffect {
+    public RangeAreaOfEffect(GamePiece inner) {
+      super(AreaOfEffect.ID + "0,0,0;30;1;true;Show Area;;;false;Range;",
+            inner);
+    }
+
+    public Area getArea(MapShader shader) {
+      ++areas;
+      final Point p = getPosition();
+      final int r = getRadius();
+      return new Area(new Ellipse2D.Double(p.x - r, p.y - r, 2*r, 2*r));
+    }
+  }
+
+  private GamePiece addPiece(int x, int y) {
+    final GamePiece p = new TestAreaOfEffect(new TestPiece());
+    p.setPosition(new Point(x, y));
+    pieces.add(p);
+    return p;
+  }
+
+  private Area update() {
+    return contributions.update(pieces.toArray(new GamePiece[pieces.size()]));
+  }
+
+  @Test
+  public void testUnchangedPiecesNotVisited() {
+    for (int i = 0; i < 10; ++i) {
+      addPiece(i*200, 0);
+    }
+    pieces.add(new TestPiece());
+
+    final Area first = update();
+    assertEquals(10, areas);
+    assertEquals(new Rectangle(-50, -50, 1900, 100), first.getBounds());
+
+    assertSame(first, update());
+    assertEquals(10, areas);
+
+    // only the moved piece is visited
+    pieces.get(3).setPosition(new Point(600, 1000));
+    final Area moved = update();
+    assertEquals(11, areas);
+    assertTrue(moved.contains(600, 1000));
+    assertFalse(moved.contains(600, 0));
+  }
+
+  @Test
+  public void testArrivingAndLeavingPieces() {
+    addPiece(0, 0);
+    final Area first = update();
+    assertFalse(first.contains(500, 500));
+
+    final GamePiece p = addPiece(500, 500);
+    final Area second = update();
+    assertNotSame(first, second);
+    assertFalse(first.contains(500, 500));
+    assertTrue(second.contains(500, 500));
+    assertTrue(second.contains(0, 0));
+
+    pieces.remove(p);
+    assertFalse(update().contains(500, 500));
+    assertTrue(update().contains(0, 0));
+    assertEquals(2, areas);
+  }
+
+  @Test
+  public void testPiecesInStacks() {
+    final GamePiece a = addPiece(0, 0);
+    final GamePiece b = addPiece(300, 0);
+    pieces.clear();
+    final Stack s = new Stack(a);
+    s.add(b);
+    pieces.add(s);
+
+    // a stack takes its pieces to its own position
+    final Area stacked = update();
+    assertEquals(2, areas);
+    assertEquals(new Rectangle(-50, -50, 100, 100), stacked.getBounds());
+
+    s.remove(b);
+    b.setPosition(new Point(300, 0));
+    pieces.add(b);
+    assertTrue(update().contains(300, 0));
+    assertEquals(3, areas);
+  }
+
+  @Test
+  public void testMatchesUnionOfAreas() {
+    final Area expected = new Area();
+    for (int i = 0; i < 30; ++i) {
+      final GamePiece p = addPiece(i*37 % 300, i*53 % 300);
+      expected.add(((AreaOfEffect) p).getArea(null));
+    }
+
+    final Area actual = update();
+    assertEquals(expected.getBounds(), actual.getBounds());
+    for (int x = -60; x < 360; x += 7) {
+      for (int y = -60; y < 360; y += 7) {
+        assertEquals(expected.contains(x, y), actual.contains(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void testRadiusFromProperty() {
+    final GamePiece p = new RangeAreaOfEffect(new TestPiece());
+    pieces.add(p);
+
+    assertEquals(new Rectangle(-50, -50, 100, 100), update().getBounds());
+    update();
+    assertEquals(1, areas);
+
+    // the range is not part of the state of the piece
+    final String state = p.getState();
+    range = "80";
+    assertEquals(state, p.getState());
+    assertEquals(new Rectangle(-80, -80, 160, 160), update().getBounds());
+    assertEquals(2, areas);
+  }
+
+  @Test
+  public void testClear() {
+    addPiece(0, 0);
+    update();
+    contributions.clear();
+    update();
+    assertEquals(2, areas);
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.build.module.map;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+
+import org.junit.Test;
+
+import VASSAL.counters.BasicPiece;
+import VASSAL.counters.GamePiece;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class SimplePieceCollectionTest {
+
+  private static GamePiece piece(int x, int y) {
+    final GamePiece p = new BasicPiece(BasicPiece.ID + ";;;");
+    p.setPosition(new Point(x, y));
+    return p;
+  }
+
+  @Test
+  public void testRegionQuery() {
+    final SimplePieceCollection c = new SimplePieceCollection();
+    final GamePiece a = piece(10, 10);
+    final GamePiece b = piece(1000, 1000);
+    final GamePiece d = piece(-500, 20);
+    c.add(a);
+    c.add(b);
+    c.add(d);
+
+    assertArrayEquals(new GamePiece[] { a },
+                      c.getPieces(new Rectangle(0, 0, 100, 100)));
+    assertArrayEquals(new GamePiece[] { d },
+                      c.getPieces(new Rectangle(-600, 0, 200, 100)));
+    assertArrayEquals(new GamePiece[] { a, b, d },
+                      c.getPieces(new Rectangle(-1000, -1000, 3000, 3000)));
+  }
+
+  @Test
+  public void testDrawingOrder() {
+    final SimplePieceCollection c = new SimplePieceCollection();
+    final GamePiece a = piece(10, 10);
+    final GamePiece b = piece(20, 20);
+    final GamePiece d = piece(30, 30);
+    c.add(a);
+    c.add(b);
+    c.add(d);
+
+    final Rectangle r = new Rectangle(0, 0, 100, 100);
+    assertArrayEquals(new GamePiece[] { a, b, d }, c.getPieces(r));
+
+    c.moveToFront(a);
+    assertArrayEquals(new GamePiece[] { b, d, a }, c.getPieces(r));
+
+    c.moveToBack(d);
+    assertArrayEquals(new GamePiece[] { d, b, a }, c.getPieces(r));
+
+    c.reposition(a, 1);
+    assertArrayEquals(c.getPieces(), c.getPieces(r));
+  }
+
+  @Test
+  public void testMoveAndRemove() {
+    final SimplePieceCollection c = new SimplePieceCollection();
+    final GamePiece a = piece(10, 10);
+    final GamePiece b = piece(20, 20);
+    c.add(a);
+    c.add(b);
+
+    final Rectangle near = new Rectangle(0, 0, 100, 100);
+    final Rectangle far = new Rectangle(5000, 5000, 100, 100);
+
+    a.setPosition(new Point(5050, 5050));
+    c.pieceChanged(a);
+    assertArrayEquals(new GamePiece[] { b }, c.getPieces(near));
+    assertArrayEquals(new GamePiece[] { a }, c.getPieces(far));
+
+    c.remove(a);
+    assertArrayEquals(new GamePiece[0], c.getPieces(far));
+
+    c.clear();
+    assertArrayEquals(new GamePiece[0], c.getPieces(near));
+  }
+}
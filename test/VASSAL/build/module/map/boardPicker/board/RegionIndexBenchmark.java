@@ -0,0 +1,83 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.map.boardPicker.board;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares finding the region nearest a point by scanning every region
+ * with finding it through a {@link RegionIndex}.
+ *
+ * <pre>
+ * java VASSAL.build.module.map.boardPicker.board.RegionIndexBenchmark 2000
+ * </pre>
+ */
+public class RegionIndexBenchmark {
+  public static void main(String[] args) {
+    final int n = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+
+    final Random r = new Random(42);
+    final List<Region> regions = new ArrayList<Region>();
+    for (int i = 0; i < n; ++i) {
+      regions.add(new Region(new Point(r.nextInt(4000), r.nextInt(3000))));
+    }
+
+    final Point[] points = new Point[100000];
+    for (int i = 0; i < points.length; ++i) {
+      points[i] = new Point(r.nextInt(4000), r.nextInt(3000));
+    }
+
+    for (int pass = 0; pass < 3; ++pass) {
+      long t0 = System.nanoTime();
+      long scanSum = 0;
+      for (Point p : points) {
+        long min = Long.MAX_VALUE;
+        for (Region reg : regions) {
+          final Point o = reg.getOrigin();
+          final long d = (long) (p.x - o.x)*(p.x - o.x) + (long) (p.y - o.y)*(p.y - o.y);
+          if (d < min) {
+            min = d;
+          }
+        }
+        scanSum += min;
+      }
+      final long scan = System.nanoTime() - t0;
+
+      t0 = System.nanoTime();
+      final RegionIndex index = new RegionIndex(regions);
+      final long build = System.nanoTime() - t0;
+
+      t0 = System.nanoTime();
+      long indexSum = 0;
+      for (Point p : points) {
+        final Point o = index.nearest(p).getOrigin();
+        indexSum += (long) (p.x - o.x)*(p.x - o.x) + (long) (p.y - o.y)*(p.y - o.y);
+      }
+      final long indexed = System.nanoTime() - t0;
+
+      System.out.printf("%d regions: scan %.2f us/lookup, index %.3f us/lookup, built in %.2f ms%s%n", //$NON-NLS-1$
+                        n, scan / 1e3 / points.length,
+                        indexed / 1e3 / points.length, build / 1e6,
+                        scanSum == indexSum ? "" : " (mismatch)"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.map.boardPicker.board;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RegionIndexTest {
+  private static List<Region> randomRegions(Random r, int n) {
+    final List<Region> regions = new ArrayList<Region>();
+    for (int i = 0; i < n; ++i) {
+      // a coarse grid, so that there are ties on both axes
+      regions.add(new Region(new Point(10*r.nextInt(200), 10*r.nextInt(150))));
+    }
+    return regions;
+  }
+
+  private static long distSq(Point a, Point b) {
+    final long dx = a.x - b.x;
+    final long dy = a.y - b.y;
+    return dx*dx + dy*dy;
+  }
+
+  @Test
+  public void testNearest() {
+    final Random r = new Random(18);
+    final List<Region> regions = randomRegions(r, 2000);
+    final RegionIndex index = new RegionIndex(regions);
+
+    for (int i = 0; i < 5000; ++i) {
+      final Point p = new Point(r.nextInt(2200) - 100, r.nextInt(1700) - 100);
+
+      long min = Long.MAX_VALUE;
+      for (Region reg : regions) {
+        min = Math.min(min, distSq(p, reg.getOrigin()));
+      }
+
+      assertEquals(min, distSq(p, index.nearest(p).getOrigin()));
+    }
+  }
+
+  @Test
+  public void testWithin() {
+    final Random r = new Random(18);
+    final List<Region> regions = randomRegions(r, 2000);
+    final RegionIndex index = new RegionIndex(regions);
+
+    for (int i = 0; i < 500; ++i) {
+      final Point p = new Point(r.nextInt(2000), r.nextInt(1500));
+      final int radius = r.nextInt(200);
+
+      final Set<Region> expected = new HashSet<Region>();
+      for (Region reg : regions) {
+        if (distSq(p, reg.getOrigin()) <= (long) radius*radius) {
+          expected.add(reg);
+        }
+      }
+
+      final List<Region> found = index.within(p, radius);
+      assertEquals(expected.size(), found.size());
+      assertTrue(expected.containsAll(found));
+    }
+  }
+
+  @Test
+  public void testEmpty() {
+    final RegionIndex index = new RegionIndex(new ArrayList<Region>());
+    assertNull(index.nearest(new Point(1, 1)));
+    assertTrue(index.within(new Point(1, 1), 100).isEmpty());
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.map.boardPicker.board.mapgrid;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares finding the zone containing a point by scanning every zone
+ * with finding it through a {@link ZoneIndex}.
+ *
+ * <pre>
+ * java VASSAL.build.module.map.boardPicker.board.mapgrid.ZoneIndexBenchmark 800
+ * </pre>
+ */
+public class ZoneIndexBenchmark {
+  public static void main(String[] args) {
+    final int n = args.length > 0 ? Integer.parseInt(args[0]) : 800;
+
+    // hexagonal zones tiling a map
+    final int cols = (int) Math.ceil(Math.sqrt(2.0 * n));
+    final List<Zone> zones = new ArrayList<Zone>();
+    for (int i = 0; i < n; ++i) {
+      final int x = (i % cols) * 90;
+      final int y = (i / cols) * 100 + ((i % cols) % 2) * 50;
+      final Zone z = new Zone();
+      z.setAttribute(Zone.PATH,
+        (x+30) + "," + y + ";" + (x+90) + "," + y + ";" +
+        (x+120) + "," + (y+50) + ";" + (x+90) + "," + (y+100) + ";" +
+        (x+30) + "," + (y+100) + ";" + x + "," + (y+50));
+      zones.add(z);
+    }
+
+    final Random r = new Random(42);
+    final Point[] points = new Point[100000];
+    for (int i = 0; i < points.length; ++i) {
+      points[i] = new Point(r.nextInt(cols*90 + 30),
+                            r.nextInt((n/cols + 1)*100 + 50));
+    }
+
+    final ZoneIndex index = new ZoneIndex(zones);
+
+    for (int pass = 0; pass < 3; ++pass) {
+      long t0 = System.nanoTime();
+      int scanHits = 0;
+      for (Point p : points) {
+        for (Zone z : zones) {
+          if (z.contains(p)) {
+            ++scanHits;
+            break;
+          }
+        }
+      }
+      final long scan = System.nanoTime() - t0;
+
+      t0 = System.nanoTime();
+      int indexHits = 0;
+      for (Point p : points) {
+        if (index.find(p) != null) ++indexHits;
+      }
+      final long indexed = System.nanoTime() - t0;
+
+      System.out.printf("%d zones: scan %.2f us/lookup, index %.3f us/lookup (%d/%d hits)%n", //$NON-NLS-1$
+                        n, scan / 1e3 / points.length,
+                        indexed / 1e3 / points.length, scanHits, indexHits);
+    }
+  }
+}
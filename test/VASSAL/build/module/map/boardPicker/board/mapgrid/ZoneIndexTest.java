@@ -0,0 +1,107 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.map.boardPicker.board.mapgrid;
+
+import java.awt.Point;
+import java.awt.Polygon;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ZoneIndexTest {
+  private static Zone zone(String path) {
+    final Zone z = new Zone();
+    z.setAttribute(Zone.PATH, path);
+    return z;
+  }
+
+  private static Zone scan(List<Zone> zones, Point p) {
+    for (Zone z : zones) {
+      if (z.contains(p)) return z;
+    }
+    return null;
+  }
+
+  @Test
+  public void testMatchesScan() {
+    // random triangles and boxes, many of them overlapping
+    final Random r = new Random(17);
+    final List<Zone> zones = new ArrayList<Zone>();
+    for (int i = 0; i < 300; ++i) {
+      final int x = r.nextInt(2000);
+      final int y = r.nextInt(1500);
+      final int w = 1 + r.nextInt(200);
+      final int h = 1 + r.nextInt(200);
+      if (r.nextBoolean()) {
+        zones.add(zone(x + "," + y + ";" + (x+w) + "," + y + ";" + x + "," + (y+h)));
+      }
+      else {
+        zones.add(zone(x + "," + y + ";" + (x+w) + "," + y + ";" +
+                       (x+w) + "," + (y+h) + ";" + x + "," + (y+h)));
+      }
+    }
+
+    final ZoneIndex index = new ZoneIndex(zones);
+    for (int i = 0; i < 20000; ++i) {
+      final Point p = new Point(r.nextInt(2400) - 100, r.nextInt(1900) - 100);
+      assertSame(scan(zones, p), index.find(p));
+    }
+
+    // the edges and corners of the zones
+    for (Zone z : zones) {
+      final Polygon poly = (Polygon) z.getShape();
+      for (int i = 0; i < poly.npoints; ++i) {
+        for (int dx = -1; dx <= 1; ++dx) {
+          for (int dy = -1; dy <= 1; ++dy) {
+            final Point p = new Point(poly.xpoints[i] + dx, poly.ypoints[i] + dy);
+            assertSame(scan(zones, p), index.find(p));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testFirstOfOverlappingZones() {
+    final Zone outer = zone("0,0;100,0;100,100;0,100");
+    final Zone inner = zone("10,10;20,10;20,20;10,20");
+    final List<Zone> zones = new ArrayList<Zone>();
+    zones.add(inner);
+    zones.add(outer);
+
+    assertSame(inner, new ZoneIndex(zones).find(new Point(15, 15)));
+    Collections.reverse(zones);
+    assertSame(outer, new ZoneIndex(zones).find(new Point(15, 15)));
+  }
+
+  @Test
+  public void testEmpty() {
+    final List<Zone> zones = new ArrayList<Zone>();
+    assertNull(new ZoneIndex(zones).find(new Point(0, 0)));
+
+    zones.add(new Zone());
+    assertNull(new ZoneIndex(zones).find(new Point(0, 0)));
+  }
+}
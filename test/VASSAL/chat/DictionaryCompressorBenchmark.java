@@ -0,0 +1,151 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.chat;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+import VASSAL.build.GameModule;
+import VASSAL.build.module.GameState;
+import VASSAL.build.module.PrototypeDefinition;
+import VASSAL.build.widget.CardSlot;
+import VASSAL.build.widget.PieceSlot;
+import VASSAL.tools.SequenceEncoder;
+import VASSAL.tools.io.DeobfuscatingInputStream;
+import VASSAL.tools.io.IOUtils;
+
+/**
+ * Compares {@link DictionaryCompressor} with {@link Compressor} on the
+ * commands of a saved game or log, using the pieces of the module it was
+ * played with.
+ *
+ * <pre>
+ * java VASSAL.chat.DictionaryCompressorBenchmark module.vmod game.vlog
+ * </pre>
+ */
+public class DictionaryCompressorBenchmark {
+  public static void main(String[] args) throws Exception {
+    final List<String> defs = new ArrayList<String>();
+    final ZipFile module = new ZipFile(args[0]);
+    try {
+      final InputStream in =
+        module.getInputStream(module.getEntry(GameModule.BUILDFILE));
+      final Document doc =
+        DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(in);
+      for (Class<?> c : new Class<?>[] {
+             PrototypeDefinition.class, PieceSlot.class, CardSlot.class }) {
+        final NodeList nodes = doc.getElementsByTagName(c.getName());
+        for (int i = 0; i < nodes.getLength(); ++i) {
+          defs.add(nodes.item(i).getTextContent());
+        }
+      }
+    }
+    finally {
+      module.close();
+    }
+
+    final String log;
+    final ZipFile game = new ZipFile(args[1]);
+    try {
+      final ZipEntry e = game.getEntry(GameState.SAVEFILE_ZIP_ENTRY);
+      log = new String(IOUtils.toByteArray(
+        new DeobfuscatingInputStream(game.getInputStream(e))), "UTF-8");
+    }
+    finally {
+      game.close();
+    }
+
+    // each top-level command of a log was sent as one message
+    final List<String> messages = new ArrayList<String>();
+    final char sep = '\u001b';
+    int begin = 0;
+    for (int i = log.indexOf(sep); ; i = log.indexOf(sep, i + 1)) {
+      if (i > 0 && log.charAt(i - 1) == '\\') {
+        continue;
+      }
+
+      final String token = i < 0 ? log.substring(begin) :
+                                   log.substring(begin, i);
+      if (token.length() > 0) {
+        final String s =
+          new SequenceEncoder.Decoder(token, sep).nextToken();
+        messages.add(s.startsWith("LOG\t") ? s.substring(4) : s);
+      }
+
+      if (i < 0) {
+        break;
+      }
+      begin = i + 1;
+    }
+
+    long raw = 0;
+    final List<byte[]> bytes = new ArrayList<byte[]>();
+    for (String m : messages) {
+      bytes.add(m.getBytes("UTF-8"));
+      raw += bytes.get(bytes.size() - 1).length;
+    }
+    System.out.printf("%d piece definitions, %d messages, %d bytes%n",
+                      defs.size(), bytes.size(), raw);
+
+    // the first run of each warms up the JIT
+    for (int pass = 0; pass < 2; ++pass) {
+      long zip = 0;
+      final long t0 = System.nanoTime();
+      for (byte[] b : bytes) {
+        final byte[] z = Compressor.compress(b);
+        Compressor.decompress(z);
+        zip += z.length;
+      }
+      final long zipTime = System.nanoTime() - t0;
+
+      if (pass > 0) {
+        System.out.printf("zip:             %7d bytes (%4.1f%%), %5.1f us/message%n",
+                          zip, 100.0 * zip / raw, zipTime / 1e3 / bytes.size());
+      }
+
+      for (int size = DictionaryCompressor.MAX_DICTIONARY; size >= 4096; size /= 2) {
+        final DictionaryCompressor dc =
+          new DictionaryCompressor(args[0],
+            DictionaryCompressor.buildDictionary(defs, size));
+        long dict = 0;
+        final long t1 = System.nanoTime();
+        for (byte[] b : bytes) {
+          final byte[] d = dc.compress(b);
+          dc.decompress(d);
+          dict += d.length;
+        }
+        final long dictTime = System.nanoTime() - t1;
+
+        if (pass > 0) {
+          System.out.printf("%2dK dictionary: %7d bytes (%4.1f%%), %5.1f us/message%n",
+                            size / 1024, dict, 100.0 * dict / raw,
+                            dictTime / 1e3 / bytes.size());
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.chat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DictionaryCompressorTest {
+  private static final String COMMON =
+    "emb2;Activate;2;;;2;;;2;;;;1;false;0;0;unit.png,unit_r.png;,Reduced ;true";
+
+  private static List<String> definitions() {
+    final List<String> defs = new ArrayList<String>();
+    for (int i = 0; i < 50; ++i) {
+      defs.add("+/null/" + COMMON + "\tmark;Side\tpiece;;;unit" + i + ".png;Unit " + i + "/1\tnull;0;0;;0"); //$NON-NLS-1$
+    }
+    defs.add(null);
+    return defs;
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    final DictionaryCompressor dc =
+      new DictionaryCompressor("test", DictionaryCompressor.buildDictionary(definitions()));
+
+    final byte[] msg =
+      ("+/1400000000/" + COMMON + "\tmark;Side\tpiece;;;unit7.png;Unit 7/1\tMain Map;100;200;;0").getBytes("UTF-8");
+    final byte[] compressed = dc.compress(msg);
+    assertArrayEquals(msg, dc.decompress(compressed));
+
+    // the dictionary supplies the common layer
+    assertTrue(compressed.length < Compressor.compress(msg).length / 2);
+
+    // and can be reused
+    assertArrayEquals(new byte[0], dc.decompress(dc.compress(new byte[0])));
+    assertArrayEquals(msg, dc.decompress(dc.compress(msg)));
+  }
+
+  @Test
+  public void testDifferentDictionary() throws IOException {
+    final DictionaryCompressor a =
+      new DictionaryCompressor("test", DictionaryCompressor.buildDictionary(definitions()));
+    final DictionaryCompressor b =
+      new DictionaryCompressor("test", DictionaryCompressor.buildDictionary(Arrays.asList("+/null/piece;;;other.png;Other/1")));
+    assertFalse(a.getId().equals(b.getId()));
+
+    try {
+      b.decompress(a.compress(COMMON.getBytes("UTF-8")));
+      fail();
+    }
+    catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testBuildDictionary() throws IOException {
+    final byte[] dict = DictionaryCompressor.buildDictionary(definitions(), 200);
+    assertTrue(dict.length <= 200);
+
+    // the layer common to all pieces is kept, and the prefixes end it
+    final String s = new String(dict, "UTF-8");
+    assertTrue(s.contains(COMMON));
+    assertTrue(s.endsWith("d/"));
+    assertEquals(s.indexOf(COMMON), s.lastIndexOf(COMMON));
+  }
+}
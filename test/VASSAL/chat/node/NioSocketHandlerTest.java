@@ -0,0 +1,170 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.chat.node;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NioSocketHandlerTest {
+  private ExecutorService executor;
+  private SocketSelector selector;
+  private ServerSocketChannel server;
+
+  private final CountDownLatch serverClosed = new CountDownLatch(1);
+
+  @Before
+  public void setUp() throws IOException {
+    executor = Executors.newFixedThreadPool(2);
+    selector = new SocketSelector("test", executor);
+
+    server = ServerSocketChannel.open();
+    server.socket().bind(new InetSocketAddress("localhost", 0));
+
+    // echo each line back to the socket it came from
+    selector.listen(server, new SocketSelector.Acceptor() {
+      public void accept(SocketChannel channel) throws IOException {
+        final SocketHandler[] h = new SocketHandler[1];
+        h[0] = selector.register(channel, new SocketWatcher() {
+          public void handleMessage(String msg) {
+            h[0].writeLine(msg);
+          }
+
+          public void socketClosed(SocketHandler handler) {
+            serverClosed.countDown();
+          }
+        });
+        h[0].start();
+      }
+    });
+    selector.start();
+  }
+
+  @After
+  public void tearDown() throws InterruptedException {
+    selector.shutdown();
+    selector.join(5000);
+    executor.shutdown();
+  }
+
+  private static class Collector implements SocketWatcher {
+    public final BlockingQueue<String> lines =
+      new LinkedBlockingQueue<String>();
+    public final CountDownLatch closed = new CountDownLatch(1);
+
+    public void handleMessage(String msg) {
+      lines.add(msg);
+    }
+
+    public void socketClosed(SocketHandler handler) {
+      closed.countDown();
+    }
+
+    public String next() throws InterruptedException {
+      return lines.poll(5, TimeUnit.SECONDS);
+    }
+  }
+
+  private int getPort() {
+    return server.socket().getLocalPort();
+  }
+
+  @Test
+  public void testEchoToBufferedSocketHandler() throws Exception {
+    final Collector c = new Collector();
+    final SocketHandler client =
+      new BufferedSocketHandler(new Socket("localhost", getPort()), c);
+    client.start();
+
+    final StringBuilder big = new StringBuilder();
+    for (int i = 0; i < 50000; ++i) {
+      big.append((char) ('a' + i % 26));
+    }
+
+    final String[] lines = {
+      "REG\tplayer\tmodule/Main Room\t", "Gr\u00fc\u00dfe \u263a",
+      big.toString(), "last"
+    };
+    for (String line : lines) {
+      client.writeLine(line);
+    }
+
+    for (String line : lines) {
+      assertEquals(line, c.next());
+    }
+
+    client.close();
+    assertTrue(serverClosed.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testNioClients() throws Exception {
+    final SocketSelector clients = new SocketSelector("clients", null);
+    clients.start();
+
+    try {
+      final Collector[] c = new Collector[20];
+      final SocketHandler[] h = new SocketHandler[c.length];
+      for (int i = 0; i < c.length; ++i) {
+        c[i] = new Collector();
+        h[i] = clients.register(SocketChannel.open(
+          new InetSocketAddress("localhost", getPort())), c[i]);
+
+        // lines written before start are not lost
+        h[i].writeLine("first " + i);
+        h[i].start();
+      }
+
+      for (int j = 0; j < 100; ++j) {
+        for (int i = 0; i < c.length; ++i) {
+          h[i].writeLine("line " + j);
+        }
+      }
+
+      for (int i = 0; i < c.length; ++i) {
+        assertEquals("first " + i, c[i].next());
+        for (int j = 0; j < 100; ++j) {
+          assertEquals("line " + j, c[i].next());
+        }
+      }
+
+      // signing off closes the socket
+      h[0].writeLine(SocketHandler.SIGN_OFF);
+      assertTrue(c[0].closed.await(5, TimeUnit.SECONDS));
+    }
+    finally {
+      clients.shutdown();
+    }
+  }
+}
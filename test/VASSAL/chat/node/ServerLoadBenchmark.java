@@ -0,0 +1,174 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.chat.node;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import VASSAL.tools.ArgsParser;
+import VASSAL.tools.ArrayUtils;
+
+/**
+ * Simulates many players connected to a server, each of which forwards
+ * messages to the other players in its room, and reports how many
+ * messages the server delivers and how long it takes to deliver them.
+ *
+ * <pre>
+ * java VASSAL.chat.node.ServerLoadBenchmark [-host localhost] [-port 5050]
+ *   [-clients 1000] [-roomSize 10] [-rate 1] [-seconds 30]
+ *   [-server nio|thread]
+ * </pre>
+ *
+ * <code>-rate</code> is the number of messages each player sends per
+ * second. If <code>-server</code> is given, a server of that kind is
+ * started in this process.
+ */
+public class ServerLoadBenchmark {
+  private static final String MODULE = "loadtest";
+  private static final String TAG = "T";
+  private static final int MAX_SAMPLES = 1 << 22;
+
+  private final long[] latencies = new long[MAX_SAMPLES];
+  private final AtomicInteger samples = new AtomicInteger();
+  private final AtomicLong delivered = new AtomicLong();
+  private volatile boolean measuring = false;
+
+  private final SocketWatcher watcher = new SocketWatcher() {
+    public void handleMessage(String msg) {
+      if (!measuring || !msg.startsWith(TAG)) {
+        return;
+      }
+
+      final long sent;
+      try {
+        sent = Long.parseLong(msg.substring(TAG.length()));
+      }
+      catch (NumberFormatException e) {
+        return;
+      }
+
+      delivered.incrementAndGet();
+      final int i = samples.getAndIncrement();
+      if (i < MAX_SAMPLES) {
+        latencies[i] = System.nanoTime() - sent;
+      }
+    }
+
+    public void socketClosed(SocketHandler handler) {
+    }
+  };
+
+  public void run(String host, int port, int clients, int roomSize,
+                  double rate, int seconds) throws IOException,
+                                                   InterruptedException {
+    final SocketSelector selector = new SocketSelector("load", null);
+    selector.start();
+
+    final InetSocketAddress address = new InetSocketAddress(host, port);
+    final SocketHandler[] handlers = new SocketHandler[clients];
+    final String[] rooms = new String[clients];
+
+    for (int i = 0; i < clients; ++i) {
+      rooms[i] = MODULE + "/Room " + (i / roomSize);
+      handlers[i] = selector.register(SocketChannel.open(address), watcher);
+      handlers[i].start();
+      handlers[i].writeLine(
+        Protocol.encodeRegisterCommand("player" + i, rooms[i], ""));
+    }
+    System.out.println(clients + " players connected");
+
+    // let the server settle before measuring
+    Thread.sleep(2000);
+    measuring = true;
+
+    final long interval = (long) (1000000000L / (rate * clients));
+    final long start = System.nanoTime();
+    final long end = start + seconds * 1000000000L;
+    long next = start;
+    long sent = 0;
+
+    for (int i = 0; next < end; i = (i + 1) % clients) {
+      handlers[i].writeLine(Protocol.encodeForwardCommand(
+        rooms[i], TAG + System.nanoTime()));
+      ++sent;
+
+      next += interval;
+      final long wait = next - System.nanoTime();
+      if (wait > 1000000L) {
+        Thread.sleep(wait / 1000000L);
+      }
+    }
+
+    // wait for the stragglers
+    Thread.sleep(2000);
+    measuring = false;
+    final long elapsed = System.nanoTime() - start;
+
+    for (SocketHandler h : handlers) {
+      h.close();
+    }
+    Thread.sleep(500);
+    selector.shutdown();
+
+    report(sent, delivered.get(), elapsed,
+           Math.min(samples.get(), MAX_SAMPLES));
+  }
+
+  private void report(long sent, long received, long elapsed, int n) {
+    final double secs = elapsed / 1e9;
+    System.out.printf("sent %d messages, %.0f/s%n", sent, sent / secs);
+    System.out.printf("delivered %d messages, %.0f/s%n",
+                      received, received / secs);
+
+    if (n > 0) {
+      final long[] l = ArrayUtils.copyOf(latencies, n);
+      Arrays.sort(l);
+      System.out.printf("fan-out latency: p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                        l[n / 2] / 1e6, l[(int) (n * 0.99)] / 1e6,
+                        l[n - 1] / 1e6);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    final Properties p = new ArgsParser(args).getProperties();
+
+    final String host = p.getProperty("host", "localhost");
+    final int port = Integer.parseInt(p.getProperty("port", "5050"));
+    final int clients = Integer.parseInt(p.getProperty("clients", "1000"));
+    final int roomSize = Integer.parseInt(p.getProperty("roomSize", "10"));
+    final double rate = Double.parseDouble(p.getProperty("rate", "1"));
+    final int seconds = Integer.parseInt(p.getProperty("seconds", "30"));
+
+    final String server = p.getProperty("server");
+    if ("nio".equals(server)) {
+      new NioServer(new AsynchronousServerNode(null), port);
+    }
+    else if ("thread".equals(server)) {
+      new Server(new AsynchronousServerNode(null), port);
+    }
+
+    new ServerLoadBenchmark().run(host, port, clients, roomSize, rate, seconds);
+    System.exit(0);
+  }
+}
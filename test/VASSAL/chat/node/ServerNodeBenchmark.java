@@ -0,0 +1,85 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.chat.node;
+
+/**
+ * Measures how message throughput of a {@link ServerNode} scales with
+ * the number of threads forwarding messages, each in its own module.
+ *
+ * <pre>
+ * java VASSAL.chat.node.ServerNodeBenchmark
+ * </pre>
+ */
+public class ServerNodeBenchmark {
+  /** A player which ignores the messages it receives. */
+  private static class Player extends Node {
+    public Player(String id) {
+      super(null, id, null);
+    }
+
+    @Override
+    public boolean isLeaf() {
+      return true;
+    }
+
+    @Override
+    public void send(String msg) {
+    }
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    final ServerNode server = new ServerNode();
+    final int maxThreads =
+      Math.max(4, Runtime.getRuntime().availableProcessors());
+    for (int m = 0; m < maxThreads; ++m) {
+      for (int r = 0; r < 20; ++r) {
+        for (int p = 0; p < 10; ++p) {
+          server.registerNode("module" + m + "/Room " + r,
+                              new Player(m + "." + r + "." + p));
+        }
+      }
+    }
+
+    final int messages = 500000;
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      final Thread[] t = new Thread[threads];
+      for (int i = 0; i < threads; ++i) {
+        final String module = "module" + i;
+        t[i] = new Thread() {
+          @Override
+          public void run() {
+            for (int j = 0; j < messages; ++j) {
+              server.forward(module + "/Room " + (j % 20), "msg");
+            }
+          }
+        };
+      }
+
+      final long start = System.nanoTime();
+      for (Thread th : t) th.start();
+      for (Thread th : t) th.join();
+      final long elapsed = System.nanoTime() - start;
+
+      System.out.printf("%d modules: %.0f messages/s%n",
+                        threads, threads * messages / (elapsed / 1e9));
+    }
+    System.exit(0);
+  }
+}
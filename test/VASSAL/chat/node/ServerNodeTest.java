@@ -0,0 +1,282 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.chat.node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import VASSAL.tools.PropertiesEncoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ServerNodeTest {
+
+  /**
+   * A player which counts the messages forwarded to it. The lists of
+   * players and rooms which the server's timer sends at any moment are
+   * not counted.
+   */
+  private static class Player extends Node {
+    public final AtomicInteger received = new AtomicInteger();
+    public volatile String last;
+
+    public Player(String id) {
+      super(null, id, null);
+    }
+
+    @Override
+    public boolean isLeaf() {
+      return true;
+    }
+
+    @Override
+    public void send(String msg) {
+      if (msg.startsWith(Protocol.LIST) || msg.startsWith(Protocol.ROOM_INFO)) {
+        return;
+      }
+      last = msg;
+      received.incrementAndGet();
+    }
+  }
+
+  private static Player[] register(ServerNode server, String room, int n) {
+    final Player[] p = new Player[n];
+    for (int i = 0; i < n; ++i) {
+      p[i] = new Player(room.replace('/', '.') + " player " + i);
+      server.registerNode(room, p[i]);
+    }
+    return p;
+  }
+
+  private static int[] received(Player[] players) {
+    final int[] r = new int[players.length];
+    for (int i = 0; i < r.length; ++i) {
+      r[i] = players[i].received.get();
+    }
+    return r;
+  }
+
+  private static void assertReceived(Player[] players, int... expected) {
+    for (int i = 0; i < players.length; ++i) {
+      assertEquals(players[i].getId(),
+                   expected[i], players[i].received.get());
+    }
+  }
+
+  @Test
+  public void testForward() {
+    final ServerNode server = new ServerNode();
+    final Player[] a = register(server, "mod/A", 2);
+    final Player[] b = register(server, "mod/B", 1);
+    final Player[] c = register(server, "other/A", 1);
+
+    server.forward("mod/A", "1");
+    assertReceived(a, 1, 1);
+    assertReceived(b, 0);
+    assertReceived(c, 0);
+
+    server.forward("mod/*", "2");
+    assertReceived(a, 2, 2);
+    assertReceived(b, 1);
+
+    server.forward("mod/~A", "3");
+    assertReceived(a, 2, 2);
+    assertReceived(b, 2);
+
+    server.forward("*", "4");
+    assertReceived(a, 3, 3);
+    assertReceived(b, 3);
+    assertReceived(c, 1);
+
+    server.forward("mod/A/" + a[1].getId(), "5");
+    assertReceived(a, 3, 4);
+    assertEquals("5", a[1].last);
+
+    server.forward("nowhere/A", "6");
+    assertReceived(a, 3, 4);
+  }
+
+  private static void setDictionary(Player p, String dictionary) {
+    final Properties info = new Properties();
+    info.setProperty(NodePlayer.DICTIONARY, dictionary);
+    p.setInfo(new PropertiesEncoder(info).getStringValue());
+  }
+
+  @Test
+  public void testDictionaryMessages() {
+    final ServerNode server = new ServerNode();
+    final Player[] a = register(server, "mod/A", 4);
+    setDictionary(a[0], "d1");
+    setDictionary(a[1], "d1");
+    setDictionary(a[2], "d2");
+
+    // players without the sender's dictionary get it back to resend
+    final String msg = NodeClient.DICTIONARY_HEADER + "compressed";
+    server.forward(a[0], "mod/A/~" + a[0].getId(), msg);
+    assertReceived(a, 2, 1, 0, 0);
+    assertEquals(msg, a[1].last);
+    final String[] undelivered = Protocol.decodeUndeliveredCommand(a[0].last);
+    assertEquals(a[3].getId(), undelivered[0]);
+    assertEquals(msg, undelivered[1]);
+
+    // other messages go to everyone
+    server.forward(a[0], "mod/A/~" + a[0].getId(), "plain");
+    assertReceived(a, 2, 2, 1, 1);
+  }
+
+  @Test
+  public void testCachedPathsFollowMembership() {
+    final ServerNode server = new ServerNode();
+    final Player[] a = register(server, "mod/A", 2);
+    final Player[] b = register(server, "mod/B", 1);
+
+    server.forward("mod/A", "x");
+    server.forward("mod/B", "x");
+    assertReceived(a, 1, 1);
+    assertReceived(b, 1);
+
+    server.move(b[0], "mod/A");
+    server.forward("mod/A", "x");
+    server.forward("mod/B", "x");
+    assertReceived(a, 2, 2);
+    assertReceived(b, 2);
+
+    server.disconnect(a[0]);
+    server.forward("mod/A", "x");
+    server.forward("*", "x");
+    assertReceived(a, 2, 4);
+    assertReceived(b, 4);
+
+    // a module which did not exist when the path was first used
+    server.forward("late/A", "x");
+    final Player[] late = register(server, "late/A", 1);
+    server.forward("late/A", "x");
+    assertReceived(late, 1);
+
+    // empty rooms and modules are removed
+    server.disconnect(late[0]);
+    assertNull(server.getChild("late"));
+    server.forward("late/A", "x");
+    assertReceived(late, 1);
+  }
+
+  @Test
+  public void testEmptyModulesForgotten() {
+    final ServerNode server = new ServerNode();
+    final Player[] a = register(server, "mod/A", 2);
+    final Player[] b = register(server, "other/A", 1);
+    assertEquals(2, server.getModuleStateCount());
+
+    server.disconnect(a[0]);
+    assertEquals(2, server.getModuleStateCount());
+    server.move(a[1], "other/B");
+    assertEquals(1, server.getModuleStateCount());
+
+    server.disconnect(a[1]);
+    server.disconnect(b[0]);
+    assertEquals(0, server.getModuleStateCount());
+
+    // a module may be used again once forgotten
+    final Player[] c = register(server, "mod/A", 1);
+    server.forward("mod/A", "x");
+    assertReceived(c, 1);
+  }
+
+  @Test
+  public void testConcurrentJoinsAndLeaves() throws InterruptedException {
+    final ServerNode server = new ServerNode();
+    final Player[] stay = register(server, "mod/A", 1);
+
+    // players joining and leaving two modules, and moving between them
+    // in both directions, as the last player in each
+    final List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 4; ++t) {
+      final String from = t % 2 == 0 ? "x/A" : "y/A";
+      final String to = t % 2 == 0 ? "y/B" : "x/B";
+      final int offset = t;
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 2000; ++i) {
+            final Player p = new Player("p" + offset + "." + i);
+            server.registerNode(from, p);
+            server.move(p, to);
+            server.disconnect(p);
+          }
+        }
+      });
+    }
+
+    for (Thread t : threads) t.start();
+    for (Thread t : threads) {
+      t.join(60000);
+      assertFalse(t.isAlive());
+    }
+
+    assertEquals(1, server.getModuleStateCount());
+    final int before = stay[0].received.get();
+    server.forward("mod/A", "x");
+    assertTrue(stay[0].received.get() > before);
+  }
+
+  @Test
+  public void testConcurrentMoves() throws InterruptedException {
+    final ServerNode server = new ServerNode();
+    final Player[] players = register(server, "mod/A", 50);
+
+    final List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 4; ++t) {
+      final int offset = t;
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 2000; ++i) {
+            final Player p = players[(i + offset) % players.length];
+            server.move(p, (i + offset) % 3 == 0 ? "mod/B" : "mod/A");
+            server.forward("mod/*", "x");
+          }
+        }
+      });
+    }
+
+    for (Thread t : threads) t.start();
+    for (Thread t : threads) t.join();
+
+    // every player is in exactly one room
+    final Node mod = server.getChild("mod");
+    int count = 0;
+    for (Node room : mod.getChildren()) {
+      count += room.getChildren().length;
+    }
+    assertEquals(players.length, count);
+
+    final int[] before = received(players);
+    server.forward("mod/*", "y");
+    for (int i = 0; i < players.length; ++i) {
+      assertEquals(before[i] + 1, players[i].received.get());
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.chat.ui;
+
+import org.junit.Test;
+
+import VASSAL.Info;
+import VASSAL.chat.SimplePlayer;
+import VASSAL.chat.SimpleStatus;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SynchActionTest {
+  private static SimplePlayer player(String client) {
+    return new SimplePlayer("id", "name",
+      new SimpleStatus(false, false, "", client, "", "", ""));
+  }
+
+  @Test
+  public void testAnswersManifest() {
+    assertTrue(SynchAction.answersManifest(player(Info.getVersion())));
+    assertFalse(SynchAction.answersManifest(player("3.1.0")));
+
+    // a client which does not say what it is may not answer
+    assertFalse(SynchAction.answersManifest(player("")));
+    assertFalse(SynchAction.answersManifest(new SimplePlayer("name")));
+  }
+}
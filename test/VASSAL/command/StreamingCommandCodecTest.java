@@ -0,0 +1,183 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.command;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import org.junit.Test;
+
+import VASSAL.tools.SequenceEncoder;
+
+import static org.junit.Assert.assertEquals;
+
+public class StreamingCommandCodecTest {
+  private static final char DELIM = (char) 27;
+
+  private static final String[] LEAVES = {
+    "a", "bc", "", "\\", "x\\", "'", "'q'", "'q", "q'", "\\'",
+    "e" + DELIM + "f", DELIM + "", "g\\" + DELIM, "'" + DELIM + "'"
+  };
+
+  /** A command which encodes as a fixed String. */
+  private static class TextCommand extends Command {
+    public final String text;
+
+    public TextCommand(String text) {
+      this.text = text;
+    }
+
+    protected void executeCommand() { }
+
+    protected Command myUndoCommand() {
+      return null;
+    }
+  }
+
+  /** The String-based encoding used by BasicModule. */
+  private static String encode(Command c) {
+    if (c == null) {
+      return null;
+    }
+    String s = c instanceof TextCommand ? ((TextCommand) c).text : null;
+    final Command[] sub = c.getSubCommands();
+    if (sub.length > 0) {
+      final SequenceEncoder se = new SequenceEncoder(s, DELIM);
+      for (Command i : sub) {
+        final String s2 = encode(i);
+        if (s2 != null) {
+          se.append(s2);
+        }
+      }
+      s = se.getValue();
+    }
+    return s;
+  }
+
+  /** The String-based decoding used by BasicModule. */
+  private static Command decode(String command) {
+    if (command == null) {
+      return null;
+    }
+    Command c = null;
+    final SequenceEncoder.Decoder st =
+      new SequenceEncoder.Decoder(command, DELIM);
+    final String first = st.nextToken();
+    if (command.equals(first)) {
+      c = first.length() == 0 ? null : new TextCommand(first);
+    }
+    else {
+      c = decode(first);
+      while (st.hasMoreTokens()) {
+        final Command next = decode(st.nextToken());
+        c = c == null ? next : c.append(next);
+      }
+    }
+    return c;
+  }
+
+  /** Describes the structure of a command. */
+  private static String describe(Command c) {
+    if (c == null) {
+      return "null";
+    }
+    final StringBuilder sb = new StringBuilder();
+    sb.append(c instanceof TextCommand ? ((TextCommand) c).text : "-");
+    sb.append('[');
+    for (Command i : c.getSubCommands()) {
+      sb.append(describe(i)).append(',');
+    }
+    return sb.append(']').toString();
+  }
+
+  private final StreamingCommandCodec codec = new StreamingCommandCodec(DELIM) {
+    protected String encodeSubCommand(Command c) {
+      return c instanceof TextCommand ? ((TextCommand) c).text : null;
+    }
+
+    protected Command decode(String command) {
+      return StreamingCommandCodecTest.decode(command);
+    }
+  };
+
+  private Command randomCommand(Random rng, int depth) {
+    final Command c = rng.nextInt(4) == 0 ?
+      new NullCommand() : new TextCommand(LEAVES[rng.nextInt(LEAVES.length)]);
+
+    if (depth > 0) {
+      final int n = rng.nextInt(4);
+      for (int i = 0; i < n; ++i) {
+        c.append(randomCommand(rng, depth - 1));
+      }
+    }
+    return c;
+  }
+
+  private String streamEncode(Command c) throws IOException {
+    final StringBuilder sb = new StringBuilder();
+    return codec.encode(c, sb) ? sb.toString() : null;
+  }
+
+  @Test
+  public void testEncodeMatchesSequenceEncoder() throws IOException {
+    final Random rng = new Random(42);
+    for (int i = 0; i < 5000; ++i) {
+      final Command c = randomCommand(rng, 4);
+      assertEquals(encode(c), streamEncode(c));
+    }
+  }
+
+  @Test
+  public void testDecodeMatchesSequenceDecoder() throws IOException {
+    final Random rng = new Random(17);
+    for (int i = 0; i < 5000; ++i) {
+      final String enc = encode(randomCommand(rng, 4));
+      if (enc == null) continue;
+
+      assertEquals(
+        describe(decode(enc)), describe(codec.decode(new StringReader(enc)))
+      );
+    }
+  }
+
+  @Test
+  public void testDecodeArbitraryText() throws IOException {
+    final char[] alphabet = { 'a', '\\', '\'', DELIM };
+    final Random rng = new Random(23);
+    for (int i = 0; i < 5000; ++i) {
+      final char[] buf = new char[rng.nextInt(12)];
+      for (int j = 0; j < buf.length; ++j) {
+        buf[j] = alphabet[rng.nextInt(alphabet.length)];
+      }
+
+      final String enc = new String(buf);
+      assertEquals(
+        describe(decode(enc)), describe(codec.decode(new StringReader(enc)))
+      );
+    }
+  }
+
+  @Test
+  public void testNullCommand() throws IOException {
+    assertEquals(null, streamEncode(null));
+    assertEquals(null, streamEncode(new NullCommand()));
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.counters;
+
+import java.awt.Point;
+
+import org.junit.Test;
+
+import VASSAL.build.module.Map;
+import VASSAL.build.module.map.boardPicker.board.mapgrid.Zone;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BasicPieceTest {
+  @Test
+  public void testCurrentZoneCached() {
+    final Zone zone = mock(Zone.class);
+    when(zone.getName()).thenReturn("Swamp");
+    when(zone.getProperty("Terrain")).thenReturn("wet");
+
+    final Map map = mock(Map.class);
+    when(map.findZone(any(Point.class))).thenReturn(zone);
+
+    final BasicPiece piece = new BasicPiece(BasicPiece.ID + ";;;");
+    piece.setPosition(new Point(10, 10));
+    piece.setMap(map);
+
+    // the zone is found once for any number of lookups at one place
+    assertEquals("Swamp", piece.getProperty(BasicPiece.CURRENT_ZONE));
+    assertEquals("Swamp", piece.getProperty(BasicPiece.CURRENT_ZONE));
+    assertEquals("wet", piece.getProperty("Terrain"));
+    verify(map, times(1)).findZone(any(Point.class));
+
+    // moving the piece finds it again
+    piece.setPosition(new Point(20, 10));
+    assertEquals("Swamp", piece.getProperty(BasicPiece.CURRENT_ZONE));
+    verify(map, times(2)).findZone(any(Point.class));
+
+    // as does a change to the layout of the map
+    Map.layoutChanged();
+    assertEquals("Swamp", piece.getProperty(BasicPiece.CURRENT_ZONE));
+    verify(map, times(3)).findZone(any(Point.class));
+  }
+}
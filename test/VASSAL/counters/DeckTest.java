@@ -0,0 +1,81 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.counters;
+
+import org.junit.Test;
+
+import VASSAL.build.MockModuleTest;
+import VASSAL.build.module.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+public class DeckTest extends MockModuleTest {
+  // a Deck which skips its type, whose key listener needs a module
+  private static class TestDeck extends Deck {
+    @Override
+    protected void mySetType(String type) { }
+  }
+
+  private static GamePiece card(String color) {
+    final Marker m =
+      new Marker(Marker.ID + "Color", new BasicPiece(BasicPiece.ID + ";;;"));
+    m.mySetState(color);
+    return m;
+  }
+
+  private static String count(Deck d, int index) {
+    return d.expressionProperties.get(index).getPropertyValue();
+  }
+
+  @Test
+  public void testExpressionCounts() {
+    final Deck d = new TestDeck();
+    d.setDeckName("Draw");
+    d.setCountExpressions(new String[] {
+      "red:Color = red", "notRed:Color != red"
+    });
+    d.setExpressionCounting(true);
+    d.setMap(mock(Map.class));
+    assertEquals("0", count(d, 0));
+    assertEquals("0", count(d, 1));
+
+    final GamePiece r1 = card("red");
+    final GamePiece r2 = card("red");
+    final GamePiece b1 = card("blue");
+    d.add(r1);
+    d.add(b1);
+    d.add(r2);
+    assertEquals("2", count(d, 0));
+    assertEquals("1", count(d, 1));
+
+    d.remove(r1);
+    assertEquals("1", count(d, 0));
+    assertEquals("1", count(d, 1));
+
+    d.remove(b1);
+    assertEquals("1", count(d, 0));
+    assertEquals("0", count(d, 1));
+
+    d.removeAll();
+    assertEquals("0", count(d, 0));
+    assertEquals("0", count(d, 1));
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.counters;
+
+import java.awt.Point;
+
+import VASSAL.command.PieceStateDelta;
+
+/**
+ * Compares the size and cost of sending each move of a piece with a long
+ * {@link Footprint} trail as the full state of its trail, as was once
+ * done, with sending it as a patch appending the new point.
+ *
+ * <pre>
+ * java VASSAL.counters.FootprintBenchmark 2000
+ * </pre>
+ */
+public class FootprintBenchmark {
+  private static class TestPiece extends BasicPiece {
+    public TestPiece() {
+      super(BasicPiece.ID + ";;;Unit;");
+    }
+
+    public String getGpId() {
+      return "0";
+    }
+  }
+
+  public static void main(String[] args) {
+    final int n = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+    final int moves = 200;
+
+    for (int pass = 0; pass < 3; ++pass) {
+      final Footprint f = new Footprint(
+        Footprint.ID + "T;Movement Trail;true;true;10", new TestPiece());
+      for (int i = 0; i < n; ++i) {
+        f.addPoint(new Point(i*37 % 4000, i*53 % 3000));
+      }
+
+      long fullSize = 0;
+      long deltaSize = 0;
+      long fullT = 0;
+      long deltaT = 0;
+      for (int i = 0; i < moves; ++i) {
+        final String oldState = f.getState();
+        f.addPoint(new Point(i, i));
+
+        long t0 = System.nanoTime();
+        final String newState = f.getState();
+        fullSize += newState.length();
+        fullT += System.nanoTime() - t0;
+
+        t0 = System.nanoTime();
+        final PieceStateDelta d =
+          PieceStateDelta.compute(f, oldState, newState);
+        deltaSize += d.getNewState(0).length();
+        deltaT += System.nanoTime() - t0;
+      }
+
+      System.out.println(n + " points, " + moves + " moves: full "
+        + fullSize / 1024 + " KB in " + fullT / 1000000 + " ms, patch "
+        + deltaSize / 1024 + " KB in " + deltaT / 1000000 + " ms");
+    }
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.counters;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FootprintTest {
+  /** A BasicPiece which needs no module to report its state. */
+  private static class TestPiece extends BasicPiece {
+    public TestPiece() {
+      super(BasicPiece.ID + ";;;Unit;");
+    }
+
+    public String getGpId() {
+      return "0";
+    }
+  }
+
+  private Footprint createTrail(int maxPoints, int points) {
+    final Footprint f = new Footprint(
+      Footprint.ID + "T;Movement Trail;true;true;10;;;100;50;20;30;1.0;" +
+      maxPoints, new TestPiece());
+    f.setId("piece");
+    for (int i = 0; i < points; ++i) {
+      f.addPoint(new Point(i*10, i*20));
+    }
+    return f;
+  }
+
+  @Test
+  public void testStateRoundTrip() {
+    final Footprint f = createTrail(0, 50);
+    final Footprint g = createTrail(0, 0);
+    g.mySetState(f.myGetState());
+    assertEquals(50, g.pointList.size());
+    assertEquals(new Point(490, 980), g.pointList.get(49));
+    assertEquals(f.myGetState(), g.myGetState());
+  }
+
+  @Test
+  public void testMaxPoints() {
+    final Footprint f = createTrail(5, 8);
+    assertEquals(5, f.pointList.size());
+    assertEquals(new Point(30, 60), f.pointList.get(0));
+
+    final Footprint g = new Footprint(f.myGetType(), new TestPiece());
+    assertEquals(5, g.maxPoints);
+  }
+
+  @Test
+  public void testPatchAppends() {
+    final Footprint f = createTrail(0, 100);
+    final String oldState = f.myGetState();
+    f.addPoint(new Point(5, 5));
+    final String newState = f.myGetState();
+
+    final String patch = f.getStatePatch(oldState, newState);
+    assertTrue(patch.length() * 20 < newState.length());
+    assertEquals(newState, f.applyStatePatch(oldState, patch));
+  }
+
+  @Test
+  public void testPatchDropsFromStart() {
+    final Footprint f = createTrail(100, 100);
+    final String oldState = f.myGetState();
+    f.addPoint(new Point(5, 5));
+    f.addPoint(new Point(6, 6));
+    final String newState = f.myGetState();
+
+    final String patch = f.getStatePatch(oldState, newState);
+    assertEquals(newState, f.applyStatePatch(oldState, patch));
+  }
+
+  @Test
+  public void testNoPatchForUnrelatedTrail() {
+    final Footprint f = createTrail(0, 3);
+    final String oldState = f.myGetState();
+    f.clearTrail();
+    assertNull(f.getStatePatch(oldState, f.myGetState()));
+  }
+
+  @Test
+  public void testReplacedPointList() throws Exception {
+    // compiled subclasses refer to the field by its original type
+    assertEquals(List.class,
+      Footprint.class.getDeclaredField("pointList").getType());
+
+    final Footprint f = createTrail(0, 3);
+    final String state = f.myGetState();
+    f.pointList = new ArrayList<Point>(f.pointList);
+    assertEquals(state, f.myGetState());
+
+    f.addPoint(new Point(5, 5));
+    assertEquals(4, f.pointList.size());
+    assertEquals(new Point(5, 5), f.pointList.get(3));
+  }
+}
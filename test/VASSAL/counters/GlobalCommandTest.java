@@ -0,0 +1,212 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.counters;
+
+import java.awt.Point;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.KeyStroke;
+
+import org.hamcrest.BaseMatcher;
+import org.hamcrest.Description;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import VASSAL.build.GameModule;
+import VASSAL.build.GameModuleFixture;
+import VASSAL.build.module.BasicCommandEncoder;
+import VASSAL.build.module.Map;
+import VASSAL.build.module.PrototypeDefinition;
+import VASSAL.build.module.PrototypesContainer;
+import VASSAL.build.module.map.StackMetrics;
+import VASSAL.build.module.map.boardPicker.board.mapgrid.Zone;
+import VASSAL.command.Command;
+import VASSAL.tools.RecursionLimiter.Loopable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GlobalCommandTest {
+  private final List<GamePiece> tested = new ArrayList<GamePiece>();
+
+  private final PieceFilter counting = new PieceFilter() {
+    public boolean accept(GamePiece piece) {
+      tested.add(piece);
+      return true;
+    }
+  };
+
+  private static Map map(String name, final int zoneWidth) {
+    final Zone zone = mock(Zone.class);
+    when(zone.getName()).thenReturn("West");
+
+    // points left of zoneWidth are in the zone
+    final Map map = mock(Map.class);
+    when(map.getConfigureName()).thenReturn(name);
+    final StackMetrics metrics = mock(StackMetrics.class);
+    when(map.getStackMetrics()).thenReturn(metrics);
+    when(map.findZone(argThat(new BaseMatcher<Point>() {
+      public boolean matches(Object o) {
+        return ((Point) o).x < zoneWidth;
+      }
+      public void describeTo(Description d) { }
+    }))).thenReturn(zone);
+    return map;
+  }
+
+  private static GamePiece piece(Map map, int x) {
+    final BasicPiece p = new BasicPiece(BasicPiece.ID + ";;;");
+    p.setPosition(new Point(x, 0));
+    p.setMap(map);
+    return p;
+  }
+
+  private Command apply(Map[] maps, String expr) {
+    final GlobalCommand gc = new GlobalCommand(mock(Loopable.class));
+    gc.setKeyStroke(KeyStroke.getKeyStroke('X'));
+    // the counting filter sees every piece the command considers
+    return gc.apply(maps, new BooleanAndPieceFilter(
+      counting, PropertiesPieceFilter.parse(expr)));
+  }
+
+  @Test
+  public void testRequiredValue() {
+    final PieceFilter f =
+      PropertiesPieceFilter.parse("A = 1 && B != 2 && CurrentZone = West");
+    assertEquals("1", PropertiesPieceFilter.getRequiredValue(f, "A"));
+    assertNull(PropertiesPieceFilter.getRequiredValue(f, "B"));
+    assertEquals("West",
+      PropertiesPieceFilter.getRequiredValue(f, BasicPiece.CURRENT_ZONE));
+
+    final PieceFilter g = PropertiesPieceFilter.parse("A = 1 || A = 2");
+    assertNull(PropertiesPieceFilter.getRequiredValue(g, "A"));
+  }
+
+  @Test
+  public void testLocationPreselection() {
+    final Map main = map("Main", 100);
+    final Map other = map("Other", 100);
+    final GamePiece in = piece(main, 50);
+    final GamePiece out = piece(main, 150);
+    final GamePiece elsewhere = piece(other, 50);
+    when(main.getPieces()).thenReturn(new GamePiece[] { in, out });
+    when(other.getPieces()).thenReturn(new GamePiece[] { elsewhere });
+    final Map[] maps = { main, other };
+
+    // only pieces which can match are handed to the filter
+    apply(maps, "CurrentMap = Main && CurrentZone = West");
+    assertEquals(1, tested.size());
+    assertEquals(in, tested.get(0));
+
+    tested.clear();
+    apply(maps, "CurrentZone = West");
+    assertEquals(2, tested.size());
+
+    // a piece in no zone has a CurrentZone of ""
+    tested.clear();
+    apply(maps, "CurrentZone = ");
+    assertEquals(1, tested.size());
+    assertEquals(out, tested.get(0));
+
+    tested.clear();
+    apply(maps, "CurrentZone = West || CurrentMap = Other");
+    assertEquals(3, tested.size());
+  }
+
+  @Test
+  public void testNoSnapshotWithoutReport() {
+    final Map main = map("Main", 100);
+    final GamePiece p = piece(main, 50);
+    when(main.getPieces()).thenReturn(new GamePiece[] { p });
+
+    apply(new Map[] { main }, "");
+    assertEquals(1, tested.size());
+    assertNull(p.getProperty(Properties.SNAPSHOT));
+  }
+
+  // the container is found once from the module, and then kept
+  private static void setPrototypesInstance(PrototypesContainer c)
+                                                           throws Exception {
+    final Field f = PrototypesContainer.class.getDeclaredField("instance");
+    f.setAccessible(true);
+    f.set(null, c);
+  }
+
+  @Test
+  public void testSnapshotForReportInPrototype() throws Exception {
+    final BasicCommandEncoder encoder = new BasicCommandEncoder();
+    final GameModule module = mock(GameModule.class);
+    when(module.createPiece(anyString())).thenAnswer(new Answer<GamePiece>() {
+      public GamePiece answer(InvocationOnMock i) {
+        return encoder.createPiece((String) i.getArguments()[0]);
+      }
+    });
+    when(module.encode(any(Command.class))).thenAnswer(new Answer<String>() {
+      public String answer(InvocationOnMock i) {
+        return encoder.encode((Command) i.getArguments()[0]);
+      }
+    });
+    when(module.decode(anyString())).thenAnswer(new Answer<Command>() {
+      public Command answer(InvocationOnMock i) {
+        return encoder.decode((String) i.getArguments()[0]);
+      }
+    });
+
+    final PrototypesContainer container = new PrototypesContainer();
+    when(module.getComponentsOf(PrototypesContainer.class))
+      .thenReturn(Collections.singletonList(container));
+
+    final GameModuleFixture fixture = new GameModuleFixture(module);
+    try {
+      setPrototypesInstance(null);
+
+      final PrototypeDefinition def = new PrototypeDefinition();
+      def.setConfigureName("Reported");
+      def.setPiece(new ReportState(ReportState.ID,
+        new BasicPiece(BasicPiece.ID + ";;;Unit;")));
+      container.add(def);
+
+      final Map main = map("Main", 100);
+      final GamePiece p = new UsePrototype(UsePrototype.ID + "Reported",
+                                           piece(main, 50));
+      when(main.getPieces()).thenReturn(new GamePiece[] { p });
+
+      // the report trait is found only by expanding the prototype
+      assertNull(Decorator.getDecorator(p, ReportState.class));
+      apply(new Map[] { main }, "");
+      assertEquals(1, tested.size());
+      assertNotNull(p.getProperty(Properties.SNAPSHOT));
+    }
+    finally {
+      setPrototypesInstance(null);
+      fixture.restore();
+    }
+  }
+}
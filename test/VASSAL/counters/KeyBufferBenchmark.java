@@ -0,0 +1,91 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.counters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares lasso-selecting pieces into a list searched on every addition,
+ * as the {@link KeyBuffer} once did, with selecting them into the
+ * <code>KeyBuffer</code> in bulk, then checking each stack as
+ * {@link KeyBuffer#containsChild} is used while drawing.
+ *
+ * <pre>
+ * java VASSAL.counters.KeyBufferBenchmark 10000
+ * </pre>
+ */
+public class KeyBufferBenchmark {
+  public static void main(String[] args) {
+    final int n = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+
+    // stacks of five pieces
+    final List<GamePiece> pieces = new ArrayList<GamePiece>();
+    final List<Stack> stacks = new ArrayList<Stack>();
+    for (int i = 0; i < n; ++i) {
+      final GamePiece p = new BasicPiece(BasicPiece.ID + ";;;" + i + ";");
+      if (i % 5 == 0) {
+        stacks.add(new Stack(p));
+      }
+      else {
+        stacks.get(stacks.size() - 1).add(p);
+      }
+      pieces.add(p);
+    }
+
+    final KeyBuffer buffer = KeyBuffer.getBuffer();
+    for (int pass = 0; pass < 3; ++pass) {
+      long t0 = System.nanoTime();
+      final List<GamePiece> old = new ArrayList<GamePiece>();
+      for (GamePiece p : pieces) {
+        if (!old.contains(p)) {
+          old.add(p);
+          p.setProperty(Properties.SELECTED, Boolean.TRUE);
+        }
+      }
+      int found = 0;
+      for (Stack s : stacks) {
+        for (int i = 0; i < s.getPieceCount(); ++i) {
+          if (old.contains(s.getPieceAt(i))) {
+            ++found;
+            break;
+          }
+        }
+      }
+      for (GamePiece p : old) {
+        p.setProperty(Properties.SELECTED, null);
+      }
+      final long listT = System.nanoTime() - t0;
+
+      t0 = System.nanoTime();
+      buffer.addAll(pieces);
+      for (Stack s : stacks) {
+        if (buffer.containsChild(s)) {
+          --found;
+        }
+      }
+      buffer.clear();
+      final long setT = System.nanoTime() - t0;
+
+      System.out.println(n + " pieces: list " + listT / 1000000
+        + " ms, KeyBuffer " + setT / 1000000 + " ms (check " + found + ")");
+    }
+  }
+}
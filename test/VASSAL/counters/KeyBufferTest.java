@@ -0,0 +1,98 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.counters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KeyBufferTest {
+  private final KeyBuffer buffer = KeyBuffer.getBuffer();
+
+  private static GamePiece piece(String name) {
+    return new BasicPiece(BasicPiece.ID + ";;;" + name + ";");
+  }
+
+  private List<GamePiece> selected() {
+    final List<GamePiece> l = new ArrayList<GamePiece>();
+    for (Iterator<GamePiece> i = buffer.getPiecesIterator(); i.hasNext(); ) {
+      l.add(i.next());
+    }
+    return l;
+  }
+
+  @After
+  public void tearDown() {
+    buffer.clear();
+  }
+
+  @Test
+  public void testAddAllKeepsOrder() {
+    final GamePiece a = piece("a");
+    final GamePiece b = piece("b");
+    final GamePiece c = piece("c");
+
+    buffer.add(b);
+    buffer.addAll(Arrays.asList(a, b, c));
+    assertEquals(Arrays.asList(b, a, c), selected());
+    assertEquals(Boolean.TRUE, a.getProperty(Properties.SELECTED));
+
+    buffer.removeAll(Arrays.asList(a, c));
+    assertEquals(Arrays.asList(b), selected());
+    assertFalse(buffer.contains(a));
+    assertTrue(buffer.contains(b));
+  }
+
+  @Test
+  public void testSort() {
+    final GamePiece a = piece("a");
+    final GamePiece b = piece("b");
+    buffer.addAll(Arrays.asList(b, a));
+    buffer.sort(new Comparator<GamePiece>() {
+      public int compare(GamePiece p1, GamePiece p2) {
+        return p1.getName().compareTo(p2.getName());
+      }
+    });
+    assertEquals(Arrays.asList(a, b), selected());
+  }
+
+  @Test
+  public void testStack() {
+    final GamePiece a = piece("a");
+    final GamePiece b = piece("b");
+    final Stack s = new Stack(a);
+    s.add(b);
+
+    buffer.add(a);
+    assertTrue(buffer.containsChild(s));
+    assertFalse(buffer.contains(s));
+    buffer.add(b);
+    assertTrue(buffer.contains(s));
+  }
+}
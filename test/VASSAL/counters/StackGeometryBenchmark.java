@@ -0,0 +1,130 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.counters;
+
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+
+import VASSAL.build.module.Map;
+import VASSAL.build.module.map.StackMetrics;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compares measuring a stack as was done before its geometry was cached,
+ * with an {@link Area} merging every child and a search for the index
+ * of each, against {@link Stack#boundingBox} and {@link Stack#getShape}
+ * both when the stack has changed and when it has not.
+ *
+ * <pre>
+ * java VASSAL.counters.StackGeometryBenchmark 200
+ * </pre>
+ */
+public class StackGeometryBenchmark {
+  private static class Counter extends BasicPiece {
+    public Counter() {
+      super(BasicPiece.ID + ";;;");
+    }
+
+    public Rectangle boundingBox() {
+      return new Rectangle(-30, -30, 60, 60);
+    }
+
+    // answer visibility directly, as a Hideable or Obscurable would,
+    // rather than through the mock map
+    public Object getProperty(Object key) {
+      return Properties.INVISIBLE_TO_ME.equals(key) ? null : super.getProperty(key);
+    }
+  }
+
+  private static Rectangle oldBoundingBox(Stack s, StackMetrics metrics) {
+    final Rectangle r = new Rectangle();
+    final Rectangle[] childBounds = new Rectangle[s.getPieceCount()];
+    metrics.getContents(s, null, null, childBounds, 0, 0);
+    final PieceIterator e = PieceIterator.visible(s.getPiecesIterator());
+    while (e.hasMoreElements()) {
+      r.add(childBounds[s.indexOf(e.nextPiece())]);
+    }
+    return r;
+  }
+
+  private static Shape oldShape(Stack s, StackMetrics metrics) {
+    final Area a = new Area();
+    final Shape[] childBounds = new Shape[s.getPieceCount()];
+    metrics.getContents(s, null, childBounds, null, 0, 0);
+    final PieceIterator e = PieceIterator.visible(s.getPiecesIterator());
+    while (e.hasMoreElements()) {
+      // shapes were translated as general paths
+      final Shape c = AffineTransform.getTranslateInstance(0, 0)
+        .createTransformedShape(childBounds[s.indexOf(e.nextPiece())]);
+      a.add(new Area(c));
+    }
+    return a;
+  }
+
+  public static void main(String[] args) {
+    final int n = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    final int reps = 200;
+
+    final StackMetrics metrics = new StackMetrics();
+    final Map map = mock(Map.class);
+    when(map.getStackMetrics()).thenReturn(metrics);
+
+    final Stack stack = new Stack();
+    stack.setMap(map);
+    for (int i = 0; i < n; ++i) {
+      stack.add(new Counter());
+    }
+
+    for (int pass = 0; pass < 3; ++pass) {
+      long t0 = System.nanoTime();
+      int sum = 0;
+      for (int i = 0; i < reps; ++i) {
+        sum += oldBoundingBox(stack, metrics).width;
+        sum += oldShape(stack, metrics).getBounds().width;
+      }
+      final long oldT = System.nanoTime() - t0;
+
+      // expanding or collapsing the stack throws away its geometry
+      t0 = System.nanoTime();
+      for (int i = 0; i < reps; ++i) {
+        stack.setExpanded(false);
+        sum -= stack.boundingBox().width;
+        sum -= stack.getShape().getBounds().width;
+      }
+      final long changedT = System.nanoTime() - t0;
+
+      t0 = System.nanoTime();
+      for (int i = 0; i < reps; ++i) {
+        sum += stack.boundingBox().width;
+        sum += stack.getShape().getBounds().width;
+      }
+      final long cachedT = System.nanoTime() - t0;
+
+      System.out.println(n + " pieces: before " + oldT / 1000 / reps
+        + " us, changed " + changedT / 1000 / reps
+        + " us, unchanged " + cachedT / 1000 / reps
+        + " us (check " + sum + ")");
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.counters;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import VASSAL.build.module.Map;
+import VASSAL.build.module.map.StackMetrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StackTest {
+  /** A piece of a fixed size which counts how often it is measured. */
+  private static class Counter extends BasicPiece {
+    private Rectangle box = new Rectangle(-30, -30, 60, 60);
+    private boolean round;
+    private int shapes;
+
+    public Counter() {
+      super(BasicPiece.ID + ";;;");
+    }
+
+    public Rectangle boundingBox() {
+      return new Rectangle(box);
+    }
+
+    public Shape getShape() {
+      ++shapes;
+      return round ? new Ellipse2D.Double(box.x, box.y, box.width, box.height)
+                   : boundingBox();
+    }
+  }
+
+  private final StackMetrics metrics = new StackMetrics();
+  private Stack stack;
+  private Counter[] pieces;
+
+  @Before
+  public void setUp() {
+    final Map map = mock(Map.class);
+    when(map.getStackMetrics()).thenReturn(metrics);
+
+    stack = new Stack();
+    stack.setMap(map);
+    pieces = new Counter[3];
+    for (int i = 0; i < pieces.length; ++i) {
+      pieces[i] = new Counter();
+      stack.add(pieces[i]);
+    }
+  }
+
+  /** @return the bounds of the stack, found as before caching */
+  private Rectangle expectedBounds() {
+    final Rectangle[] boxes = new Rectangle[stack.getPieceCount()];
+    metrics.getContents(stack, null, null, boxes, 0, 0);
+    final Rectangle r = new Rectangle();
+    for (Rectangle b : boxes) {
+      r.add(b);
+    }
+    return r;
+  }
+
+  private int shapeCount() {
+    int n = 0;
+    for (Counter c : pieces) {
+      n += c.shapes;
+    }
+    return n;
+  }
+
+  @Test
+  public void testBoundsAndShape() {
+    assertEquals(expectedBounds(), stack.boundingBox());
+
+    final Shape s = stack.getShape();
+    assertEquals(stack.boundingBox(), s.getBounds());
+    assertTrue(s.contains(0, 0));
+    assertFalse(s.contains(-31, -31));
+
+    stack.setExpanded(true);
+    assertEquals(expectedBounds(), stack.boundingBox());
+    assertEquals(stack.boundingBox(), stack.getShape().getBounds());
+  }
+
+  @Test
+  public void testGeometryCached() {
+    stack.boundingBox();
+    final int n = shapeCount();
+    stack.boundingBox();
+    stack.getShape();
+    assertEquals(n, shapeCount());
+
+    // a child changing size is noticed
+    pieces[1].box = new Rectangle(-40, -40, 80, 80);
+    assertEquals(expectedBounds(), stack.boundingBox());
+
+    // as is a change to the contents
+    stack.remove(pieces[2]);
+    assertEquals(expectedBounds(), stack.boundingBox());
+  }
+
+  @Test
+  public void testNonRectangularShape() {
+    for (Counter c : pieces) {
+      c.round = true;
+    }
+    // the corners of the round pieces are not part of the stack
+    final Shape s = stack.getShape();
+    assertTrue(s.contains(0, 0));
+    assertFalse(s.contains(-29, -29));
+  }
+}
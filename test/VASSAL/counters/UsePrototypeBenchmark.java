@@ -0,0 +1,114 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.counters;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import VASSAL.build.GameModule;
+import VASSAL.build.module.BasicCommandEncoder;
+import VASSAL.build.module.PrototypeDefinition;
+import VASSAL.build.module.PrototypesContainer;
+import VASSAL.command.Command;
+
+/**
+ * Paints 10,000 counters which are each defined by a prototype whose
+ * definition refers to a property of the counter.
+ *
+ * <pre>
+ * java VASSAL.counters.UsePrototypeBenchmark
+ * </pre>
+ */
+public class UsePrototypeBenchmark {
+  private static final int COUNTERS = 10000;
+  private static final int FRAMES = 20;
+
+  public static void main(String[] args) throws Exception {
+    final BasicCommandEncoder encoder = new BasicCommandEncoder();
+    final GameModule module = mock(GameModule.class);
+    when(module.createPiece(anyString())).thenAnswer(new Answer<GamePiece>() {
+      public GamePiece answer(InvocationOnMock i) {
+        return encoder.createPiece((String) i.getArguments()[0]);
+      }
+    });
+    when(module.encode(any(Command.class))).thenAnswer(new Answer<String>() {
+      public String answer(InvocationOnMock i) {
+        return encoder.encode((Command) i.getArguments()[0]);
+      }
+    });
+    when(module.decode(anyString())).thenAnswer(new Answer<Command>() {
+      public Command answer(InvocationOnMock i) {
+        return encoder.decode((String) i.getArguments()[0]);
+      }
+    });
+
+    final PrototypesContainer container = new PrototypesContainer();
+    when(module.getComponentsOf(PrototypesContainer.class))
+      .thenReturn(Collections.singletonList(container));
+    GameModule.init(module);
+
+    final PrototypeDefinition def = new PrototypeDefinition();
+    def.setConfigureName("Unit"); //$NON-NLS-1$
+    GamePiece proto = new BasicPiece(BasicPiece.ID + ";;;Unit;"); //$NON-NLS-1$
+    for (String mark : new String[] {
+           "Side", "Formation", "Type", "Size", "Nationality", "Arm" }) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+      proto = new Marker(Marker.ID + mark + "-$Side$", proto); //$NON-NLS-1$
+    }
+    def.setPiece(proto);
+    container.add(def);
+
+    final List<GamePiece> counters = new ArrayList<GamePiece>(COUNTERS);
+    for (int i = 0; i < COUNTERS; ++i) {
+      counters.add(new UsePrototype(UsePrototype.ID + "Unit;Side=" + //$NON-NLS-1$
+        (i % 2 == 0 ? "Allied" : "Axis"), //$NON-NLS-1$ //$NON-NLS-2$
+        new BasicPiece(BasicPiece.ID + ";;;Counter " + i + ";"))); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    final BufferedImage image =
+      new BufferedImage(1000, 1000, BufferedImage.TYPE_INT_ARGB);
+    final Graphics2D g = image.createGraphics();
+
+    // the first frames warm up the JIT
+    for (int pass = 0; pass < 2; ++pass) {
+      final long t0 = System.nanoTime();
+      for (int frame = 0; frame < FRAMES; ++frame) {
+        for (int i = 0; i < COUNTERS; ++i) {
+          counters.get(i).draw(g, i % 100 * 10, i / 100 * 10, null, 1.0);
+        }
+      }
+      final long t = System.nanoTime() - t0;
+      if (pass > 0) {
+        System.out.printf("%d counters: %.1f ms/frame%n", //$NON-NLS-1$
+                          COUNTERS, t / 1e6 / FRAMES);
+      }
+    }
+    g.dispose();
+  }
+}
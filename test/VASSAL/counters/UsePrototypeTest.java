@@ -0,0 +1,149 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.counters;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import VASSAL.build.GameModule;
+import VASSAL.build.GameModuleFixture;
+import VASSAL.build.module.BasicCommandEncoder;
+import VASSAL.build.module.PrototypeDefinition;
+import VASSAL.build.module.PrototypesContainer;
+import VASSAL.command.Command;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class UsePrototypeTest {
+  private final BasicCommandEncoder encoder = new BasicCommandEncoder();
+  private GameModuleFixture fixture;
+  private PrototypeDefinition def;
+
+  @Before
+  public void setUp() throws Exception {
+    final GameModule module = mock(GameModule.class);
+    when(module.createPiece(anyString())).thenAnswer(new Answer<GamePiece>() {
+      public GamePiece answer(InvocationOnMock i) {
+        return encoder.createPiece((String) i.getArguments()[0]);
+      }
+    });
+    when(module.encode(any(Command.class))).thenAnswer(new Answer<String>() {
+      public String answer(InvocationOnMock i) {
+        return encoder.encode((Command) i.getArguments()[0]);
+      }
+    });
+    when(module.decode(anyString())).thenAnswer(new Answer<Command>() {
+      public Command answer(InvocationOnMock i) {
+        return encoder.decode((String) i.getArguments()[0]);
+      }
+    });
+
+    final PrototypesContainer container = new PrototypesContainer();
+    when(module.getComponentsOf(PrototypesContainer.class))
+      .thenReturn(Collections.singletonList(container));
+    fixture = new GameModuleFixture(module);
+    setPrototypesInstance(null);
+
+    def = new PrototypeDefinition();
+    def.setConfigureName("Unit");
+    def.setPiece(prototype("Nationality-$Side$"));
+    container.add(def);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    setPrototypesInstance(null);
+    if (fixture != null) {
+      fixture.restore();
+    }
+  }
+
+  // the container is found once from the module, and then kept
+  private static void setPrototypesInstance(PrototypesContainer c)
+                                                           throws Exception {
+    final Field f = PrototypesContainer.class.getDeclaredField("instance");
+    f.setAccessible(true);
+    f.set(null, c);
+  }
+
+  private static GamePiece prototype(String mark) {
+    return new Marker(Marker.ID + mark,
+                      new BasicPiece(BasicPiece.ID + ";;;Unit;"));
+  }
+
+  private static UsePrototype counter(String side) {
+    return new UsePrototype(UsePrototype.ID + "Unit;Side=" + side,
+      new BasicPiece(BasicPiece.ID + ";;;Counter;"));
+  }
+
+  @Test
+  public void testExpansionReused() {
+    final UsePrototype p = counter("Allied");
+    final GamePiece expanded = p.getExpandedInner();
+    assertTrue(expanded.getType().contains("Nationality-Allied"));
+    assertSame(expanded, p.getExpandedInner());
+  }
+
+  @Test
+  public void testDefinitionChanged() {
+    final UsePrototype p = counter("Allied");
+    final GamePiece expanded = p.getExpandedInner();
+
+    def.setPiece(prototype("Army-$Side$"));
+    final GamePiece rebuilt = p.getExpandedInner();
+    assertNotSame(expanded, rebuilt);
+    assertTrue(rebuilt.getType().contains("Army-Allied"));
+    assertFalse(rebuilt.getType().contains("Nationality"));
+  }
+
+  @Test
+  public void testReferencedValueChanged() {
+    final UsePrototype p = counter("Allied");
+    final GamePiece expanded = p.getExpandedInner();
+
+    p.mySetType(UsePrototype.ID + "Unit;Side=Axis");
+    final GamePiece rebuilt = p.getExpandedInner();
+    assertNotSame(expanded, rebuilt);
+    assertTrue(rebuilt.getType().contains("Nationality-Axis"));
+    assertFalse(rebuilt.getType().contains("Allied"));
+  }
+
+  @Test
+  public void testDefinitionRemoved() {
+    final UsePrototype p = counter("Allied");
+    final GamePiece inner = p.getInner();
+    assertNotSame(inner, p.getExpandedInner());
+
+    def.setPiece(null);
+    assertSame(inner, p.getExpandedInner());
+  }
+}
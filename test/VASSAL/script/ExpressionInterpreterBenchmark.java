@@ -0,0 +1,105 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.script;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import VASSAL.build.module.properties.PropertySource;
+import VASSAL.counters.BasicPiece;
+import VASSAL.counters.GamePiece;
+import VASSAL.counters.PieceFilter;
+import VASSAL.script.expression.BeanShellExpression;
+import VASSAL.script.expression.ExpressionException;
+import bsh.CompiledExpression;
+
+/**
+ * Compares the speed of compiled and interpreted expressions when
+ * selecting pieces for a global key command.
+ *
+ * <pre>
+ * java VASSAL.script.ExpressionInterpreterBenchmark [expression]
+ * </pre>
+ */
+public class ExpressionInterpreterBenchmark {
+  /** A source with no properties of its own. */
+  private static class Source implements PropertySource {
+    public Object getProperty(Object key) {
+      return null;
+    }
+
+    public Object getLocalizedProperty(Object key) {
+      return null;
+    }
+  }
+
+  /** A piece whose properties need no module. */
+  private static class TestPiece extends BasicPiece {
+    private final Map<String,String> props = new HashMap<String,String>();
+
+    public TestPiece(int i) {
+      props.put("Side", i % 3 == 0 ? "Allies" : "Axis");
+      props.put("Strength", String.valueOf(i % 10));
+      props.put("Moved", i % 2 == 0 ? "true" : "false");
+      props.put("Type", "Infantry");
+    }
+
+    public Object getProperty(Object key) {
+      return props.get(key);
+    }
+
+    public Object getLocalizedProperty(Object key) {
+      return props.get(key);
+    }
+  }
+
+  private static long run(PieceFilter filter, GamePiece[] pieces) {
+    final long start = System.currentTimeMillis();
+    for (GamePiece p : pieces) {
+      filter.accept(p);
+    }
+    return System.currentTimeMillis() - start;
+  }
+
+  public static void main(String[] args) throws ExpressionException {
+    final String expr = args.length > 0 ? args[0] :
+      "Side == \"Allies\" && Strength > 4 && !Moved && Type != \"Armor\"";
+
+    final GamePiece[] pieces = new GamePiece[50000];
+    for (int i = 0; i < pieces.length; ++i) {
+      pieces[i] = new TestPiece(i);
+    }
+
+    final PieceFilter filter =
+      new BeanShellExpression(expr).getFilter(new Source());
+    final ExpressionInterpreter interp =
+      ExpressionInterpreter.createInterpreter(expr);
+    final CompiledExpression compiled = interp.compiled;
+
+    for (int i = 0; i < 5; ++i) {
+      interp.compiled = null;
+      final long interpreted = run(filter, pieces);
+      interp.compiled = compiled;
+      final long comp = run(filter, pieces);
+      System.out.println("interpreted: " + interpreted + " ms, compiled: " +
+                         comp + " ms");
+    }
+  }
+}
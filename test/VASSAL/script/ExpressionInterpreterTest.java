@@ -0,0 +1,180 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.script;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import VASSAL.build.module.properties.PropertySource;
+import VASSAL.script.expression.ExpressionException;
+import bsh.BeanShellExpressionCompiler;
+import bsh.CompiledExpression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ExpressionInterpreterTest {
+
+  private static final String[] VALUES = {
+    "5", "-3", "0", "2.5", "1e3", "true", "false", "", "abc", "Allies",
+    "NaN", " 7 ", "+4", "99999999999", "1.5f"
+  };
+
+  private static final String[] COMPILED = {
+    "a", "a + b", "a - b", "a * b", "a / b", "a % b", "-a", "!a", "+a",
+    "a == b", "a != b", "a < b", "a <= b", "a > b", "a >= b",
+    "a && b", "a || b", "a & b", "a | b", "a ^ b",
+    "a == 5", "a == \"Allies\"", "a + \"x\"", "\"x\" + a", "a + 1",
+    "1 + a", "a + 1.5", "a > 2 ? \"big\" : \"small\"",
+    "a ? b : c", "(a + b) * c", "a == b && b == c", "a < 3 || c",
+    "If(a, b, c)", "If(a == 5, b, c)", "If(a > 2, b, 7)", "If(a, 1, 2) + b",
+    "-If(a, b, c)", "!If(a, b, c)", "If(a, b, c) == If(a, c, b)",
+    "GetProperty(\"a\")", "GetProperty(\"b\") + 1",
+    "GetProperty(\"a\") == b", "GetLocalizedProperty(\"c\")",
+    "GetProperty(a)", "SumStack(\"a\")", "'c' + 1", "5L + a", "null",
+    "a / 0", "$a$ + 1", "x", "x + 1", "a == null", "true", "\"a\" < \"b\""
+  };
+
+  private static final String[] NOT_COMPILED = {
+    "a.length()", "Math.max(1, 2)", "a++", "a instanceof String",
+    "(int) a", "Alert(\"x\")", "a = 1"
+  };
+
+  private static class Source implements PropertySource {
+    public final Map<String,String> props = new HashMap<String,String>();
+
+    public Object getProperty(Object key) {
+      return props.get(key);
+    }
+
+    public Object getLocalizedProperty(Object key) {
+      return props.get(key);
+    }
+  }
+
+  private static String evaluate(ExpressionInterpreter interp,
+                                 PropertySource ps) {
+    try {
+      return interp.evaluate(ps);
+    }
+    catch (ExpressionException e) {
+      return "error";
+    }
+  }
+
+  /** Evaluate with BeanShell alone. */
+  private static String interpret(ExpressionInterpreter interp,
+                                  PropertySource ps) {
+    final CompiledExpression c = interp.compiled;
+    interp.compiled = null;
+    try {
+      return evaluate(interp, ps);
+    }
+    finally {
+      interp.compiled = c;
+    }
+  }
+
+  @Test
+  public void testCompiledMatchesBeanShell() throws ExpressionException {
+    final Source ps = new Source();
+    for (String expr : COMPILED) {
+      final ExpressionInterpreter interp =
+        ExpressionInterpreter.createInterpreter(expr);
+      assertNotNull(expr, interp.compiled);
+
+      for (String a : VALUES) {
+        for (String b : VALUES) {
+          for (String c : expr.indexOf('c') < 0 ?
+                 new String[] { "5" } : new String[] { "true", "5" }) {
+            ps.props.put("a", a);
+            ps.props.put("b", b);
+            ps.props.put("c", c);
+            assertEquals(expr + " a=" + a + " b=" + b + " c=" + c,
+              interpret(interp, ps), evaluate(interp, ps));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testCompiledEvaluation() {
+    final CompiledExpression.Context ctx = new CompiledExpression.Context() {
+      private final Object[] values = { 3, "Allies", Boolean.TRUE };
+
+      public Object getVariable(int index) {
+        return values[index];
+      }
+
+      public Object getProperty(String name) {
+        return 7;
+      }
+
+      public Object getLocalizedProperty(String name) {
+        return "seven";
+      }
+
+      public Object sumStack(String property) {
+        return 0;
+      }
+
+      public Object sumLocation(String property) {
+        return 0;
+      }
+    };
+
+    final List<String> vars = Arrays.asList("a", "b", "c");
+
+    assertEquals("true", compile("a < 5 && b == \"Allies\" && c", vars)
+      .evaluate(ctx));
+    assertEquals("Allies3", compile("b + a", vars).evaluate(ctx));
+    assertEquals("10", compile("GetProperty(\"x\") + a", vars).evaluate(ctx));
+    assertEquals("no", compile("If(a > 3, \"yes\", \"no\")", vars)
+      .evaluate(ctx));
+
+    // errors are left to BeanShell
+    assertNull(compile("a / 0", vars).evaluate(ctx));
+    assertNull(compile("-b", vars).evaluate(ctx));
+  }
+
+  private static CompiledExpression compile(String expr,
+                                            List<String> vars) {
+    return BeanShellExpressionCompiler.compile(expr, vars);
+  }
+
+  @Test
+  public void testUnsupportedConstructsAreInterpreted()
+                                                  throws ExpressionException {
+    for (String expr : NOT_COMPILED) {
+      assertNull(expr, ExpressionInterpreter.createInterpreter(expr).compiled);
+    }
+
+    final Source ps = new Source();
+    ps.props.put("a", "abc");
+    assertEquals("true", ExpressionInterpreter.createInterpreter(
+      "a instanceof String").evaluate(ps));
+  }
+}
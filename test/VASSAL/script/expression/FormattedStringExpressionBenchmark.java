@@ -0,0 +1,120 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.script.expression;
+
+import java.util.Map;
+
+import VASSAL.build.module.properties.PropertySource;
+import VASSAL.tools.SequenceEncoder;
+
+/**
+ * Compares {@link FormattedStringExpression} with the evaluation it
+ * replaced, which decoded the expression again on every call.
+ *
+ * <pre>
+ * java VASSAL.script.expression.FormattedStringExpressionBenchmark
+ * </pre>
+ */
+public class FormattedStringExpressionBenchmark {
+  private static final int ITERATIONS = 1000000;
+
+  private static final String[] FORMATS = {
+    "$PlayerName$", //$NON-NLS-1$
+    "* $location$: $newPieceName$ moves $previousLocation$ -> $location$ *", //$NON-NLS-1$
+    "$PlayerSide$ $menuCommand$ $pieceName$ ($CurrentZone$, $CurrentBoard$) [$Strength$/$Movement$]", //$NON-NLS-1$
+  };
+
+  private static final PropertySource PS = new PropertySource() {
+    private final String[] values = { "Tiger", null, "1203", "Allies" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    private int next;
+
+    public Object getProperty(Object key) {
+      return values[next++ & 3];
+    }
+
+    public Object getLocalizedProperty(Object key) {
+      return getProperty(key);
+    }
+  };
+
+  /** The evaluation before the expression was compiled. */
+  private static String legacyEvaluate(String expression, PropertySource ps,
+      Map<String, String> properties, boolean localized) {
+    final StringBuilder buffer = new StringBuilder();
+    final SequenceEncoder.Decoder st =
+      new SequenceEncoder.Decoder(expression, '$');
+    boolean isProperty = true;
+    while (st.hasMoreTokens()) {
+      final String token = st.nextToken();
+      isProperty = !isProperty;
+      if (token.length() > 0) {
+        if (!isProperty || ! st.hasMoreTokens()) {
+          buffer.append(token);
+        }
+        else if (properties != null && properties.containsKey(token)) {
+          final String value = properties.get(token);
+          if (value != null) {
+            buffer.append(value);
+          }
+        }
+        else if (ps != null) {
+          final Object value =
+            localized ? ps.getLocalizedProperty(token) : ps.getProperty(token);
+          if (value != null) {
+            buffer.append(value.toString());
+          }
+          else if (!localized) {
+            buffer.append(token);
+          }
+        }
+        else {
+          buffer.append(token);
+        }
+      }
+    }
+    return buffer.toString();
+  }
+
+  public static void main(String[] args) {
+    for (String format : FORMATS) {
+      final FormattedStringExpression e = new FormattedStringExpression(format);
+
+      // the first run of each warms up the JIT
+      long legacy = 0;
+      long compiled = 0;
+      int chars = 0;
+      for (int pass = 0; pass < 2; ++pass) {
+        final long t0 = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i) {
+          chars += legacyEvaluate(format, PS, null, false).length();
+        }
+        final long t1 = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i) {
+          chars += e.evaluate(PS, null, false).length();
+        }
+        legacy = t1 - t0;
+        compiled = System.nanoTime() - t1;
+      }
+
+      System.out.printf("%d chars: decoded %6.1f ns, compiled %6.1f ns (%d)%n", //$NON-NLS-1$
+                        format.length(), (double) legacy / ITERATIONS,
+                        (double) compiled / ITERATIONS, chars % 10);
+    }
+  }
+}
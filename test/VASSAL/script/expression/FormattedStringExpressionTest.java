@@ -0,0 +1,97 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.script.expression;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import VASSAL.build.module.properties.PropertySource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class FormattedStringExpressionTest {
+
+  private static final PropertySource PS = new PropertySource() {
+    public Object getProperty(Object key) {
+      return "name".equals(key) ? "Tiger" : "hex".equals(key) ? 1203 : null;
+    }
+
+    public Object getLocalizedProperty(Object key) {
+      return "name".equals(key) ? "Tigre" : null;
+    }
+  };
+
+  private static String eval(String s, boolean localized) {
+    final Map<String,String> props = new HashMap<String,String>();
+    props.put("player", "Bob");
+    props.put("none", null);
+    return new FormattedStringExpression(s).evaluate(PS, props, localized);
+  }
+
+  @Test
+  public void testSubstitution() {
+    assertEquals("Tiger moves to 1203", eval("$name$ moves to $hex$", false));
+    assertEquals("Bob: Tiger", eval("$player$: $name$", false));
+    assertEquals("Tiger", eval("$name$", false));
+    assertEquals("[]", eval("[$none$]", false));
+  }
+
+  @Test
+  public void testUnresolved() {
+    // the name of a property with no value is kept, unless localized
+    assertEquals("a missing b", eval("a $missing$ b", false));
+    assertEquals("a  b", eval("a $missing$ b", true));
+    assertEquals("Tigre", eval("$name$", true));
+    assertEquals("", eval("$missing$", true));
+
+    // with no properties at all, the names are kept
+    assertEquals("name!",
+      new FormattedStringExpression("$name$!").evaluate(null, null, false));
+  }
+
+  @Test
+  public void testUnterminated() {
+    assertEquals("Tiger costs 5", eval("$name$ costs $5", false));
+    assertEquals("Tigername", eval("$name$$name", false));
+    assertEquals("$Tiger", eval("\\$$name$", false));
+  }
+
+  @Test
+  public void testConstant() {
+    final FormattedStringExpression e = new FormattedStringExpression("a $b");
+    assertEquals("a b", e.evaluate(PS, null, false));
+    assertSame(e.evaluate(PS, null, false), e.evaluate(null, null, true));
+  }
+
+  @Test
+  public void testSetExpression() {
+    final FormattedStringExpression e = new FormattedStringExpression("$name$");
+    e.setExpression("$hex$");
+    assertEquals("1203", e.evaluate(PS, null, false));
+  }
+
+  @Test
+  public void testBeanShell() {
+    assertEquals("name+\" at \"+hex",
+      new FormattedStringExpression("$name$ at $hex$").toBeanShellString());
+  }
+}
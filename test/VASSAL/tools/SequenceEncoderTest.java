@@ -199,4 +199,22 @@ public class SequenceEncoderTest {
     assertEquals("", sd.nextToken());
     assertEquals(value2, sd.nextToken());
   }
+
+  @Test
+  public void testCopyAfterTokens() {
+    final SequenceEncoder se = new SequenceEncoder(',');
+    se.append("a").append("b,c").append("").append("d\\");
+
+    final SequenceEncoder.Decoder sd =
+      new SequenceEncoder.Decoder(se.getValue(), ',');
+    assertEquals("a", sd.nextToken());
+
+    final SequenceEncoder.Decoder copy = sd.copy();
+    for (SequenceEncoder.Decoder d : Arrays.asList(sd, copy)) {
+      assertEquals("b,c", d.nextToken());
+      assertEquals("", d.nextToken());
+      assertEquals("d\\", d.nextToken());
+      assertFalse(d.hasMoreTokens());
+    }
+  }
 }
@@ -0,0 +1,158 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.image.svg;
+
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import VASSAL.tools.DataArchive;
+import VASSAL.tools.io.ZipArchive;
+
+/**
+ * Compares rendering a large SVG board at four zoom levels, parsing it
+ * for each render under a global lock as {@link SVGRenderer} once did,
+ * with rendering copies of the cached document. As the image ops do, the
+ * board is rendered in tiles at full size and whole when scaled.
+ *
+ * <pre>
+ * java VASSAL.tools.image.svg.SVGRendererBenchmark 5000
+ * </pre>
+ */
+public class SVGRendererBenchmark {
+  private static final String NAME = "images/board.svg";
+  private static final int W = 3000;
+  private static final int H = 2000;
+  private static final int TILE = 256;
+  private static final Object lock = new Object();
+
+  private static byte[] board(int shapes) {
+    final Random r = new Random(42);
+    final StringBuilder sb = new StringBuilder();
+    sb.append("<?xml version=\"1.0\"?>")
+      .append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"")
+      .append(W).append("px\" height=\"").append(H).append("px\">");
+    for (int i = 0; i < shapes; ++i) {
+      // hexagons 40 pixels across, scattered over the board
+      final int x = r.nextInt(W);
+      final int y = r.nextInt(H);
+      sb.append("<path fill=\"#").append(Integer.toHexString(0x100000 + r.nextInt(0xefffff)))
+        .append("\" stroke=\"black\" d=\"M ").append(x + 20).append(' ').append(y);
+      for (int j = 1; j < 6; ++j) {
+        sb.append(" L ").append(x + (int) (20 * Math.cos(j * Math.PI / 3)))
+          .append(' ').append(y + (int) (20 * Math.sin(j * Math.PI / 3)));
+      }
+      sb.append(" Z\"/>");
+    }
+    sb.append("</svg>");
+    return sb.toString().getBytes();
+  }
+
+  private static SVGRenderer before(DataArchive archive) throws Exception {
+    synchronized (lock) {
+      return new SVGRenderer(archive.getURL(NAME),
+        new BufferedInputStream(archive.getInputStream(NAME)));
+    }
+  }
+
+  private static long run(ExecutorService pool, final DataArchive archive,
+                          final boolean cached) throws Exception {
+    final long t0 = System.nanoTime();
+    final List<Future<?>> futures = new ArrayList<Future<?>>();
+
+    // full size, in tiles
+    for (int y = 0; y < H; y += TILE) {
+      for (int x = 0; x < W; x += TILE) {
+        final Rectangle2D aoi = new Rectangle2D.Float(
+          x, y, Math.min(TILE, W - x), Math.min(TILE, H - y));
+        futures.add(pool.submit(new Callable<Object>() {
+          public Object call() throws Exception {
+            final SVGRenderer r = cached ?
+              new SVGRenderer(archive, NAME) : before(archive);
+            return r.render(0.0, 1.0, aoi);
+          }
+        }));
+      }
+    }
+
+    // scaled, whole
+    for (final double scale : new double[] { 0.5, 0.25, 0.125 }) {
+      futures.add(pool.submit(new Callable<Object>() {
+        public Object call() throws Exception {
+          final SVGRenderer r = cached ?
+            new SVGRenderer(archive, NAME) : before(archive);
+          return r.render(0.0, scale);
+        }
+      }));
+    }
+
+    for (Future<?> f : futures) {
+      f.get();
+    }
+    return System.nanoTime() - t0;
+  }
+
+  public static void main(String[] args) throws Exception {
+    final int shapes = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+
+    final File file = File.createTempFile("svgbench", ".zip");
+    file.deleteOnExit();
+    final ZipArchive zip = new ZipArchive(file, true);
+    zip.add(NAME, board(shapes));
+    zip.close();
+    final DataArchive archive = new DataArchive(file.getPath());
+
+    final int threads = Runtime.getRuntime().availableProcessors();
+    final ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      for (int pass = 0; pass < 3; ++pass) {
+        // the cost of getting a document to render, alone
+        long t0 = System.nanoTime();
+        for (int i = 0; i < 20; ++i) {
+          before(archive);
+        }
+        final long parseT = System.nanoTime() - t0;
+        t0 = System.nanoTime();
+        for (int i = 0; i < 20; ++i) {
+          new SVGRenderer(archive, NAME);
+        }
+        final long copyT = System.nanoTime() - t0;
+        System.out.println("renderer creation: before " + parseT / 20000000
+          + " ms, cached " + copyT / 20000000 + " ms");
+
+        final long beforeT = run(pool, archive, false);
+        final long cachedT = run(pool, archive, true);
+        System.out.println(shapes + " shapes, " + threads + " threads: before "
+          + beforeT / 1000000 + " ms, cached " + cachedT / 1000000 + " ms");
+      }
+    }
+    finally {
+      pool.shutdown();
+      archive.close();
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.image.svg;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import VASSAL.tools.DataArchive;
+import VASSAL.tools.io.ZipArchive;
+
+import static org.junit.Assert.assertEquals;
+
+public class SVGRendererTest {
+  private static final String NAME = "images/square.svg";
+
+  private File file;
+  private DataArchive archive;
+
+  private static byte[] svg(String color) {
+    return ("<?xml version=\"1.0\"?>" +
+      "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"40px\" height=\"20px\">" +
+      "<rect x=\"0\" y=\"0\" width=\"20\" height=\"20\" fill=\"" + color + "\"/>" +
+      "</svg>").getBytes();
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    file = File.createTempFile("svgrenderer", ".zip");
+    final ZipArchive zip = new ZipArchive(file, true);
+    zip.add(NAME, svg("red"));
+    zip.close();
+    archive = new DataArchive(file.getPath());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    archive.close();
+    file.delete();
+  }
+
+  private static void assertSame(BufferedImage a, BufferedImage b) {
+    assertEquals(a.getWidth(), b.getWidth());
+    assertEquals(a.getHeight(), b.getHeight());
+    for (int y = 0; y < a.getHeight(); ++y) {
+      for (int x = 0; x < a.getWidth(); ++x) {
+        assertEquals(a.getRGB(x, y), b.getRGB(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void testCachedDocumentRendersAsParsed() throws Exception {
+    final BufferedImage parsed = new SVGRenderer(
+      archive.getURL(NAME), new ByteArrayInputStream(svg("red"))
+    ).render();
+
+    // the second renderer gets a copy of the document the first rendered
+    assertSame(parsed, new SVGRenderer(archive, NAME).render());
+    assertSame(parsed, new SVGRenderer(archive, NAME).render());
+    assertEquals(0xffff0000, parsed.getRGB(10, 10));
+    assertEquals(0, parsed.getRGB(30, 10));
+  }
+
+  @Test
+  public void testModifiedFileParsedAgain() throws Exception {
+    assertEquals(0xffff0000,
+                 new SVGRenderer(archive, NAME).render().getRGB(10, 10));
+
+    archive.getArchive().add(NAME, svg("blue"));
+    assertEquals(0xff0000ff,
+                 new SVGRenderer(archive, NAME).render().getRGB(10, 10));
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.image.tilecache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.commons.io.FileUtils;
+
+import VASSAL.tools.concurrent.DaemonThreadFactory;
+import VASSAL.tools.io.IOUtils;
+import VASSAL.tools.lang.Callback;
+
+/**
+ * Slices a synthetic PNG, written row by row so that it need never fit
+ * in the heap, and reports the time taken and the peak heap used.
+ *
+ * <pre>
+ * java -Xmx256m VASSAL.tools.image.tilecache.BandedImageTilerBenchmark 30000 20000
+ * </pre>
+ */
+public class BandedImageTilerBenchmark {
+  public static void main(String[] args) throws IOException {
+    System.setProperty("java.awt.headless", "true"); //$NON-NLS-1$
+
+    final int w = args.length > 0 ? Integer.parseInt(args[0]) : 30000;
+    final int h = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+    final File dir = File.createTempFile("tiles", ""); //$NON-NLS-1$ //$NON-NLS-2$
+    dir.delete();
+    final String hex = "0123456789abcdef"; //$NON-NLS-1$
+    for (int i = 0; i < 16; ++i) {
+      for (int j = 0; j < 16; ++j) {
+        new File(dir, hex.substring(i, i+1) + '/' + hex.charAt(i) + hex.charAt(j)).mkdirs();
+      }
+    }
+
+    final File png = new File(dir, "map.png"); //$NON-NLS-1$
+
+    final Runtime runtime = Runtime.getRuntime();
+    final ExecutorService exec = new ThreadPoolExecutor(
+      runtime.availableProcessors(),
+      runtime.availableProcessors()+1,
+      60, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<Runnable>(),
+      new DaemonThreadFactory(BandedImageTilerBenchmark.class.getSimpleName())
+    );
+
+    final Callback<Void> nothing = new Callback<Void>() {
+      public void receive(Void obj) { }
+    };
+
+    try {
+      long t0 = System.nanoTime();
+      writeMap(png, w, h);
+      System.out.printf("%dx%d, %d MB PNG written in %.1f s%n", w, h, //$NON-NLS-1$
+                        png.length() >> 20, (System.nanoTime() - t0) / 1e9);
+      System.out.printf("max heap %d MB, decoded image %d MB%n", //$NON-NLS-1$
+                        runtime.maxMemory() >> 20, (4L*w*h) >> 20);
+
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        pool.resetPeakUsage();
+      }
+
+      t0 = System.nanoTime();
+      final InputStream in = new BufferedInputStream(new FileInputStream(png));
+      final boolean sliced;
+      try {
+        sliced = new BandedImageTiler().slice(
+          in, "map", dir.getPath(), 256, 256, exec, nothing); //$NON-NLS-1$
+      }
+      finally {
+        IOUtils.closeQuietly(in);
+      }
+      final double t = (System.nanoTime() - t0) / 1e9;
+
+      long peak = 0;
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        if (pool.getType() == MemoryType.HEAP) {
+          peak += pool.getPeakUsage().getUsed();
+        }
+      }
+
+      System.out.printf("sliced %b in %.1f s, peak heap %d MB%n", //$NON-NLS-1$
+                        sliced, t, peak >> 20);
+    }
+    finally {
+      exec.shutdown();
+      FileUtils.deleteDirectory(dir);
+    }
+  }
+
+  /**
+   * Writes an 8-bit RGB PNG of noisy terrain crossed by a hex-like grid.
+   */
+  private static void writeMap(File f, int w, int h) throws IOException {
+    final DataOutputStream out = new DataOutputStream(
+      new BufferedOutputStream(new FileOutputStream(f)));
+    try {
+      out.write(new byte[] {
+        (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'
+      });
+
+      final ByteArrayOutputStream ihdr = new ByteArrayOutputStream();
+      final DataOutputStream d = new DataOutputStream(ihdr);
+      d.writeInt(w);
+      d.writeInt(h);
+      d.write(new byte[] { 8, 2, 0, 0, 0 });
+      chunk(out, "IHDR", ihdr.toByteArray(), ihdr.size()); //$NON-NLS-1$
+
+      final ChunkOutputStream idat = new ChunkOutputStream(out);
+      final OutputStream z = new DeflaterOutputStream(
+        idat, new Deflater(Deflater.BEST_SPEED), 1 << 16);
+
+      final Random r = new Random(42);
+      final byte[] row = new byte[1 + 3*w];
+      for (int y = 0; y < h; ++y) {
+        for (int x = 0; x < w; ++x) {
+          int g = 150 + r.nextInt(20) + (int) (40 * Math.sin(x / 97.0) * Math.cos(y / 131.0));
+          if (x % 64 < 2 || (y + (x / 64 % 2) * 32) % 64 < 2) g = 20;
+          row[1 + 3*x] = (byte) (g - 30);
+          row[2 + 3*x] = (byte) g;
+          row[3 + 3*x] = (byte) (g - 60);
+        }
+        z.write(row);
+      }
+      z.close();
+
+      chunk(out, "IEND", new byte[0], 0); //$NON-NLS-1$
+    }
+    finally {
+      IOUtils.closeQuietly(out);
+    }
+  }
+
+  private static void chunk(DataOutputStream out, String type,
+                            byte[] data, int len) throws IOException {
+    final byte[] t = type.getBytes("US-ASCII"); //$NON-NLS-1$
+    final CRC32 crc = new CRC32();
+    crc.update(t);
+    crc.update(data, 0, len);
+    out.writeInt(len);
+    out.write(t);
+    out.write(data, 0, len);
+    out.writeInt((int) crc.getValue());
+  }
+
+  /** Splits what is written to it into IDAT chunks. */
+  private static class ChunkOutputStream extends OutputStream {
+    private final DataOutputStream out;
+    private final byte[] buf = new byte[1 << 20];
+    private int n;
+
+    public ChunkOutputStream(DataOutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (n == buf.length) flush();
+      buf[n++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      while (len > 0) {
+        if (n == buf.length) flush();
+        final int k = Math.min(len, buf.length - n);
+        System.arraycopy(b, off, buf, n, k);
+        n += k;
+        off += k;
+        len -= k;
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (n > 0) {
+        chunk(out, "IDAT", buf, n); //$NON-NLS-1$
+        n = 0;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  }
+}
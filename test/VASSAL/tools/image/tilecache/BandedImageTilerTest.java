@@ -0,0 +1,232 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.image.tilecache;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import VASSAL.tools.lang.Callback;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BandedImageTilerTest {
+  private static final int TW = 64;
+  private static final int TH = 48;
+
+  private File dir;
+  private ExecutorService exec;
+  private int count;
+
+  private final Callback<Void> counter = new Callback<Void>() {
+    public void receive(Void obj) {
+      ++count;
+    }
+  };
+
+  @Before
+  public void setup() throws IOException {
+    dir = File.createTempFile("tiles", "");
+    dir.delete();
+    final String hex = "0123456789abcdef";
+    for (int i = 0; i < 16; ++i) {
+      for (int j = 0; j < 16; ++j) {
+        new File(dir, "pyramid/" + hex.charAt(i) + '/' + hex.charAt(i) + hex.charAt(j)).mkdirs();
+        new File(dir, "banded/" + hex.charAt(i) + '/' + hex.charAt(i) + hex.charAt(j)).mkdirs();
+      }
+    }
+    exec = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void cleanup() throws IOException {
+    exec.shutdown();
+    FileUtils.deleteDirectory(dir);
+  }
+
+  private static BufferedImage image(int w, int h, int type) {
+    final BufferedImage img = new BufferedImage(w, h, type);
+    for (int y = 0; y < h; ++y) {
+      for (int x = 0; x < w; ++x) {
+        final int a = type == BufferedImage.TYPE_INT_RGB ? 0xff : (x + y) & 0xff;
+        img.setRGB(x, y, a << 24 | (x * 255 / w) << 16 | (y * 255 / h) << 8 | ((x ^ y) & 0xff));
+      }
+    }
+    return img;
+  }
+
+  private static byte[] png(BufferedImage img, boolean interlaced)
+                                                          throws IOException {
+    final ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+    final ImageWriteParam param = writer.getDefaultWriteParam();
+    param.setProgressiveMode(interlaced ?
+      ImageWriteParam.MODE_DEFAULT : ImageWriteParam.MODE_DISABLED);
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final ImageOutputStream ios = ImageIO.createImageOutputStream(out);
+    writer.setOutput(ios);
+    writer.write(null, new IIOImage(img, null, null), param);
+    ios.close();
+    writer.dispose();
+    return out.toByteArray();
+  }
+
+  private void compare(int w, int h, int type) throws IOException {
+    final byte[] png = png(image(w, h, type), false);
+
+    // what the tiler gets from the image loader
+    final BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(png));
+    final BufferedImage src = new BufferedImage(w, h,
+      type == BufferedImage.TYPE_INT_RGB ?
+        BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE);
+    final Graphics2D g = src.createGraphics();
+    g.drawImage(decoded, 0, 0, null);
+    g.dispose();
+
+    new TileSlicerImpl(true).slice(src, "test",
+      new File(dir, "pyramid").getPath(), TW, TH, exec, counter);
+
+    count = 0;
+    assertTrue(new BandedImageTiler().slice(new ByteArrayInputStream(png),
+      "test", new File(dir, "banded").getPath(), TW, TH, exec, counter));
+    assertEquals(TileUtils.tileCount(w, h, TW, TH), count);
+
+    for (int div = 1; w/div > 0 && h/div > 0; div <<= 1) {
+      for (int tx = 0; tx*TW < w/div; ++tx) {
+        for (int ty = 0; ty*TH < h/div; ++ty) {
+          final String tn = TileUtils.tileName("test", tx, ty, div);
+          final BufferedImage a = TileUtils.read(new File(dir, "pyramid/" + tn));
+          final BufferedImage b = TileUtils.read(new File(dir, "banded/" + tn));
+          assertEquals(a.getWidth(), b.getWidth());
+          assertEquals(a.getHeight(), b.getHeight());
+          for (int y = 0; y < a.getHeight(); ++y) {
+            for (int x = 0; x < a.getWidth(); ++x) {
+              assertEquals(a.getRGB(x, y), b.getRGB(x, y));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testOpaque() throws IOException {
+    compare(300, 200, BufferedImage.TYPE_INT_RGB);
+  }
+
+  @Test
+  public void testTransparent() throws IOException {
+    compare(250, 130, BufferedImage.TYPE_INT_ARGB);
+  }
+
+  @Test
+  public void testInterlaced() throws IOException {
+    final byte[] png = png(image(100, 100, BufferedImage.TYPE_INT_RGB), true);
+    assertFalse(new BandedImageTiler().slice(new ByteArrayInputStream(png),
+      "test", new File(dir, "banded").getPath(), TW, TH, exec, counter));
+    assertEquals(0, count);
+  }
+
+  /** A PNG reader which delivers the rows of the image bottom up. */
+  private static class BottomUpReader extends ImageReader {
+    private final ImageReader r;
+
+    public BottomUpReader(ImageReader r) {
+      super(r.getOriginatingProvider());
+      this.r = r;
+    }
+
+    public int getNumImages(boolean allowSearch) throws IOException {
+      return r.getNumImages(allowSearch);
+    }
+
+    public int getWidth(int i) throws IOException {
+      return r.getWidth(i);
+    }
+
+    public int getHeight(int i) throws IOException {
+      return r.getHeight(i);
+    }
+
+    public Iterator<ImageTypeSpecifier> getImageTypes(int i)
+                                                          throws IOException {
+      return r.getImageTypes(i);
+    }
+
+    public IIOMetadata getStreamMetadata() throws IOException {
+      return r.getStreamMetadata();
+    }
+
+    public IIOMetadata getImageMetadata(int i) throws IOException {
+      return r.getImageMetadata(i);
+    }
+
+    public BufferedImage read(int i, ImageReadParam param)
+                                                          throws IOException {
+      final BufferedImage src = r.read(i);
+      final BufferedImage dst = param.getDestination();
+      for (int y = src.getHeight() - 1; y >= 0; --y) {
+        dst.getRaster().setRect(0, y,
+          src.getRaster().createChild(0, y, src.getWidth(), 1, 0, 0, null));
+      }
+      return dst;
+    }
+  }
+
+  @Test
+  public void testRowsOutOfOrder() throws IOException {
+    final byte[] png = png(image(100, 200, BufferedImage.TYPE_INT_RGB), false);
+    final ImageReader reader =
+      ImageIO.getImageReadersByFormatName("png").next();
+    reader.setInput(ImageIO.createImageInputStream(
+      new ByteArrayInputStream(png)));
+
+    final File banded = new File(dir, "banded");
+    assertFalse(new BandedImageTiler().slice(new BottomUpReader(reader),
+      "test", banded.getPath(), TW, TH, exec, counter));
+    reader.dispose();
+
+    // the tiles of the bands passed on before the rows went back are gone
+    assertTrue(FileUtils.listFiles(banded, null, true).isEmpty());
+  }
+}
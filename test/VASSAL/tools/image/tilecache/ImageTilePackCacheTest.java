@@ -0,0 +1,233 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.image.tilecache;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import VASSAL.tools.image.ImageIOException;
+import VASSAL.tools.image.ImageNotFoundException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static VASSAL.tools.image.AssertImage.assertImageEquals;
+
+public class ImageTilePackCacheTest {
+  private File dir;
+  private final Map<String,BufferedImage> tiles =
+    new HashMap<String,BufferedImage>();
+
+  @Before
+  public void setUp() throws IOException {
+    dir = File.createTempFile("tiles", "");
+    dir.delete();
+
+    final String hex = "0123456789abcdef";
+    for (int i = 0; i < 16; ++i) {
+      for (int j = 0; j < 16; ++j) {
+        new File(dir, hex.substring(i, i+1) + '/' + hex.charAt(i) + hex.charAt(j)).mkdirs();
+      }
+    }
+
+    // a 3x2 image at 1:1, 2x1 at 1:2, and 1x1 at 1:4
+    final Random r = new Random(42);
+    final int[][] counts = { { 3, 2 }, { 2, 1 }, { 1, 1 } };
+    for (int k = 0, div = 1; k < counts.length; ++k, div <<= 1) {
+      for (int ty = 0; ty < counts[k][1]; ++ty) {
+        for (int tx = 0; tx < counts[k][0]; ++tx) {
+          final int w = tx < counts[k][0] - 1 ? 16 : 5;
+          final BufferedImage tile = new BufferedImage(w, 16,
+            k == 1 ? BufferedImage.TYPE_INT_ARGB_PRE
+                   : BufferedImage.TYPE_INT_RGB);
+          for (int y = 0; y < 16; ++y) {
+            for (int x = 0; x < w; ++x) {
+              tile.setRGB(x, y, r.nextInt());
+            }
+          }
+
+          final String tn = TileUtils.tileName("map", tx, ty, div);
+          TileUtils.write(tile, new File(dir, tn));
+          tiles.put(tn, tile);
+        }
+      }
+    }
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(dir);
+  }
+
+  private void assertTiles(ImageTilePackCache cache) throws IOException {
+    for (int k = 0, div = 1; k < 3; ++k, div <<= 1) {
+      for (int ty = 0; ty < 2; ++ty) {
+        for (int tx = 0; tx < 3; ++tx) {
+          final BufferedImage tile =
+            tiles.get(TileUtils.tileName("map", tx, ty, div));
+          assertEquals(tile != null,
+                       cache.tileExists("map", tx, ty, 1.0/div));
+          if (tile != null) {
+            final BufferedImage packed =
+              cache.getTile("map", tx, ty, 1.0/div);
+            assertEquals(tile.getType(), packed.getType());
+            assertImageEquals(tile, packed);
+            assertEquals(new Dimension(tile.getWidth(), tile.getHeight()),
+                         cache.getTileSize("map", tx, ty, 1.0/div));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testPack() throws IOException {
+    final ImageTilePackCache cache = new ImageTilePackCache(dir.getPath());
+    assertTrue(cache.pack("map"));
+    assertTrue(new File(dir, DigestUtils.shaHex("map") + ".pack").isFile());
+
+    for (String tn : tiles.keySet()) {
+      assertFalse(new File(dir, tn).exists());
+      assertTrue(cache.contains(tn));
+    }
+
+    assertTiles(new ImageTilePackCache(dir.getPath()));
+  }
+
+  @Test
+  public void testMigrateOnRead() throws IOException {
+    assertTiles(new ImageTilePackCache(dir.getPath()));
+
+    for (String tn : tiles.keySet()) {
+      assertFalse(new File(dir, tn).exists());
+    }
+  }
+
+  @Test
+  public void testFileStore() throws IOException {
+    final ImageTilePackCache cache = new ImageTilePackCache(dir.getPath());
+    cache.pack("map");
+
+    final String tn = TileUtils.tileName("map", 0, 0, 1);
+    final ImageTilePackCache store = new ImageTilePackCache(dir.getPath());
+    assertTrue(store.getMTime(tn) > 0);
+    assertEquals(4*16*16, store.getSize(tn));
+    assertImageEquals(tiles.get(tn), TileUtils.read(store.getInputStream(tn)));
+    assertFalse(store.contains(TileUtils.tileName("map", 3, 0, 1)));
+  }
+
+  private void retile(long mtime) throws IOException {
+    final Random r = new Random(7);
+    for (Map.Entry<String,BufferedImage> e : tiles.entrySet()) {
+      final BufferedImage tile = e.getValue();
+      for (int y = 0; y < tile.getHeight(); ++y) {
+        for (int x = 0; x < tile.getWidth(); ++x) {
+          tile.setRGB(x, y, r.nextInt());
+        }
+      }
+
+      final File f = new File(dir, e.getKey());
+      TileUtils.write(tile, f);
+      f.setLastModified(mtime);
+    }
+  }
+
+  @Test
+  public void testNewerTilesWin() throws IOException {
+    final ImageTilePackCache cache = new ImageTilePackCache(dir.getPath());
+    cache.pack("map");
+    final File pack = new File(dir, DigestUtils.shaHex("map") + ".pack");
+    pack.setLastModified(pack.lastModified() - 10000);
+
+    // tiles written beside the pack, as when it could not be replaced
+    retile(pack.lastModified() + 5000);
+    assertTiles(new ImageTilePackCache(dir.getPath()));
+  }
+
+  @Test
+  public void testRepackMappedPack() throws IOException {
+    final ImageTilePackCache cache = new ImageTilePackCache(dir.getPath());
+    assertTiles(cache);
+
+    retile(System.currentTimeMillis());
+    assertTrue(cache.pack("map"));
+    assertTiles(cache);
+  }
+
+  @Test
+  public void testClose() throws IOException {
+    final ImageTilePackCache cache = new ImageTilePackCache(dir.getPath());
+    cache.pack("map");
+
+    final TilePack pack = cache.getPack("map");
+    final String tn = TileUtils.tileName("map", 0, 0, 1);
+    assertImageEquals(tiles.get(tn), pack.read(tn));
+
+    cache.close();
+    try {
+      pack.read(tn);
+      fail();
+    }
+    catch (ImageIOException e) {
+    }
+
+    // the pack is mapped again
+    assertTiles(cache);
+  }
+
+  @Test
+  public void testInputStreamUsesMappedPack() throws IOException {
+    final ImageTilePackCache cache = new ImageTilePackCache(dir.getPath());
+    cache.pack("map");
+
+    final TilePack pack = cache.getPack("map");
+    final String tn = TileUtils.tileName("map", 1, 0, 1);
+    assertImageEquals(tiles.get(tn), TileUtils.read(cache.getInputStream(tn)));
+    assertSame(pack, cache.getPack("map"));
+    assertEquals(1, cache.packs.size());
+  }
+
+  @Test
+  public void testNoTiles() throws IOException {
+    final ImageTilePackCache cache = new ImageTilePackCache(dir.getPath());
+    assertFalse(cache.pack("other"));
+    assertFalse(cache.tileExists("other", 0, 0, 1.0));
+  }
+
+  @Test(expected=ImageNotFoundException.class)
+  public void testMissingTile() throws IOException {
+    final ImageTilePackCache cache = new ImageTilePackCache(dir.getPath());
+    cache.pack("map");
+    cache.getTile("map", 3, 0, 1.0);
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.image.tilecache;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+
+import VASSAL.tools.image.ImageTileSource;
+
+/**
+ * Compares reading the tiles of an image from their own files with
+ * reading them from a {@link TilePack}.
+ *
+ * <pre>
+ * java VASSAL.tools.image.tilecache.TilePackBenchmark 40 40
+ * </pre>
+ */
+public class TilePackBenchmark {
+  private static final int TW = 256;
+  private static final int TH = 256;
+
+  public static void main(String[] args) throws IOException {
+    final int cols = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+    final int rows = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+
+    final File dir = File.createTempFile("tiles", ""); //$NON-NLS-1$ //$NON-NLS-2$
+    dir.delete();
+    final String hex = "0123456789abcdef"; //$NON-NLS-1$
+    for (int i = 0; i < 16; ++i) {
+      for (int j = 0; j < 16; ++j) {
+        new File(dir, hex.substring(i, i+1) + '/' + hex.charAt(i) + hex.charAt(j)).mkdirs();
+      }
+    }
+
+    try {
+      // map-like tiles: a noisy fill crossed by lines
+      final Random r = new Random(42);
+      long loose = 0;
+      for (int ty = 0; ty < rows; ++ty) {
+        for (int tx = 0; tx < cols; ++tx) {
+          final BufferedImage tile =
+            new BufferedImage(TW, TH, BufferedImage.TYPE_INT_RGB);
+          for (int y = 0; y < TH; ++y) {
+            for (int x = 0; x < TW; ++x) {
+              int g = 150 + r.nextInt(20);
+              if (x % 64 < 2 || y % 64 < 2) g = 20;
+              tile.setRGB(x, y, (g - 30) << 16 | g << 8 | (g - 60));
+            }
+          }
+          final File f = new File(dir, TileUtils.tileName("map", tx, ty, 1)); //$NON-NLS-1$
+          TileUtils.write(tile, f);
+          loose += f.length();
+        }
+      }
+
+      final int count = cols*rows;
+      System.out.printf("%d tiles, %d MB of tile data%n", //$NON-NLS-1$
+                        count, (4L*TW*TH*count) >> 20);
+
+      final ImageTileSource files = new ImageTileDiskCache(dir.getPath());
+      final double filesTime = time(files, cols, rows);
+
+      final ImageTilePackCache packs = new ImageTilePackCache(dir.getPath());
+      long t0 = System.nanoTime();
+      packs.pack("map"); //$NON-NLS-1$
+      final double packTime = (System.nanoTime() - t0) / 1e9;
+      final File pack = packs.packFile("map"); //$NON-NLS-1$
+
+      final double packsTime = time(packs, cols, rows);
+
+      System.out.printf("files: %6.1f us/tile, %4d MB/s, %d files, %d MB%n", //$NON-NLS-1$
+                        filesTime * 1e6 / count,
+                        (int) (4.0*TW*TH*count / filesTime / (1 << 20)),
+                        count, loose >> 20);
+      System.out.printf("pack:  %6.1f us/tile, %4d MB/s, 1 file, %d MB, packed in %.1f s%n", //$NON-NLS-1$
+                        packsTime * 1e6 / count,
+                        (int) (4.0*TW*TH*count / packsTime / (1 << 20)),
+                        pack.length() >> 20, packTime);
+    }
+    finally {
+      FileUtils.deleteDirectory(dir);
+    }
+  }
+
+  /**
+   * @return the seconds taken to read every tile, after a first pass
+   * which warms up the JIT and the page cache
+   */
+  private static double time(ImageTileSource src, int cols, int rows)
+                                                           throws IOException {
+    long t = 0;
+    long sum = 0;
+    for (int pass = 0; pass < 2; ++pass) {
+      final long t0 = System.nanoTime();
+      for (int ty = 0; ty < rows; ++ty) {
+        for (int tx = 0; tx < cols; ++tx) {
+          sum += src.getTile("map", tx, ty, 1.0).getRGB(tx, ty); //$NON-NLS-1$
+        }
+      }
+      t = System.nanoTime() - t0;
+    }
+    return sum == 42 ? 0 : t / 1e9;
+  }
+}
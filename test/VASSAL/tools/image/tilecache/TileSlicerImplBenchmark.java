@@ -0,0 +1,174 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.image.tilecache;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+
+import VASSAL.tools.concurrent.DaemonThreadFactory;
+import VASSAL.tools.lang.Callback;
+
+/**
+ * Slices a synthetic map with and without a pyramid, and compares the
+ * time taken and the PSNR of each level sliced from the pyramid against
+ * the same level scaled from the source.
+ *
+ * <pre>
+ * java -Xmx3g VASSAL.tools.image.tilecache.TileSlicerImplBenchmark 10000 10000
+ * </pre>
+ */
+public class TileSlicerImplBenchmark {
+  public static void main(String[] args) throws IOException {
+    System.setProperty("java.awt.headless", "true"); //$NON-NLS-1$
+
+    final int w = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    final int h = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+    final BufferedImage src = createMap(w, h);
+
+    final File dir = File.createTempFile("tiles", ""); //$NON-NLS-1$ //$NON-NLS-2$
+    dir.delete();
+    final File direct = new File(dir, "direct"); //$NON-NLS-1$
+    final File pyramid = new File(dir, "pyramid"); //$NON-NLS-1$
+    final String hex = "0123456789abcdef"; //$NON-NLS-1$
+    for (int i = 0; i < 16; ++i) {
+      for (int j = 0; j < 16; ++j) {
+        final String sub = hex.substring(i, i+1) + '/' + hex.charAt(i) + hex.charAt(j);
+        new File(direct, sub).mkdirs();
+        new File(pyramid, sub).mkdirs();
+      }
+    }
+
+    final Runtime runtime = Runtime.getRuntime();
+    final ExecutorService exec = new ThreadPoolExecutor(
+      runtime.availableProcessors(),
+      runtime.availableProcessors()+1,
+      60, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<Runnable>(),
+      new DaemonThreadFactory(TileSlicerImplBenchmark.class.getSimpleName())
+    );
+
+    final Callback<Void> nothing = new Callback<Void>() {
+      public void receive(Void obj) { }
+    };
+
+    try {
+      System.out.printf("%dx%d, %d threads%n", //$NON-NLS-1$
+                        w, h, runtime.availableProcessors());
+
+      long t0 = System.nanoTime();
+      new TileSlicerImpl(false).slice(
+        src, "map", direct.getPath(), 256, 256, exec, nothing); //$NON-NLS-1$
+      System.out.printf("direct:  %6.1f s%n", (System.nanoTime() - t0) / 1e9); //$NON-NLS-1$
+
+      t0 = System.nanoTime();
+      new TileSlicerImpl(true).slice(
+        src, "map", pyramid.getPath(), 256, 256, exec, nothing); //$NON-NLS-1$
+      System.out.printf("pyramid: %6.1f s%n", (System.nanoTime() - t0) / 1e9); //$NON-NLS-1$
+
+      for (int div = 2; w/div > 0 && h/div > 0; div <<= 1) {
+        final int dw = w/div;
+        final int dh = h/div;
+        double se = 0;
+        for (int tx = 0; tx*256 < dw; ++tx) {
+          for (int ty = 0; ty*256 < dh; ++ty) {
+            final String tn = TileUtils.tileName("map", tx, ty, div); //$NON-NLS-1$
+            se += squaredError(TileUtils.read(new File(direct, tn)),
+                               TileUtils.read(new File(pyramid, tn)));
+          }
+        }
+        final double mse = se / (3.0 * dw * dh);
+        System.out.printf("1:%-5d PSNR %5.1f dB%n", div, //$NON-NLS-1$
+                          10 * Math.log10(255 * 255 / mse));
+      }
+    }
+    finally {
+      exec.shutdown();
+      FileUtils.deleteDirectory(dir);
+    }
+  }
+
+  private static double squaredError(BufferedImage a, BufferedImage b) {
+    double se = 0;
+    for (int y = 0; y < a.getHeight(); ++y) {
+      for (int x = 0; x < a.getWidth(); ++x) {
+        final int p = a.getRGB(x, y);
+        final int q = b.getRGB(x, y);
+        for (int s = 0; s < 24; s += 8) {
+          final int d = ((p >> s) & 0xff) - ((q >> s) & 0xff);
+          se += d*d;
+        }
+      }
+    }
+    return se;
+  }
+
+  /**
+   * @return an image with the sharp edges, text and noisy fills of a map
+   */
+  private static BufferedImage createMap(int w, int h) {
+    final BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+    final Random r = new Random(42);
+
+    final int[] row = new int[w];
+    for (int y = 0; y < h; ++y) {
+      for (int x = 0; x < w; ++x) {
+        final int g = 150 + r.nextInt(20) + (int) (40 * Math.sin(x / 97.0) * Math.cos(y / 131.0));
+        row[x] = (g - 30) << 16 | g << 8 | (g - 60);
+      }
+      img.getRaster().setDataElements(0, y, w, 1, row);
+    }
+
+    final Graphics2D g = img.createGraphics();
+    g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                       RenderingHints.VALUE_ANTIALIAS_ON);
+
+    for (int i = 0; i < w*h / 400000; ++i) {
+      g.setColor(new Color(r.nextInt(0x1000000)));
+      g.fillOval(r.nextInt(w), r.nextInt(h), 50 + r.nextInt(400), 50 + r.nextInt(400));
+    }
+
+    g.setColor(Color.BLACK);
+    g.setStroke(new BasicStroke(2));
+    g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 14));
+    final int size = 64;
+    for (int y = 0; y < h; y += size) {
+      for (int x = (y / size) % 2 * size/2; x < w; x += size) {
+        g.drawRect(x, y, size, size);
+        g.drawString(String.format("%02d%02d", x / size % 100, y / size % 100), //$NON-NLS-1$
+                     x + 16, y + 36);
+      }
+    }
+    g.dispose();
+    return img;
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.image.tilecache;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import VASSAL.tools.lang.Callback;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TileSlicerImplTest {
+  private static final int TW = 64;
+  private static final int TH = 48;
+
+  private File dir;
+  private ExecutorService exec;
+  private int count;
+
+  @Before
+  public void setup() throws IOException {
+    dir = File.createTempFile("tiles", "");
+    dir.delete();
+    final String hex = "0123456789abcdef";
+    for (int i = 0; i < 16; ++i) {
+      for (int j = 0; j < 16; ++j) {
+        new File(dir, "direct/" + hex.charAt(i) + '/' + hex.charAt(i) + hex.charAt(j)).mkdirs();
+        new File(dir, "pyramid/" + hex.charAt(i) + '/' + hex.charAt(i) + hex.charAt(j)).mkdirs();
+      }
+    }
+    exec = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void cleanup() throws IOException {
+    exec.shutdown();
+    FileUtils.deleteDirectory(dir);
+  }
+
+  private void slice(BufferedImage src, String path, boolean pyramid)
+                                                          throws IOException {
+    final Callback<Void> counter = new Callback<Void>() {
+      public void receive(Void obj) {
+        ++count;
+      }
+    };
+
+    count = 0;
+    new TileSlicerImpl(pyramid).slice(
+      src, "test", new File(dir, path).getPath(), TW, TH, exec, counter);
+  }
+
+  @Test
+  public void testPyramid() throws IOException {
+    final int w = 300;
+    final int h = 200;
+    final BufferedImage src = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < h; ++y) {
+      for (int x = 0; x < w; ++x) {
+        src.setRGB(x, y, (x * 255 / w) << 16 | (y * 255 / h) << 8 | ((x ^ y) & 0xff));
+      }
+    }
+
+    slice(src, "direct", false);
+    final int expected = count;
+    slice(src, "pyramid", true);
+    assertEquals(TileUtils.tileCount(w, h, TW, TH), expected);
+    assertEquals(expected, count);
+
+    for (int div = 1; w/div > 0 && h/div > 0; div <<= 1) {
+      int tiles = 0;
+      for (int tx = 0; tx*TW < w/div; ++tx) {
+        for (int ty = 0; ty*TH < h/div; ++ty) {
+          final String tn = TileUtils.tileName("test", tx, ty, div);
+          final BufferedImage a = TileUtils.read(new File(dir, "direct/" + tn));
+          final BufferedImage b = TileUtils.read(new File(dir, "pyramid/" + tn));
+          assertEquals(a.getWidth(), b.getWidth());
+          assertEquals(a.getHeight(), b.getHeight());
+
+          // the first two levels are scaled from the same image, and the
+          // rest are close to it until a level is one pixel high or wide
+          for (int y = 0; y < a.getHeight(); ++y) {
+            for (int x = 0; x < a.getWidth(); ++x) {
+              if (div <= 2) {
+                assertEquals(a.getRGB(x, y), b.getRGB(x, y));
+              }
+              else if (w/div > 1 && h/div > 1) {
+                assertTrue(Math.abs((a.getRGB(x, y) >> 8 & 0xff) -
+                                    (b.getRGB(x, y) >> 8 & 0xff)) < 16);
+              }
+            }
+          }
+          ++tiles;
+        }
+      }
+      assertEquals(TileUtils.tileCountAtScale(w, h, TW, TH, div), tiles);
+    }
+  }
+}
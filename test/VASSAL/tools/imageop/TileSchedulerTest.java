@@ -0,0 +1,155 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.imageop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.Canvas;
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TileSchedulerTest {
+  private final Set<Point> requested = new HashSet<Point>();
+  private final Set<Point> done = new HashSet<Point>();
+  private ImageOp op;
+  private TileScheduler sched;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() throws Exception {
+    // a 20x20 grid of 100x100 tiles
+    op = mock(ImageOp.class);
+    when(op.getSize()).thenReturn(new Dimension(2000, 2000));
+    when(op.getWidth()).thenReturn(2000);
+    when(op.getHeight()).thenReturn(2000);
+    when(op.getTileWidth()).thenReturn(100);
+    when(op.getTileHeight()).thenReturn(100);
+    when(op.getNumXTiles()).thenReturn(20);
+    when(op.getNumYTiles()).thenReturn(20);
+    when(op.getFutureTile(anyInt(), anyInt(), any(ImageOpObserver.class)))
+      .thenAnswer(new Answer<Future<BufferedImage>>() {
+        public Future<BufferedImage> answer(InvocationOnMock i) {
+          final Point p = new Point((Integer) i.getArguments()[0],
+                                    (Integer) i.getArguments()[1]);
+          requested.add(p);
+          final Future<BufferedImage> f = mock(Future.class);
+          when(f.isDone()).thenReturn(done.contains(p));
+          return f;
+        }
+      });
+
+    sched = new TileScheduler(new Canvas());
+  }
+
+  private void frame(Rectangle view) throws Exception {
+    requested.clear();
+    sched.begin(op, new Point(0, 0), view);
+    final Rectangle r = TileScheduler.tileRange(op, view);
+    for (int ty = r.y; ty < r.y + r.height; ++ty) {
+      for (int tx = r.x; tx < r.x + r.width; ++tx) {
+        sched.getFutureTile(new Point(tx, ty));
+      }
+    }
+    final List<ImageOp> none = Collections.emptyList();
+    sched.end(none);
+  }
+
+  @Test
+  public void testRingWhenStill() throws Exception {
+    // tiles (5,5) to (7,6) are visible
+    frame(new Rectangle(500, 500, 300, 200));
+    assertEquals(6 + 2*5 + 2*2, requested.size());
+    assertTrue(requested.contains(new Point(4, 4)));
+    assertTrue(requested.contains(new Point(8, 7)));
+    assertEquals(3*2, sched.getExposedCount());
+    assertEquals(2*5 + 2*2, sched.getPrefetchCount());
+  }
+
+  @Test
+  public void testRingInDirectionOfScroll() throws Exception {
+    frame(new Rectangle(500, 500, 300, 200));
+
+    // moving right exposes column 8 and prefetches column 9
+    frame(new Rectangle(550, 500, 300, 200));
+    assertTrue(requested.contains(new Point(9, 5)));
+    assertFalse(requested.contains(new Point(4, 5)));
+    assertFalse(requested.contains(new Point(6, 4)));
+    assertEquals(3*2 + 2, sched.getExposedCount());
+  }
+
+  @Test
+  public void testHitRate() throws Exception {
+    frame(new Rectangle(500, 500, 300, 200));
+    assertEquals(0.0, sched.getHitRate(), 0.0);
+
+    // the prefetched column is ready when it comes into view
+    done.add(new Point(8, 5));
+    done.add(new Point(8, 6));
+    frame(new Rectangle(550, 500, 300, 200));
+    assertEquals(2.0 / 8, sched.getHitRate(), 1e-9);
+  }
+
+  @Test
+  public void testStaleRequestsDropped() throws Exception {
+    frame(new Rectangle(500, 500, 300, 200));
+    assertEquals(6 + 2*5 + 2*2, sched.getPendingCount());
+
+    // far away, nothing requested before is within the margin, and the
+    // ring is prefetched only to the right and below
+    frame(new Rectangle(1500, 1500, 300, 200));
+    assertEquals(6 + 4 + 5 - 1, sched.getPendingCount());
+    assertFalse(requested.contains(new Point(5, 5)));
+  }
+
+  @Test
+  public void testAdjacentLevelPriority() throws Exception {
+    // the level below, a 10x10 grid of 100x100 tiles
+    final ImageOp half = mock(ImageOp.class);
+    when(half.getWidth()).thenReturn(1000);
+    when(half.getHeight()).thenReturn(1000);
+    when(half.getTileWidth()).thenReturn(100);
+    when(half.getTileHeight()).thenReturn(100);
+
+    // the center of the view is at tile (10,10) here, and (5,5) below
+    frame(new Rectangle(900, 900, 200, 200));
+    assertTrue(sched.priority(half, new Point(5, 5)) <
+               sched.priority(half, new Point(9, 9)));
+    assertEquals(sched.priority(op, new Point(10, 10)),
+                 sched.priority(half, new Point(5, 5)));
+  }
+}
@@ -0,0 +1,249 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static VASSAL.tools.IterableEnumeration.iterate;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ZipArchiveTest {
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    file = File.createTempFile("ZipArchiveTest", ".zip");
+    file.delete();
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  private static byte[] text(String s, int n) {
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < n; ++i) {
+      sb.append(s).append(i).append('\n');
+    }
+    return sb.toString().getBytes();
+  }
+
+  private static byte[] read(InputStream in) throws IOException {
+    try {
+      return IOUtils.toByteArray(in);
+    }
+    finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  /** Read the archive with ZipInputStream, which uses the local headers. */
+  private Map<String,byte[]> readSequentially() throws IOException {
+    final Map<String,byte[]> contents = new HashMap<String,byte[]>();
+    ZipInputStream in = null;
+    try {
+      in = new ZipInputStream(new FileInputStream(file));
+      ZipEntry ze;
+      while ((ze = in.getNextEntry()) != null) {
+        contents.put(ze.getName(), IOUtils.toByteArray(in));
+      }
+      in.close();
+    }
+    finally {
+      IOUtils.closeQuietly(in);
+    }
+    return contents;
+  }
+
+  private long compressedSize(String name) throws IOException {
+    final ZipFile zf = new ZipFile(file);
+    try {
+      return zf.getEntry(name).getCompressedSize();
+    }
+    finally {
+      zf.close();
+    }
+  }
+
+  @Test
+  public void testUnmodifiedEntriesAreNotRecompressed() throws IOException {
+    final byte[] a = text("unchanged line ", 2000);
+    final byte[] b = text("changed line ", 2000);
+
+    ZipArchive archive = new ZipArchive(file);
+    archive.setCompressionLevel(Deflater.NO_COMPRESSION);
+    archive.add("a", a);
+    archive.add("b", b);
+    archive.close();
+
+    final long aSize = compressedSize("a");
+    final long bSize = compressedSize("b");
+    assertTrue(aSize >= a.length);
+
+    archive = new ZipArchive(file);
+    archive.setCompressionLevel(Deflater.BEST_COMPRESSION);
+    archive.add("b", text("changed again ", 2000));
+    archive.close();
+
+    // a keeps its old compressed data, while b is compressed anew
+    assertEquals(aSize, compressedSize("a"));
+    assertTrue(compressedSize("b") * 4 < bSize);
+
+    archive = new ZipArchive(file);
+    assertArrayEquals(a, read(archive.getInputStream("a")));
+    assertArrayEquals(text("changed again ", 2000),
+                      read(archive.getInputStream("b")));
+    archive.close();
+
+    final Map<String,byte[]> contents = readSequentially();
+    assertEquals(2, contents.size());
+    assertArrayEquals(a, contents.get("a"));
+  }
+
+  @Test
+  public void testStoredAndRemovedEntries() throws IOException {
+    final byte[] s = text("stored ", 100);
+    final byte[] d = text("deflated ", 100);
+
+    ZipArchive archive = new ZipArchive(file);
+    OutputStream out = archive.getOutputStream("stored", false);
+    out.write(s);
+    out.close();
+    archive.add("deflated", d);
+    archive.add("removed", d);
+    archive.add("dir/\u00fcml\u00e4ut", d);
+    archive.close();
+
+    archive = new ZipArchive(file);
+    assertTrue(archive.remove("removed"));
+    archive.add("new", s);
+    archive.close();
+
+    final ZipFile zf = new ZipFile(file);
+    try {
+      assertEquals(ZipEntry.STORED, zf.getEntry("stored").getMethod());
+      assertNotNull(zf.getEntry("dir/\u00fcml\u00e4ut"));
+    }
+    finally {
+      zf.close();
+    }
+
+    archive = new ZipArchive(file);
+    assertFalse(archive.contains("removed"));
+    assertArrayEquals(s, read(archive.getInputStream("stored")));
+    assertArrayEquals(d, read(archive.getInputStream("deflated")));
+    assertArrayEquals(d, read(archive.getInputStream("dir/\u00fcml\u00e4ut")));
+    assertArrayEquals(s, read(archive.getInputStream("new")));
+    archive.close();
+
+    final Map<String,byte[]> contents = readSequentially();
+    assertEquals(4, contents.size());
+    assertArrayEquals(s, contents.get("stored"));
+  }
+
+  @Test
+  public void testCopyFromOtherArchive() throws IOException {
+    // test.zip was not written by ZipWriter
+    final File src = new File("test/VASSAL/tools/io/test.zip");
+
+    final RandomAccessFile in = new RandomAccessFile(src, "r");
+    try {
+      final List<ZipWriter.RawEntry> raw = ZipWriter.readCentralDirectory(in);
+      final ZipWriter out = new ZipWriter(file);
+      try {
+        for (ZipWriter.RawEntry re : raw) {
+          out.copyRawEntry(in, re);
+        }
+      }
+      finally {
+        out.close();
+      }
+    }
+    finally {
+      in.close();
+    }
+
+    final ZipFile expected = new ZipFile(src);
+    final ZipFile actual = new ZipFile(file);
+    try {
+      assertEquals(expected.size(), actual.size());
+      for (ZipEntry ze : iterate(expected.entries())) {
+        assertArrayEquals(read(expected.getInputStream(ze)),
+                          read(actual.getInputStream(actual.getEntry(
+                            ze.getName()))));
+      }
+    }
+    finally {
+      expected.close();
+      actual.close();
+    }
+  }
+
+  /**
+   * A program for timing a small edit to a large archive.
+   */
+  public static void main(String[] args) throws IOException {
+    final File f = File.createTempFile("ZipArchiveTest", ".zip");
+    final Random rng = new Random(42);
+
+    ZipArchive archive = new ZipArchive(f, true);
+    for (int i = 0; i < 2000; ++i) {
+      // images compress poorly, so we use mostly random data
+      final byte[] b = new byte[50000];
+      rng.nextBytes(b);
+      for (int j = 0; j < b.length; j += 4) b[j] = 0;
+      archive.add("images/" + i + ".png", b);
+    }
+    archive.close();
+
+    for (int i = 0; i < 5; ++i) {
+      archive = new ZipArchive(f);
+      archive.add("buildFile", text("edit " + i, 1000));
+      final long start = System.currentTimeMillis();
+      archive.close();
+      System.out.println(f.length() + " bytes saved in " +
+                         (System.currentTimeMillis() - start) + " ms");
+    }
+
+    f.delete();
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2014 by the VASSAL Development Team
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+
+package VASSAL.tools.opcache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class OpCacheTest {
+  private final OpCache cache = new OpCache();
+  private final List<String> order =
+    Collections.synchronizedList(new ArrayList<String>());
+
+  // holds up the worker threads until the queue is set up
+  private final CountDownLatch started = new CountDownLatch(2);
+  private final CountDownLatch gate = new CountDownLatch(1);
+
+  private final OpObserver<String> obs = new OpObserver<String>() {
+    public void succeeded(Op<String> op, String val) { }
+    public void cancelled(Op<String> op, CancellationException e) { }
+    public void interrupted(Op<String> op, InterruptedException e) { }
+    public void failed(Op<String> op, ExecutionException e) { }
+  };
+
+  private class NamedOp extends AbstractOpImpl<String> {
+    private final String name;
+    private final boolean block;
+
+    public NamedOp(String name, boolean block) {
+      super(OpCacheTest.this.cache);
+      this.name = name;
+      this.block = block;
+    }
+
+    public List<Op<?>> getSources() {
+      return Collections.emptyList();
+    }
+
+    public String eval() throws Exception {
+      if (block) {
+        started.countDown();
+        gate.await();
+      }
+      else {
+        order.add(name);
+      }
+      return name;
+    }
+  }
+
+  private Future<String> request(Op<String> op) throws ExecutionException {
+    return cache.getFuture(op.newKey(), obs);
+  }
+
+  @Test
+  public void testPriorityAndCancel() throws Exception {
+    final Future<String> b1 = request(new NamedOp("b1", true));
+    final Future<String> b2 = request(new NamedOp("b2", true));
+    started.await();
+
+    final Future<String> a = request(new NamedOp("a", false));
+    final Future<String> b = request(new NamedOp("b", false));
+    final Future<String> c = request(new NamedOp("c", false));
+    final NamedOp dop = new NamedOp("d", false);
+    final Future<String> d = request(dop);
+    assertEquals(4, cache.getQueueDepth());
+
+    assertTrue(cache.setPriority(b, -1));
+    assertTrue(cache.setPriority(c, -2));
+    assertFalse(cache.setPriority(b1, -3));
+
+    assertTrue(cache.cancel(d));
+    assertTrue(d.isCancelled());
+    assertFalse(cache.cancel(d));
+    assertEquals(3, cache.getQueueDepth());
+
+    // a cancelled request is made anew
+    final Future<String> d2 = request(dop);
+    assertNotSame(d, d2);
+
+    gate.countDown();
+    final List<Future<String>> all = new ArrayList<Future<String>>();
+    all.add(b1);
+    all.add(b2);
+    all.add(a);
+    all.add(b);
+    all.add(c);
+    all.add(d2);
+    for (Future<String> f : all) {
+      f.get();
+    }
+
+    assertEquals(Arrays.asList("c", "b", "a", "d"), order);
+  }
+}